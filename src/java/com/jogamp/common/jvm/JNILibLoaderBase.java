@@ -47,16 +47,27 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.AccessControlContext;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import com.jogamp.common.util.StartupTrace;
 import jogamp.common.Debug;
 
+/**
+ * Loads JNI libraries via the current {@link LoaderAction}.
+ * <p>
+ * Loading is serialized per library name only,
+ * hence independent libraries may be loaded concurrently by different threads.
+ * </p>
+ */
 public class JNILibLoaderBase {
 
     public static final boolean DEBUG = Debug.debug("JNILibLoader");
 
-    private static final Set<String> loaded = new HashSet<String>();
-    private static LoaderAction loaderAction = new DefaultAction();
+    private static final Set<String> loaded = Collections.synchronizedSet(new HashSet<String>());
+    private static final ConcurrentHashMap<String, Object> libLocks = new ConcurrentHashMap<String, Object>();
+    private static volatile LoaderAction loaderAction = new DefaultAction();
 
     public static boolean isLoaded(String libName) {
         return loaded.contains(libName);
@@ -69,6 +80,22 @@ public class JNILibLoaderBase {
         }
     }
 
+    /**
+     * Returns the monitor serializing the loading of the given library,
+     * i.e. a thread loading a library already being loaded by another thread waits for its completion.
+     */
+    protected static Object getLibraryLock(String libName) {
+        Object lock = libLocks.get(libName);
+        if (null == lock) {
+            Object newLock = new Object();
+            lock = libLocks.putIfAbsent(libName, newLock);
+            if (null == lock) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
     public static void disableLoading() {
         setLoadingAction(null);
     }
@@ -81,16 +108,45 @@ public class JNILibLoaderBase {
         loaderAction = action;
     }
 
-    protected static synchronized boolean loadLibrary(String libname, boolean ignoreError) {
-        if (loaderAction != null) {
-            return loaderAction.loadLibrary(libname, ignoreError);
+    protected static boolean loadLibrary(String libname, boolean ignoreError) {
+        final LoaderAction action = loaderAction;
+        if (action != null) {
+            synchronized (getLibraryLock(libname)) {
+                if (StartupTrace.ENABLED) {
+                    final long t0 = System.nanoTime();
+                    final boolean res = action.loadLibrary(libname, ignoreError);
+                    StartupTrace.record(StartupTrace.JNI_LIB_LOAD, libname, t0, res);
+                    return res;
+                }
+                return action.loadLibrary(libname, ignoreError);
+            }
         }
         return false;
     }
 
-    protected static synchronized void loadLibrary(String libname, String[] preload, boolean preloadIgnoreError) {
-        if (loaderAction != null) {
-            loaderAction.loadLibrary(libname, preload, preloadIgnoreError);
+    /**
+     * Loads the preload libraries, each under its own lock, before taking the lock of <code>libname</code>,
+     * since holding it while locking the preloads would deadlock with a thread loading libraries
+     * which list each other as preloads.
+     */
+    protected static void loadLibrary(String libname, String[] preload, boolean preloadIgnoreError) {
+        final LoaderAction action = loaderAction;
+        if (action != null) {
+            if (null != preload && !isLoaded(libname)) {
+                for (int i = 0; i < preload.length; i++) {
+                    synchronized (getLibraryLock(preload[i])) {
+                        action.loadLibrary(preload[i], preloadIgnoreError);
+                    }
+                }
+            }
+            synchronized (getLibraryLock(libname)) {
+                final long t0 = StartupTrace.ENABLED ? System.nanoTime() : 0;
+                // the preloads are loaded already
+                action.loadLibrary(libname, null, preloadIgnoreError);
+                if (StartupTrace.ENABLED) {
+                    StartupTrace.record(StartupTrace.JNI_LIB_LOAD, libname, t0, true);
+                }
+            }
         }
     }
 
@@ -196,20 +252,23 @@ public class JNILibLoaderBase {
 
         public boolean loadLibrary(String libname, boolean ignoreError) {
             boolean res = true;
-            if (!isLoaded(libname)) {
-                try {
-                    loadLibraryImpl(libname);
-                    addLoaded(libname);
-                    if (DEBUG) {
-                        System.err.println(getClass() + " loaded " + libname);
-                    }
-                } catch (UnsatisfiedLinkError e) {
-                    res = false;
-                    if (DEBUG) {
-                        e.printStackTrace();
-                    }
-                    if (!ignoreError && e.getMessage().indexOf("already loaded") < 0) {
-                        throw e;
+            // preloaded libraries are passed here directly, hence lock here as well
+            synchronized (getLibraryLock(libname)) {
+                if (!isLoaded(libname)) {
+                    try {
+                        loadLibraryImpl(libname);
+                        addLoaded(libname);
+                        if (DEBUG) {
+                            System.err.println(getClass() + " loaded " + libname);
+                        }
+                    } catch (UnsatisfiedLinkError e) {
+                        res = false;
+                        if (DEBUG) {
+                            e.printStackTrace();
+                        }
+                        if (!ignoreError && e.getMessage().indexOf("already loaded") < 0) {
+                            throw e;
+                        }
                     }
                 }
             }
@@ -39,7 +39,12 @@
  */
 package com.jogamp.common.nio;
 
+import java.lang.reflect.Field;
 import java.nio.*;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+
+import com.jogamp.gluegen.runtime.NativeLibLoader;
 
 /**
  * Utility methods allowing easy {@link java.nio.Buffer} manipulations.
@@ -337,6 +342,57 @@ public class Buffers {
         throw new IllegalArgumentException("Disallowed array backing store type in buffer " + buf.getClass().getName());
     }
 
+    /**
+     * Returns the native base address of the given direct {@link java.nio.Buffer},
+     * i.e. without taking its position into account, or 0 if the buffer is null.
+     * <p>
+     * The address is read from the buffer object via <code>sun.misc.Unsafe</code> if available,
+     * otherwise it is queried natively via <code>GetDirectBufferAddress</code>.
+     * </p>
+     * <p>
+     * The returned address is only valid as long as the buffer is reachable.
+     * </p>
+     */
+    public static long getDirectBufferAddress(Buffer buf) {
+        if (buf == null) {
+            return 0;
+        }
+        if (null != unsafe) {
+            return unsafe.getLong(buf, unsafeAddressOffset);
+        }
+        NativeLibLoader.loadGlueGenRT();
+        return getDirectBufferAddressImpl(buf);
+    }
+
+    private static native long getDirectBufferAddressImpl(Object directBuffer);
+
+    /** Used by {@link ScratchBuffer}, null if not available */
+    static final sun.misc.Unsafe unsafe;
+    private static final long unsafeAddressOffset;
+
+    static {
+        final Object[] res = AccessController.doPrivileged(new PrivilegedAction<Object[]>() {
+            public Object[] run() {
+                try {
+                    Field f = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+                    f.setAccessible(true);
+                    final sun.misc.Unsafe u = (sun.misc.Unsafe) f.get(null);
+                    final long offset = u.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+                    return new Object[] { u, Long.valueOf(offset) };
+                } catch (Throwable t) {
+                    return null;
+                }
+            }
+        });
+        if (null != res) {
+            unsafe = (sun.misc.Unsafe) res[0];
+            unsafeAddressOffset = ((Long) res[1]).longValue();
+        } else {
+            unsafe = null;
+            unsafeAddressOffset = 0;
+        }
+    }
+
     /**
      * Helper routine to return the array backing store reference from
      * a Buffer object.
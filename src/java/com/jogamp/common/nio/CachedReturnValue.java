@@ -0,0 +1,76 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.common.nio;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Immutable pair of the direct <code>ByteBuffer</code> created by the C glue code
+ * for a returned pointer and the Java object handed out for it,
+ * i.e. the ByteBuffer itself, a typed view or a struct wrapper,
+ * see the <code>ReturnValueCache</code> configuration directive.
+ * <p>
+ * The generated code keeps the last instance per function in a plain field
+ * and passes its {@link #buffer} down to the C glue code,
+ * which returns it again if the native address and capacity did not change.
+ * Since all fields are final, the pair itself is safely published to other threads
+ * without synchronization, a lost update of the field merely costs a new buffer.
+ * </p>
+ * <p>
+ * The {@link #value} however is handed out to every caller of the function and
+ * is cleared before, hence it is shared and not thread-safe:
+ * concurrent callers receive the same buffer object and race on its position and limit.
+ * Callers must duplicate it if they use it from more than one thread.
+ * </p>
+ * <pre>
+    final CachedReturnValue&lt;IntBuffer&gt; _cached = _cached_foo;
+    ByteBuffer _res;
+    _res = foo1(null != _cached ? _cached.buffer : null);
+    if (_res == null) return null;
+    if (null != _cached &amp;&amp; _res == _cached.buffer) {
+      _cached.value.clear();
+      return _cached.value;
+    }
+    Buffers.nativeOrder(_res);
+    final IntBuffer _value = _res.asIntBuffer();
+    _cached_foo = new CachedReturnValue&lt;IntBuffer&gt;(_res, _value);
+    return _value;
+ * </pre>
+ */
+public final class CachedReturnValue<T> {
+    /** The direct ByteBuffer as created by the C glue code. */
+    public final ByteBuffer buffer;
+    /** The Java object handed out for {@link #buffer}. */
+    public final T value;
+
+    public CachedReturnValue(ByteBuffer buffer, T value) {
+        this.buffer = buffer;
+        this.value = value;
+    }
+}
@@ -0,0 +1,297 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+
+package com.jogamp.common.nio;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import com.jogamp.common.os.Platform;
+
+/**
+ * Thread local direct scratch memory used by generated glue code
+ * to marshal <code>String</code> and <code>String[]</code> arguments
+ * without JNI string callbacks and without <code>malloc</code>,
+ * see the <code>DirectStringArguments</code> configuration directive.
+ * <p>
+ * The strings are encoded as null terminated UTF-8 (or UTF-16 in native byte order)
+ * and their native address is passed down as a <code>long</code>.
+ * A string array is passed as the address of a pointer table.
+ * </p>
+ * <p>
+ * All addresses handed out after {@link #begin()} stay valid until the matching {@link #end(int)},
+ * even if the scratch memory had to grow in between or the sections are nested,
+ * e.g. by a native callback into Java code.
+ * </p>
+ * <pre>
+    final ScratchBuffer _scratch = ScratchBuffer.get();
+    final int _scratch_mark = _scratch.begin();
+    try {
+      foo0(_scratch.putUTF8(name));
+    } finally {
+      _scratch.end(_scratch_mark);
+    }
+ * </pre>
+ * <p>
+ * Instances are not threadsafe and shall only be used by the owning thread.
+ * </p>
+ */
+public class ScratchBuffer {
+
+    /** Initial size of the scratch memory of each thread in bytes. */
+    public static final int DEFAULT_SIZE = 4096;
+
+    private static final ThreadLocal<ScratchBuffer> scratch = new ThreadLocal<ScratchBuffer>() {
+        protected ScratchBuffer initialValue() {
+            return new ScratchBuffer(DEFAULT_SIZE);
+        }
+    };
+
+    /** Returns the scratch memory of the current thread. */
+    public static ScratchBuffer get() {
+        return scratch.get();
+    }
+
+    private static final int POINTER_SIZE = NativeSizeBuffer.elementSize();
+
+    private ByteBuffer buffer;
+    private long address;
+    private int position;
+    private int depth;
+    /** Nesting depth at which the memory grew the last time, marks of outer sections refer to retired memory */
+    private int growthDepth;
+    /** Memory replaced while a section was open, kept alive until the outermost section ends */
+    private ArrayList<ByteBuffer> retired;
+
+    private ScratchBuffer(int size) {
+        allocate(size);
+    }
+
+    private void allocate(int size) {
+        buffer = Buffers.newDirectByteBuffer(size);
+        address = Buffers.getDirectBufferAddress(buffer);
+        position = 0;
+    }
+
+    /** Opens a section and returns its mark, which shall be passed to {@link #end(int)}. */
+    public int begin() {
+        depth++;
+        return position;
+    }
+
+    /** Closes the section opened by {@link #begin()}, releasing all memory handed out since. */
+    public void end(int mark) {
+        if(0 >= depth) {
+            throw new IllegalStateException("end() without begin()");
+        }
+        final int d = depth--;
+        if(0 == depth) {
+            position = 0;
+            growthDepth = 0;
+            retired = null;
+        } else if(d > growthDepth) {
+            position = mark;
+        } else {
+            growthDepth = depth;
+        }
+    }
+
+    /** Returns the current size of the scratch memory in bytes. */
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Reserves <code>size</code> bytes aligned to <code>alignment</code>
+     * and returns their offset within the current buffer.
+     */
+    private int reserve(int size, int alignment) {
+        int off = ( position + alignment - 1 ) & ~( alignment - 1 );
+        if( off + size > buffer.capacity() ) {
+            if(0 < depth) {
+                if(null == retired) {
+                    retired = new ArrayList<ByteBuffer>();
+                }
+                retired.add(buffer);
+                growthDepth = depth;
+            }
+            int n = buffer.capacity() * 2;
+            while( n < size ) {
+                n *= 2;
+            }
+            allocate(n);
+            off = 0;
+        }
+        position = off + size;
+        return off;
+    }
+
+    /**
+     * Stores the given string as null terminated UTF-8
+     * and returns its native address, or 0 if <code>s</code> is null.
+     */
+    public long putUTF8(String s) {
+        if(null == s) {
+            return 0;
+        }
+        // reserve the worst case of 3 bytes per char, trimmed to the actual length afterwards
+        final int off = reserve(s.length() * 3 + 1, 1);
+        position = writeUTF8(s, off);
+        return address + off;
+    }
+
+    /**
+     * Stores the given string as null terminated UTF-16 in native byte order
+     * and returns its native address, or 0 if <code>s</code> is null.
+     */
+    public long putUTF16(String s) {
+        if(null == s) {
+            return 0;
+        }
+        final int off = reserve(( s.length() + 1 ) * Buffers.SIZEOF_CHAR, Buffers.SIZEOF_CHAR);
+        writeUTF16(s, off);
+        return address + off;
+    }
+
+    /**
+     * Stores the given strings as null terminated UTF-8 and returns the native address
+     * of a table of pointers to them, or 0 if <code>a</code> is null.
+     * A null element is passed as a NULL pointer.
+     */
+    public long putUTF8Array(String[] a) {
+        return putArray(a, true);
+    }
+
+    /**
+     * Stores the given strings as null terminated UTF-16 in native byte order and returns the native address
+     * of a table of pointers to them, or 0 if <code>a</code> is null.
+     * A null element is passed as a NULL pointer.
+     */
+    public long putUTF16Array(String[] a) {
+        return putArray(a, false);
+    }
+
+    private long putArray(String[] a, boolean utf8) {
+        if(null == a) {
+            return 0;
+        }
+        // Reserve the pointer table and all strings at once, hence they share one buffer
+        int size = a.length * POINTER_SIZE;
+        for(int i=0; i<a.length; i++) {
+            if(null != a[i]) {
+                size += utf8 ? utf8Length(a[i]) + 1 : ( a[i].length() + 1 ) * Buffers.SIZEOF_CHAR;
+            }
+        }
+        final int table = reserve(size, POINTER_SIZE);
+        int off = table + a.length * POINTER_SIZE;
+        for(int i=0; i<a.length; i++) {
+            long p = 0;
+            if(null != a[i]) {
+                p = address + off;
+                off = utf8 ? writeUTF8(a[i], off) : writeUTF16(a[i], off);
+            }
+            if(4 == POINTER_SIZE) {
+                buffer.putInt(table + i * POINTER_SIZE, (int) p);
+            } else {
+                buffer.putLong(table + i * POINTER_SIZE, p);
+            }
+        }
+        return address + table;
+    }
+
+    private static int utf8Length(String s) {
+        final int len = s.length();
+        int n = len;
+        for(int i=0; i<len; i++) {
+            final char c = s.charAt(i);
+            if(c >= 0x800) {
+                n += 2;
+                if(Character.isHighSurrogate(c) && i+1 < len && Character.isLowSurrogate(s.charAt(i+1))) {
+                    i++; // 4 bytes for the surrogate pair
+                }
+            } else if(c >= 0x80) {
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /** Writes the null terminated UTF-8 string at <code>off</code> and returns the offset after it. */
+    private int writeUTF8(String s, int off) {
+        final ByteBuffer b = buffer;
+        final int len = s.length();
+        int i = 0;
+        if(null != Buffers.unsafe) {
+            // ASCII fast path, bypassing the buffer's per access checks
+            final long p = address + off;
+            for(; i<len; i++) {
+                final char c = s.charAt(i);
+                if(c >= 0x80) {
+                    break;
+                }
+                Buffers.unsafe.putByte(p + i, (byte) c);
+            }
+            off += i;
+        }
+        for(; i<len; i++) {
+            final char c = s.charAt(i);
+            if(c < 0x80) {
+                b.put(off++, (byte) c);
+            } else if(c < 0x800) {
+                b.put(off++, (byte) ( 0xC0 | ( c >> 6 ) ));
+                b.put(off++, (byte) ( 0x80 | ( c & 0x3F ) ));
+            } else if(Character.isHighSurrogate(c) && i+1 < len && Character.isLowSurrogate(s.charAt(i+1))) {
+                final int cp = Character.toCodePoint(c, s.charAt(++i));
+                b.put(off++, (byte) ( 0xF0 | ( cp >> 18 ) ));
+                b.put(off++, (byte) ( 0x80 | ( ( cp >> 12 ) & 0x3F ) ));
+                b.put(off++, (byte) ( 0x80 | ( ( cp >> 6 ) & 0x3F ) ));
+                b.put(off++, (byte) ( 0x80 | ( cp & 0x3F ) ));
+            } else {
+                // unpaired surrogates are encoded as is, like all other 3 byte characters
+                b.put(off++, (byte) ( 0xE0 | ( c >> 12 ) ));
+                b.put(off++, (byte) ( 0x80 | ( ( c >> 6 ) & 0x3F ) ));
+                b.put(off++, (byte) ( 0x80 | ( c & 0x3F ) ));
+            }
+        }
+        b.put(off++, (byte) 0);
+        return off;
+    }
+
+    /** Writes the null terminated UTF-16 string at <code>off</code> and returns the offset after it. */
+    private int writeUTF16(String s, int off) {
+        final ByteBuffer b = buffer;
+        final int len = s.length();
+        for(int i=0; i<len; i++) {
+            b.putChar(off, s.charAt(i));
+            off += Buffers.SIZEOF_CHAR;
+        }
+        b.putChar(off, (char) 0);
+        return off + Buffers.SIZEOF_CHAR;
+    }
+}
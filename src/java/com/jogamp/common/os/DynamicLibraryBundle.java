@@ -28,8 +28,10 @@
  
 package com.jogamp.common.os;
 
+import java.security.AccessController;
 import java.util.*;
 
+import jogamp.common.Debug;
 import com.jogamp.common.jvm.JNILibLoaderBase;
 
 /**
@@ -48,20 +50,32 @@ import com.jogamp.common.jvm.JNILibLoaderBase;
  *  <li> loads the {@link com.jogamp.common.jvm.JNILibLoaderBase#loadLibrary(java.lang.String, java.lang.String[], boolean)  Glue native library}</li>
  *  <li> resolves the Tool's {@link com.jogamp.common.os.DynamicLibraryBundleInfo#getToolGetProcAddressFuncNameList() GetProcAddress}. (optional)</li>
  * </ul>
+ * Independent bundles may be constructed concurrently by different threads,
+ * since native libraries are only serialized per library.<br>
+ * If the property <code>jogamp.common.os.DynamicLibraryBundle.parallel</code> is set,
+ * the Tool libraries of a bundle are loaded concurrently as well.
+ * Use this only if the Tool libraries do not depend on each others global symbols.
+ * The Glue libraries are always loaded in the given order.<br>
+ * The duration of each library load is available via {@link #getToolLibLoadNanos(int)}
+ * and {@link #getGlueLibLoadNanos(int)}.
  */
 public class DynamicLibraryBundle implements DynamicLookupHelper {
     protected static final boolean DEBUG = NativeLibrary.DEBUG;
     protected static final boolean DEBUG_LOOKUP = NativeLibrary.DEBUG_LOOKUP;
+    private static final boolean PARALLEL_TOOL_LOAD = Debug.isPropertyDefined("jogamp.common.os.DynamicLibraryBundle.parallel", true, AccessController.getContext());
 
     private DynamicLibraryBundleInfo info;
+    private final boolean parallelToolLoad;
 
     private List/*<List<String>>*/ toolLibNames;
     private boolean[] toolLibLoaded;
+    private long[] toolLibLoadNanos;
     private int toolLibLoadedNumber;
     protected List/*<NativeLibrary>*/ nativeLibraries;
 
     private List/*<String>*/ glueLibNames;
     private boolean[] glueLibLoaded;
+    private long[] glueLibLoadNanos;
     private int glueLibLoadedNumber;
 
     private long toolGetProcAddressHandle;
@@ -69,10 +83,19 @@ public class DynamicLibraryBundle implements DynamicLookupHelper {
     private List toolGetProcAddressFuncNameList;
 
     public DynamicLibraryBundle(DynamicLibraryBundleInfo info) {
+        this(info, PARALLEL_TOOL_LOAD);
+    }
+
+    /**
+     * @param parallelToolLoad if true, the Tool libraries are loaded concurrently,
+     *        overriding the property <code>jogamp.common.os.DynamicLibraryBundle.parallel</code>
+     */
+    DynamicLibraryBundle(DynamicLibraryBundleInfo info, boolean parallelToolLoad) {
         if(null==info) {
             throw new RuntimeException("Null DynamicLibraryBundleInfo");
         }
         this.info = info;
+        this.parallelToolLoad = parallelToolLoad;
         if(DEBUG) {
             System.err.println(Thread.currentThread().getName()+" - DynamicLibraryBundle.init start with: "+info.getClass().getName());
             Thread.dumpStack();
@@ -94,8 +117,10 @@ public class DynamicLibraryBundle implements DynamicLookupHelper {
             System.err.println("     toolGetProcAddressFuncNameList: "+toolGetProcAddressFuncNameList);
             System.err.println("     Tool Lib Names : "+toolLibNames);
             System.err.println("     Tool Lib Loaded: "+getToolLibLoadedNumber()+"/"+getToolLibNumber()+", complete "+isToolLibComplete());
+            System.err.println("     Tool Lib Load  : "+toNanosString(toolLibLoadNanos));
             System.err.println("     Glue Lib Names : "+glueLibNames);
             System.err.println("     Glue Lib Loaded: "+getGlueLibLoadedNumber()+"/"+getGlueLibNumber()+", complete "+isGlueLibComplete());
+            System.err.println("     Glue Lib Load  : "+toNanosString(glueLibLoadNanos));
             System.err.println("     All Complete: "+isLibComplete());
         }
     }
@@ -146,6 +171,42 @@ public class DynamicLibraryBundle implements DynamicLookupHelper {
         return false;
     }
 
+    /**
+     * @return the duration of loading the i-th Tool library, including all failed alternatives, in nanoseconds.
+     *         0 if not attempted.
+     */
+    public final long getToolLibLoadNanos(int i) {
+        if(null != toolLibLoadNanos && 0 <= i && i < toolLibLoadNanos.length) {
+            return toolLibLoadNanos[i];
+        }
+        return 0;
+    }
+
+    /**
+     * @return the duration of loading the i-th Glue library in nanoseconds.
+     *         0 if not attempted.
+     */
+    public final long getGlueLibLoadNanos(int i) {
+        if(null != glueLibLoadNanos && 0 <= i && i < glueLibLoadNanos.length) {
+            return glueLibLoadNanos[i];
+        }
+        return 0;
+    }
+
+    private static String toNanosString(long[] nanos) {
+        if(null == nanos) {
+            return "n/a";
+        }
+        StringBuffer sb = new StringBuffer("[");
+        for(int i=0; i<nanos.length; i++) {
+            if(i>0) {
+                sb.append(", ");
+            }
+            sb.append(nanos[i]/1000).append(" us");
+        }
+        return sb.append("]").toString();
+    }
+
     public final DynamicLibraryBundleInfo getBundleInfo() { return info; }
 
     protected long getToolGetProcAddressHandle() {
@@ -191,43 +252,63 @@ public class DynamicLibraryBundle implements DynamicLookupHelper {
         toolLibLoadedNumber = 0;
         int i;
         toolLibLoaded = new boolean[toolLibNames.size()];
+        toolLibLoadNanos = new long[toolLibNames.size()];
         for(i=0; i<toolLibNames.size(); i++) {
             toolLibLoaded[i] = false;
         }
 
         glueLibLoaded = new boolean[glueLibNames.size()];
+        glueLibLoadNanos = new long[glueLibNames.size()];
         for(i=0; i<glueLibNames.size(); i++) {
             glueLibLoaded[i] = false;
         }
 
-        ClassLoader loader = getClass().getClassLoader();
-        NativeLibrary lib = null;
-
-        i=0;
-        for(Iterator iter = toolLibNames.iterator(); iter.hasNext(); i++) {
-            Object listObj = iter.next();
-            List/*<String>*/ libNames = null;
-            if(listObj instanceof List) {
-                libNames = (List) listObj;
-            } else if(listObj instanceof String) {
-                libNames = new ArrayList();
-                libNames.add((String)listObj);
-            } else {
-                throw new RuntimeException("List element "+i+" must be either a List or String: "+toolLibNames);
-            }
-            if( null != libNames && libNames.size() > 0 ) {
-                lib = loadFirstAvailable(libNames, loader, info.shallLinkGlobal());
-                if ( null == lib ) {
-                    if(DEBUG) {
-                        System.err.println("Unable to load any Tool library of: "+libNames);
-                    }
-                } else {
-                    nativeLibraries.add(lib);
-                    toolLibLoaded[i]=true;
-                    toolLibLoadedNumber++;
-                    if(DEBUG) {
-                        System.err.println("Loaded Tool library: "+lib);
+        final ClassLoader loader = getClass().getClassLoader();
+        final NativeLibrary[] toolLibs = new NativeLibrary[toolLibNames.size()];
+
+        if( parallelToolLoad && toolLibNames.size() > 1 ) {
+            final RuntimeException[] errors = new RuntimeException[toolLibNames.size()];
+            Thread[] loaderThreads = new Thread[toolLibNames.size()];
+            for(i=0; i<loaderThreads.length; i++) {
+                final int idx = i;
+                loaderThreads[i] = new Thread("DynamicLibraryBundle-ToolLoader-"+i) {
+                    public void run() {
+                        try {
+                            toolLibs[idx] = loadToolLib(idx, loader);
+                        } catch (RuntimeException re) {
+                            errors[idx] = re;
+                        }
                     }
+                };
+                loaderThreads[i].start();
+            }
+            for(i=0; i<loaderThreads.length; i++) {
+                try {
+                    loaderThreads[i].join();
+                } catch (InterruptedException ie) {
+                    throw new RuntimeException(ie);
+                }
+            }
+            for(i=0; i<errors.length; i++) {
+                if( null != errors[i] ) {
+                    throw errors[i];
+                }
+            }
+        } else {
+            for(i=0; i<toolLibs.length; i++) {
+                toolLibs[i] = loadToolLib(i, loader);
+            }
+        }
+
+        // keep the lookup order of the given Tool library list
+        for(i=0; i<toolLibs.length; i++) {
+            NativeLibrary lib = toolLibs[i];
+            if ( null != lib ) {
+                nativeLibraries.add(lib);
+                toolLibLoaded[i]=true;
+                toolLibLoadedNumber++;
+                if(DEBUG) {
+                    System.err.println("Loaded Tool library: "+lib);
                 }
             }
         }
@@ -244,6 +325,7 @@ public class DynamicLibraryBundle implements DynamicLookupHelper {
             String libName = (String) iter.next();
             boolean ignoreError = true;
             boolean res;
+            long t0 = System.nanoTime();
             try {
                 res = GlueJNILibLoaderBase.loadLibrary(libName, ignoreError);
                 if(DEBUG && !res) {
@@ -256,6 +338,7 @@ public class DynamicLibraryBundle implements DynamicLookupHelper {
                     e.printStackTrace();
                 }
             }
+            glueLibLoadNanos[i] = System.nanoTime() - t0;
             glueLibLoaded[i] = res;
             if(res) {
                 glueLibLoadedNumber++;
@@ -263,6 +346,30 @@ public class DynamicLibraryBundle implements DynamicLookupHelper {
         }
     }
 
+    /** Loads the first available alternative of the i-th Tool library, may be called concurrently. */
+    private NativeLibrary loadToolLib(int i, ClassLoader loader) {
+        Object listObj = toolLibNames.get(i);
+        List/*<String>*/ libNames = null;
+        if(listObj instanceof List) {
+            libNames = (List) listObj;
+        } else if(listObj instanceof String) {
+            libNames = new ArrayList();
+            libNames.add((String)listObj);
+        } else {
+            throw new RuntimeException("List element "+i+" must be either a List or String: "+toolLibNames);
+        }
+        NativeLibrary lib = null;
+        if( null != libNames && libNames.size() > 0 ) {
+            long t0 = System.nanoTime();
+            lib = loadFirstAvailable(libNames, loader, info.shallLinkGlobal());
+            toolLibLoadNanos[i] = System.nanoTime() - t0;
+            if ( null == lib && DEBUG ) {
+                System.err.println("Unable to load any Tool library of: "+libNames);
+            }
+        }
+        return lib;
+    }
+
     private long dynamicLookupFunctionOnLibs(String funcName) {
         if(!isToolLibLoaded() || null==funcName) {
             if(DEBUG_LOOKUP && !isToolLibLoaded()) {
@@ -323,7 +430,7 @@ public class DynamicLibraryBundle implements DynamicLookupHelper {
 
     /** Inherit access */
     static class GlueJNILibLoaderBase extends JNILibLoaderBase {
-      protected static synchronized boolean loadLibrary(String libname, boolean ignoreError) {
+      protected static boolean loadLibrary(String libname, boolean ignoreError) {
         return JNILibLoaderBase.loadLibrary(libname, ignoreError);
       }
     }
@@ -40,6 +40,7 @@
 package com.jogamp.common.os;
 
 import com.jogamp.common.jvm.JNILibLoaderBase;
+import com.jogamp.common.util.StartupTrace;
 import com.jogamp.gluegen.runtime.NativeLibLoader;
 import java.io.*;
 import java.lang.reflect.*;
@@ -70,6 +71,17 @@ public class NativeLibrary implements DynamicLookupHelper {
   private static String[] prefixes;
   private static String[] suffixes;
 
+  // Process wide cache of successfully opened library paths,
+  // ClassLoader -> ( library name key -> path ), null loader uses the nullLoaderPaths
+  private static final Map<ClassLoader, Map<String, String>> resolvedPaths = new WeakHashMap<ClassLoader, Map<String, String>>();
+  private static final Map<String, String> nullLoaderResolvedPaths = new HashMap<String, String>();
+
+  // Statistics of the native open attempts
+  private static int openAttemptCount;
+  private static long openAttemptNanos;
+  private static int resolvedPathHitCount;
+  private static int skippedNonexistentCount;
+
   static {
     // Determine platform we're running on
     AccessController.doPrivileged(new PrivilegedAction() {
@@ -119,10 +131,18 @@ public class NativeLibrary implements DynamicLookupHelper {
   // May as well keep around the path to the library we opened
   private String libraryPath;
 
+  // Persistent symbol address cache, null if disabled
+  private SymbolAddressCache symbolCache;
+
   // Private constructor to prevent arbitrary instances from floating around
   private NativeLibrary(long libraryHandle, String libraryPath) {
     this.libraryHandle = libraryHandle;
     this.libraryPath   = libraryPath;
+    this.symbolCache   = SymbolAddressCache.create(libraryPath, new DynamicLookupHelper() {
+        public long dynamicLookupFunction(String funcName) {
+          return dynLink.lookupSymbol(NativeLibrary.this.libraryHandle, funcName);
+        }
+      });
   }
 
   public String toString() {
@@ -173,6 +193,30 @@ public class NativeLibrary implements DynamicLookupHelper {
                                    String macOSXLibName,
                                    boolean searchSystemPathFirst,
                                    ClassLoader loader, boolean global) {
+    NativeLibLoader.loadGlueGenRT();
+
+    // Try the path which succeeded before for the same library and loader
+    String key = resolvedPathKey(windowsLibName, unixLibName, macOSXLibName, searchSystemPathFirst);
+    String cachedPath = getResolvedPath(loader, key);
+    if (cachedPath != null) {
+      if (DEBUG) {
+        System.err.println("Trying to load cached path " + cachedPath);
+      }
+      long res = openLibraryImpl(cachedPath, global);
+      if (res != 0) {
+        synchronized (resolvedPaths) {
+          resolvedPathHitCount++;
+        }
+        return new NativeLibrary(res, cachedPath);
+      }
+      removeResolvedPath(loader, key);
+    }
+
+    // Paths given by the user are passed to the native open as is, as well as all paths on Mac OS X,
+    // where system libraries reside in the dyld shared cache w/o an existing file.
+    String libName = selectName(windowsLibName, unixLibName, macOSXLibName);
+    final boolean skipNonexistent = platform != MACOSX && libName != null && !new File(libName).isAbsolute();
+
     List possiblePaths = enumerateLibraryPaths(windowsLibName,
                                                unixLibName,
                                                macOSXLibName,
@@ -181,20 +225,26 @@ public class NativeLibrary implements DynamicLookupHelper {
     // Iterate down these and see which one if any we can actually find.
     for (Iterator iter = possiblePaths.iterator(); iter.hasNext(); ) {
       String path = (String) iter.next();
+      if (path.equals(cachedPath)) {
+        continue; // already failed above
+      }
+      // Only bare library names are subject to the OS's search algorithm,
+      // skip the expensive native attempt for nonexistent files.
+      if (skipNonexistent && path.indexOf(File.separatorChar) >= 0 && !exists(path)) {
+        synchronized (resolvedPaths) {
+          skippedNonexistentCount++;
+        }
+        continue;
+      }
       if (DEBUG) {
         System.err.println("Trying to load " + path);
       }
-      NativeLibLoader.loadGlueGenRT();
-      long res;
-      if(global) {
-          res = dynLink.openLibraryGlobal(path, DEBUG);
-      } else {
-          res = dynLink.openLibraryLocal(path, DEBUG);
-      }
+      long res = openLibraryImpl(path, global);
       if (res != 0) {
         if (DEBUG) {
           System.err.println("Successfully loaded " + path + ": res = 0x" + Long.toHexString(res));
         }
+        putResolvedPath(loader, key, path);
         return new NativeLibrary(res, path);
       }
     }
@@ -209,11 +259,114 @@ public class NativeLibrary implements DynamicLookupHelper {
     return null;
   }
 
+  private static long openLibraryImpl(String path, boolean global) {
+    long t0 = System.nanoTime();
+    long res;
+    if(global) {
+        res = dynLink.openLibraryGlobal(path, DEBUG);
+    } else {
+        res = dynLink.openLibraryLocal(path, DEBUG);
+    }
+    long dt = System.nanoTime() - t0;
+    synchronized (resolvedPaths) {
+      openAttemptCount++;
+      openAttemptNanos += dt;
+    }
+    if (StartupTrace.ENABLED) {
+      StartupTrace.record(StartupTrace.LIB_OPEN, path, t0, 0 != res);
+    }
+    return res;
+  }
+
+  private static boolean exists(final String path) {
+    Boolean res = AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
+        public Boolean run() {
+          return Boolean.valueOf(new File(path).exists());
+        }
+      });
+    return res.booleanValue();
+  }
+
+  /** Returns the key of the resolved path cache for the given library names and search order. */
+  static String resolvedPathKey(String windowsLibName, String unixLibName, String macOSXLibName, boolean searchSystemPathFirst) {
+    return selectName(windowsLibName, unixLibName, macOSXLibName) + (searchSystemPathFirst ? "|sys1st" : "|sys2nd");
+  }
+
+  static String getResolvedPath(ClassLoader loader, String key) {
+    synchronized (resolvedPaths) {
+      Map<String, String> paths = (loader == null) ? nullLoaderResolvedPaths : resolvedPaths.get(loader);
+      return (paths == null) ? null : paths.get(key);
+    }
+  }
+
+  static void putResolvedPath(ClassLoader loader, String key, String path) {
+    synchronized (resolvedPaths) {
+      Map<String, String> paths;
+      if (loader == null) {
+        paths = nullLoaderResolvedPaths;
+      } else {
+        paths = resolvedPaths.get(loader);
+        if (paths == null) {
+          paths = new HashMap<String, String>();
+          resolvedPaths.put(loader, paths);
+        }
+      }
+      paths.put(key, path);
+    }
+  }
+
+  private static void removeResolvedPath(ClassLoader loader, String key) {
+    synchronized (resolvedPaths) {
+      Map<String, String> paths = (loader == null) ? nullLoaderResolvedPaths : resolvedPaths.get(loader);
+      if (paths != null) {
+        paths.remove(key);
+      }
+    }
+  }
+
+  /** Returns the number of native library open attempts, i.e. calls to dlopen or LoadLibrary. */
+  public static int getOpenAttemptCount() {
+    synchronized (resolvedPaths) {
+      return openAttemptCount;
+    }
+  }
+
+  /** Returns the accumulated duration of all native library open attempts in nanoseconds. */
+  public static long getOpenAttemptNanos() {
+    synchronized (resolvedPaths) {
+      return openAttemptNanos;
+    }
+  }
+
+  /** Returns the number of libraries opened via the process wide cache of resolved library paths. */
+  public static int getResolvedPathHitCount() {
+    synchronized (resolvedPaths) {
+      return resolvedPathHitCount;
+    }
+  }
+
+  /** Returns the number of candidate paths skipped without an open attempt, since the file does not exist. */
+  public static int getSkippedNonexistentCount() {
+    synchronized (resolvedPaths) {
+      return skippedNonexistentCount;
+    }
+  }
+
   /** Looks up the given function name in this native library. */
   public long dynamicLookupFunction(String funcName) {
     if (libraryHandle == 0)
       throw new RuntimeException("Library is not open");
-    return dynLink.lookupSymbol(libraryHandle, funcName);
+    final long t0 = StartupTrace.ENABLED ? System.nanoTime() : 0;
+    final long addr;
+    if (symbolCache != null) {
+      addr = symbolCache.lookup(funcName);
+    } else {
+      addr = dynLink.lookupSymbol(libraryHandle, funcName);
+    }
+    if (StartupTrace.ENABLED) {
+      StartupTrace.record(StartupTrace.SYMBOL_LOOKUP, funcName, t0, 0 != addr);
+    }
+    return addr;
   }
 
   /** Looks up the given function name in all loaded libraries. */
@@ -233,6 +386,12 @@ public class NativeLibrary implements DynamicLookupHelper {
     return libraryPath;
   }
 
+  /** Retrieves the persistent symbol address cache of this library,
+      or null if not enabled, see {@link SymbolAddressCache}. */
+  public SymbolAddressCache getSymbolAddressCache() {
+    return symbolCache;
+  }
+
   /** Closes this native library. Further lookup operations are not
       allowed after calling this method. */
   public void close() {
@@ -240,6 +399,9 @@ public class NativeLibrary implements DynamicLookupHelper {
       throw new RuntimeException("Library already closed");
     long handle = libraryHandle;
     libraryHandle = 0;
+    if (symbolCache != null) {
+      symbolCache.close();
+    }
     dynLink.closeLibrary(handle);
   }
 
@@ -0,0 +1,416 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.common.os;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jogamp.common.Debug;
+
+/**
+ * Persistent on-disk cache of the symbol addresses of a {@link NativeLibrary}.
+ * <p>
+ * Enabled by setting the system property <code>jogamp.common.os.SymbolAddressCache.dir</code>
+ * to a writable directory. One cache file per library is kept, identified by the library's
+ * path, file size and modification time. Hence only libraries opened via an existing file path are cached.
+ * </p>
+ * <p>
+ * The address range the library is mapped to is read from <code>/proc/self/maps</code>,
+ * all addresses are stored as offsets relative to its start.
+ * If the mapping cannot be determined, e.g. on platforms w/o <code>/proc</code>, the library is not cached.
+ * </p>
+ * <p>
+ * dlsym and friends may resolve a symbol from one of the library's dependencies,
+ * which are not covered by the library's path, size and modification time.
+ * Therefore only symbols within the library's own mapping are cached, others are always looked up natively.
+ * Symbols not found are cached as absent, but looked up again once in each run.
+ * A sample of the cached symbols is validated against the native lookup when the cache is loaded,
+ * a mismatch discards the complete cache.
+ * </p>
+ * <p>
+ * Modified caches are written at JVM shutdown, or explicitly via {@link #flushAll()}.
+ * </p>
+ */
+public class SymbolAddressCache {
+    protected static final boolean DEBUG = NativeLibrary.DEBUG;
+
+    /** Number of cached symbols validated against the native lookup when loading a cache */
+    private static final int VALIDATION_SAMPLE_SIZE = 4;
+    private static final int MAGIC = 0x4A534143; // JSAC
+    private static final int VERSION = 2;
+
+    private static final int STATE_ABSENT  = 0;
+    private static final int STATE_PRESENT = 1;
+
+    private static final File cacheDir;
+    private static final List<SymbolAddressCache> caches = new ArrayList<SymbolAddressCache>();
+
+    static {
+        String dir = Debug.getProperty("jogamp.common.os.SymbolAddressCache.dir", true, AccessController.getContext());
+        cacheDir = ( null != dir ) ? new File(dir) : null;
+        if( null != cacheDir ) {
+            AccessController.doPrivileged(new PrivilegedAction<Object>() {
+                public Object run() {
+                    Runtime.getRuntime().addShutdownHook(new Thread("SymbolAddressCache-Flush") {
+                        public void run() {
+                            flushAll();
+                        }
+                    });
+                    return null;
+                }
+            });
+        }
+    }
+
+    private static class Entry {
+        long offset;
+        int state;
+        /** true if the entry has been looked up natively in this run */
+        boolean seen;
+
+        Entry(long offset, int state) {
+            this.offset = offset;
+            this.state = state;
+        }
+    }
+
+    private final String libraryPath;
+    private final long fileSize;
+    private final long fileLastModified;
+    private final File cacheFile;
+    private final DynamicLookupHelper nativeLookup;
+    private final long mapStart;
+    private final long mapEnd;
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private boolean dirty;
+
+    private int hits;
+    private int misses;
+
+    /**
+     * @param mapStart start address of the library's mapping
+     * @param mapEnd end address of the library's mapping, exclusive
+     */
+    SymbolAddressCache(String libraryPath, long fileSize, long fileLastModified, File cacheFile,
+                       DynamicLookupHelper nativeLookup, long mapStart, long mapEnd) {
+        this.libraryPath = libraryPath;
+        this.fileSize = fileSize;
+        this.fileLastModified = fileLastModified;
+        this.cacheFile = cacheFile;
+        this.nativeLookup = nativeLookup;
+        this.mapStart = mapStart;
+        this.mapEnd = mapEnd;
+    }
+
+    /** Returns true if the persistent cache is enabled. */
+    public static boolean isEnabled() {
+        return null != cacheDir;
+    }
+
+    /**
+     * Returns the cache for the given opened library, or null if caching is disabled,
+     * the library path does not denote an existing file or its mapping cannot be determined.
+     *
+     * @param nativeLookup the uncached native symbol lookup of the opened library
+     */
+    static SymbolAddressCache create(final String libraryPath, final DynamicLookupHelper nativeLookup) {
+        if( null == cacheDir ) {
+            return null;
+        }
+        return AccessController.doPrivileged(new PrivilegedAction<SymbolAddressCache>() {
+            public SymbolAddressCache run() {
+                File libFile = new File(libraryPath);
+                if( !libFile.isFile() ) {
+                    if(DEBUG) {
+                        System.err.println("SymbolAddressCache: Not caching <"+libraryPath+">, not a file");
+                    }
+                    return null;
+                }
+                long[] mapping = null;
+                try {
+                    mapping = findMapping(new File("/proc/self/maps"), libFile.getCanonicalPath());
+                } catch (IOException ioe) {
+                    if(DEBUG) {
+                        ioe.printStackTrace();
+                    }
+                }
+                if( null == mapping ) {
+                    if(DEBUG) {
+                        System.err.println("SymbolAddressCache: Not caching <"+libraryPath+">, mapping unknown");
+                    }
+                    return null;
+                }
+                File cacheFile = new File(cacheDir, libFile.getName() + "-" + Integer.toHexString(libFile.getAbsolutePath().hashCode()) + ".symcache");
+                SymbolAddressCache cache = new SymbolAddressCache(libraryPath, libFile.length(), libFile.lastModified(), cacheFile,
+                                                                  nativeLookup, mapping[0], mapping[1]);
+                cache.load();
+                synchronized(caches) {
+                    caches.add(cache);
+                }
+                return cache;
+            }
+        });
+    }
+
+    /**
+     * Returns the address range <code>{ start, end }</code> covering all mappings of the given file
+     * within the given <code>/proc/&lt;pid&gt;/maps</code> file, or null if it is not mapped or the maps file does not exist.
+     */
+    static long[] findMapping(File maps, String path) throws IOException {
+        if( !maps.isFile() ) {
+            return null;
+        }
+        long start = Long.MAX_VALUE;
+        long end = 0;
+        BufferedReader in = new BufferedReader(new FileReader(maps));
+        try {
+            String line;
+            while( null != ( line = in.readLine() ) ) {
+                // address perms offset dev inode pathname
+                int idx = line.indexOf('/');
+                if( 0 > idx || !path.equals(line.substring(idx).trim()) ) {
+                    continue;
+                }
+                int dash = line.indexOf('-');
+                int space = line.indexOf(' ');
+                if( 0 > dash || space < dash ) {
+                    continue;
+                }
+                start = Math.min(start, Long.parseLong(line.substring(0, dash), 16));
+                end = Math.max(end, Long.parseLong(line.substring(dash+1, space), 16));
+            }
+        } catch (NumberFormatException nfe) {
+            return null;
+        } finally {
+            in.close();
+        }
+        return start < end ? new long[] { start, end } : null;
+    }
+
+    /**
+     * Writes all modified caches to disk.
+     */
+    public static void flushAll() {
+        SymbolAddressCache[] all;
+        synchronized(caches) {
+            all = caches.toArray(new SymbolAddressCache[caches.size()]);
+        }
+        for(int i=0; i<all.length; i++) {
+            all[i].flush();
+        }
+    }
+
+    /**
+     * Looks up the given function name, served from the cache if possible.
+     */
+    public synchronized long lookup(String funcName) {
+        Entry e = entries.get(funcName);
+        if( null != e ) {
+            if( STATE_PRESENT == e.state ) {
+                hits++;
+                return mapStart + e.offset;
+            }
+            if( e.seen ) {
+                // absent, already rechecked in this run
+                hits++;
+                return 0;
+            }
+        }
+        misses++;
+        long addr = nativeLookup.dynamicLookupFunction(funcName);
+        record(funcName, e, addr);
+        return addr;
+    }
+
+    private void record(String funcName, Entry e, long addr) {
+        if( 0 == addr ) {
+            if( null == e ) {
+                e = new Entry(0, STATE_ABSENT);
+                entries.put(funcName, e);
+                dirty = true;
+            }
+            e.seen = true;
+        } else if( mapStart <= addr && addr < mapEnd ) {
+            if( null == e ) {
+                e = new Entry(0, STATE_PRESENT);
+                entries.put(funcName, e);
+            }
+            e.offset = addr - mapStart;
+            e.state = STATE_PRESENT;
+            e.seen = true;
+            dirty = true;
+        } else if( null != e ) {
+            // resolved from a dependency, never cached
+            entries.remove(funcName);
+            dirty = true;
+        }
+    }
+
+    /** Returns the number of lookups served by the cache. */
+    public synchronized int getHitCount() { return hits; }
+
+    /** Returns the number of lookups passed to the native lookup. */
+    public synchronized int getMissCount() { return misses; }
+
+    public synchronized String toString() {
+        return "SymbolAddressCache[" + libraryPath + ", entries " + entries.size() + ", hits " + hits + ", misses " + misses + "]";
+    }
+
+    synchronized void load() {
+        if( !cacheFile.isFile() ) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            if( MAGIC != in.readInt() || VERSION != in.readInt() ||
+                !libraryPath.equals(in.readUTF()) || fileSize != in.readLong() || fileLastModified != in.readLong() ) {
+                if(DEBUG) {
+                    System.err.println("SymbolAddressCache: Stale cache "+cacheFile+" for <"+libraryPath+">");
+                }
+                return;
+            }
+            int count = in.readInt();
+            Map<String, Entry> loaded = new HashMap<String, Entry>(count);
+            for(int i=0; i<count; i++) {
+                String name = in.readUTF();
+                int state = in.readByte();
+                long offset = in.readLong();
+                loaded.put(name, new Entry(offset, state));
+            }
+            if( !validate(loaded) ) {
+                if(DEBUG) {
+                    System.err.println("SymbolAddressCache: Validation failed for "+cacheFile+" of <"+libraryPath+">");
+                }
+                dirty = true;
+                return;
+            }
+            entries.putAll(loaded);
+            if(DEBUG) {
+                System.err.println("SymbolAddressCache: Loaded "+count+" entries for <"+libraryPath+">, mapped at 0x"+Long.toHexString(mapStart));
+            }
+        } catch (IOException ioe) {
+            if(DEBUG) {
+                System.err.println("SymbolAddressCache: Could not read "+cacheFile);
+                ioe.printStackTrace();
+            }
+        } finally {
+            if( null != in ) {
+                try { in.close(); } catch (IOException ioe) {}
+            }
+        }
+    }
+
+    /** Validates an evenly distributed sample of the present entries against the native lookup. */
+    private boolean validate(Map<String, Entry> loaded) {
+        List<Map.Entry<String, Entry>> present = new ArrayList<Map.Entry<String, Entry>>();
+        for(Map.Entry<String, Entry> me : loaded.entrySet()) {
+            if( STATE_PRESENT == me.getValue().state ) {
+                present.add(me);
+            }
+        }
+        int n = Math.min(VALIDATION_SAMPLE_SIZE, present.size());
+        for(int i=0; i<n; i++) {
+            Map.Entry<String, Entry> me = present.get( ( i * present.size() ) / n );
+            long addr = nativeLookup.dynamicLookupFunction(me.getKey());
+            misses++;
+            if( addr != mapStart + me.getValue().offset ) {
+                return false;
+            }
+            me.getValue().seen = true;
+        }
+        return true;
+    }
+
+    /** Writes this cache if modified and stops tracking it, called when the library gets closed. */
+    void close() {
+        flush();
+        synchronized(caches) {
+            caches.remove(this);
+        }
+    }
+
+    synchronized void flush() {
+        if( !dirty ) {
+            return;
+        }
+        DataOutputStream out = null;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            File tmpFile = new File(cacheFile.getPath() + ".tmp");
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(libraryPath);
+            out.writeLong(fileSize);
+            out.writeLong(fileLastModified);
+            out.writeInt(entries.size());
+            for(Map.Entry<String, Entry> me : entries.entrySet()) {
+                Entry e = me.getValue();
+                out.writeUTF(me.getKey());
+                out.writeByte(e.state);
+                out.writeLong(e.offset);
+            }
+            out.close();
+            out = null;
+            cacheFile.delete();
+            if( !tmpFile.renameTo(cacheFile) ) {
+                tmpFile.delete();
+            }
+            dirty = false;
+            if(DEBUG) {
+                System.err.println("SymbolAddressCache: Wrote "+entries.size()+" entries to "+cacheFile);
+            }
+        } catch (IOException ioe) {
+            if(DEBUG) {
+                System.err.println("SymbolAddressCache: Could not write "+cacheFile);
+                ioe.printStackTrace();
+            }
+        } finally {
+            if( null != out ) {
+                try { out.close(); } catch (IOException ioe) {}
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.common.util;
+
+/**
+ * Per method call counts and latencies, recorded by the profiling wrappers
+ * emitted via the <code>EmitProfiler</code> configuration directive.
+ * <p>
+ * All values are kept in primitive arrays indexed by the generated method id.
+ * Besides the count, the total and the maximum duration, a histogram of the durations
+ * is kept in {@link #BUCKETS} power of two buckets, i.e. bucket <code>i &gt; 0</code>
+ * counts durations of <code>[2<sup>i-1</sup>, 2<sup>i</sup>)</code> nanoseconds.
+ * </p>
+ * <p>
+ * Recording is not synchronized to keep its overhead minimal,
+ * hence concurrent calls of the same method from multiple threads may lose updates.
+ * Use {@link #snapshot()} to retrieve a consistent copy for evaluation.
+ * </p>
+ */
+public class CallProfile {
+    /** Number of histogram buckets per method. */
+    public static final int BUCKETS = 64;
+
+    private static final String newline = System.getProperty("line.separator");
+
+    private final String[] names;
+    private final long[] counts;
+    private final long[] totalNanos;
+    private final long[] maxNanos;
+    private final long[] histogram;
+
+    /**
+     * @param names the method names, indexed by the method id
+     */
+    public CallProfile(String[] names) {
+        this.names = names;
+        counts = new long[names.length];
+        totalNanos = new long[names.length];
+        maxNanos = new long[names.length];
+        histogram = new long[names.length * BUCKETS];
+    }
+
+    /** Returns the histogram bucket of the given duration in nanoseconds. */
+    public static int bucket(long nanos) {
+        return nanos <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    /**
+     * Records one call.
+     * @param id the method id
+     * @param nanos the duration of the call in nanoseconds
+     */
+    public final void record(int id, long nanos) {
+        counts[id]++;
+        totalNanos[id] += nanos;
+        if (nanos > maxNanos[id]) {
+            maxNanos[id] = nanos;
+        }
+        histogram[id * BUCKETS + bucket(nanos)]++;
+    }
+
+    /** Returns the number of methods. */
+    public int size() {
+        return names.length;
+    }
+
+    /** Returns the name of the given method id. */
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /** Clears all recorded values. */
+    public synchronized void reset() {
+        java.util.Arrays.fill(counts, 0);
+        java.util.Arrays.fill(totalNanos, 0);
+        java.util.Arrays.fill(maxNanos, 0);
+        java.util.Arrays.fill(histogram, 0);
+    }
+
+    /** Returns a copy of all recorded values. */
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(names, counts.clone(), totalNanos.clone(), maxNanos.clone(), histogram.clone());
+    }
+
+    /** Immutable copy of the recorded values, see {@link CallProfile#snapshot()}. */
+    public static class Snapshot {
+        private final String[] names;
+        private final long[] counts;
+        private final long[] totalNanos;
+        private final long[] maxNanos;
+        private final long[] histogram;
+
+        Snapshot(String[] names, long[] counts, long[] totalNanos, long[] maxNanos, long[] histogram) {
+            this.names = names;
+            this.counts = counts;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.histogram = histogram;
+        }
+
+        /** Returns the number of methods. */
+        public int size() { return names.length; }
+
+        /** Returns the name of the given method id. */
+        public String getName(int id) { return names[id]; }
+
+        /** Returns the method id of the given name, or -1 if not found. */
+        public int indexOf(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /** Returns the number of calls of the given method id. */
+        public long getCount(int id) { return counts[id]; }
+
+        /** Returns the accumulated duration of all calls of the given method id in nanoseconds. */
+        public long getTotalNanos(int id) { return totalNanos[id]; }
+
+        /** Returns the maximum duration of a call of the given method id in nanoseconds. */
+        public long getMaxNanos(int id) { return maxNanos[id]; }
+
+        /** Returns the mean duration of a call of the given method id in nanoseconds, or 0 if not called. */
+        public long getMeanNanos(int id) {
+            return 0 < counts[id] ? totalNanos[id] / counts[id] : 0;
+        }
+
+        /** Returns the number of calls of the given method id within the given histogram bucket. */
+        public long getHistogram(int id, int bucket) {
+            return histogram[id * BUCKETS + bucket];
+        }
+
+        /**
+         * Returns the upper bound in nanoseconds of the histogram bucket containing the given percentile
+         * of the calls of the given method id, or 0 if not called.
+         * @param percentile within <code>[0, 100]</code>
+         */
+        public long getPercentileNanos(int id, double percentile) {
+            final long threshold = (long) Math.ceil(counts[id] * percentile / 100.0);
+            long sum = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                sum += histogram[id * BUCKETS + b];
+                if (0 < sum && sum >= threshold) {
+                    return 0 == b ? 0 : ( b < 63 ? 1L << b : Long.MAX_VALUE );
+                }
+            }
+            return 0;
+        }
+
+        /** Returns a table of all called methods, ordered by their total duration. */
+        @Override
+        public String toString() {
+            final Integer[] ids = new Integer[names.length];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = Integer.valueOf(i);
+            }
+            java.util.Arrays.sort(ids, new java.util.Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    final long ta = totalNanos[a.intValue()], tb = totalNanos[b.intValue()];
+                    return ta < tb ? 1 : ( ta > tb ? -1 : 0 );
+                }
+            });
+            StringBuilder sb = new StringBuilder();
+            sb.append("calls, total us, mean ns, p99 ns, max ns, method").append(newline);
+            for (Integer i : ids) {
+                final int id = i.intValue();
+                if (0 < counts[id]) {
+                    sb.append(counts[id]).append(", ").append(totalNanos[id]/1000).append(", ");
+                    sb.append(getMeanNanos(id)).append(", ").append(getPercentileNanos(id, 99.0)).append(", ");
+                    sb.append(maxNanos[id]).append(", ").append(names[id]).append(newline);
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.common.util;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+
+import jogamp.common.Debug;
+
+/**
+ * Structured trace of the native startup work, i.e. JNI library loading,
+ * native library open attempts, symbol lookups and ProcAddressTable resets.
+ * <p>
+ * Enable via the property <code>jogamp.debug.StartupTrace</code>.
+ * At JVM shutdown a summary is printed to stderr, and if the property
+ * <code>jogamp.debug.StartupTrace.file</code> is set, all events are written as JSON to the given file.
+ * </p>
+ * <p>
+ * Callers shall guard the measurement with {@link #ENABLED},
+ * hence a disabled trace costs one static final branch.
+ * </p>
+ * <pre>
+    final long t0 = StartupTrace.ENABLED ? System.nanoTime() : 0;
+    ...
+    if(StartupTrace.ENABLED) {
+        StartupTrace.record(StartupTrace.LIB_OPEN, path, t0, 0 != handle);
+    }
+ * </pre>
+ */
+public class StartupTrace {
+    /** Enable via the property <code>jogamp.debug.StartupTrace</code> */
+    public static final boolean ENABLED = Debug.debug("StartupTrace");
+
+    /** Event category: Loading a JNI library, see {@link com.jogamp.common.jvm.JNILibLoaderBase} */
+    public static final int JNI_LIB_LOAD = 0;
+    /** Event category: Native open attempt of a library path, see {@link com.jogamp.common.os.NativeLibrary} */
+    public static final int LIB_OPEN = 1;
+    /** Event category: Symbol lookup in a native library, see {@link com.jogamp.common.os.NativeLibrary} */
+    public static final int SYMBOL_LOOKUP = 2;
+    /** Event category: Reset of a ProcAddressTable, see {@link com.jogamp.gluegen.runtime.ProcAddressTable} */
+    public static final int PROC_TABLE_RESET = 3;
+
+    private static final String[] CATEGORY_NAMES = { "JNI_LIB_LOAD", "LIB_OPEN", "SYMBOL_LOOKUP", "PROC_TABLE_RESET" };
+
+    /** Maximum number of recorded single events, the summary counts beyond. */
+    private static final int MAX_EVENTS = 1 << 16;
+
+    private static final long traceStartNanos = System.nanoTime();
+    private static final String newline = System.getProperty("line.separator");
+
+    private static int eventCount;
+    private static int[] eventCategory = new int[256];
+    private static String[] eventName = new String[256];
+    private static long[] eventStart = new long[256];
+    private static long[] eventDuration = new long[256];
+    private static boolean[] eventSuccess = new boolean[256];
+
+    private static final int[] categoryCount = new int[CATEGORY_NAMES.length];
+    private static final int[] categoryFailed = new int[CATEGORY_NAMES.length];
+    private static final long[] categoryNanos = new long[CATEGORY_NAMES.length];
+
+    static {
+        if(ENABLED) {
+            final String file = Debug.getProperty("jogamp.debug.StartupTrace.file", true, AccessController.getContext());
+            AccessController.doPrivileged(new PrivilegedAction() {
+                public Object run() {
+                    Runtime.getRuntime().addShutdownHook(new Thread("StartupTrace-Report") {
+                        public void run() {
+                            System.err.print(getSummary());
+                            if(null != file) {
+                                try {
+                                    writeJSON(file);
+                                } catch (IOException ioe) {
+                                    ioe.printStackTrace();
+                                }
+                            }
+                        }
+                    });
+                    return null;
+                }
+            });
+        }
+    }
+
+    private StartupTrace() {}
+
+    /**
+     * Records one event.
+     *
+     * @param category one of {@link #JNI_LIB_LOAD}, {@link #LIB_OPEN}, {@link #SYMBOL_LOOKUP} or {@link #PROC_TABLE_RESET}
+     * @param name the library path, symbol or class name
+     * @param startNanos the {@link System#nanoTime()} at the start of the operation, the end is now
+     * @param success false if the operation failed
+     */
+    public static void record(int category, String name, long startNanos, boolean success) {
+        final long duration = System.nanoTime() - startNanos;
+        synchronized(StartupTrace.class) {
+            categoryCount[category]++;
+            categoryNanos[category] += duration;
+            if(!success) {
+                categoryFailed[category]++;
+            }
+            if(eventCount < MAX_EVENTS) {
+                if(eventCount == eventCategory.length) {
+                    grow();
+                }
+                eventCategory[eventCount] = category;
+                eventName[eventCount] = name;
+                eventStart[eventCount] = startNanos - traceStartNanos;
+                eventDuration[eventCount] = duration;
+                eventSuccess[eventCount] = success;
+                eventCount++;
+            }
+        }
+    }
+
+    private static void grow() {
+        final int n = eventCategory.length * 2;
+        int[] c = new int[n];
+        String[] s = new String[n];
+        long[] t = new long[n];
+        long[] d = new long[n];
+        boolean[] b = new boolean[n];
+        System.arraycopy(eventCategory, 0, c, 0, eventCount);
+        System.arraycopy(eventName, 0, s, 0, eventCount);
+        System.arraycopy(eventStart, 0, t, 0, eventCount);
+        System.arraycopy(eventDuration, 0, d, 0, eventCount);
+        System.arraycopy(eventSuccess, 0, b, 0, eventCount);
+        eventCategory = c; eventName = s; eventStart = t; eventDuration = d; eventSuccess = b;
+    }
+
+    /** Returns the number of events of the given category. */
+    public static synchronized int getCount(int category) {
+        return categoryCount[category];
+    }
+
+    /** Returns the accumulated duration of all events of the given category in nanoseconds. */
+    public static synchronized long getNanos(int category) {
+        return categoryNanos[category];
+    }
+
+    /** Returns a human readable summary per category. */
+    public static synchronized String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("StartupTrace Summary:").append(newline);
+        for(int i=0; i<CATEGORY_NAMES.length; i++) {
+            sb.append("  ").append(CATEGORY_NAMES[i]).append(": ").append(categoryCount[i]).append(" events, ");
+            sb.append(categoryFailed[i]).append(" failed, ").append(categoryNanos[i]/1000).append(" us").append(newline);
+        }
+        if(eventCount == MAX_EVENTS) {
+            sb.append("  (single events truncated at ").append(MAX_EVENTS).append(")").append(newline);
+        }
+        return sb.toString();
+    }
+
+    /** Returns all recorded events and the summary as a JSON document. */
+    public static synchronized String toJSON() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"events\": [");
+        for(int i=0; i<eventCount; i++) {
+            sb.append( 0 == i ? "\n" : ",\n" );
+            sb.append("    {\"cat\": \"").append(CATEGORY_NAMES[eventCategory[i]]).append("\", \"name\": ");
+            appendJSONString(sb, eventName[i]);
+            sb.append(", \"startNanos\": ").append(eventStart[i]);
+            sb.append(", \"durNanos\": ").append(eventDuration[i]);
+            sb.append(", \"ok\": ").append(eventSuccess[i]).append("}");
+        }
+        sb.append("\n  ],\n  \"summary\": {");
+        for(int i=0; i<CATEGORY_NAMES.length; i++) {
+            sb.append( 0 == i ? "\n" : ",\n" );
+            sb.append("    \"").append(CATEGORY_NAMES[i]).append("\": {\"count\": ").append(categoryCount[i]);
+            sb.append(", \"failed\": ").append(categoryFailed[i]);
+            sb.append(", \"totalNanos\": ").append(categoryNanos[i]).append("}");
+        }
+        sb.append("\n  }\n}\n");
+        return sb.toString();
+    }
+
+    /** Writes {@link #toJSON()} to the given file. */
+    public static void writeJSON(String file) throws IOException {
+        Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            w.write(toJSON());
+        } finally {
+            w.close();
+        }
+    }
+
+    private static void appendJSONString(StringBuilder sb, String s) {
+        if(null == s) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for(int i=0; i<s.length(); i++) {
+            char c = s.charAt(i);
+            switch(c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if(c < 0x20) {
+                        sb.append("\\u00");
+                        sb.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
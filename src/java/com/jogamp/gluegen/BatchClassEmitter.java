@@ -0,0 +1,356 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jogamp.gluegen.cgram.types.Type;
+
+/**
+ * Emits the batch class of the functions specified via the <code>Batched</code> configuration directive
+ * and the C function replaying its recorded calls, see {@link JavaEmitter#isBatchable(MethodBinding)}.
+ * <p>
+ * Each call is encoded into a direct command buffer in native byte order,
+ * as an <code>int</code> opcode followed by one 8 byte slot per argument.
+ * Primitive arguments are stored with their Java type at the start of their slot,
+ * pointer arguments, i.e. direct buffers and struct wrappers, as the <code>long</code> native address.
+ * The native <code>dispatch0</code> method walks the commands and calls the C functions in order.
+ * </p>
+ */
+public class BatchClassEmitter {
+
+  /** Size of the opcode and of each argument in the command buffer in bytes. */
+  public static final int SLOT_SIZE = 8;
+
+  private final JavaConfiguration cfg;
+  private final String packageName;
+  private final String className;
+  private final List<MethodBinding> bindings;
+
+  /**
+   * @param cfg the configuration of the emitting {@link JavaEmitter}
+   * @param packageName the package of the batch class
+   * @param className the name of the batch class
+   * @param bindings the batchable bindings, the opcode of each is its index plus one
+   */
+  public BatchClassEmitter(JavaConfiguration cfg, String packageName, String className, List<MethodBinding> bindings) {
+    this.cfg = cfg;
+    this.packageName = packageName;
+    this.className = className;
+    this.bindings = bindings;
+  }
+
+  public String getPackageName() { return packageName; }
+  public String getClassName() { return className; }
+
+  /** Returns the size of the encoded call of the given binding in bytes. */
+  protected static int commandSize(MethodBinding binding) {
+    int n = 1;
+    for (int i = 0; i < binding.getNumArguments(); i++) {
+      if (!binding.getJavaArgumentType(i).isVoid()) {
+        n++;
+      }
+    }
+    return n * SLOT_SIZE;
+  }
+
+  /** Returns the JNI type name of the slot of the given argument, i.e. <code>jlong</code> for pointers. */
+  protected static String slotJNITypeName(JavaType type) {
+    if (type.isPrimitive()) {
+      return type.jniTypeName();
+    }
+    return "jlong";
+  }
+
+  /** Returns the statement storing the given argument at <code>_p + offset</code> of the command buffer. */
+  protected String slotStoreStatement(JavaType type, String argName, int offset) {
+    final String idx = "_p + " + offset;
+    if (isPointerArgument(type)) {
+      return "cmds.putLong(" + idx + ", " + addressArgName(argName) + ");";
+    }
+    final Class<?> c = type.getJavaClass();
+    if (c == Boolean.TYPE) {
+      return "cmds.put(" + idx + ", (byte) (" + argName + " ? 1 : 0));";
+    } else if (c == Byte.TYPE) {
+      return "cmds.put(" + idx + ", " + argName + ");";
+    } else if (c == Short.TYPE) {
+      return "cmds.putShort(" + idx + ", " + argName + ");";
+    } else if (c == Character.TYPE) {
+      return "cmds.putChar(" + idx + ", " + argName + ");";
+    } else if (c == Integer.TYPE) {
+      return "cmds.putInt(" + idx + ", " + argName + ");";
+    } else if (c == Long.TYPE) {
+      return "cmds.putLong(" + idx + ", " + argName + ");";
+    } else if (c == Float.TYPE) {
+      return "cmds.putFloat(" + idx + ", " + argName + ");";
+    } else if (c == Double.TYPE) {
+      return "cmds.putDouble(" + idx + ", " + argName + ");";
+    }
+    throw new RuntimeException("Unsupported batch argument type " + type + " of " + argName);
+  }
+
+  private static String addressArgName(String argName) {
+    return "_" + argName + "_address";
+  }
+
+  private static String simpleTypeName(JavaType type) {
+    final String name = type.getName();
+    return name.substring(name.lastIndexOf('.')+1);
+  }
+
+  private static String opcodeName(MethodBinding binding) {
+    return "OP_" + binding.getName();
+  }
+
+  private static boolean isPointerArgument(JavaType type) {
+    return type.isNIOBuffer() || type.isCompoundTypeWrapper();
+  }
+
+  /** Returns true if one of the bindings takes a pointer argument. */
+  protected boolean hasPointerArguments() {
+    for (MethodBinding binding : bindings) {
+      for (int i = 0; i < binding.getNumArguments(); i++) {
+        if (isPointerArgument(binding.getJavaArgumentType(i))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  public void emitJavaClass(PrintWriter w) throws IOException {
+    List<String> imports = new ArrayList<String>(cfg.imports());
+    imports.add(com.jogamp.common.nio.Buffers.class.getPackage().getName()+".*");
+    imports.add(java.nio.Buffer.class.getPackage().getName()+".*");
+
+    CodeGenUtils.emitJavaHeaders(w, packageName, className, true, imports, new String[] { "public" }, new String[0], null,
+      new CodeGenUtils.EmissionCallback() {
+        public void emit(PrintWriter w) {
+          w.println("/**");
+          w.println(" * Records calls of C functions into a direct command buffer,");
+          w.println(" * which are replayed in order by a single native call on {@link #flush()}.");
+          w.println(" * <p>");
+          w.println(" * Pointer arguments must be direct buffers, whose content is read by the C function");
+          w.println(" * at the time of the flush, not of the recorded call. They are kept reachable until then.");
+          w.println(" * The command buffer is flushed implicitly if a call does not fit anymore.");
+          w.println(" * The JNI library of the binding must be loaded. Instances are not threadsafe.");
+          w.println(" * </p>");
+          w.println(" */");
+        }
+      });
+    w.println();
+    w.println("  /** Default size of the command buffer in bytes. */");
+    w.println("  public static final int DEFAULT_SIZE = 4096;");
+    w.println();
+    for (int i = 0; i < bindings.size(); i++) {
+      w.println("  private static final int " + opcodeName(bindings.get(i)) + " = " + (i + 1) + ";");
+    }
+    w.println();
+    w.println("  private final ByteBuffer cmds;");
+    w.println("  private int pos;");
+    final boolean keepRefs = hasPointerArguments();
+    if (keepRefs) {
+      w.println("  /** The pointer arguments of the recorded calls, keeping their native memory alive until the flush. */");
+      w.println("  private final java.util.ArrayList<Object> refs = new java.util.ArrayList<Object>();");
+    }
+    w.println();
+    w.println("  public " + className + "() {");
+    w.println("    this(DEFAULT_SIZE);");
+    w.println("  }");
+    w.println();
+    w.println("  /** Creates a batch with a command buffer of the given size in bytes. */");
+    w.println("  public " + className + "(int size) {");
+    w.println("    cmds = Buffers.newDirectByteBuffer(size);");
+    w.println("  }");
+    w.println();
+    w.println("  /** Returns the size of the recorded calls in bytes. */");
+    w.println("  public int size() {");
+    w.println("    return pos;");
+    w.println("  }");
+    w.println();
+    w.println("  /** Executes all recorded calls in order and clears the command buffer. */");
+    w.println("  public void flush() {");
+    w.println("    if (0 < pos) {");
+    w.println("      final int size = pos;");
+    w.println("      pos = 0;");
+    w.println("      dispatch0(cmds, size);");
+    if (keepRefs) {
+      w.println("      refs.clear();");
+    }
+    w.println("    }");
+    w.println("  }");
+    w.println();
+    w.println("  /** Discards all recorded calls. */");
+    w.println("  public void clear() {");
+    w.println("    pos = 0;");
+    if (keepRefs) {
+      w.println("    refs.clear();");
+    }
+    w.println("  }");
+    w.println();
+    w.println("  /** Returns the position of a new command of the given size, flushing the recorded calls if it does not fit. */");
+    w.println("  private int reserve(int size) {");
+    w.println("    if (pos + size > cmds.capacity()) {");
+    w.println("      flush();");
+    w.println("      if (size > cmds.capacity()) {");
+    w.println("        throw new " + cfg.runtimeExceptionType() + "(\"Command of \" + size + \" bytes exceeds the command buffer of \" + cmds.capacity() + \" bytes\");");
+    w.println("      }");
+    w.println("    }");
+    w.println("    final int p = pos;");
+    w.println("    pos += size;");
+    w.println("    return p;");
+    w.println("  }");
+    w.println();
+    for (MethodBinding binding : bindings) {
+      emitJavaMethod(w, binding);
+    }
+    w.println("  private static native void dispatch0(ByteBuffer cmds, int size);");
+    w.println();
+    w.println("} // end of class " + className);
+  }
+
+  protected void emitJavaMethod(PrintWriter w, MethodBinding binding) {
+    w.println("  /** Records a call of the C function: <code> " + binding.getCSymbol().toString() + "; </code> */");
+    w.print("  public void " + binding.getName() + "(");
+    boolean needComma = false;
+    for (int i = 0; i < binding.getNumArguments(); i++) {
+      final JavaType type = binding.getJavaArgumentType(i);
+      if (type.isVoid()) {
+        continue;
+      }
+      if (needComma) {
+        w.print(", ");
+      }
+      w.print(simpleTypeName(type) + " " + binding.getArgumentName(i));
+      needComma = true;
+    }
+    w.println(") {");
+    for (int i = 0; i < binding.getNumArguments(); i++) {
+      final JavaType type = binding.getJavaArgumentType(i);
+      final String argName = binding.getArgumentName(i);
+      if (type.isNIOBuffer()) {
+        final String buf = type.isNIONativeSizeBuffer() ? argName + ".getBuffer()" : argName;
+        final String offset = type.isNIONativeSizeBuffer() ? buf + ".position()" :
+                              JavaMethodBindingEmitter.getDirectBufferByteOffsetExpr(type.getJavaClass(), argName);
+        w.println("    final long " + addressArgName(argName) + ";");
+        w.println("    if (" + argName + " == null) {");
+        w.println("      " + addressArgName(argName) + " = 0;");
+        w.println("    } else if (" + argName + ".isDirect()) {");
+        w.println("      " + addressArgName(argName) + " = Buffers.getDirectBufferAddress(" + buf + ") + " + offset + ";");
+        w.println("    } else {");
+        w.println("      throw new " + cfg.runtimeExceptionType() + "(\"Argument \\\"" + argName + "\\\" was not a direct buffer\");");
+        w.println("    }");
+      } else if (type.isCompoundTypeWrapper()) {
+        w.println("    final long " + addressArgName(argName) + " = " + argName + " == null ? 0 : Buffers.getDirectBufferAddress(" + argName + ".getBuffer());");
+      }
+    }
+    w.println("    final int _p = reserve(" + commandSize(binding) + ");");
+    w.println("    cmds.putInt(_p, " + opcodeName(binding) + ");");
+    for (int i = 0; i < binding.getNumArguments(); i++) {
+      if (isPointerArgument(binding.getJavaArgumentType(i))) {
+        final String argName = binding.getArgumentName(i);
+        w.println("    if (" + argName + " != null) {");
+        w.println("      refs.add(" + argName + ");");
+        w.println("    }");
+      }
+    }
+    int offset = SLOT_SIZE;
+    for (int i = 0; i < binding.getNumArguments(); i++) {
+      final JavaType type = binding.getJavaArgumentType(i);
+      if (type.isVoid()) {
+        continue;
+      }
+      w.println("    " + slotStoreStatement(type, binding.getArgumentName(i), offset));
+      offset += SLOT_SIZE;
+    }
+    w.println("  }");
+    w.println();
+  }
+
+  /** Emits the C implementation of the native <code>dispatch0</code> method. */
+  public void emitCDispatcher(PrintWriter w) {
+    final String fqClassName = packageName + "." + className;
+    w.println("/*   Java->C glue code:");
+    w.println(" *   Java package: " + fqClassName);
+    w.println(" *    Java method: void dispatch0(java.nio.ByteBuffer cmds, int size)");
+    w.println(" *     Replays the calls recorded by " + className);
+    w.println(" */");
+    w.println("JNIEXPORT void JNICALL ");
+    w.println("Java_" + fqClassName.replaceAll("_", "_1").replace('.', '_') + "_dispatch0(JNIEnv *env, jclass _unused, jobject cmds, jint size) {");
+    w.println("  const char * _p = (const char *) (*env)->GetDirectBufferAddress(env, cmds);");
+    w.println("  const char * const _end = _p + size;");
+    w.println("  while (_p < _end) {");
+    w.println("    switch (*(const jint *) _p) {");
+    for (int i = 0; i < bindings.size(); i++) {
+      final MethodBinding binding = bindings.get(i);
+      w.println("      case " + (i + 1) + ": /* " + binding.getCSymbol().toString() + " */");
+      w.print("        " + binding.getCSymbol().getName() + "(");
+      int offset = SLOT_SIZE;
+      boolean needComma = false;
+      for (int j = 0; j < binding.getNumArguments(); j++) {
+        final JavaType type = binding.getJavaArgumentType(j);
+        if (type.isVoid()) {
+          continue;
+        }
+        if (needComma) {
+          w.print(", ");
+        }
+        final Type cArgType = binding.getCSymbol().getArgumentType(j);
+        w.print("(");
+        if (isConstPtrPtr(cArgType)) {
+          w.print("const ");
+        }
+        w.print(cArgType.getName() + ") ");
+        if (binding.getCArgumentType(j).isPointer()) {
+          w.print("(intptr_t) ");
+        }
+        w.print("*(const " + slotJNITypeName(type) + " *) (_p + " + offset + ")");
+        offset += SLOT_SIZE;
+        needComma = true;
+      }
+      w.println(");");
+      w.println("        _p += " + commandSize(binding) + ";");
+      w.println("        break;");
+    }
+    w.println("      default:");
+    w.println("        return;");
+    w.println("    }");
+    w.println("  }");
+    w.println("}");
+    w.println();
+  }
+
+  /** Checks a type (expected to be pointer-to-pointer) for const-ness, see {@link CMethodBindingEmitter#isConstPtrPtr(Type)}. */
+  private static boolean isConstPtrPtr(Type type) {
+    return type.pointerDepth() == 2 && type.asPointer().getTargetType().asPointer().getTargetType().isConst();
+  }
+}
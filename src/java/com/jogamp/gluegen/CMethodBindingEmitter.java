@@ -82,6 +82,11 @@ public class CMethodBindingEmitter extends FunctionEmitter {
   // Flags which change various aspects of glue code generation
   protected boolean forImplementingMethodCall;
   protected boolean forIndirectBufferAndArrayImplementation;
+  protected boolean directNIOAddress;
+  protected boolean directStringArguments;
+  protected int smallArrayCopy;
+  protected boolean returnValueCache;
+  protected boolean registerNatives;
 
   /**
    * Optional List of Strings containing temporary C variables to declare.
@@ -286,6 +291,104 @@ public class CMethodBindingEmitter extends FunctionEmitter {
    */
   public final boolean forIndirectBufferAndArrayImplementation() { return forIndirectBufferAndArrayImplementation; }
 
+  /**
+   * If true, each direct NIO buffer argument is accompanied by its native
+   * address including the byte offset as computed on the Java side,
+   * which is simply casted to the C pointer type.
+   * Only valid if not {@link #forIndirectBufferAndArrayImplementation()}.
+   */
+  public final void setDirectNIOAddress(boolean directNIOAddress) {
+    this.directNIOAddress = directNIOAddress && !forIndirectBufferAndArrayImplementation;
+  }
+
+  public final boolean isDirectNIOAddress() { return directNIOAddress; }
+
+  /**
+   * If true, each String and String[] argument comes down as the native
+   * address of its null terminated copy, respectively of its pointer table,
+   * encoded on the Java side into thread local scratch memory.
+   * Hence no JNI string functions and no temporary allocations are required.
+   */
+  public final void setDirectStringArguments(boolean directStringArguments) {
+    this.directStringArguments = directStringArguments;
+  }
+
+  public final boolean isDirectStringArguments() { return directStringArguments; }
+
+  /**
+   * If greater than 0, Java arrays and the arrays backing indirect NIO buffers
+   * of up to the given size in bytes are copied via Get/Set&lt;Type&gt;ArrayRegion
+   * into a stack buffer instead of being pinned via GetPrimitiveArrayCritical,
+   * which blocks the garbage collector. The copy back is skipped for const pointers.
+   * Only valid if {@link #forIndirectBufferAndArrayImplementation()}
+   * and only applied to the typed buffers, e.g. IntBuffer, whose array type is known.
+   */
+  public final void setSmallArrayCopy(int bytes) {
+    this.smallArrayCopy = forIndirectBufferAndArrayImplementation ? bytes : 0;
+  }
+
+  public final int getSmallArrayCopy() { return smallArrayCopy; }
+
+  /**
+   * If true, the previously returned direct ByteBuffer comes down as the last argument
+   * and is returned again instead of a new one created via NewDirectByteBuffer,
+   * as long as its address and capacity match the returned pointer.
+   * Only valid for java.nio buffer and struct wrapper return types.
+   */
+  public final void setReturnValueCache(boolean returnValueCache) {
+    this.returnValueCache = returnValueCache;
+  }
+
+  public final boolean isReturnValueCache() { return returnValueCache; }
+
+  /** Returns the JNI name of the array element type, e.g. "Int", if the argument is copied when small, otherwise null. */
+  private String smallArrayCopyType(JavaType javaArgType) {
+    if (0 >= smallArrayCopy || !javaArgType.isNIOBuffer()) {
+      return null;
+    }
+    final Class<?> c = javaArgType.getJavaClass();
+    if (c == java.nio.ByteBuffer.class)   return "Byte";
+    if (c == java.nio.ShortBuffer.class)  return "Short";
+    if (c == java.nio.CharBuffer.class)   return "Char";
+    if (c == java.nio.IntBuffer.class)    return "Int";
+    if (c == java.nio.LongBuffer.class)   return "Long";
+    if (c == java.nio.FloatBuffer.class)  return "Float";
+    if (c == java.nio.DoubleBuffer.class) return "Double";
+    return null; // e.g. Buffer or NativeSizeBuffer, the array type is only known at runtime
+  }
+
+  /** Number of array elements fitting into the small copy buffer of the argument */
+  private int smallArrayCopyLength(JavaType javaArgType) {
+    return Math.max(1, smallArrayCopy / smallArrayCopyElementSize(smallArrayCopyType(javaArgType)));
+  }
+
+  /** The array element index of the argument's byte offset */
+  private String smallArrayCopyOffset(int i, String type) {
+    return "(jsize) (" + byteOffsetArgName(i) + " / sizeof(j" + type.toLowerCase() + "))";
+  }
+
+  private static int smallArrayCopyElementSize(String type) {
+    if (type.equals("Byte"))                          return 1;
+    if (type.equals("Short") || type.equals("Char"))  return 2;
+    if (type.equals("Int") || type.equals("Float"))   return 4;
+    return 8;
+  }
+
+  private boolean isDirectString(JavaType javaArgType) {
+    return directStringArguments && (javaArgType.isString() || javaArgType.isStringArray());
+  }
+
+  /**
+   * If true, the native function is declared static instead of being exported,
+   * hence it must be registered via RegisterNatives using
+   * {@link #getJavaMethodName()} and {@link #getJavaMethodSignature()}.
+   */
+  public final void setRegisterNatives(boolean registerNatives) {
+    this.registerNatives = registerNatives;
+  }
+
+  public final boolean isRegisterNatives() { return registerNatives; }
+
   /**
    * Used for certain internal type size computations
    */
@@ -293,27 +396,97 @@ public class CMethodBindingEmitter extends FunctionEmitter {
 
 
   protected void emitReturnType(PrintWriter writer)  {    
-    writer.print("JNIEXPORT ");
+    writer.print(registerNatives ? "static " : "JNIEXPORT ");
     writer.print(binding.getJavaReturnType().jniTypeName());
     writer.print(" JNICALL");
   }
 
   protected void emitName(PrintWriter writer)  {
     writer.println(); // start name on new line
-    writer.print("Java_");
-    writer.print(jniMangle(getJavaPackageName()));
-    writer.print("_");
-    writer.print(jniMangle(getJavaClassName()));
-    writer.print("_");
+    writer.print(getNativeFunctionName());
+  }
+
+  /** Returns the name of the emitted C function, i.e. the mangled JNI symbol name. */
+  public String getNativeFunctionName() {
+    StringBuffer buf = new StringBuffer();
+    buf.append("Java_");
+    buf.append(jniMangle(getJavaPackageName()));
+    buf.append("_");
+    buf.append(jniMangle(getJavaClassName()));
+    buf.append("_");
+    if (isOverloadedBinding)    {
+      buf.append(jniMangle(binding));
+    } else {
+      buf.append(jniMangle(getName()));
+    }
+    return buf.toString();
+  }
+
+  /** Returns the name of the Java native method implemented by the emitted C function. */
+  public String getJavaMethodName() {
     if (isOverloadedBinding)    {
-      writer.print(jniMangle(binding));
-      //System.err.println("OVERLOADED MANGLING FOR " + getName() +
-      //                   " = " + jniMangle(binding));
+      return getName() + getImplSuffix();
+    }
+    return getName();
+  }
+
+  /**
+   * Returns the JNI type signature of the Java native method implemented by the emitted C function,
+   * e.g. <code>(JLjava/lang/Object;IZ)J</code>.
+   */
+  public String getJavaMethodSignature() {
+    // The argument part of the overloaded name mangling is the JNI signature escaped
+    final String mangled = jniMangle(binding);
+    final String args = mangled.substring(mangled.indexOf("__") + 2);
+    StringBuffer buf = new StringBuffer();
+    buf.append("(");
+    for (int i = 0; i < args.length(); i++) {
+      char c = args.charAt(i);
+      if (c == '_' && i + 1 < args.length()) {
+        char e = args.charAt(i + 1);
+        if (e == '1') {
+          buf.append('_'); i++; continue;
+        } else if (e == '2') {
+          buf.append(';'); i++; continue;
+        } else if (e == '3') {
+          buf.append('['); i++; continue;
+        } else if (e == '0') {
+          buf.append((char) Integer.parseInt(args.substring(i + 2, i + 6), 16)); i += 5; continue;
+        }
+        buf.append('/');
+      } else {
+        buf.append(c);
+      }
+    }
+    buf.append(")");
+
+    final JavaType returnType = binding.getJavaReturnType();
+    if (returnType.isVoid()) {
+      buf.append("V");
+    } else if (returnType.isArrayOfCompoundTypeWrappers()) {
+      // returned as arrays of ByteBuffers
+      buf.append("[Ljava/nio/ByteBuffer;");
+    } else if (returnType.isCompoundTypeWrapper() || returnType.isNIOBuffer()) {
+      // returned as ByteBuffer, see JavaMethodBindingEmitter.erasedTypeString(..)
+      buf.append("Ljava/nio/ByteBuffer;");
     } else {
-      writer.print(jniMangle(getName()));
-      //System.err.println("    NORMAL MANGLING FOR " + binding.getName() +
-      //                   " = " + jniMangle(getName()));
+      jniSignature(returnType.getJavaClass(), buf);
     }
+    return buf.toString();
+  }
+
+  private static void jniSignature(Class<?> c, StringBuffer res) {
+    if (c == Void.TYPE)            res.append("V");
+    else if (c == Boolean.TYPE)    res.append("Z");
+    else if (c == Byte.TYPE)       res.append("B");
+    else if (c == Character.TYPE)  res.append("C");
+    else if (c == Short.TYPE)      res.append("S");
+    else if (c == Integer.TYPE)    res.append("I");
+    else if (c == Long.TYPE)       res.append("J");
+    else if (c == Float.TYPE)      res.append("F");
+    else if (c == Double.TYPE)     res.append("D");
+    else if (c.isArray())          res.append(c.getName().replace('.', '/'));
+    else                           res.append("L").append(c.getName().replace('.', '/')).append(";");
   }
 
   protected String getImplSuffix() {
@@ -355,12 +528,18 @@ public class CMethodBindingEmitter extends FunctionEmitter {
         continue;
       }
       writer.print(", ");
-      writer.print(javaArgType.jniTypeName());
-      writer.print(" ");
-      writer.print(binding.getArgumentName(i));
+      if (isDirectString(javaArgType)) {
+        writer.print("jlong " + addressArgName(i));
+      } else {
+        writer.print(javaArgType.jniTypeName());
+        writer.print(" ");
+        writer.print(binding.getArgumentName(i));
+      }
       ++numEmitted;
 
-      if (javaArgType.isPrimitiveArray() ||
+      if (javaArgType.isNIOBuffer() && directNIOAddress) {
+        writer.print(", jlong " + addressArgName(i));
+      } else if (javaArgType.isPrimitiveArray() ||
           javaArgType.isNIOBuffer()) {
         writer.print(", jint " + byteOffsetArgName(i));
         if(forIndirectBufferAndArrayImplementation) {
@@ -371,6 +550,10 @@ public class CMethodBindingEmitter extends FunctionEmitter {
                      byteOffsetArrayArgName(i));
       }
     }
+    if (returnValueCache) {
+      writer.print(", jobject _res_cache");
+      ++numEmitted;
+    }
     return numEmitted;
   }
 
@@ -415,7 +598,13 @@ public class CMethodBindingEmitter extends FunctionEmitter {
                                  type,
                                  binding.getCArgumentType(i),
                                  convName, javaArgName);
-        if (needsDataCopy && !emittedDataCopyTemps) {
+        String smallType = smallArrayCopyType(type);
+        if (smallType != null) {
+          // stack copy of small arrays, the length is negative if pinned instead
+          writer.println("  j" + smallType.toLowerCase() + " " + convName + "_small[" + smallArrayCopyLength(type) + "];");
+          writer.println("  jsize " + convName + "_small_len = -1;");
+        }
+        if (needsDataCopy && !emittedDataCopyTemps && !isDirectString(type)) {
           // emit loop counter and array length variables used during data
           // copy 
           writer.println("  jobject _tmpObj;");
@@ -500,6 +689,12 @@ public class CMethodBindingEmitter extends FunctionEmitter {
       (i.e., "const char *", "const char **"). False implies that this
       type is for a Unicode pointer type ("jchar *", "jchar **"). */
   protected boolean isUTF8Type(Type type) {
+    return isUTF8Type(type, machDesc);
+  }
+
+  /** Checks a type to see whether it is for a UTF-8 pointer type
+      (i.e., "const char *", "const char **"), using the given machine description. */
+  protected static boolean isUTF8Type(Type type, MachineDescription machDesc) {
     int i = 0;
     // Try to dereference the type at most two levels
     while (!type.isInt() && !type.isVoid() && (i < 2)) {
@@ -527,6 +722,17 @@ public class CMethodBindingEmitter extends FunctionEmitter {
     return (type.getSize(machDesc) == 1);
   }
 
+  /** Checks a pointer or array type for a const target type */
+  protected boolean isConstPtr(Type type) {
+    if (type.isPointer()) {
+      return type.asPointer().getTargetType().isConst();
+    }
+    if (type.isArray()) {
+      return type.asArray().getElementType().isConst();
+    }
+    return false;
+  }
+
   /** Checks a type (expected to be pointer-to-pointer) for const-ness */
   protected boolean isConstPtrPtr(Type type) {
     if (type.pointerDepth() != 2) {
@@ -563,7 +769,14 @@ public class CMethodBindingEmitter extends FunctionEmitter {
           continue;
         }
 
-        if (type.isCompoundTypeWrapper() ||
+        if (type.isNIOBuffer() && directNIOAddress) {
+          String javaArgName = binding.getArgumentName(i);
+          writer.print("  ");
+          writer.print(pointerConversionArgumentName(javaArgName));
+          writer.print(" = (");
+          writer.print(binding.getCArgumentType(i).getName());
+          writer.println(") (intptr_t) " + addressArgName(i) + ";");
+        } else if (type.isCompoundTypeWrapper() ||
             (type.isNIOBuffer() && !forIndirectBufferAndArrayImplementation)) {
           String javaArgName = binding.getArgumentName(i);
           emitPointerConversion(writer, binding, type,
@@ -573,6 +786,28 @@ public class CMethodBindingEmitter extends FunctionEmitter {
         }
     }
 
+    // Copy small arrays before any array is pinned, since no JNI functions
+    // may be called within a critical region
+    for (int i = 0; i < binding.getNumArguments(); i++) {
+      JavaType javaArgType = binding.getJavaArgumentType(i);
+      String smallType = smallArrayCopyType(javaArgType);
+      if (smallType == null || binding.isArgumentThisPointer(i)) {
+        continue;
+      }
+      String javaArgName = binding.getArgumentName(i);
+      String smallName = pointerConversionArgumentName(javaArgName) + "_small";
+      String elementOffset = smallArrayCopyOffset(i, smallType);
+      writer.println("  if ( NULL != " + javaArgName + " && JNI_FALSE == " + isNIOArgName(i) + " ) {");
+      writer.println("    " + smallName + "_len = (*env)->GetArrayLength(env, " + javaArgName + ") - " + elementOffset + ";");
+      writer.println("    if ( " + smallName + "_len <= " + smallArrayCopyLength(javaArgType) + " ) {");
+      writer.println("      (*env)->Get" + smallType + "ArrayRegion(env, (j" + smallType.toLowerCase() + "Array) " + javaArgName + ", " +
+                     elementOffset + ", " + smallName + "_len, " + smallName + ");");
+      writer.println("    } else {");
+      writer.println("      " + smallName + "_len = -1;");
+      writer.println("    }");
+      writer.println("  }");
+    }
+
     // Convert all arrays to pointers, and get UTF-8 versions of jstring args
     for (int i = 0; i < binding.getNumArguments(); i++) {
       JavaType javaArgType = binding.getJavaArgumentType(i);
@@ -582,7 +817,18 @@ public class CMethodBindingEmitter extends FunctionEmitter {
       }
       String javaArgName = binding.getArgumentName(i);
 
-      if (javaArgType.isArray() ||
+      if (isDirectString(javaArgType)) {
+        // Already converted into the Java side scratch memory
+        writer.print("  ");
+        if (javaArgType.isString()) {
+          writer.print(STRING_CHARS_PREFIX + javaArgName);
+          writer.print(isUTF8Type(binding.getCArgumentType(i)) ? " = (const char*) " : " = (jchar*) ");
+        } else {
+          writer.print(pointerConversionArgumentName(javaArgName) + "_copy");
+          writer.print(" = (void *) ");
+        }
+        writer.println("(intptr_t) " + addressArgName(i) + ";");
+      } else if (javaArgType.isArray() ||
           (javaArgType.isNIOBuffer() && forIndirectBufferAndArrayImplementation) ||
           javaArgType.isArrayOfCompoundTypeWrappers()) {
         boolean needsDataCopy = javaArgTypeNeedsDataCopy(javaArgType);
@@ -595,7 +841,14 @@ public class CMethodBindingEmitter extends FunctionEmitter {
         String convName = pointerConversionArgumentName(javaArgName);
 
         if (!needsDataCopy) {
-          writer.print("    ");
+          String indent = "    ";
+          if (smallArrayCopyType(javaArgType) != null) {
+            writer.println("    if ( 0 <= " + convName + "_small_len ) {");
+            writer.println("      " + convName + " = (" + cArgTypeName + ") " + convName + "_small;");
+            writer.println("    } else {");
+            indent = "      ";
+          }
+          writer.print(indent);
           writer.print(convName);
           writer.print(" = (");
           if (javaArgType.isStringArray()) {
@@ -607,6 +860,9 @@ public class CMethodBindingEmitter extends FunctionEmitter {
           writer.print(" (*env)->GetDirectBufferAddress(env, " + javaArgName + ") : ");
           writer.print(" (*env)->GetPrimitiveArrayCritical(env, " + javaArgName + ", NULL) ) ) + ");
           writer.println(byteOffsetArgName(i) + ");");
+          if (smallArrayCopyType(javaArgType) != null) {
+            writer.println("    }");
+          }
         } else {
           // Handle the case where the array elements are of a type that needs a
           // data copy operation to convert from the java memory model to the C
@@ -761,7 +1017,9 @@ public class CMethodBindingEmitter extends FunctionEmitter {
     // Release primitive arrays and temporary UTF8 strings if necessary
     for (int i = 0; i < binding.getNumArguments(); i++) {
       JavaType javaArgType = binding.getJavaArgumentType(i);
-      if (javaArgType.isJNIEnv() || binding.isArgumentThisPointer(i)) {
+      if (javaArgType.isJNIEnv() || binding.isArgumentThisPointer(i) ||
+          isDirectString(javaArgType)) {
+        // Scratch memory of direct string arguments is released on the Java side
         continue;
       }
 
@@ -776,7 +1034,11 @@ public class CMethodBindingEmitter extends FunctionEmitter {
         String convName = pointerConversionArgumentName(javaArgName);
 
         if (!needsDataCopy) {
-          writer.println("  if ( NULL != " + javaArgName + " && JNI_FALSE == " + isNIOArgName(i) + " ) {");
+          writer.print("  if ( NULL != " + javaArgName + " && JNI_FALSE == " + isNIOArgName(i));
+          if (smallArrayCopyType(javaArgType) != null) {
+            writer.print(" && 0 > " + convName + "_small_len");
+          }
+          writer.println(" ) {");
 
           // Release array 
           writer.print("    (*env)->ReleasePrimitiveArrayCritical(env, " + javaArgName + ", " + convName + ", 0);");
@@ -890,6 +1152,23 @@ public class CMethodBindingEmitter extends FunctionEmitter {
         writer.println("  }");
       }
     }
+
+    // Copy back small arrays after all pinned arrays have been released,
+    // unless the C function takes a const pointer
+    for (int i = 0; i < binding.getNumArguments(); i++) {
+      JavaType javaArgType = binding.getJavaArgumentType(i);
+      String smallType = smallArrayCopyType(javaArgType);
+      if (smallType == null || binding.isArgumentThisPointer(i) ||
+          isConstPtr(binding.getCArgumentType(i))) {
+        continue;
+      }
+      String javaArgName = binding.getArgumentName(i);
+      String smallName = pointerConversionArgumentName(javaArgName) + "_small";
+      writer.println("  if ( 0 <= " + smallName + "_len ) {");
+      writer.println("    (*env)->Set" + smallType + "ArrayRegion(env, (j" + smallType.toLowerCase() + "Array) " + javaArgName + ", " +
+                     smallArrayCopyOffset(i, smallType) + ", " + smallName + "_len, " + smallName + ");");
+      writer.println("  }");
+    }
   }
 
   /** Returns the number of arguments passed so calling code knows
@@ -991,10 +1270,10 @@ public class CMethodBindingEmitter extends FunctionEmitter {
       } else if (javaReturnType.isNIOBuffer() ||
                  javaReturnType.isCompoundTypeWrapper()) {
         writer.println("  if (NULL == _res) return NULL;");
-        writer.print("  return (*env)->NewDirectByteBuffer(env, _res, ");
+        final StringBuilder capacity = new StringBuilder();
         // See whether capacity has been specified
         if (returnValueCapacityExpression != null) {
-          writer.print(
+          capacity.append(
             returnValueCapacityExpression.format(argumentNameArray()));
         } else {
           if (cReturnType.isPointer() &&
@@ -1009,7 +1288,7 @@ public class CMethodBindingEmitter extends FunctionEmitter {
               );
             }
           }
-          writer.print("sizeof(" + cReturnType.getName() + ")");
+          capacity.append("sizeof(" + cReturnType.getName() + ")");
           LOG.warning(
             "No capacity specified for java.nio.Buffer return " +
             "value for function \"" + binding.getName() + "\"" +
@@ -1020,7 +1299,19 @@ public class CMethodBindingEmitter extends FunctionEmitter {
             "value for function \"" + binding + "\";" +
             " C return type is " + cReturnType.getName() + ": " + binding);  */
         }
-        writer.println(");");
+        if (returnValueCache) {
+          writer.println("  {");
+          writer.println("    const jlong _res_capacity = (jlong) (" + capacity + ");");
+          writer.println("    if (NULL != _res_cache &&");
+          writer.println("        (*env)->GetDirectBufferAddress(env, _res_cache) == (void *) _res &&");
+          writer.println("        (*env)->GetDirectBufferCapacity(env, _res_cache) == _res_capacity) {");
+          writer.println("      return _res_cache;");
+          writer.println("    }");
+          writer.println("    return (*env)->NewDirectByteBuffer(env, (void *) _res, _res_capacity);");
+          writer.println("  }");
+        } else {
+          writer.println("  return (*env)->NewDirectByteBuffer(env, _res, " + capacity + ");");
+        }
       } else if (javaReturnType.isString()) {
         writer.println("  if (NULL == _res) return NULL;");
         writer.println("  return (*env)->NewStringUTF(env, _res);");
@@ -1114,12 +1405,15 @@ public class CMethodBindingEmitter extends FunctionEmitter {
         }
       } else {
         Class<?> c = type.getJavaClass();
-        if (c != null) {
+        if (c != null && isDirectString(type)) {
+          // Passed down as the address of the Java side converted string(s)
+          jniMangle(Long.TYPE, buf, false);
+        } else if (c != null) {
           jniMangle(c, buf, false);
           // If Buffer offset arguments were added, we need to mangle the JNI for the 
           // extra arguments
           if (type.isNIOBuffer()) {
-            jniMangle(Integer.TYPE, buf, false);
+            jniMangle(directNIOAddress ? Long.TYPE : Integer.TYPE, buf, false);
             if(forIndirectBufferAndArrayImplementation) {
                 jniMangle(Boolean.TYPE, buf, false);
             }
@@ -1146,6 +1440,10 @@ public class CMethodBindingEmitter extends FunctionEmitter {
         }
       }
     }
+    if (returnValueCache) {
+      // The previously returned ByteBuffer
+      jniMangle(java.nio.ByteBuffer.class, buf, true);
+    }
 
     return buf.toString();
   }
@@ -1439,6 +1737,10 @@ public class CMethodBindingEmitter extends FunctionEmitter {
     return s + "_byte_offset";
   }
                                                                                                             
+  protected String addressArgName(int i) {
+    return binding.getArgumentName(i) + "_address";
+  }
+
   protected String isNIOArgName(int i) {
     return isNIOArgName(binding.getArgumentName(i));
   }
@@ -43,6 +43,9 @@ import java.util.*;
 
 public class CodeGenUtils {
 
+    /** Start of the first line of every autogenerated file, see {@link #emitAutogeneratedWarning(PrintWriter, Object)}. */
+    public static final String AUTOGENERATED_WARNING_PREFIX = "/* !---- DO NOT EDIT: This file autogenerated ";
+
     /**
      * Given a java package name (e.g., "java.lang"), return the package as a
      * directory path (i.e., "java/lang").
@@ -58,7 +61,7 @@ public class CodeGenUtils {
      * null, the generator will not be mentioned in the warning message.
      */
     public static void emitAutogeneratedWarning(PrintWriter w, Object generator) {
-        w.print("/* !---- DO NOT EDIT: This file autogenerated ");
+        w.print(AUTOGENERATED_WARNING_PREFIX);
         if (generator != null) {
             w.print("by ");
             w.print(packageAsPath(generator.getClass().getName()));
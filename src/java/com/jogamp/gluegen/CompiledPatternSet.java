@@ -0,0 +1,165 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled, immutable view of a set of regular expressions,
+ * answering whether a symbol fully matches any of them.
+ * <p>
+ * Patterns without regular expression meta characters are matched by a hash lookup.
+ * All others are grouped by their leading literal prefix and each group is combined
+ * into a single alternation, hence a symbol is only matched against the groups
+ * whose prefix it starts with.
+ * Patterns using back references or embedded flags keep their own {@link Pattern},
+ * since these would change their meaning within the alternation.
+ * </p>
+ */
+final class CompiledPatternSet {
+
+    private static final String META_CHARS = "\\.[]{}()<>*+-=!?^$|";
+
+    private final Set<String> literals = new HashSet<String>();
+    /** Prefix -> alternation of all patterns starting with that literal prefix */
+    private final Map<String, Pattern> prefixed = new HashMap<String, Pattern>();
+    private final int maxPrefixLength;
+    private final List<Pattern> separate = new ArrayList<Pattern>();
+
+    CompiledPatternSet(Collection<Pattern> patterns) {
+        Map<String, StringBuilder> alternations = new HashMap<String, StringBuilder>();
+        for (Pattern pattern : patterns) {
+            String regex = pattern.pattern();
+            if (0 != pattern.flags()) {
+                separate.add(pattern);
+            } else if (isLiteral(regex)) {
+                literals.add(regex);
+            } else if (hasBackReference(regex) || regex.indexOf("(?") >= 0) {
+                separate.add(pattern);
+            } else {
+                String prefix = literalPrefix(regex);
+                StringBuilder alternation = alternations.get(prefix);
+                if (null == alternation) {
+                    alternation = new StringBuilder();
+                    alternations.put(prefix, alternation);
+                } else {
+                    alternation.append('|');
+                }
+                alternation.append("(?:").append(regex).append(')');
+            }
+        }
+        int maxLen = 0;
+        for (Iterator<Map.Entry<String, StringBuilder>> iter = alternations.entrySet().iterator(); iter.hasNext(); ) {
+            Map.Entry<String, StringBuilder> entry = iter.next();
+            prefixed.put(entry.getKey(), Pattern.compile(entry.getValue().toString()));
+            maxLen = Math.max(maxLen, entry.getKey().length());
+        }
+        maxPrefixLength = maxLen;
+    }
+
+    /** Returns true if the given symbol fully matches any of the patterns. */
+    boolean matches(String symbol) {
+        if (literals.contains(symbol)) {
+            return true;
+        }
+        if (!prefixed.isEmpty()) {
+            final int n = Math.min(maxPrefixLength, symbol.length());
+            for (int i = 0; i <= n; i++) {
+                Pattern pattern = prefixed.get(symbol.substring(0, i));
+                if (null != pattern && pattern.matcher(symbol).matches()) {
+                    return true;
+                }
+            }
+        }
+        for (int i = 0; i < separate.size(); i++) {
+            Matcher matcher = separate.get(i).matcher(symbol);
+            if (matcher.matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isEmpty() {
+        return literals.isEmpty() && prefixed.isEmpty() && separate.isEmpty();
+    }
+
+    /**
+     * Returns the literal text every match of the given regular expression starts with,
+     * which is empty if the expression contains an alternation.
+     */
+    static String literalPrefix(String regex) {
+        if (regex.indexOf('|') >= 0) {
+            return "";
+        }
+        int i = 0;
+        while (i < regex.length() && META_CHARS.indexOf(regex.charAt(i)) < 0) {
+            i++;
+        }
+        if (i < regex.length() && i > 0) {
+            char c = regex.charAt(i);
+            if ('?' == c || '*' == c || '{' == c) {
+                i--; // quantified last character is optional
+            }
+        }
+        return regex.substring(0, i);
+    }
+
+    static boolean isLiteral(String regex) {
+        for (int i = 0; i < regex.length(); i++) {
+            if (META_CHARS.indexOf(regex.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasBackReference(String regex) {
+        for (int i = 0; i < regex.length() - 1; i++) {
+            char c = regex.charAt(i);
+            if ('\\' == c) {
+                char n = regex.charAt(i + 1);
+                if (('1' <= n && n <= '9') || 'k' == n) {
+                    return true;
+                }
+                i++; // skip escaped char
+            }
+        }
+        return false;
+    }
+}
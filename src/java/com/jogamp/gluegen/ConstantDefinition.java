@@ -43,6 +43,7 @@ public class ConstantDefinition {
     private HashSet<String> aliasedNames;
     private String name;
     private String value;
+    private Number constantValue;
     private boolean isEnum;
     private String enumName;
     private Set<String> aliases;
@@ -51,9 +52,21 @@ public class ConstantDefinition {
                               String value,
                               boolean isEnum,
                               String enumName) {
+        this(name, value, null, isEnum, enumName);
+    }
+
+    /**
+     * @param constantValue the value already folded to an Integer, Long, Float or Double, may be null
+     */
+    public ConstantDefinition(String name,
+                              String value,
+                              Number constantValue,
+                              boolean isEnum,
+                              String enumName) {
         this.origName = name;
         this.name = name;
         this.value = value;
+        this.constantValue = constantValue;
         this.isEnum = isEnum;
         this.enumName = enumName;
         this.aliasedNames=new HashSet<String>();
@@ -105,6 +118,9 @@ public class ConstantDefinition {
     }
 
     public String getValue()    { return value;    }
+    /** Returns the folded value as Integer, Long, Float or Double,
+        or null if the value has not been folded. */
+    public Number getConstantValue() { return constantValue; }
     /** Returns null if this definition was not part of an
         enumeration, or if the enum was anonymous. */
     public String getEnumName() { return enumName; }
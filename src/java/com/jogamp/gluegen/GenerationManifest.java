@@ -0,0 +1,213 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the inputs and outputs of a GlueGen run,
+ * allowing to skip the next run if nothing changed.
+ * <p>
+ * The manifest holds a key of the run's arguments and the generator classes,
+ * the MD5 hash of every input file, i.e. the header including all #include'd files,
+ * the configuration files and the Java files read by them, and the list of output files.
+ * A run is up to date if the key is equal, all inputs have the recorded hash
+ * and all outputs exist.
+ * </p>
+ */
+final class GenerationManifest {
+
+    private static final String HEADER = "# GlueGen generation manifest, do not edit";
+
+    private final File file;
+    private final String key;
+    private final Map<String, String> inputs = new LinkedHashMap<String, String>();
+    private final List<String> outputs = new ArrayList<String>();
+
+    GenerationManifest(String filename, String key) {
+        this.file = new File(filename);
+        this.key = key;
+    }
+
+    /**
+     * Returns a key identifying the arguments of a run and the generator classes.
+     */
+    static String createKey(Class<?> emitterClass, List<String> includePaths, List<String> cfgFiles, String outputRootDir) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(null != emitterClass ? emitterClass.getName() : JavaEmitter.class.getName());
+        sb.append(';').append(includePaths).append(';').append(cfgFiles).append(';').append(outputRootDir);
+        sb.append(';').append(codeSourceId(GlueGen.class));
+        if (null != emitterClass) {
+            sb.append(';').append(codeSourceId(emitterClass));
+        }
+        return sb.toString();
+    }
+
+    /** Identifies the jar file or class directory the given class was loaded from by its size and time stamp. */
+    static String codeSourceId(Class<?> clazz) {
+        CodeSource cs = clazz.getProtectionDomain().getCodeSource();
+        URL url = null != cs ? cs.getLocation() : null;
+        if (null == url || !"file".equals(url.getProtocol())) {
+            return String.valueOf(url);
+        }
+        File f;
+        try {
+            f = new File(url.toURI());
+        } catch (URISyntaxException e) {
+            f = new File(url.getPath());
+        }
+        return f.getPath() + ":" + f.length() + ":" + f.lastModified();
+    }
+
+    /**
+     * Returns true if a manifest of a previous run exists with the same key,
+     * all recorded inputs are unchanged and all recorded outputs exist.
+     */
+    boolean isUpToDate() {
+        if (!file.isFile()) {
+            return false;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                if (!HEADER.equals(reader.readLine()) || !("key " + key).equals(reader.readLine())) {
+                    return false;
+                }
+                boolean hasInputs = false;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("in ")) {
+                        int sep = line.indexOf(' ', 3);
+                        String hash = line.substring(3, sep);
+                        String input = line.substring(sep + 1);
+                        if (!hash.equals(hash(new File(input)))) {
+                            return false;
+                        }
+                        hasInputs = true;
+                    } else if (line.startsWith("out ")) {
+                        if (!new File(line.substring(4)).isFile()) {
+                            return false;
+                        }
+                    } else {
+                        return false;
+                    }
+                }
+                return hasInputs;
+            } finally {
+                reader.close();
+            }
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    void addInputs(Collection<String> files) throws IOException {
+        for (String input : files) {
+            String path = new File(input).getAbsolutePath();
+            if (!inputs.containsKey(path)) {
+                inputs.put(path, hash(new File(path)));
+            }
+        }
+    }
+
+    void addOutputs(Collection<String> files) {
+        for (String output : files) {
+            outputs.add(new File(output).getAbsolutePath());
+        }
+    }
+
+    void write() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (null != parent) {
+            parent.mkdirs();
+        }
+        PrintWriter w = new PrintWriter(new FileWriter(file));
+        try {
+            w.println(HEADER);
+            w.println("key " + key);
+            for (Map.Entry<String, String> entry : inputs.entrySet()) {
+                w.println("in " + entry.getValue() + " " + entry.getKey());
+            }
+            for (String output : outputs) {
+                w.println("out " + output);
+            }
+        } finally {
+            w.close();
+        }
+    }
+
+    /** Returns the hex MD5 hash of the given file's content, or "-" if it does not exist. */
+    static String hash(File f) throws IOException {
+        if (!f.isFile()) {
+            return "-";
+        }
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        InputStream in = new FileInputStream(f);
+        try {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                md.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return toHex(md.digest());
+    }
+
+    static String toHex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(2 * digest.length);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
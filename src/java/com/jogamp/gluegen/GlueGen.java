@@ -41,7 +41,14 @@ package com.jogamp.gluegen;
 
 import com.jogamp.common.GlueGenVersion;
 import java.io.*;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import antlr.*;
 import com.jogamp.gluegen.cgram.*;
@@ -61,6 +68,9 @@ public class GlueGen implements GlueEmitterControls {
 
     private List<String> forcedStructNames = new ArrayList<String>();
     private PCPP preprocessor;
+    private String manifestFile;
+    private String headerCacheDir;
+    private IncludeCache includeCache;
     
     // State for SymbolFilters
     private List<ConstantDefinition> constants;
@@ -70,6 +80,34 @@ public class GlueGen implements GlueEmitterControls {
         forcedStructNames.add(typedefName);
     }
 
+    /**
+     * Sets the file recording the inputs and outputs of a run.
+     * If set, {@link #run(Reader, String, Class, List, List, String, boolean, boolean) run}
+     * skips the generation if the input file, all #include'd files and the configuration files
+     * are unchanged since the run which wrote the manifest, and all its outputs still exist.
+     */
+    public void setManifestFile(String manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+    /**
+     * Sets the directory caching the parsed headers.
+     * If set, {@link #run(Reader, String, Class, List, List, String, boolean, boolean) run}
+     * stores the result of the header parser keyed by the preprocessed input and the include paths,
+     * and a later run with the same preprocessed input skips the parsing.
+     */
+    public void setHeaderCacheDir(String headerCacheDir) {
+        this.headerCacheDir = headerCacheDir;
+    }
+
+    /**
+     * Sets the cache of #include file contents used by the preprocessor,
+     * which may be shared by multiple runs within one JVM.
+     */
+    public void setIncludeCache(IncludeCache includeCache) {
+        this.includeCache = includeCache;
+    }
+
     public String findHeaderFile(String headerFileName) {
         return preprocessor.findFile(headerFileName);
     }
@@ -87,33 +125,412 @@ public class GlueGen implements GlueEmitterControls {
     }
 
   
-    @SuppressWarnings("unchecked")
+    /**
+     * In memory sink for the preprocessed output,
+     * readable without copying its content.
+     */
+    private static class PCPPBuffer extends ByteArrayOutputStream {
+        PCPPBuffer() {
+            super(1 << 16);
+        }
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+        void update(MessageDigest md) {
+            md.update(buf, 0, count);
+        }
+    }
+
+    /**
+     * One emitter with its configuration files, output root directory and optional manifest file,
+     * see {@link GlueGen#run(Reader, String, List, List, boolean, boolean, boolean)}.
+     */
+    public static class EmitterConfiguration {
+        private final Class<?> emitterClass;
+        private final List<String> cfgFiles;
+        private final String outputRootDir;
+        private final String manifestFile;
+
+        /**
+         * @param emitterClass the emitter class, if null the {@link JavaEmitter} is used
+         * @param cfgFiles the configuration files read by the emitter
+         * @param outputRootDir the optional output root directory overriding the configuration's
+         * @param manifestFile the optional manifest file, see {@link GlueGen#setManifestFile(String)}
+         */
+        public EmitterConfiguration(Class<?> emitterClass, List<String> cfgFiles, String outputRootDir, String manifestFile) {
+            this.emitterClass = emitterClass;
+            this.cfgFiles = cfgFiles;
+            this.outputRootDir = outputRootDir;
+            this.manifestFile = manifestFile;
+        }
+
+        public Class<?> getEmitterClass() {
+            return emitterClass;
+        }
+
+        public List<String> getCfgFiles() {
+            return cfgFiles;
+        }
+
+        public String getOutputRootDir() {
+            return outputRootDir;
+        }
+
+        public String getManifestFile() {
+            return manifestFile;
+        }
+    }
+
     public void run(final Reader reader, final String filename, Class<?> emitterClass, List<String> includePaths, List<String> cfgFiles, String outputRootDir, boolean debug, boolean copyPCPPOutput2Stderr) {
+        EmitterConfiguration configuration = new EmitterConfiguration(emitterClass, cfgFiles, outputRootDir, manifestFile);
+        run(reader, filename, includePaths, Collections.singletonList(configuration), false, debug, copyPCPPOutput2Stderr);
+    }
+
+    /**
+     * Parses the input once and runs all given configurations on the parsed header.
+     * <p>
+     * Each configuration uses its own emitter and its own copy of the parsed types,
+     * hence the configurations are independent and may run in parallel.
+     * Configurations whose manifest is up to date are skipped.
+     * </p>
+     * @param parallel if true, the configurations run concurrently on a thread per processor
+     */
+    public void run(final Reader reader, final String filename, List<String> includePaths, List<EmitterConfiguration> configurations, boolean parallel, boolean debug, boolean copyPCPPOutput2Stderr) {
+
+        final List<EmitterConfiguration> pending = new ArrayList<EmitterConfiguration>();
+        final List<GenerationManifest> manifests = new ArrayList<GenerationManifest>();
+        for (EmitterConfiguration configuration : configurations) {
+            GenerationManifest manifest = null;
+            if (null != configuration.getManifestFile() && null != filename && new File(filename).isFile()) {
+                manifest = new GenerationManifest(configuration.getManifestFile(),
+                        GenerationManifest.createKey(configuration.getEmitterClass(), includePaths, configuration.getCfgFiles(), configuration.getOutputRootDir()));
+                if (manifest.isUpToDate()) {
+                    err.println("GlueGen: " + filename + " up to date according to " + configuration.getManifestFile() + ", skipping generation");
+                    continue;
+                }
+            }
+            pending.add(configuration);
+            manifests.add(manifest);
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
 
         try {
-            final PipedInputStream ppIn = new PipedInputStream();
-            final PipedOutputStream ppOut = new PipedOutputStream(ppIn);
+            final HeaderSnapshot snapshot = preprocessAndParse(reader, filename, includePaths, debug, copyPCPPOutput2Stderr);
 
-            File out = File.createTempFile("PCPPTemp", ".pcpp");
-            FileOutputStream outStream = new FileOutputStream(out);
+            if (1 == pending.size()) {
+                emit(snapshot, pending.get(0), manifests.get(0), filename);
+            } else if (parallel) {
+                emitParallel(snapshot, pending, manifests, filename);
+            } else {
+                final byte[] serialized = snapshot.toByteArray();
+                for (int i = 0; i < pending.size(); i++) {
+                    newWorker().emit(0 == i ? snapshot : HeaderSnapshot.fromByteArray(serialized), pending.get(i), manifests.get(i), filename);
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Exception occurred while generating glue code.", e);
+        }
+    }
+
+    /**
+     * Runs the configurations concurrently, each on its own copy of the snapshot,
+     * and rethrows the first failure in the order of the configurations.
+     */
+    private void emitParallel(final HeaderSnapshot snapshot, final List<EmitterConfiguration> pending,
+                              final List<GenerationManifest> manifests, final String filename) throws Exception {
+        final byte[] serialized = snapshot.toByteArray();
+        final int threads = Math.min(pending.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "GlueGen-Configuration");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        try {
+            List<Future<Object>> results = new ArrayList<Future<Object>>(pending.size());
+            for (int i = 0; i < pending.size(); i++) {
+                final int idx = i;
+                final GlueGen worker = newWorker();
+                results.add(executor.submit(new Callable<Object>() {
+                        public Object call() throws Exception {
+                            worker.emit(0 == idx ? snapshot : HeaderSnapshot.fromByteArray(serialized), pending.get(idx), manifests.get(idx), filename);
+                            return null;
+                        }
+                    }));
+            }
+            for (Future<Object> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    }
+                    throw (Error) cause;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Returns a GlueGen sharing the preprocessor and the forced structs, but with its own SymbolFilter state. */
+    private GlueGen newWorker() {
+        GlueGen worker = new GlueGen();
+        worker.preprocessor = preprocessor;
+        worker.forcedStructNames.addAll(forcedStructNames);
+        return worker;
+    }
+
+    /** Preprocesses the input, and parses it unless a snapshot of the same preprocessed input is cached. */
+    private HeaderSnapshot preprocessAndParse(final Reader reader, final String filename, List<String> includePaths,
+                                              boolean debug, boolean copyPCPPOutput2Stderr) throws Exception {
+        preprocessor = new PCPP(includePaths, debug, copyPCPPOutput2Stderr);
+        preprocessor.setIncludeCache(includeCache);
+        preprocessor.addDefine("__GLUEGEN__", "2");
+
+        final File ppFile;
+        final PCPPBuffer ppBuffer;
+        if(debug || copyPCPPOutput2Stderr) {
+            // keep the preprocessed output on disk for inspection
+            ppFile = File.createTempFile("PCPPTemp", ".pcpp");
+            ppBuffer = null;
+            FileOutputStream outStream = new FileOutputStream(ppFile);
 
             if(debug) {
-                System.err.println("PCPP output at (persistent): " + out.getAbsolutePath());
+                System.err.println("PCPP output at (persistent): " + ppFile.getAbsolutePath());
             } else {
-                out.deleteOnExit();
+                ppFile.deleteOnExit();
             }
 
-            preprocessor = new PCPP(includePaths, debug, copyPCPPOutput2Stderr);
-            preprocessor.addDefine("__GLUEGEN__", "2");
             preprocessor.setOut(outStream);
-
             preprocessor.run(reader, filename);
             outStream.flush();
             outStream.close();
+        } else {
+            // stream the preprocessed output to the lexer in memory
+            ppFile = null;
+            ppBuffer = new PCPPBuffer();
+            preprocessor.setOut(ppBuffer);
+            preprocessor.run(reader, filename);
+        }
 
-            FileInputStream inStream = new FileInputStream(out);
-            DataInputStream dis = new DataInputStream(inStream);
+        File snapshotFile = null;
+        HeaderSnapshot snapshot = null;
+        if (null != headerCacheDir) {
+            MessageDigest digest = HeaderSnapshot.createDigest();
+            if (null != ppBuffer) {
+                ppBuffer.update(digest);
+            } else {
+                HeaderSnapshot.update(digest, ppFile);
+            }
+            snapshotFile = HeaderSnapshot.getCacheFile(headerCacheDir, digest, includePaths);
+            snapshot = HeaderSnapshot.load(snapshotFile);
+            if (null != snapshot && debug) {
+                err.println("GlueGen: using parsed header snapshot " + snapshotFile);
+            }
+        }
 
+        if (null == snapshot) {
+            snapshot = parse(null != ppBuffer ? ppBuffer.toInputStream() : new BufferedInputStream(new FileInputStream(ppFile)), debug);
+            // the values folded by the preprocessor are stored with the snapshot
+            for (Define def : snapshot.getDefines()) {
+                def.setConstantValue(preprocessor.getConstantValue(def.getName(), def.getValue()));
+            }
+            if (null != snapshotFile) {
+                try {
+                    snapshot.store(snapshotFile);
+                } catch (IOException e) {
+                    err.println("WARNING: could not store header snapshot " + snapshotFile + ": " + e);
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /** Runs the given configuration's emitter on the parsed header. */
+    private void emit(HeaderSnapshot snapshot, EmitterConfiguration configuration, GenerationManifest manifest, String filename) throws Exception {
+        TypeDictionary td = snapshot.getTypedefDictionary();
+        TypeDictionary sd = snapshot.getStructDictionary();
+        Map<Type, Type> canonMap = snapshot.getCanonMap();
+
+        /**
+        // For debugging: Dump type dictionary and struct dictionary to System.err
+        if(debug) {
+            td.dumpDictionary(err, "All Types");
+            sd.dumpDictionary(err, "All Structs");
+        } */
+
+        // At this point we have all of the pieces we need in order to
+        // generate glue code: the #defines to constants, the set of
+        // typedefs, and the set of functions.
+
+        GlueEmitter emit = null;
+        if (configuration.getEmitterClass() == null) {
+            emit = new JavaEmitter();
+        } else {
+            try {
+                emit = (GlueEmitter) configuration.getEmitterClass().newInstance();
+            } catch (Exception e) {
+                throw new RuntimeException("Exception occurred while instantiating emitter class.", e);
+            }
+        }
+
+        for (String config : configuration.getCfgFiles()) {
+            emit.readConfigurationFile(config);
+        }
+
+        String outputRootDir = configuration.getOutputRootDir();
+        if (null != outputRootDir && outputRootDir.trim().length() > 0) {
+            if (emit instanceof JavaEmitter) {
+                // FIXME: hack to interfere with the *Configuration setting via commandlines
+                JavaEmitter jemit = (JavaEmitter) emit;
+                if (null != jemit.getConfig()) {
+                    jemit.getConfig().setOutputRootDir(outputRootDir);
+                }
+            }
+        }
+
+        // Provide MachineDescriptions to emitter
+        MachineDescription md32 = new MachineDescription32Bit();
+        MachineDescription md64 = new MachineDescription64Bit();
+        emit.setMachineDescription(md32, md64);
+
+        // Repackage the enum and #define statements from the parser into a common format
+        // so that SymbolFilters can operate upon both identically
+        constants = new ArrayList<ConstantDefinition>();
+        for (EnumType enumeration : snapshot.getEnums()) {
+            String enumName = enumeration.getName();
+            if (enumName.equals("<anonymous>")) {
+                enumName = null;
+            }
+            // iterate over all values in the enumeration
+            for (int i = 0; i < enumeration.getNumEnumerates(); ++i) {
+                String enumElementName = enumeration.getEnumName(i);
+                String value = String.valueOf(enumeration.getEnumValue(i));
+                constants.add(new ConstantDefinition(enumElementName, value, true, enumName));
+            }
+        }
+        for (Define def : snapshot.getDefines()) {
+            constants.add(new ConstantDefinition(def.getName(), def.getValue(), def.getConstantValue(), false, null));
+        }
+
+        functions = snapshot.getFunctions();
+
+        // begin emission of glue code
+        emit.beginEmission(this);
+
+        emit.beginDefines();
+        Set<String> emittedDefines = new HashSet<String>(100);
+        // emit java equivalent of enum { ... } statements
+        for (ConstantDefinition def : constants) {
+            if (!emittedDefines.contains(def.getName())) {
+                emittedDefines.add(def.getName());
+                String comment = null;
+                Set<String> aliases = def.getAliases();
+                if (aliases != null) {
+                    comment = "Alias for: <code>";
+                    for (String alias : aliases) {
+                        comment += " " + alias;
+                    }
+                    comment += "</code>";
+                }
+                if (def.getEnumName() != null) {
+                    String enumName = "Defined as part of enum type \"" + def.getEnumName() + "\"";
+                    if (comment == null) {
+                        comment = enumName;
+                    } else {
+                        comment += "<br>\n" + enumName;
+                    }
+                }
+                emit.emitDefine(def, comment);
+            }
+        }
+        emit.endDefines();
+
+        // Iterate through the functions finding structs that are referenced in
+        // the function signatures; these will be remembered for later emission
+        ReferencedStructs referencedStructs = new ReferencedStructs();
+        for (FunctionSymbol sym : functions) {
+            // FIXME: this doesn't take into account the possibility that some of
+            // the functions we send to emitMethodBindings() might not actually be
+            // emitted (e.g., if an Ignore directive in the JavaEmitter causes it
+            // to be skipped).
+            sym.getType().visit(referencedStructs);
+        }
+
+        // Normally only referenced types will be emitted. The user can force a
+        // type to be emitted via a .cfg file directive. Those directives are
+        // processed here.
+        for (String name : forcedStructNames) {
+            Type type = td.get(name);
+            if (type == null) {
+                err.println("WARNING: during forced struct emission: struct \"" + name + "\" not found");
+            } else if (!type.isCompound()) {
+                err.println("WARNING: during forced struct emission: type \"" + name + "\" was not a struct");
+            } else {
+                type.visit(referencedStructs);
+            }
+        }
+
+        // Lay out structs
+        emit.beginStructLayout();
+        for (Iterator<Type> iter = referencedStructs.results(); iter.hasNext();) {
+            Type t = iter.next();
+            if (t.isCompound()) {
+                emit.layoutStruct(t.asCompound());
+            } else if (t.isPointer()) {
+                PointerType p = t.asPointer();
+                CompoundType c = p.getTargetType().asCompound();
+                emit.layoutStruct(c);
+            }
+        }
+        emit.endStructLayout();
+
+        // Emit structs
+        emit.beginStructs(td, sd, canonMap);
+        for (Iterator<Type> iter = referencedStructs.results(); iter.hasNext();) {
+            Type t = iter.next();
+            if (t.isCompound()) {
+                emit.emitStruct(t.asCompound(), null);
+            } else if (t.isPointer()) {
+                PointerType p = t.asPointer();
+                CompoundType c = p.getTargetType().asCompound();
+                assert p.hasTypedefedName() && c.getName() == null : "ReferencedStructs incorrectly recorded pointer type " + p;
+                emit.emitStruct(c, p.getName());
+            }
+        }
+        emit.endStructs();
+
+        // emit java and C code to interface with the native functions
+        emit.beginFunctions(td, sd, canonMap);
+        emit.emitFunctions(functions);
+        emit.endFunctions();
+
+        // end emission of glue code
+        emit.endEmission();
+
+        if (null != manifest) {
+            manifest.addInputs(Collections.singletonList(filename));
+            manifest.addInputs(preprocessor.getIncludedFiles());
+            manifest.addInputs(configuration.getCfgFiles());
+            if (emit instanceof JavaEmitter) {
+                JavaEmitter jemit = (JavaEmitter) emit;
+                manifest.addInputs(jemit.getInputFiles());
+                manifest.addOutputs(jemit.getOutputFiles());
+            }
+            manifest.write();
+        }
+    }
+
+    /** Lexes and parses the preprocessed input and closes the stream. */
+    @SuppressWarnings("unchecked")
+    private HeaderSnapshot parse(InputStream inStream, boolean debug) throws RecognitionException, TokenStreamException, IOException {
+        DataInputStream dis = new DataInputStream(inStream);
+        try {
             GnuCLexer lexer = new GnuCLexer(dis);
             lexer.setTokenObjectClass(CToken.class.getName());
             lexer.initialize();
@@ -143,168 +560,11 @@ public class GlueGen implements GlueEmitterControls {
             headerParser.setASTNodeClass(TNode.class.getName());
             // walk that tree
             headerParser.translationUnit(parser.getAST());
-            dis.close();
-            inStream.close();
-
-            /**
-            // For debugging: Dump type dictionary and struct dictionary to System.err
-            if(debug) {
-                td.dumpDictionary(err, "All Types");
-                sd.dumpDictionary(err, "All Structs");
-            } */
-
-            // At this point we have all of the pieces we need in order to
-            // generate glue code: the #defines to constants, the set of
-            // typedefs, and the set of functions.
-
-            GlueEmitter emit = null;
-            if (emitterClass == null) {
-                emit = new JavaEmitter();
-            } else {
-                try {
-                    emit = (GlueEmitter) emitterClass.newInstance();
-                } catch (Exception e) {
-                    throw new RuntimeException("Exception occurred while instantiating emitter class.", e);
-                }
-            }
-
-            for (String config : cfgFiles) {
-                emit.readConfigurationFile(config);
-            }
 
-            if (null != outputRootDir && outputRootDir.trim().length() > 0) {
-                if (emit instanceof JavaEmitter) {
-                    // FIXME: hack to interfere with the *Configuration setting via commandlines
-                    JavaEmitter jemit = (JavaEmitter) emit;
-                    if (null != jemit.getConfig()) {
-                        jemit.getConfig().setOutputRootDir(outputRootDir);
-                    }
-                }
-            }
-
-            // Provide MachineDescriptions to emitter
-            MachineDescription md32 = new MachineDescription32Bit();
-            MachineDescription md64 = new MachineDescription64Bit();
-            emit.setMachineDescription(md32, md64);
-
-            // Repackage the enum and #define statements from the parser into a common format
-            // so that SymbolFilters can operate upon both identically
-            constants = new ArrayList<ConstantDefinition>();
-            for (Object elem : headerParser.getEnums()) {
-                EnumType enumeration = (EnumType) elem;
-                String enumName = enumeration.getName();
-                if (enumName.equals("<anonymous>")) {
-                    enumName = null;
-                }
-                // iterate over all values in the enumeration
-                for (int i = 0; i < enumeration.getNumEnumerates(); ++i) {
-                    String enumElementName = enumeration.getEnumName(i);
-                    String value = String.valueOf(enumeration.getEnumValue(i));
-                    constants.add(new ConstantDefinition(enumElementName, value, true, enumName));
-                }
-            }
-            for (Object elem : lexer.getDefines()) {
-                Define def = (Define) elem;
-                constants.add(new ConstantDefinition(def.getName(), def.getValue(), false, null));
-            }
-
-            functions = headerParser.getParsedFunctions();
-
-            // begin emission of glue code
-            emit.beginEmission(this);
-
-            emit.beginDefines();
-            Set<String> emittedDefines = new HashSet<String>(100);
-            // emit java equivalent of enum { ... } statements
-            for (ConstantDefinition def : constants) {
-                if (!emittedDefines.contains(def.getName())) {
-                    emittedDefines.add(def.getName());
-                    String comment = null;
-                    Set<String> aliases = def.getAliases();
-                    if (aliases != null) {
-                        comment = "Alias for: <code>";
-                        for (String alias : aliases) {
-                            comment += " " + alias;
-                        }
-                        comment += "</code>";
-                    }
-                    if (def.getEnumName() != null) {
-                        String enumName = "Defined as part of enum type \"" + def.getEnumName() + "\"";
-                        if (comment == null) {
-                            comment = enumName;
-                        } else {
-                            comment += "<br>\n" + enumName;
-                        }
-                    }
-                    emit.emitDefine(def, comment);
-                }
-            }
-            emit.endDefines();
-
-            // Iterate through the functions finding structs that are referenced in
-            // the function signatures; these will be remembered for later emission
-            ReferencedStructs referencedStructs = new ReferencedStructs();
-            for (FunctionSymbol sym : functions) {
-                // FIXME: this doesn't take into account the possibility that some of
-                // the functions we send to emitMethodBindings() might not actually be
-                // emitted (e.g., if an Ignore directive in the JavaEmitter causes it
-                // to be skipped).
-                sym.getType().visit(referencedStructs);
-            }
-
-            // Normally only referenced types will be emitted. The user can force a
-            // type to be emitted via a .cfg file directive. Those directives are
-            // processed here.
-            for (String name : forcedStructNames) {
-                Type type = td.get(name);
-                if (type == null) {
-                    err.println("WARNING: during forced struct emission: struct \"" + name + "\" not found");
-                } else if (!type.isCompound()) {
-                    err.println("WARNING: during forced struct emission: type \"" + name + "\" was not a struct");
-                } else {
-                    type.visit(referencedStructs);
-                }
-            }
-
-            // Lay out structs
-            emit.beginStructLayout();
-            for (Iterator<Type> iter = referencedStructs.results(); iter.hasNext();) {
-                Type t = iter.next();
-                if (t.isCompound()) {
-                    emit.layoutStruct(t.asCompound());
-                } else if (t.isPointer()) {
-                    PointerType p = t.asPointer();
-                    CompoundType c = p.getTargetType().asCompound();
-                    emit.layoutStruct(c);
-                }
-            }
-            emit.endStructLayout();
-
-            // Emit structs
-            emit.beginStructs(td, sd, headerParser.getCanonMap());
-            for (Iterator<Type> iter = referencedStructs.results(); iter.hasNext();) {
-                Type t = iter.next();
-                if (t.isCompound()) {
-                    emit.emitStruct(t.asCompound(), null);
-                } else if (t.isPointer()) {
-                    PointerType p = t.asPointer();
-                    CompoundType c = p.getTargetType().asCompound();
-                    assert p.hasTypedefedName() && c.getName() == null : "ReferencedStructs incorrectly recorded pointer type " + p;
-                    emit.emitStruct(c, p.getName());
-                }
-            }
-            emit.endStructs();
-
-            // emit java and C code to interface with the native functions
-            emit.beginFunctions(td, sd, headerParser.getCanonMap());
-            emit.emitFunctions(functions);
-            emit.endFunctions();
-
-            // end emission of glue code
-            emit.endEmission();
-
-        } catch (Exception e) {
-            throw new RuntimeException("Exception occurred while generating glue code.", e);
+            return new HeaderSnapshot(td, sd, headerParser.getCanonMap(), headerParser.getEnums(),
+                                      headerParser.getParsedFunctions(), lexer.getDefines());
+        } finally {
+            dis.close();
         }
     }
 
@@ -322,6 +582,10 @@ public class GlueGen implements GlueEmitterControls {
         List<String> cfgFiles = new ArrayList<String>();
         boolean debug = false;
         boolean copyCPPOutput2Stderr = false;
+        String manifestFile = null;
+        String headerCacheDir = null;
+        boolean parallel = false;
+        List<EmitterConfiguration> configurations = new ArrayList<EmitterConfiguration>();
 
         List<String> includePaths = new ArrayList<String>();
         for (int i = 0; i < args.length; i++) {
@@ -336,6 +600,18 @@ public class GlueGen implements GlueEmitterControls {
                     emitterFQN = arg.substring(2);
                 } else if (arg.startsWith("-C")) {
                     cfgFiles.add(arg.substring(2));
+                } else if (arg.startsWith("-M")) {
+                    manifestFile = arg.substring(2);
+                } else if (arg.startsWith("-H")) {
+                    headerCacheDir = arg.substring(2);
+                } else if (arg.equals("--config")) {
+                    addConfiguration(configurations, emitterFQN, cfgFiles, outputRootDir, manifestFile, false);
+                    emitterFQN = null;
+                    cfgFiles = new ArrayList<String>();
+                    outputRootDir = null;
+                    manifestFile = null;
+                } else if (arg.equals("--parallel")) {
+                    parallel=true;
                 } else if (arg.equals("--debug")) {
                     debug=true;
                 } else if (arg.equals("--dumpCPP")) {
@@ -362,20 +638,39 @@ public class GlueGen implements GlueEmitterControls {
             }
         }
 
+        addConfiguration(configurations, emitterFQN, cfgFiles, outputRootDir, manifestFile, configurations.isEmpty());
+
+        GlueGen glueGen = new GlueGen();
+        glueGen.setHeaderCacheDir(headerCacheDir);
+        glueGen.run(reader, filename, includePaths, configurations, parallel, debug, copyCPPOutput2Stderr);
+    }
+
+    /**
+     * Adds the configuration given by the command line options, if any were given or if <code>force</code> is true.
+     * A manifest file without any emitter or configuration file is rejected, since it would be dropped otherwise.
+     */
+    private static void addConfiguration(List<EmitterConfiguration> configurations, String emitterFQN, List<String> cfgFiles,
+                                         String outputRootDir, String manifestFile, boolean force) {
+        if (!force && null == emitterFQN && cfgFiles.isEmpty()) {
+            if (null != manifestFile) {
+                throw new RuntimeException("manifest file " + manifestFile + " given without emitter or configuration file, " +
+                                           "specify it within the --config group it applies to");
+            }
+            return;
+        }
         try {
             Class<?> emitterClass = emitterFQN == null ? null : Class.forName(emitterFQN);
-            new GlueGen().run(reader, filename, emitterClass, includePaths, cfgFiles, outputRootDir, debug, copyCPPOutput2Stderr);
+            configurations.add(new EmitterConfiguration(emitterClass, cfgFiles, outputRootDir, manifestFile));
         } catch (ClassNotFoundException ex) {
             throw new RuntimeException("specified emitter class was not in the classpath", ex);
         }
-
     }
 
     //----------------------------------------------------------------------
     // Internals only below this point
     //
     private static void usage() {
-        out.println("Usage: java GlueGen [-I...] [-Eemitter_class_name] [-Ccfg_file_name...] <filename | ->");
+        out.println("Usage: java GlueGen [-I...] [-Eemitter_class_name] [-Ccfg_file_name...] [-Mmanifest_file] [-Hheader_cache_dir] [--config ...] <filename | ->");
         out.println();
         out.println("Runs C header parser on input file or standard input, first");
         out.println("passing input through minimal pseudo-C-preprocessor. Use -I");
@@ -387,6 +682,13 @@ public class GlueGen implements GlueEmitterControls {
         out.println("declarations) to standard output. Emitter-specific configuration");
         out.println("file or files can be specified with -C option; e.g,");
         out.println("-Cjava-emitter.cfg.");
+        out.println("Use -M to specify a manifest file recording the inputs and outputs,");
+        out.println("allowing to skip the generation if no input changed; e.g., -Mgluegen.manifest.");
+        out.println("Use -H to specify a directory caching the parsed headers,");
+        out.println("allowing to skip the parsing of an unchanged preprocessed input; e.g., -Hbuild/gluegen-cache.");
+        out.println("Use --config to start another emitter configuration, i.e. -E, -C, -O and -M");
+        out.println("options, run on the same parsed input; e.g., --config -Ecom.jogamp.gluegen.DebugEmitter.");
+        out.println("  --parallel runs the emitter configurations in parallel");
         out.println("  --debug enables debug mode");
         out.println("  --dumpCPP directs PCPP to dump all output to stderr as well");
         exit(1);
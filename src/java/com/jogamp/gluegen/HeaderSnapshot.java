@@ -0,0 +1,241 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jogamp.gluegen.cgram.Define;
+import com.jogamp.gluegen.cgram.types.EnumType;
+import com.jogamp.gluegen.cgram.types.FunctionSymbol;
+import com.jogamp.gluegen.cgram.types.Type;
+import com.jogamp.gluegen.cgram.types.TypeDictionary;
+
+/**
+ * The result of parsing a header, i.e. the typedef and struct dictionaries,
+ * the canonicalization map, the enums, the functions and the #defines,
+ * which can be stored in and loaded from a cache directory.
+ * <p>
+ * A snapshot is keyed by the MD5 hash of the preprocessed input, the include paths
+ * and the jar file or class directory GlueGen was loaded from,
+ * hence a later run of the same header can go straight to the emission.
+ * </p>
+ * <p>
+ * All parts are serialized as one object graph, preserving the identity of shared types.
+ * The same serialized form provides independent copies for several emitters
+ * running on one parsed header, see {@link #toByteArray()}.
+ * </p>
+ */
+final class HeaderSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final String SUFFIX = ".hdrcache";
+
+    private final TypeDictionary typedefDictionary;
+    private final TypeDictionary structDictionary;
+    // The canonicalization map is stored as two lists, since the hash codes of the
+    // types are not valid before their object graph is fully deserialized.
+    private final ArrayList<Type> canonKeys;
+    private final ArrayList<Type> canonValues;
+    private final ArrayList<EnumType> enums;
+    private final ArrayList<FunctionSymbol> functions;
+    private final ArrayList<Define> defines;
+    private transient Map<Type, Type> canonMap;
+
+    HeaderSnapshot(TypeDictionary typedefDictionary, TypeDictionary structDictionary, Map<Type, Type> canonMap,
+                   List<EnumType> enums, List<FunctionSymbol> functions, List<Define> defines) {
+        this.typedefDictionary = typedefDictionary;
+        this.structDictionary = structDictionary;
+        this.canonMap = canonMap;
+        this.canonKeys = new ArrayList<Type>(canonMap.keySet());
+        this.canonValues = new ArrayList<Type>(canonMap.size());
+        for (Type key : canonKeys) {
+            canonValues.add(canonMap.get(key));
+        }
+        this.enums = new ArrayList<EnumType>(enums);
+        this.functions = new ArrayList<FunctionSymbol>(functions);
+        this.defines = new ArrayList<Define>(defines);
+    }
+
+    TypeDictionary getTypedefDictionary() {
+        return typedefDictionary;
+    }
+
+    TypeDictionary getStructDictionary() {
+        return structDictionary;
+    }
+
+    Map<Type, Type> getCanonMap() {
+        if (null == canonMap) {
+            canonMap = new HashMap<Type, Type>();
+            for (int i = 0; i < canonKeys.size(); i++) {
+                canonMap.put(canonKeys.get(i), canonValues.get(i));
+            }
+        }
+        return canonMap;
+    }
+
+    List<EnumType> getEnums() {
+        return enums;
+    }
+
+    List<FunctionSymbol> getFunctions() {
+        return functions;
+    }
+
+    List<Define> getDefines() {
+        return defines;
+    }
+
+    /** Returns a new MD5 digest, to be updated with the preprocessed input. */
+    static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Updates the digest with the content of the given file. */
+    static void update(MessageDigest md, File f) throws IOException {
+        FileInputStream in = new FileInputStream(f);
+        try {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                md.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the cache file of the snapshot for the preprocessed input hashed by the given digest.
+     * The digest is completed by this call.
+     */
+    static File getCacheFile(String cacheDir, MessageDigest preprocessed, List<String> includePaths) {
+        for (String path : includePaths) {
+            preprocessed.update(path.getBytes());
+            preprocessed.update((byte) 0);
+        }
+        preprocessed.update(GenerationManifest.codeSourceId(GlueGen.class).getBytes());
+        return new File(cacheDir, GenerationManifest.toHex(preprocessed.digest()) + SUFFIX);
+    }
+
+    /**
+     * Loads the snapshot from the given cache file.
+     * Returns null if it does not exist or cannot be read, i.e. the input must be parsed.
+     */
+    static HeaderSnapshot load(File f) {
+        if (!f.isFile()) {
+            return null;
+        }
+        try {
+            return readFrom(new BufferedInputStream(new FileInputStream(f), 1 << 16));
+        } catch (Exception e) {
+            System.err.println("WARNING: could not read header snapshot " + f + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores this snapshot to the given cache file.
+     * The snapshot is written to a temporary file first and renamed,
+     * hence concurrent runs never read a partially written snapshot.
+     */
+    void store(File f) throws IOException {
+        File dir = f.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("could not create directory " + dir);
+        }
+        File tmp = File.createTempFile(f.getName(), ".tmp", dir);
+        boolean ok = false;
+        try {
+            writeTo(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+            f.delete();
+            ok = tmp.renameTo(f);
+        } finally {
+            if (!ok) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the serialized form of this snapshot, see {@link #fromByteArray(byte[])}.
+     * Since the emission adds to the canonicalization map and lays out the structs,
+     * emitters running concurrently on one parsed header each use their own copy.
+     */
+    byte[] toByteArray() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+        writeTo(out);
+        return out.toByteArray();
+    }
+
+    /** Returns a new copy of the snapshot serialized by {@link #toByteArray()}. */
+    static HeaderSnapshot fromByteArray(byte[] serialized) throws IOException, ClassNotFoundException {
+        return readFrom(new ByteArrayInputStream(serialized));
+    }
+
+    private void writeTo(OutputStream os) throws IOException {
+        ObjectOutputStream out = new ObjectOutputStream(os);
+        try {
+            out.writeObject(this);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static HeaderSnapshot readFrom(InputStream is) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(is);
+        try {
+            return (HeaderSnapshot) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer rendering a generated file into memory,
+ * which replaces the file on {@link #close()} only if its content changed.
+ * <p>
+ * The {@link CodeGenUtils#emitAutogeneratedWarning(java.io.PrintWriter, Object) autogenerated warning},
+ * carrying the time of generation, is not considered a change.
+ * Hence regenerating unchanged bindings leaves the files and their modification time untouched,
+ * avoiding recompilation of the Java and native code.
+ * </p>
+ */
+public class IncrementalFileWriter extends Writer {
+
+    private final File file;
+    private StringBuilder buffer = new StringBuilder(1 << 14);
+    private boolean written;
+
+    public IncrementalFileWriter(File file) {
+        this.file = file;
+    }
+
+    /** Returns true if the file has been written on {@link #close()}, i.e. its content changed. */
+    public boolean isWritten() {
+        return written;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        buffer.append(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureOpen();
+        buffer.append(str, off, off + len);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        ensureOpen();
+        buffer.append((char) c);
+    }
+
+    @Override
+    public void flush() throws IOException {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (null == buffer) {
+            return;
+        }
+        String content = buffer.toString();
+        buffer = null;
+        if (!file.exists() || !withoutWarning(content).equals(withoutWarning(readFile(file)))) {
+            Writer w = new BufferedWriter(new FileWriter(file));
+            try {
+                w.write(content);
+            } finally {
+                w.close();
+            }
+            written = true;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (null == buffer) {
+            throw new IOException("Writer closed: " + file);
+        }
+    }
+
+    private static String readFile(File file) throws IOException {
+        StringBuilder sb = new StringBuilder((int) file.length());
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            char[] cbuf = new char[8192];
+            int n;
+            while ((n = reader.read(cbuf)) > 0) {
+                sb.append(cbuf, 0, n);
+            }
+        } finally {
+            reader.close();
+        }
+        return sb.toString();
+    }
+
+    /** Strips a leading autogenerated warning line. */
+    private static String withoutWarning(String content) {
+        if (content.startsWith(CodeGenUtils.AUTOGENERATED_WARNING_PREFIX)) {
+            int eol = content.indexOf('\n');
+            return eol < 0 ? "" : content.substring(eol + 1);
+        }
+        return content;
+    }
+}
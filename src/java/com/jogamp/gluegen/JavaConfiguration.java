@@ -68,6 +68,9 @@ public class JavaConfiguration {
     private String implClassName;
 
     protected static final Logger LOG = Logger.getLogger(JavaConfiguration.class.getPackage().getName());
+
+    /** Default size in bytes of the SmallArrayCopy directive. */
+    public static final int DEFAULT_SMALL_ARRAY_COPY_BYTES = 256;
     
     /**
      * Root directory for the hierarchy of generated java classes. Default is
@@ -99,6 +102,36 @@ public class JavaConfiguration {
      */
     private boolean tagNativeBinding;
 
+    /**
+     * If true, the method bindings are computed and rendered on multiple threads.
+     * The output is identical to the serial emission. Defaults to false.
+     */
+    private boolean parallelEmission;
+
+    /**
+     * If true, the native methods of the implementing class are registered via RegisterNatives
+     * instead of being looked up by their exported mangled symbol names. Defaults to false.
+     */
+    private boolean registerNatives;
+
+    /**
+     * If true and {@link #registerNatives} is enabled, a JNI_OnLoad function
+     * performing the registration is emitted. Defaults to true.
+     */
+    private boolean registerNativesOnLoad = true;
+
+    /**
+     * If true, a profiling implementation of the interface, <code>&lt;ClassName&gt;Profiler</code>,
+     * wrapping the implementing class is emitted. Defaults to false.
+     */
+    private boolean emitProfiler;
+
+    /**
+     * If true, each struct is emitted as one final class choosing its offsets at class initialization,
+     * instead of an abstract base class with a 32- and a 64-bit implementation. Defaults to false.
+     */
+    private boolean singleClassStructs;
+
     /**
      * Style of code emission. Can emit everything into one class
      * (AllStatic), separate interface and implementing classes
@@ -137,16 +170,33 @@ public class JavaConfiguration {
      */
     private Map<String, List<Integer>> argumentsAreString = new HashMap<String, List<Integer>>();
     private Set<String> extendedIntfSymbolsIgnore = new HashSet<String>();
+    /** All files read by this configuration, i.e. configuration files including Include'd ones and parsed Java files. */
+    private Set<String> inputFiles = new LinkedHashSet<String>();
     private Set<String> extendedIntfSymbolsOnly = new HashSet<String>();
     private Set<Pattern> ignores = new HashSet<Pattern>();
     private Map<String, Pattern> ignoreMap = new HashMap<String, Pattern>();
     private Set<Pattern> ignoreNots = new HashSet<Pattern>();
     private Set<Pattern> unignores = new HashSet<Pattern>();
     private Set<Pattern> unimplemented = new HashSet<Pattern>();
+    /** Compiled views and memoized decisions of the above ignore rules, reset on change. */
+    private CompiledPatternSet compiledIgnores;
+    private CompiledPatternSet compiledUnimplemented;
+    private Map<String, Boolean> ignoreInImplCache = new HashMap<String, Boolean>();
+    private Map<String, Boolean> ignoreInInterfaceCache = new HashMap<String, Boolean>();
     private boolean forceNioOnly4All = false;
     private Set<String> nioOnly = new HashSet<String>();
     private boolean forceNioDirectOnly4All = false;
     private Set<String> nioDirectOnly = new HashSet<String>();
+    private boolean forceNioDirectAddress4All = false;
+    private Set<String> nioDirectAddress = new HashSet<String>();
+    private boolean forceDirectStringArguments4All = false;
+    private Set<String> directStringArguments = new HashSet<String>();
+    private int smallArrayCopy4All = 0;
+    private boolean forceReturnValueCache4All = false;
+    private Set<String> returnValueCache = new HashSet<String>();
+    private boolean forceBatched4All = false;
+    private Set<String> batched = new HashSet<String>();
+    private Map<String, Integer> smallArrayCopy = new HashMap<String, Integer>();
     private Set<String> manuallyImplement = new HashSet<String>();
     private Map<String, List<String>> customJavaCode = new HashMap<String, List<String>>();
     private Map<String, List<String>> classJavadoc = new HashMap<String, List<String>>();
@@ -165,6 +215,11 @@ public class JavaConfiguration {
     private Map<String, List<String>> javaPrologues = new HashMap<String, List<String>>();
     private Map<String, List<String>> javaEpilogues = new HashMap<String, List<String>>();
 
+  /** Returns the paths of all files read so far, i.e. configuration files and parsed Java files. */
+  public Set<String> getInputFiles() {
+    return inputFiles;
+  }
+
   /** Reads the configuration file.
       @param filename path to file that should be read
   */
@@ -180,6 +235,7 @@ public class JavaConfiguration {
   */
   protected final void read(String filename, String linePrefix) throws IOException {
     File file = new File(filename);
+    inputFiles.add(file.getPath());
     BufferedReader reader = null;
     try {
       reader = new BufferedReader(new FileReader(file));
@@ -302,6 +358,31 @@ public class JavaConfiguration {
         return tagNativeBinding;
     }
 
+    /** Returns whether the method bindings shall be computed and rendered on multiple threads. */
+    public boolean parallelEmission() {
+        return parallelEmission;
+    }
+
+    /** Returns whether the native methods shall be registered via RegisterNatives instead of exported symbols. */
+    public boolean registerNatives() {
+        return registerNatives;
+    }
+
+    /** Returns whether a JNI_OnLoad function shall be emitted performing the {@link #registerNatives()} registration. */
+    public boolean registerNativesOnLoad() {
+        return registerNativesOnLoad;
+    }
+
+    /** Returns whether the profiling implementation <code>&lt;ClassName&gt;Profiler</code> of the interface shall be emitted. */
+    public boolean emitProfiler() {
+        return emitProfiler;
+    }
+
+    /** Returns whether each struct shall be emitted as one final class instead of a 32- and 64-bit class hierarchy. */
+    public boolean singleClassStructs() {
+        return singleClassStructs;
+    }
+
     /** Returns the code emission style (constants in JavaEmitter) parsed from the configuration file. */
     public EmissionStyle emissionStyle() {
         return emissionStyle;
@@ -515,7 +596,68 @@ public class JavaConfiguration {
       variant, and no array variants, for <code>void*</code> and other
       C primitive pointers. */
   public boolean nioDirectOnly(String functionName) {
-    return forceNioDirectOnly4All || nioDirectOnly.contains(functionName);
+    return forceNioDirectOnly4All || nioDirectOnly.contains(functionName) ||
+           nioDirectAddress(functionName);
+  }
+
+  public boolean isForceNioDirectAddress4All()      { return forceNioDirectAddress4All; }
+
+  public void addNioDirectAddress(String fname ) {
+      nioDirectAddress.add(fname);
+  }
+  /** Returns true if the given function shall pass the native address of its
+      direct java.nio arguments, computed on the Java side, instead of the
+      buffer byte offset. Implies {@link #nioDirectOnly(String)}. */
+  public boolean nioDirectAddress(String functionName) {
+    return forceNioDirectAddress4All || nioDirectAddress.contains(functionName);
+  }
+
+  public boolean isForceDirectStringArguments4All()      { return forceDirectStringArguments4All; }
+
+  public void addDirectStringArguments(String fname ) {
+      directStringArguments.add(fname);
+  }
+  /** Returns true if the given function shall pass its String and String[]
+      arguments as native addresses of null terminated copies in thread local
+      direct scratch memory, encoded on the Java side, instead of jstring
+      objects converted by the C glue code. */
+  public boolean directStringArguments(String functionName) {
+    return forceDirectStringArguments4All || directStringArguments.contains(functionName);
+  }
+
+  public boolean isForceReturnValueCache4All()      { return forceReturnValueCache4All; }
+
+  public void addReturnValueCache(String fname ) {
+      returnValueCache.add(fname);
+  }
+  /** Returns true if the given function shall hand out the same java.nio
+      buffer or struct wrapper object as long as the C function returns the
+      same address and capacity, instead of creating a new one on each call.
+      The returned object is shared by all callers of the function. */
+  public boolean returnValueCache(String functionName) {
+    return forceReturnValueCache4All || returnValueCache.contains(functionName);
+  }
+
+  public boolean isForceBatched4All()      { return forceBatched4All; }
+
+  public void addBatched(String fname ) {
+      batched.add(fname);
+  }
+  /** Returns true if calls of the given function shall also be recordable
+      into the direct command buffer of the generated batch class,
+      replayed in C by a single native call. Only void functions taking
+      primitive and pointer arguments are eligible. */
+  public boolean batched(String functionName) {
+    return forceBatched4All || batched.contains(functionName);
+  }
+
+  /** Returns the maximum size in bytes up to which the C glue code of the
+      given function copies Java arrays, including the arrays backing indirect
+      NIO buffers, via Get/Set&lt;Type&gt;ArrayRegion into a stack buffer
+      instead of pinning them via GetPrimitiveArrayCritical, or 0 if disabled. */
+  public int smallArrayCopy(String functionName) {
+    Integer bytes = smallArrayCopy.get(functionName);
+    return null != bytes ? bytes.intValue() : smallArrayCopy4All;
   }
 
   /** Returns true if the glue code for the given function will be
@@ -662,6 +804,15 @@ public class JavaConfiguration {
   /** Returns true if this #define, function, struct, or field within
       a struct should be ignored during glue code generation. */
   public boolean shouldIgnoreInInterface(String symbol) {
+    Boolean res = ignoreInInterfaceCache.get(symbol);
+    if (null == res) {
+      res = Boolean.valueOf(shouldIgnoreInInterface_Int(symbol));
+      ignoreInInterfaceCache.put(symbol, res);
+    }
+    return res.booleanValue();
+  }
+
+  private boolean shouldIgnoreInInterface_Int(String symbol) {
     if(DEBUG_IGNORES) {
         dumpIgnoresOnce();
     }
@@ -681,6 +832,15 @@ public class JavaConfiguration {
   }
 
   private boolean shouldIgnoreInImpl_Int(String symbol) {
+    Boolean res = ignoreInImplCache.get(symbol);
+    if (null == res) {
+      res = Boolean.valueOf(computeIgnoreInImpl(symbol));
+      ignoreInImplCache.put(symbol, res);
+    }
+    return res.booleanValue();
+  }
+
+  private boolean computeIgnoreInImpl(String symbol) {
 
     if(DEBUG_IGNORES) {
       dumpIgnoresOnce();
@@ -696,26 +856,17 @@ public class JavaConfiguration {
       }
     }
         
-    // Simple case; the entire symbol is in the ignore table.
-    if (ignores.contains(symbol)) {
+    // Literal ignores are hashed, all regular expressions are matched at once.
+    if (null == compiledIgnores) {
+      compiledIgnores = new CompiledPatternSet(ignores);
+    }
+    if (compiledIgnores.matches(symbol)) {
       if(DEBUG_IGNORES) {
           System.err.println("Ignore Impl ignores: "+symbol);
       }
       return true;
     }
 
-    // Ok, the slow case. We need to check the entire table, in case the table
-    // contains an regular expression that matches the symbol.
-    for (Pattern regexp : ignores) {
-      Matcher matcher = regexp.matcher(symbol);
-      if (matcher.matches()) {
-        if(DEBUG_IGNORES) {
-            System.err.println("Ignore Impl RegEx: "+symbol);
-        }
-        return true;
-      }
-    }
-
     // Check negated ignore table if not empty
     if (ignoreNots.size() > 0) {
       // Ok, the slow case. We need to check the entire table, in case the table
@@ -758,21 +909,19 @@ public class JavaConfiguration {
       during glue code generation. */
   public boolean isUnimplemented(String symbol) {
 
-    // Simple case; the entire symbol is in the ignore table.
-    if (unimplemented.contains(symbol)) {
-      return true;
-    }
-
-    // Ok, the slow case. We need to check the entire table, in case the table
-    // contains an regular expression that matches the symbol.
-    for (Pattern regexp : unimplemented) {
-      Matcher matcher = regexp.matcher(symbol);
-      if (matcher.matches()) {
-        return true;
-      }
+    if (null == compiledUnimplemented) {
+      compiledUnimplemented = new CompiledPatternSet(unimplemented);
     }
+    return compiledUnimplemented.matches(symbol);
+  }
 
-    return false;
+  /** Drops the compiled ignore rules and all memoized ignore decisions,
+      to be called whenever a rule they depend on changes. */
+  protected void invalidateIgnores() {
+    compiledIgnores = null;
+    compiledUnimplemented = null;
+    ignoreInImplCache.clear();
+    ignoreInInterfaceCache.clear();
   }
 
   /** Returns a replacement name for this type, which should be the
@@ -799,6 +948,7 @@ public class JavaConfiguration {
   /** Programmatically adds a rename directive for the given symbol. */
   public void addJavaSymbolRename(String origName, String newName) {
     javaSymbolRenames.put(origName, newName);
+    invalidateIgnores();
   }
 
   /** Returns true if the emission style is AllStatic. */
@@ -869,6 +1019,16 @@ public class JavaConfiguration {
       nativeOutputUsesJavaHierarchy = Boolean.valueOf(tmp).booleanValue();
     } else if (cmd.equalsIgnoreCase("TagNativeBinding")) {
       tagNativeBinding = readBoolean("TagNativeBinding", tok, filename, lineNo).booleanValue();
+    } else if (cmd.equalsIgnoreCase("ParallelEmission")) {
+      parallelEmission = readBoolean("ParallelEmission", tok, filename, lineNo).booleanValue();
+    } else if (cmd.equalsIgnoreCase("RegisterNatives")) {
+      registerNatives = readBoolean("RegisterNatives", tok, filename, lineNo).booleanValue();
+    } else if (cmd.equalsIgnoreCase("RegisterNativesOnLoad")) {
+      registerNativesOnLoad = readBoolean("RegisterNativesOnLoad", tok, filename, lineNo).booleanValue();
+    } else if (cmd.equalsIgnoreCase("EmitProfiler")) {
+      emitProfiler = readBoolean("EmitProfiler", tok, filename, lineNo).booleanValue();
+    } else if (cmd.equalsIgnoreCase("SingleClassStructs")) {
+      singleClassStructs = readBoolean("SingleClassStructs", tok, filename, lineNo).booleanValue();
     } else if (cmd.equalsIgnoreCase("Style")) {
         try{
           emissionStyle = EmissionStyle.valueOf(readString("Style", tok, filename, lineNo));
@@ -931,6 +1091,36 @@ public class JavaConfiguration {
       } else {
           addNioDirectOnly( funcName );
       }
+    } else if (cmd.equalsIgnoreCase("NioDirectAddress")) {
+      String funcName = readString("NioDirectAddress", tok, filename, lineNo);
+      if(funcName.equals("__ALL__")) {
+          forceNioDirectAddress4All=true;
+      } else {
+          addNioDirectAddress( funcName );
+      }
+    } else if (cmd.equalsIgnoreCase("DirectStringArguments")) {
+      String funcName = readString("DirectStringArguments", tok, filename, lineNo);
+      if(funcName.equals("__ALL__")) {
+          forceDirectStringArguments4All=true;
+      } else {
+          addDirectStringArguments( funcName );
+      }
+    } else if (cmd.equalsIgnoreCase("SmallArrayCopy")) {
+      readSmallArrayCopy(tok, filename, lineNo);
+    } else if (cmd.equalsIgnoreCase("Batched")) {
+      String funcName = readString("Batched", tok, filename, lineNo);
+      if(funcName.equals("__ALL__")) {
+          forceBatched4All=true;
+      } else {
+          addBatched( funcName );
+      }
+    } else if (cmd.equalsIgnoreCase("ReturnValueCache")) {
+      String funcName = readString("ReturnValueCache", tok, filename, lineNo);
+      if(funcName.equals("__ALL__")) {
+          forceReturnValueCache4All=true;
+      } else {
+          addReturnValueCache( funcName );
+      }
     } else if (cmd.equalsIgnoreCase("EmitStruct")) {
       forcedStructs.add(readString("EmitStruct", tok, filename, lineNo));
     } else if (cmd.equalsIgnoreCase("StructPackage")) {
@@ -1088,6 +1278,7 @@ public class JavaConfiguration {
     try {
       javaFile  = new File(tok.nextToken());
       javaReader = new BufferedReader(new FileReader(javaFile));
+      inputFiles.add(javaFile.getPath());
     } catch (FileNotFoundException e) {
       throw new RuntimeException(e);
     }
@@ -1111,6 +1302,7 @@ public class JavaConfiguration {
         extendedIntfSymbolsIgnore.addAll(parser.getParsedEnumNames());
         extendedIntfSymbolsIgnore.addAll(parser.getParsedFunctionNames());
     }
+    invalidateIgnores();
   }
 
   protected void readIgnore(StringTokenizer tok, String filename, int lineNo) {
@@ -1119,6 +1311,7 @@ public class JavaConfiguration {
       Pattern pattern = Pattern.compile(regex);
       ignores.add(pattern);
       ignoreMap.put(regex, pattern);
+      invalidateIgnores();
       //System.err.println("IGNORING " + regex + " / " + ignores.get(regex));
     } catch (NoSuchElementException e) {
       throw new RuntimeException("Error parsing \"Ignore\" command at line " + lineNo +
@@ -1138,6 +1331,7 @@ public class JavaConfiguration {
       if(pattern == null)
         pattern = Pattern.compile(regex);
       unignores.add(pattern);
+      invalidateIgnores();
        
       //System.err.println("UN-IGNORING " + regex + " / " + ignores.get(regex));
     } catch (NoSuchElementException e) {
@@ -1150,6 +1344,7 @@ public class JavaConfiguration {
     try {
       String regex = tok.nextToken();
       ignoreNots.add(Pattern.compile(regex));
+      invalidateIgnores();
       //System.err.println("IGNORING NEGATION OF " + regex + " / " + ignores.get(regex));
     } catch (NoSuchElementException e) {
       throw new RuntimeException("Error parsing \"IgnoreNot\" command at line " + lineNo +
@@ -1161,6 +1356,7 @@ public class JavaConfiguration {
     try {
       String regex = tok.nextToken();
       unimplemented.add(Pattern.compile(regex));
+      invalidateIgnores();
     } catch (NoSuchElementException e) {
       throw new RuntimeException("Error parsing \"Unimplemented\" command at line " + lineNo +
         " in file \"" + filename + "\"", e);
@@ -1172,6 +1368,7 @@ public class JavaConfiguration {
       String containingStruct = tok.nextToken();
       String name = tok.nextToken();
       ignores.add(Pattern.compile(containingStruct + " " + name));
+      invalidateIgnores();
     } catch (NoSuchElementException e) {
       throw new RuntimeException("Error parsing \"IgnoreField\" command at line " + lineNo +
         " in file \"" + filename + "\"", e);
@@ -1436,6 +1633,7 @@ public class JavaConfiguration {
       String fromName = tok.nextToken();
       String toName   = tok.nextToken();
       javaSymbolRenames.put(fromName, toName);
+      invalidateIgnores();
     } catch (NoSuchElementException e) {
       throw new RuntimeException("Error parsing \"RenameJavaSymbol\" command at line " + lineNo +
         " in file \"" + filename + "\": missing expected parameter", e);
@@ -1475,6 +1673,27 @@ public class JavaConfiguration {
     data.add(code);
   }
 
+  protected void readSmallArrayCopy(StringTokenizer tok, String filename, int lineNo) {
+    try {
+      String functionName = tok.nextToken();
+      int bytes = DEFAULT_SMALL_ARRAY_COPY_BYTES;
+      if (tok.hasMoreTokens()) {
+        bytes = Integer.parseInt(tok.nextToken());
+      }
+      if (bytes < 0) {
+        throw new IllegalArgumentException("Negative size " + bytes);
+      }
+      if (functionName.equals("__ALL__")) {
+        smallArrayCopy4All = bytes;
+      } else {
+        smallArrayCopy.put(functionName, Integer.valueOf(bytes));
+      }
+    } catch (Exception e) {
+      throw new RuntimeException("Error parsing \"SmallArrayCopy\" command at line " + lineNo +
+        " in file \"" + filename + "\"", e);
+    }
+  }
+
   protected void readRangeCheck(StringTokenizer tok, String filename, int lineNo, boolean inBytes) {
     try {
       String functionName = tok.nextToken();
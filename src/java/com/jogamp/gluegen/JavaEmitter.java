@@ -44,9 +44,17 @@ import com.jogamp.common.nio.Buffers;
 import com.jogamp.common.os.DynamicLookupHelper;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.text.MessageFormat;
+import java.util.regex.Pattern;
 
 import com.jogamp.gluegen.cgram.types.*;
+import com.jogamp.gluegen.pcpp.ConstantExpression;
 import java.nio.Buffer;
 import java.util.logging.Logger;
 
@@ -89,12 +97,21 @@ public class JavaEmitter implements GlueEmitter {
   private PrintWriter cWriter;
   private MachineDescription machDesc32;
   private MachineDescription machDesc64;
+  // All files read by the configurations, see getInputFiles()
+  private Set<String> inputFiles = new LinkedHashSet<String>();
+  // All files opened for output, see getOutputFiles()
+  private List<String> outputFiles = new ArrayList<String>();
+  // Bindings computed ahead on the executor in ParallelEmission mode, otherwise null
+  private Map<FunctionSymbol, Future<List<MethodBinding>>> prebound;
+  // Bindings recorded by the batch class in emission order, see isBatchable()
+  private List<MethodBinding> batchedBindings;
 
   protected final static Logger LOG = Logger.getLogger(JavaEmitter.class.getPackage().getName());
 
   public void readConfigurationFile(String filename) throws Exception {
     cfg = createConfig();
     cfg.read(filename);
+    inputFiles.addAll(cfg.getInputFiles());
   }
 
   public void setMachineDescription(MachineDescription md32, MachineDescription md64) {
@@ -173,6 +190,8 @@ public class JavaEmitter implements GlueEmitter {
     }
   }
 
+  private static final Pattern INTEGER_LITERAL = Pattern.compile("-?(0[xX][0-9a-fA-F]+|[0-9]+)[uUlL]*");
+
   protected static int getJavaRadix(String name, String value)  {
     // FIXME: need to handle when type specifier is in last char (e.g.,
     // "1.0d or 2759L", because parseXXX() methods don't allow the type
@@ -216,108 +235,21 @@ public class JavaEmitter implements GlueEmitter {
     }
   }
 
+  /**
+   * Returns the value of the given constant expression folded to an Integer, Long, Float or Double,
+   * see {@link ConstantExpression}.
+   */
   protected static Object getJavaValue(String name, String value) {
-
-    // "calculates" the result type of a simple expression
-    // example: (2+3)-(2.0f-3.0) -> Double
-    // example: (1 << 2) -> Integer
-
-    Scanner scanner = new Scanner(value).useDelimiter("[+-/*/></(/)]");
-
-    Object resultType = null;
-
-    while (scanner.hasNext()) {
-
-        String t = scanner.next().trim();
-
-        if(0<t.length()) {
-            Object type = getJavaValue2(name, t);
-
-            //fast path
-            if(type instanceof Double)
-                return type;
-
-            if(resultType != null) {
-
-                if(resultType instanceof Integer) {
-                    if(type instanceof Long || type instanceof Float || type instanceof Double)
-                        resultType = type;
-                }else if(resultType instanceof Long) {
-                    if(type instanceof Float || type instanceof Double)
-                        resultType = type;
-                }else if(resultType instanceof Float) {
-                    if(type instanceof Float)
-                        resultType = type;
-                }
-            }else{
-                resultType = type;
-            }
-
-            //fast path
-            if(resultType instanceof Double)
-                return type;
-        }
-    }
-
-    return resultType;
-  }
-
-  private static Object getJavaValue2(String name, String value) {
-    // FIXME: need to handle when type specifier is in last char (e.g.,
-    // "1.0d or 2759L", because parseXXX() methods don't allow the type
-    // specifier character in the string.
-    //
-    char lastChar = value.charAt(value.length()-1);
-
-    try {
-      // see if it's a long or int
-      int radix;
-      String parseValue;
-      // FIXME: are you allowed to specify hex/octal constants with
-      // negation, e.g. "-0xFF" or "-056"? If so, need to modify the
-      // following "if(..)" checks and parseValue computation
-      if (value.startsWith("0x") || value.startsWith("0X")) {
-        radix = 16;
-        parseValue = value.substring(2);
-      } else if (value.startsWith("0") && value.length() > 1) {
-        // TODO: is "0" the prefix in C to indicate octal???
-        radix = 8;
-        parseValue = value.substring(1);
-      } else {
-        radix = 10;
-        parseValue = value;
-      }
-      if(lastChar == 'u' || lastChar == 'U') {
-          parseValue = parseValue.substring(0, parseValue.length()-1);
-      }
-
-      //System.err.println("parsing " + value + " as long w/ radix " + radix);
-      long longVal = Long.parseLong(parseValue, radix);
-      // if constant is small enough, store it as an int instead of a long
-      if (longVal > Integer.MIN_VALUE && longVal < Integer.MAX_VALUE) {
-        return (int)longVal;
-      }
-      return longVal;
-
-    } catch (NumberFormatException e) {
-      try {
-        // see if it's a double or float
-        double dVal = Double.parseDouble(value);
-        double absVal = Math.abs(dVal);
-        // if constant is small enough, store it as a float instead of a double
-        if (absVal < Float.MIN_VALUE || absVal > Float.MAX_VALUE) {
-            return new Double(dVal);
-        }
-        return new Float((float) dVal);
-      } catch (NumberFormatException e2) {
-        throw new RuntimeException(
-          "Cannot emit define \""+name+"\": value \""+value+
-          "\" cannot be assigned to a int, long, float, or double", e2);
-      }
+    ConstantExpression expr = ConstantExpression.compile(value);
+    Number number = null != expr ? expr.evaluate(null, false) : null;
+    if (null == number) {
+      throw new RuntimeException(
+        "Cannot emit define \""+name+"\": value \""+value+
+        "\" cannot be assigned to a int, long, float, or double");
     }
+    return number;
   }
 
-
   protected static String getJavaType(String name, String value) {
     Object oval = getJavaValue(name, value);
     return getJavaType(name, oval);
@@ -355,7 +287,12 @@ public class JavaEmitter implements GlueEmitter {
       String value = def.getValue();
 
       if (!cfg.shouldIgnoreInInterface(name)) {
-        String type = getJavaType(name, value);
+        // the value is folded by the preprocessor, otherwise here
+        Object number = def.getConstantValue();
+        if (null == number) {
+          number = getJavaValue(name, value);
+        }
+        String type = getJavaType(name, number);
         if (optionalComment != null && optionalComment.length() != 0) {
           javaWriter().println("  /** " + optionalComment + " */");
         }
@@ -363,8 +300,16 @@ public class JavaEmitter implements GlueEmitter {
         if(!value.endsWith(")")) {
             if (type.equals("float") && !value.endsWith("f")) {
                 suffix = "f";
-            }else if(value.endsWith("u") || value.endsWith("U")) {
-                value = value.substring(0, value.length()-1);
+            } else if (INTEGER_LITERAL.matcher(value).matches()) {
+                // C's integer suffixes are not valid in Java, but a long literal needs one
+                int end = value.length();
+                while (Character.toUpperCase(value.charAt(end-1)) == 'U' || Character.toUpperCase(value.charAt(end-1)) == 'L') {
+                    end--;
+                }
+                value = value.substring(0, end);
+                if (type.equals("long")) {
+                    suffix = "L";
+                }
             }
         }
 
@@ -415,27 +360,67 @@ public class JavaEmitter implements GlueEmitter {
             }
         });
 
-    // Bind all the C funcs to Java methods
-    HashSet<MethodBinding> methodBindingSet = new HashSet<MethodBinding>();
-    ArrayList<FunctionEmitter> methodBindingEmitters = new ArrayList<FunctionEmitter>(2*funcsToBind.size());
-    for (FunctionSymbol cFunc : funcsToBind) {
-      // Check to see whether this function should be ignored
-      if (!cfg.shouldIgnoreInImpl(cFunc.getName())) {
-          methodBindingEmitters.addAll(generateMethodBindingEmitters(methodBindingSet, cFunc));
+    ExecutorService executor = cfg.parallelEmission() ? createEmissionExecutor() : null;
+    try {
+      if (null != executor) {
+        prebindFunctions(executor, funcsToBind);
       }
 
-    }
+      // Bind all the C funcs to Java methods
+      batchedBindings = new ArrayList<MethodBinding>();
+      HashSet<MethodBinding> methodBindingSet = new HashSet<MethodBinding>();
+      ArrayList<FunctionEmitter> methodBindingEmitters = new ArrayList<FunctionEmitter>(2*funcsToBind.size());
+      for (FunctionSymbol cFunc : funcsToBind) {
+        // Check to see whether this function should be ignored
+        if (!cfg.shouldIgnoreInImpl(cFunc.getName())) {
+            methodBindingEmitters.addAll(generateMethodBindingEmitters(methodBindingSet, cFunc));
+        }
 
-    // Emit all the methods
-    for (FunctionEmitter emitter : methodBindingEmitters) {
-      try {
-        if (!emitter.isInterface() || !cfg.shouldIgnoreInInterface(emitter.getName())) {
-            emitter.emit();
-            emitter.getDefaultOutput().println(); // put newline after method body
+      }
+
+      // Natives of the implementing class to be registered via RegisterNatives
+      List<CMethodBindingEmitter> registeredNatives = null;
+      if (cfg.registerNatives() && cfg.emitImpl() && emitNativeCode()) {
+        registeredNatives = new ArrayList<CMethodBindingEmitter>();
+        for (FunctionEmitter emitter : methodBindingEmitters) {
+          if (emitter instanceof CMethodBindingEmitter && emitter.getDefaultOutput() == cWriter()) {
+            CMethodBindingEmitter cEmitter = (CMethodBindingEmitter) emitter;
+            cEmitter.setRegisterNatives(true);
+            registeredNatives.add(cEmitter);
+          }
         }
-      } catch (Exception e) {
-        throw new RuntimeException(
-            "Error while emitting binding for \"" + emitter.getName() + "\"", e);
+      }
+
+      // Emit all the methods
+      if (null != executor) {
+        emitFunctionsParallel(executor, methodBindingEmitters);
+      } else {
+        for (FunctionEmitter emitter : methodBindingEmitters) {
+          try {
+            if (!emitter.isInterface() || !cfg.shouldIgnoreInInterface(emitter.getName())) {
+                emitter.emit();
+                emitter.getDefaultOutput().println(); // put newline after method body
+            }
+          } catch (Exception e) {
+            throw new RuntimeException(
+                "Error while emitting binding for \"" + emitter.getName() + "\"", e);
+          }
+        }
+      }
+      if (null != registeredNatives) {
+        emitRegisterNatives(cWriter(), cfg.implPackageName(), cfg.implClassName(), registeredNatives);
+      }
+      if (!batchedBindings.isEmpty()) {
+        emitBatchClass(batchedBindings);
+      }
+      if (cfg.emitProfiler()) {
+        emitProfilerClass(methodBindingEmitters);
+      }
+    } finally {
+      prebound = null;
+      batchedBindings = null;
+      if (null != executor) {
+        executor.shutdownNow();
       }
     }
 
@@ -443,6 +428,144 @@ public class JavaEmitter implements GlueEmitter {
     return funcsToBind.iterator();
   }
 
+  /**
+   * Emits the JNINativeMethod table of the given natives and the function registering them
+   * with the given class, <code>jint RegisterNatives_&lt;mangled class name&gt;(JNIEnv *env)</code>.
+   * If {@link JavaConfiguration#registerNativesOnLoad()}, a JNI_OnLoad calling it is emitted as well,
+   * otherwise the registration function must be called by the JNI_OnLoad of the library.
+   */
+  protected void emitRegisterNatives(PrintWriter cWriter, String packageName, String className, List<CMethodBindingEmitter> natives) {
+    final String fqClassName = packageName + "." + className;
+    final String mangledClassName = fqClassName.replaceAll("_", "_1").replace('.', '_');
+    final String tableName = "_natives_" + mangledClassName;
+    if (!natives.isEmpty()) {
+      cWriter.println("static JNINativeMethod " + tableName + "[] = {");
+      for (int i = 0; i < natives.size(); i++) {
+        CMethodBindingEmitter n = natives.get(i);
+        cWriter.print("  { \"" + n.getJavaMethodName() + "\", \"" + n.getJavaMethodSignature() + "\", (void *) " + n.getNativeFunctionName() + " }");
+        cWriter.println(i < natives.size() - 1 ? "," : "");
+      }
+      cWriter.println("};");
+      cWriter.println();
+    }
+    cWriter.println("/** Registers the native methods of " + fqClassName + ", returns JNI_OK on success. */");
+    cWriter.println("jint RegisterNatives_" + mangledClassName + "(JNIEnv *env) {");
+    if (!natives.isEmpty()) {
+      cWriter.println("  jint res;");
+      cWriter.println("  jclass clazz = (*env)->FindClass(env, \"" + fqClassName.replace('.', '/') + "\");");
+      cWriter.println("  if ( NULL == clazz ) {");
+      cWriter.println("    return JNI_ERR;");
+      cWriter.println("  }");
+      cWriter.println("  res = (*env)->RegisterNatives(env, clazz, " + tableName + ", sizeof(" + tableName + ") / sizeof(JNINativeMethod));");
+      cWriter.println("  (*env)->DeleteLocalRef(env, clazz);");
+      cWriter.println("  return res;");
+    } else {
+      cWriter.println("  return JNI_OK;");
+    }
+    cWriter.println("}");
+    cWriter.println();
+    if (cfg.registerNativesOnLoad()) {
+      cWriter.println("JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved) {");
+      cWriter.println("  JNIEnv *env;");
+      cWriter.println("  if ( JNI_OK != (*vm)->GetEnv(vm, (void **) &env, JNI_VERSION_1_4) ) {");
+      cWriter.println("    return JNI_ERR;");
+      cWriter.println("  }");
+      cWriter.println("  if ( JNI_OK != RegisterNatives_" + mangledClassName + "(env) ) {");
+      cWriter.println("    return JNI_ERR;");
+      cWriter.println("  }");
+      cWriter.println("  return JNI_VERSION_1_4;");
+      cWriter.println("}");
+      cWriter.println();
+    }
+  }
+
+  private ExecutorService createEmissionExecutor() {
+    return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "GlueGen-Emitter");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+  }
+
+  /**
+   * Computes the expanded method bindings of all functions to be bound on the executor.
+   * They are picked up in order by {@link #generateMethodBindingEmitters(Set, FunctionSymbol)},
+   * hence the emitters are still created serially.
+   */
+  private void prebindFunctions(ExecutorService executor, List<FunctionSymbol> funcsToBind) {
+    prebound = new IdentityHashMap<FunctionSymbol, Future<List<MethodBinding>>>(funcsToBind.size());
+    for (final FunctionSymbol cFunc : funcsToBind) {
+      if (!cfg.shouldIgnoreInImpl(cFunc.getName())) {
+        prebound.put(cFunc, executor.submit(new Callable<List<MethodBinding>>() {
+            public List<MethodBinding> call() throws Exception {
+              return expandMethodBinding(bindFunction(cFunc, null, null, machDesc64));
+            }
+          }));
+      }
+    }
+  }
+
+  /** Returns the expanded method bindings of the given function, see {@link #prebindFunctions(ExecutorService, List)}. */
+  private List<MethodBinding> bindAndExpandFunction(FunctionSymbol sym) throws Exception {
+    Future<List<MethodBinding>> bindings = null != prebound ? prebound.get(sym) : null;
+    if (null == bindings) {
+      // Get Java binding for the function
+      MethodBinding mb = bindFunction(sym, null, null, machDesc64);
+
+      // JavaTypes representing C pointers in the initial
+      // MethodBinding have not been lowered yet to concrete types
+      return expandMethodBinding(mb);
+    }
+    try {
+      return bindings.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw (Error) cause;
+    }
+  }
+
+  /**
+   * Renders each emitter into its own buffer on the executor
+   * and appends the buffers to their outputs in the given order,
+   * producing the same output as the serial emission.
+   */
+  private void emitFunctionsParallel(ExecutorService executor, List<FunctionEmitter> emitters) throws InterruptedException {
+    List<Future<String>> rendered = new ArrayList<Future<String>>(emitters.size());
+    for (final FunctionEmitter emitter : emitters) {
+      if (!emitter.isInterface() || !cfg.shouldIgnoreInInterface(emitter.getName())) {
+        rendered.add(executor.submit(new Callable<String>() {
+            public String call() {
+              StringWriter sw = new StringWriter(1024);
+              PrintWriter w = new PrintWriter(sw);
+              emitter.emit(w);
+              w.println(); // put newline after method body
+              w.flush();
+              return sw.toString();
+            }
+          }));
+      } else {
+        rendered.add(null);
+      }
+    }
+    for (int i = 0; i < emitters.size(); i++) {
+      Future<String> method = rendered.get(i);
+      if (null != method) {
+        FunctionEmitter emitter = emitters.get(i);
+        try {
+          emitter.getDefaultOutput().print(method.get());
+        } catch (ExecutionException e) {
+          throw new RuntimeException(
+              "Error while emitting binding for \"" + emitter.getName() + "\"", e.getCause());
+        }
+      }
+    }
+  }
+
   /**
    * Create the object that will read and store configuration information for
    * this JavaEmitter.
@@ -492,6 +615,8 @@ public class JavaEmitter implements GlueEmitter {
     boolean needsBody = (isUnimplemented ||
                          (binding.needsNIOWrappingOrUnwrapping() ||
                           binding.signatureUsesJavaPrimitiveArrays()) ||
+                         needsDirectStringArguments(binding) ||
+                         needsReturnValueCache(binding) ||
                          (prologue != null) ||
                          (epilogue != null));
 
@@ -522,6 +647,9 @@ public class JavaEmitter implements GlueEmitter {
     if (!isUnimplemented && !needsBody && !signatureOnly) {
       emitter.addModifier(JavaMethodBindingEmitter.NATIVE);
     }
+    emitter.setDirectNIOAddress(cfg.nioDirectAddress(binding.getName()));
+    emitter.setDirectStringArguments(cfg.directStringArguments(binding.getName()));
+    emitter.setReturnValueCache(cfg.returnValueCache(binding.getName()));
     emitter.setReturnedArrayLengthExpression(cfg.returnedArrayLength(binding.getName()));
     emitter.setPrologue(prologue);
     emitter.setEpilogue(epilogue);
@@ -553,6 +681,8 @@ public class JavaEmitter implements GlueEmitter {
     if (!cfg.isUnimplemented(binding.getName()) &&
         (binding.needsNIOWrappingOrUnwrapping() ||
          binding.signatureUsesJavaPrimitiveArrays() ||
+         needsDirectStringArguments(binding) ||
+         needsReturnValueCache(binding) ||
          hasPrologueOrEpilogue)) {
       PrintWriter writer = (cfg.allStatic() ? javaWriter() : javaImplWriter());
 
@@ -581,6 +711,9 @@ public class JavaEmitter implements GlueEmitter {
           emitter.addModifier(JavaMethodBindingEmitter.STATIC);
         }
         emitter.addModifier(JavaMethodBindingEmitter.NATIVE);
+        emitter.setDirectNIOAddress(cfg.nioDirectAddress(binding.getName()));
+        emitter.setDirectStringArguments(cfg.directStringArguments(binding.getName()));
+        emitter.setReturnValueCache(cfg.returnValueCache(binding.getName()));
         emitter.setReturnedArrayLengthExpression(cfg.returnedArrayLength(binding.getName()));
         allEmitters.add(emitter);
       }
@@ -603,7 +736,8 @@ public class JavaEmitter implements GlueEmitter {
                                     cfg.implClassName(),
                                     true, // NOTE: we always disambiguate with a suffix now, so this is optional
                                     cfg.allStatic(),
-                                    (binding.needsNIOWrappingOrUnwrapping() || hasPrologueOrEpilogue),
+                                    (binding.needsNIOWrappingOrUnwrapping() || needsDirectStringArguments(binding) ||
+                                     needsReturnValueCache(binding) || hasPrologueOrEpilogue),
                                     !cfg.nioDirectOnly(binding.getName()),
                                     machDesc64);
       prepCEmitter(binding, cEmitter);
@@ -611,6 +745,26 @@ public class JavaEmitter implements GlueEmitter {
     }
   }
 
+  /**
+   * Returns true if the String arguments of the given binding are
+   * marshalled on the Java side, see {@link JavaConfiguration#directStringArguments(String)},
+   * which requires a Java method body and a private native entry point.
+   */
+  protected boolean needsDirectStringArguments(MethodBinding binding) {
+    return binding.signatureUsesStrings() && cfg.directStringArguments(binding.getName());
+  }
+
+  /**
+   * Returns true if the returned java.nio buffer or struct wrapper of the given binding
+   * is cached, see {@link JavaConfiguration#returnValueCache(String)},
+   * which requires a Java method body and a private native entry point.
+   */
+  protected boolean needsReturnValueCache(MethodBinding binding) {
+    final JavaType javaReturnType = binding.getJavaReturnType();
+    return cfg.returnValueCache(binding.getName()) && null == cfg.returnedArrayLength(binding.getName()) &&
+           ( javaReturnType.isNIOBuffer() || javaReturnType.isCompoundTypeWrapper() );
+  }
+
   protected void prepCEmitter(MethodBinding binding, CMethodBindingEmitter cEmitter) 
   {
       // See whether we need an expression to help calculate the
@@ -639,6 +793,10 @@ public class JavaEmitter implements GlueEmitter {
           cEmitter.setReturnValueLengthExpression( new MessageFormat(len) );
         }
       }
+      cEmitter.setDirectNIOAddress(cfg.nioDirectAddress(binding.getName()));
+      cEmitter.setDirectStringArguments(cfg.directStringArguments(binding.getName()));
+      cEmitter.setSmallArrayCopy(cfg.smallArrayCopy(binding.getName()));
+      cEmitter.setReturnValueCache(needsReturnValueCache(binding));
       cEmitter.setTemporaryCVariableDeclarations(cfg.temporaryCVariableDeclarations(binding.getName()));
       cEmitter.setTemporaryCVariableAssignments(cfg.temporaryCVariableAssignments(binding.getName()));
   }
@@ -652,12 +810,7 @@ public class JavaEmitter implements GlueEmitter {
     ArrayList<FunctionEmitter> allEmitters = new ArrayList<FunctionEmitter>();
 
     try {
-      // Get Java binding for the function
-      MethodBinding mb = bindFunction(sym, null, null, machDesc64);
-
-      // JavaTypes representing C pointers in the initial
-      // MethodBinding have not been lowered yet to concrete types
-      List<MethodBinding> bindings = expandMethodBinding(mb);
+      List<MethodBinding> bindings = bindAndExpandFunction(sym);
 
       for (MethodBinding binding : bindings) {
 
@@ -725,6 +878,16 @@ public class JavaEmitter implements GlueEmitter {
         if (cfg.emitImpl()) {
           generatePublicEmitters(binding, allEmitters, false);
           generatePrivateEmitters(binding, allEmitters);
+          if (null != batchedBindings && cfg.batched(binding.getName()) &&
+              !binding.signatureUsesJavaPrimitiveArrays() && emitNativeCode()) {
+            // The array variant is covered by the one taking buffers
+            if (isBatchable(binding)) {
+              batchedBindings.add(binding);
+            } else if (!cfg.isForceBatched4All()) {
+              LOG.warning("Skipping batch emission of \"" + binding.getName() + "\": " +
+                          "only void functions taking primitive and pointer arguments can be batched");
+            }
+          }
         }
       } // end iteration over expanded bindings
     } catch (Exception e) {
@@ -735,6 +898,71 @@ public class JavaEmitter implements GlueEmitter {
   }
 
 
+  /**
+   * Returns true if calls of the given binding can be recorded into the command buffer
+   * of the batch class, see {@link JavaConfiguration#batched(String)}, i.e. it returns void
+   * and all arguments are primitives or pointers passed as direct buffers or struct wrappers.
+   */
+  protected boolean isBatchable(MethodBinding binding) {
+    if (!binding.getJavaReturnType().isVoid() || binding.hasContainingType()) {
+      return false;
+    }
+    for (int i = 0; i < binding.getNumArguments(); i++) {
+      final JavaType type = binding.getJavaArgumentType(i);
+      if (!type.isVoid() && !type.isPrimitive() && !type.isNIOBuffer() && !type.isCompoundTypeWrapper()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Emits the batch class <code>&lt;ClassName&gt;Batch</code> into the implementation package
+   * and its native dispatcher into the C glue code, see {@link BatchClassEmitter}.
+   */
+  protected void emitBatchClass(List<MethodBinding> bindings) throws IOException {
+    final String pkg = cfg.allStatic() ? cfg.packageName() : cfg.implPackageName();
+    final BatchClassEmitter batch = new BatchClassEmitter(cfg, pkg, cfg.className() + "Batch", bindings);
+    final PrintWriter w = openFile(cfg.javaOutputDir() + File.separator + CodeGenUtils.packageAsPath(pkg) +
+                                   File.separator + batch.getClassName() + ".java");
+    try {
+      CodeGenUtils.emitAutogeneratedWarning(w, this);
+      batch.emitJavaClass(w);
+    } finally {
+      closeWriter(w);
+    }
+    batch.emitCDispatcher(cWriter());
+  }
+
+  /**
+   * Emits the profiling implementation <code>&lt;ClassName&gt;Profiler</code> of the interface
+   * into the implementation package, see {@link ProfilerClassEmitter}.
+   */
+  protected void emitProfilerClass(List<FunctionEmitter> methodBindingEmitters) throws Exception {
+    if (!cfg.emitInterface()) {
+      throw new RuntimeException("EmitProfiler requires an emitted interface, i.e. Style InterfaceAndImpl or InterfaceOnly");
+    }
+    List<JavaMethodBindingEmitter> interfaceEmitters = new ArrayList<JavaMethodBindingEmitter>();
+    for (FunctionEmitter emitter : methodBindingEmitters) {
+      if (emitter instanceof JavaMethodBindingEmitter && emitter.isInterface() &&
+          !cfg.shouldIgnoreInInterface(emitter.getName())) {
+        interfaceEmitters.add((JavaMethodBindingEmitter) emitter);
+      }
+    }
+    final String pkg = cfg.implPackageName();
+    final ProfilerClassEmitter profiler = new ProfilerClassEmitter(cfg, pkg, cfg.className() + "Profiler", interfaceEmitters);
+    final PrintWriter w = openFile(cfg.javaOutputDir() + File.separator + CodeGenUtils.packageAsPath(pkg) +
+                                   File.separator + profiler.getClassName() + ".java");
+    try {
+      CodeGenUtils.emitAutogeneratedWarning(w, this);
+      profiler.emitJavaClass(w);
+      emitCustomJavaCode(w, profiler.getClassName());
+      w.println("}");
+    } finally {
+      closeWriter(w);
+    }
+  }
+
   public void endFunctions() throws Exception {
     if (!cfg.structsOnly()) {
         if (cfg.allStatic() || cfg.emitInterface()) {
@@ -761,8 +989,12 @@ public class JavaEmitter implements GlueEmitter {
   }
 
   public void emitStruct(CompoundType structType, String alternateName) throws Exception {
-    // Emit abstract base class delegating to 32-bit or 64-bit implementations
+    // Emit abstract base class delegating to 32-bit or 64-bit implementations,
+    // or the single final class if SingleClassStructs is enabled
     emitStructImpl(structType, alternateName, machDesc32, machDesc64, true, false);
+    if (cfg.singleClassStructs()) {
+      return;
+    }
     // Emit concrete implementing class for each variant
     emitStructImpl(structType, alternateName, machDesc32, machDesc64, false, true);
     emitStructImpl(structType, alternateName, machDesc32, machDesc64, false, false);
@@ -819,6 +1051,11 @@ public class JavaEmitter implements GlueEmitter {
     MachineDescription extMachDesc = md64;
     MachineDescription intMachDesc = null;
 
+    // A single final class contains the accessors of both variants,
+    // its offsets are chosen once at class initialization
+    final boolean singleClass = doBaseClass && cfg.singleClassStructs();
+    final boolean abstractAccessors = doBaseClass && !singleClass;
+
     if (!doBaseClass) {
       if (do32Bit) {
         intMachDesc = md32;
@@ -885,7 +1122,7 @@ public class JavaEmitter implements GlueEmitter {
     for (String doc : javadoc) {
       writer.println(doc);
     }
-    writer.print((doBaseClass ? "public " : "") + (doBaseClass ? "abstract " : "") + "class " + containingTypeName + suffix + " ");
+    writer.print((doBaseClass ? "public " : "") + (doBaseClass ? ( singleClass ? "final " : "abstract " ) : "") + "class " + containingTypeName + suffix + " ");
     if (!doBaseClass) {
       writer.print("extends " + containingTypeName + " ");
     }
@@ -905,9 +1142,16 @@ public class JavaEmitter implements GlueEmitter {
       writer.println("  StructAccessor accessor;");
       writer.println();
     }
+    if (singleClass) {
+      writer.println("  private static final boolean is32Bit = Platform.is32Bit();");
+      emitStructLayoutConstant(writer, "size_", structType.getSize(md32), structType.getSize(md64));
+      writer.println();
+    }
 
     writer.println("  public static int size() {");
-    if (doBaseClass) {
+    if (singleClass) {
+      writer.println("    return size_;");
+    } else if (doBaseClass) {
       writer.println("    if (Platform.is32Bit()) {");
       writer.println("      return " + containingTypeName + "32" + ".size();");
       writer.println("    } else {");
@@ -924,11 +1168,15 @@ public class JavaEmitter implements GlueEmitter {
       writer.println("  }");
       writer.println();
       writer.println("  public static " + containingTypeName + " create(java.nio.ByteBuffer buf) {");
-      writer.println("    if (Platform.is32Bit()) {");
-      writer.println("      return new " + containingTypeName + "32(buf);");
-      writer.println("    } else {");
-      writer.println("      return new " + containingTypeName + "64(buf);");
-      writer.println("    }");
+      if (singleClass) {
+        writer.println("    return new " + containingTypeName + "(buf);");
+      } else {
+        writer.println("    if (Platform.is32Bit()) {");
+        writer.println("      return new " + containingTypeName + "32(buf);");
+        writer.println("    } else {");
+        writer.println("      return new " + containingTypeName + "64(buf);");
+        writer.println("    }");
+      }
       writer.println("  }");
       writer.println();
       writer.println("  " + containingTypeName + "(java.nio.ByteBuffer buf) {");
@@ -943,6 +1191,7 @@ public class JavaEmitter implements GlueEmitter {
       writer.println("    super(buf);");
       writer.println("  }");
       writer.println();
+      emitStructLayout(writer, structType, intMachDesc);
     }
     for (int i = 0; i < structType.getNumFields(); i++) {
 
@@ -982,6 +1231,7 @@ public class JavaEmitter implements GlueEmitter {
                                              false,
                                              cfg);
               emitter.addModifier(JavaMethodBindingEmitter.PUBLIC);
+              emitter.setReturnValueCache(needsReturnValueCache(binding));
               emitter.emit();
 
               // Emit private native Java entry point for calling this function pointer
@@ -1002,6 +1252,7 @@ public class JavaEmitter implements GlueEmitter {
                                              cfg);
               emitter.addModifier(JavaMethodBindingEmitter.PRIVATE);
               emitter.addModifier(JavaMethodBindingEmitter.NATIVE);
+              emitter.setReturnValueCache(needsReturnValueCache(binding));
               emitter.emit();
 
               // Emit (private) C entry point for calling this function pointer
@@ -1032,13 +1283,21 @@ public class JavaEmitter implements GlueEmitter {
           }
 
           writer.println();
-          generateGetterSignature(writer, doBaseClass, fieldType.getName(), capitalizeString(fieldName));
-          if (doBaseClass) {
+          String offset = null;
+          String size = null;
+          if (singleClass) {
+            offset = emitStructLayoutConstant(writer, fieldName + "_offset", field.getOffset(md32), field.getOffset(md64));
+            size = emitStructLayoutConstant(writer, fieldName + "_size", fieldType.getSize(md32), fieldType.getSize(md64));
+          } else if (!doBaseClass) {
+            offset = String.valueOf(field.getOffset(intMachDesc));
+            size = String.valueOf(fieldType.getSize(intMachDesc));
+          }
+          generateGetterSignature(writer, abstractAccessors, fieldType.getName(), capitalizeString(fieldName));
+          if (abstractAccessors) {
             writer.println(";");
           } else {
             writer.println(" {");
-            writer.println("    return " + fieldType.getName() + ".create(accessor.slice(" +
-                           field.getOffset(intMachDesc) + ", " + fieldType.getSize(intMachDesc) + "));");
+            writer.println("    return " + fieldType.getName() + ".create(accessor.slice(" + offset + ", " + size + "));");
             writer.println("  }");
           }
 
@@ -1052,15 +1311,18 @@ public class JavaEmitter implements GlueEmitter {
             String paramType = typeToJavaType(baseElementType, false, extMachDesc).getName();
             String capitalized = capitalizeString(fieldName);
 
-            int slot = -1;
-            if(!doBaseClass) {
-              slot = slot(fieldType, (int) field.getOffset(intMachDesc), intMachDesc);
-            }
-
             // Setter
             writer.println();
-            generateSetterSignature(writer, doBaseClass, containingTypeName, capitalized, paramType+"[]");
-            if (doBaseClass) {
+            String slot = null;
+            if (singleClass) {
+              slot = emitStructLayoutConstant(writer, fieldName + "_slot",
+                                              slot(fieldType, (int) field.getOffset(md32), md32),
+                                              slot(fieldType, (int) field.getOffset(md64), md64));
+            } else if (!doBaseClass) {
+              slot = String.valueOf(slot(fieldType, (int) field.getOffset(intMachDesc), intMachDesc));
+            }
+            generateSetterSignature(writer, abstractAccessors, containingTypeName, capitalized, paramType+"[]");
+            if (abstractAccessors) {
               writer.println(";");
             } else {
               writer.println(" {");
@@ -1071,8 +1333,8 @@ public class JavaEmitter implements GlueEmitter {
             }
             writer.println();
             // Getter
-            generateGetterSignature(writer, doBaseClass, paramType+"[]", capitalized);
-            if (doBaseClass) {
+            generateGetterSignature(writer, abstractAccessors, paramType+"[]", capitalized);
+            if (abstractAccessors) {
               writer.println(";");
             } else {
               writer.println(" {");
@@ -1084,10 +1346,15 @@ public class JavaEmitter implements GlueEmitter {
         } else {
           JavaType internalJavaType = null;
           JavaType externalJavaType = null;
+          // internal type of the 32-bit variant of a single class
+          JavaType internalJavaType32 = null;
 
           try {
             externalJavaType = typeToJavaType(fieldType, false, extMachDesc);
-            if (!doBaseClass) {
+            if (singleClass) {
+              internalJavaType = typeToJavaType(fieldType, false, md64);
+              internalJavaType32 = typeToJavaType(fieldType, false, md32);
+            } else if (!doBaseClass) {
               internalJavaType = typeToJavaType(fieldType, false, intMachDesc);
             }
           } catch (Exception e) {
@@ -1099,48 +1366,83 @@ public class JavaEmitter implements GlueEmitter {
             // Primitive type
             String externalJavaTypeName = null;
             String internalJavaTypeName = null;
+            String internalJavaTypeName32 = null;
             externalJavaTypeName = externalJavaType.getName();
-            if (!doBaseClass) {
+            if (!abstractAccessors) {
               internalJavaTypeName = internalJavaType.getName();
             }
+            if (singleClass) {
+              internalJavaTypeName32 = internalJavaType32.getName();
+            }
             if (isOpaque(fieldType)) {
               externalJavaTypeName = compatiblePrimitiveJavaTypeName(fieldType, externalJavaType, extMachDesc);
-              if (!doBaseClass) {
+              if (singleClass) {
+                internalJavaTypeName = compatiblePrimitiveJavaTypeName(fieldType, internalJavaType, md64);
+                internalJavaTypeName32 = compatiblePrimitiveJavaTypeName(fieldType, internalJavaType32, md32);
+              } else if (!doBaseClass) {
                 internalJavaTypeName = compatiblePrimitiveJavaTypeName(fieldType, internalJavaType, intMachDesc);
               }
             }
+            // a single class only switches the accessor by platform if the internal types differ
+            if (null != internalJavaTypeName32 && internalJavaTypeName32.equals(internalJavaTypeName)) {
+              internalJavaTypeName32 = null;
+            }
             String capitalized = null;
-            if (!doBaseClass) {
+            if (!abstractAccessors) {
               capitalized = capitalizeString(internalJavaTypeName);
             }
-            int slot = -1;
-            if (!doBaseClass) {
-              slot = slot(fieldType, (int) field.getOffset(intMachDesc), intMachDesc);
-            }
             writer.println();
+            String slot = null;
+            if (singleClass) {
+              slot = emitStructLayoutConstant(writer, fieldName + "_slot",
+                                              slot(fieldType, (int) field.getOffset(md32), md32),
+                                              slot(fieldType, (int) field.getOffset(md64), md64));
+            } else if (!doBaseClass) {
+              slot = String.valueOf(slot(fieldType, (int) field.getOffset(intMachDesc), intMachDesc));
+            }
             String capitalizedFieldName = capitalizeString(fieldName);
             // Setter
-            generateSetterSignature(writer, doBaseClass, containingTypeName, capitalizedFieldName, externalJavaTypeName);
-            if (doBaseClass) {
+            generateSetterSignature(writer, abstractAccessors, containingTypeName, capitalizedFieldName, externalJavaTypeName);
+            if (abstractAccessors) {
               writer.println(";");
             } else {
               writer.println(" {");
+              if (null != internalJavaTypeName32) {
+                writer.println("    if (is32Bit) {");
+                writer.print  ("      accessor.set" + capitalizeString(internalJavaTypeName32) + "At(" + slot + ", ");
+                if (!externalJavaTypeName.equals(internalJavaTypeName32)) {
+                  writer.print("(" + internalJavaTypeName32 + ") ");
+                }
+                writer.println("val);");
+                writer.println("    } else {");
+                writer.print  ("  ");
+              }
               writer.print  ("    accessor.set" + capitalized + "At(" + slot + ", ");
               if (!externalJavaTypeName.equals(internalJavaTypeName)) {
                 writer.print("(" + internalJavaTypeName + ") ");
               }
               writer.println("val);");
+              if (null != internalJavaTypeName32) {
+                writer.println("    }");
+              }
               writer.println("    return this;");
               writer.println("  }");
             }
             writer.println();
             // Getter
-            generateGetterSignature(writer, doBaseClass, externalJavaTypeName, capitalizedFieldName);
-            if (doBaseClass) {
+            generateGetterSignature(writer, abstractAccessors, externalJavaTypeName, capitalizedFieldName);
+            if (abstractAccessors) {
               writer.println(";");
             } else {
               writer.println(" {");
               writer.print  ("    return ");
+              if (null != internalJavaTypeName32) {
+                writer.print("is32Bit ? ");
+                if (!externalJavaTypeName.equals(internalJavaTypeName32)) {
+                  writer.print("(" + externalJavaTypeName + ") ");
+                }
+                writer.print("accessor.get" + capitalizeString(internalJavaTypeName32) + "At(" + slot + ") : ");
+              }
               if (!externalJavaTypeName.equals(internalJavaTypeName)) {
                 writer.print("(" + externalJavaTypeName + ") ");
               }
@@ -1167,6 +1469,30 @@ public class JavaEmitter implements GlueEmitter {
       newWriter.close();
     }
   }
+
+  /**
+   * Emits a <code>static final int</code> of the given name into a single struct class,
+   * holding the 32-bit or the 64-bit value depending on the platform at class initialization.
+   * @return the name of the constant
+   */
+  private String emitStructLayoutConstant(PrintWriter writer, String constName, long value32, long value64) {
+    if (value32 == value64) {
+      writer.println("  private static final int " + constName + " = " + value64 + ";");
+    } else {
+      writer.println("  private static final int " + constName + " = is32Bit ? " + value32 + " : " + value64 + ";");
+    }
+    return constName;
+  }
+
+  /**
+   * Emits additional members describing the memory layout of the given struct
+   * into its concrete 32- or 64-bit implementation class.
+   * It is not invoked if {@link JavaConfiguration#singleClassStructs()} is enabled.
+   * The default emits nothing.
+   */
+  protected void emitStructLayout(PrintWriter writer, CompoundType structType, MachineDescription intMachDesc) {
+  }
+
   public void endStructs() throws Exception {}
 
   public static int addStrings2Buffer(StringBuilder buf, String sep, String first, Collection<String> col) {
@@ -1436,7 +1762,19 @@ public class JavaEmitter implements GlueEmitter {
       File pDirFile = new File(parentDir);
       pDirFile.mkdirs();
     }
-    return new PrintWriter(new BufferedWriter(new FileWriter(file)));
+    outputFiles.add(file.getPath());
+    // only touch the file if its content changed
+    return new PrintWriter(new IncrementalFileWriter(file));
+  }
+
+  /** Returns the paths of all configuration and Java files read via {@link #readConfigurationFile(String)}. */
+  public Set<String> getInputFiles() {
+    return inputFiles;
+  }
+
+  /** Returns the paths of all files opened for output via {@link #openFile(String)}. */
+  public List<String> getOutputFiles() {
+    return outputFiles;
   }
 
   private boolean isOpaque(Type type) {
@@ -1485,7 +1823,7 @@ public class JavaEmitter implements GlueEmitter {
     if (!cfg.allStatic() && cfg.emitImpl()) {
       javaImplWriter = openFile(jImplRoot + File.separator + cfg.implClassName() + ".java");
     }
-    if (cfg.emitImpl()) {
+    if (cfg.emitImpl() && emitNativeCode()) {
       cWriter = openFile(nRoot + File.separator + cfg.implClassName() + "_JNI.c");
     }
 
@@ -1514,6 +1852,15 @@ public class JavaEmitter implements GlueEmitter {
     return javaImplWriter;
   }
 
+  /**
+   * Returns true if the implementation is bound via JNI glue code,
+   * emitted into the <code>_JNI.c</code> file, which is the default.
+   * Otherwise no native implementation file is written.
+   */
+  protected boolean emitNativeCode() {
+    return true;
+  }
+
   protected PrintWriter cWriter() {
     if (!cfg.emitImpl()) {
       throw new InternalError("Should not call this");
@@ -1678,7 +2025,7 @@ public class JavaEmitter implements GlueEmitter {
           docEmitter);
       }
 
-      if (cfg.emitImpl()) {
+      if (cfg.emitImpl() && emitNativeCode()) {
         emitCHeader(cWriter(), cfg.implClassName());
       }
     } catch (Exception e) {
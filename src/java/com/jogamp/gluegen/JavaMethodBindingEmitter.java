@@ -43,6 +43,8 @@ import com.jogamp.gluegen.cgram.HeaderParser;
 import com.jogamp.gluegen.cgram.types.ArrayType;
 import com.jogamp.gluegen.cgram.types.CompoundType;
 import com.jogamp.gluegen.cgram.types.EnumType;
+import com.jogamp.gluegen.cgram.types.MachineDescription;
+import com.jogamp.gluegen.cgram.types.MachineDescription64Bit;
 import com.jogamp.gluegen.cgram.types.PointerType;
 import com.jogamp.gluegen.cgram.types.Type;
 import java.io.PrintWriter;
@@ -72,6 +74,9 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
   protected boolean emitBody;
   protected boolean eraseBufferAndArrayTypes;
   protected boolean directNIOOnly;
+  protected boolean directNIOAddress;
+  protected boolean directStringArguments;
+  protected boolean returnValueCache;
   protected boolean forImplementingMethodCall;
   protected boolean forDirectBufferImplementation;
   protected boolean forIndirectBufferAndArrayImplementation;
@@ -95,6 +100,9 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
   // represent an array of compound type wrappers
   private static final String COMPOUND_ARRAY_SUFFIX = "_buf_array_copy";
 
+  // Used to tell UTF-8 from UTF-16 string types, char and short sizes are the same for all machines
+  private static final MachineDescription stringMachDesc = new MachineDescription64Bit();
+
   // Only present to provide more clear comments
   private JavaConfiguration cfg;
 
@@ -141,6 +149,9 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
     tagNativeBinding              = arg.tagNativeBinding;
     eraseBufferAndArrayTypes      = arg.eraseBufferAndArrayTypes;
     directNIOOnly                 = arg.directNIOOnly;
+    directNIOAddress              = arg.directNIOAddress;
+    directStringArguments         = arg.directStringArguments;
+    returnValueCache              = arg.returnValueCache;
     forImplementingMethodCall     = arg.forImplementingMethodCall;
     forDirectBufferImplementation = arg.forDirectBufferImplementation;
     forIndirectBufferAndArrayImplementation = arg.forIndirectBufferAndArrayImplementation;
@@ -209,6 +220,52 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
     this.emitBody = emitBody;
   }
 
+  /** If true and NIO direct only is set, the native address of each direct
+      NIO buffer argument, including its byte offset, is computed on the Java
+      side and passed as a <code>long</code>, hence the C glue code does not
+      need to call back into the JVM to resolve it. */
+  public void setDirectNIOAddress(boolean directNIOAddress) {
+    this.directNIOAddress = directNIOAddress;
+  }
+
+  public boolean isDirectNIOAddress() { return directNIOOnly && directNIOAddress; }
+
+  /** If true, String and String[] arguments are encoded into the thread local
+      {@link com.jogamp.common.nio.ScratchBuffer} by the Java method body
+      and passed down to the native method as the <code>long</code> address
+      of the null terminated copy, respectively of the pointer table. */
+  public void setDirectStringArguments(boolean directStringArguments) {
+    this.directStringArguments = directStringArguments;
+  }
+
+  public boolean isDirectStringArguments() { return directStringArguments && binding.signatureUsesStrings(); }
+
+  /** If true, the returned java.nio buffer or struct wrapper is kept in a
+      {@link com.jogamp.common.nio.CachedReturnValue} field of the generated class,
+      whose ByteBuffer is passed down to the native method,
+      which returns it again as long as the native address and capacity match.
+      Hence no new objects are created for a repeatedly returned pointer. */
+  public void setReturnValueCache(boolean returnValueCache) {
+    this.returnValueCache = returnValueCache;
+  }
+
+  public boolean isReturnValueCache() {
+    final JavaType returnType = binding.getJavaReturnType();
+    return returnValueCache && null == returnedArrayLengthExpression &&
+           ( returnType.isNIOBuffer() || returnType.isCompoundTypeWrapper() );
+  }
+
+  /** Returns the name of the {@link com.jogamp.common.nio.CachedReturnValue} field, see {@link #isReturnValueCache()}. */
+  protected String returnValueCacheFieldName() {
+    return "_cached_" + binding.getName();
+  }
+
+  /** Returns the unerased type of the {@link com.jogamp.common.nio.CachedReturnValue} field, see {@link #isReturnValueCache()}. */
+  protected String returnValueCacheType() {
+    final String name = binding.getJavaReturnType().getName();
+    return "CachedReturnValue<" + name.substring(name.lastIndexOf('.')+1) + ">";
+  }
+
   /** Accessor for subclasses. */
   public void setEraseBufferAndArrayTypes(boolean erase) {
     this.eraseBufferAndArrayTypes = erase;
@@ -340,9 +397,15 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
         writer.print(", ");
       }
 
-      writer.print(erasedTypeString(type, false));
-      writer.print(" ");
-      writer.print(getArgumentName(i));
+      if (forImplementingMethodCall && isDirectStringArguments() &&
+          (type.isString() || type.isStringArray())) {
+        writer.print("long ");
+        writer.print(addressArgName(i));
+      } else {
+        writer.print(erasedTypeString(type, false));
+        writer.print(" ");
+        writer.print(getArgumentName(i));
+      }
 
       ++numEmitted;
       needComma = true;
@@ -350,7 +413,11 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
       // Add Buffer and array index offset arguments after each associated argument
       if (forDirectBufferImplementation || forIndirectBufferAndArrayImplementation) {
         if (type.isNIOBuffer()) {
-          writer.print(", int " + byteOffsetArgName(i));
+          if(isDirectNIOAddress()) {
+              writer.print(", long " + addressArgName(i));
+          } else {
+              writer.print(", int " + byteOffsetArgName(i));
+          }
           if(!directNIOOnly) {
               writer.print(", boolean " + isNIOArgName(i));
           }
@@ -367,6 +434,13 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
         writer.print(", int " + offsetArgName(i));
       }
     }
+    if (forImplementingMethodCall && isReturnValueCache()) {
+      if (needComma) {
+        writer.print(", ");
+      }
+      writer.print("ByteBuffer _res_cache");
+      ++numEmitted;
+    }
     return numEmitted;
   }
 
@@ -383,6 +457,14 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
     return s + "_byte_offset";
   }
 
+  protected String addressArgName(int i) {
+    return addressArgName(getArgumentName(i));
+  }
+
+  protected String addressArgName(String s) {
+    return s + "_address";
+  }
+
   protected String isNIOArgName(int i) {
     return isNIOArgName(binding.getArgumentName(i));
   }
@@ -399,6 +481,71 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
     return getArgumentName(i) + "_offset";
   }
 
+  /**
+   * Returns the factor converting the element position of the statically declared buffer type
+   * into a byte offset, i.e. <code>"Buffers.SIZEOF_INT * "</code> for an IntBuffer and the empty
+   * string for a ByteBuffer. Returns null if the element size is only known at runtime,
+   * i.e. for a plain {@link java.nio.Buffer}.
+   */
+  protected static String getBufferElementSizeFactor(Class<?> c) {
+    if (c == java.nio.ByteBuffer.class) {
+      return "";
+    } else if (c == java.nio.ShortBuffer.class) {
+      return "Buffers.SIZEOF_SHORT * ";
+    } else if (c == java.nio.CharBuffer.class) {
+      return "Buffers.SIZEOF_CHAR * ";
+    } else if (c == java.nio.IntBuffer.class) {
+      return "Buffers.SIZEOF_INT * ";
+    } else if (c == java.nio.FloatBuffer.class) {
+      return "Buffers.SIZEOF_FLOAT * ";
+    } else if (c == java.nio.LongBuffer.class) {
+      return "Buffers.SIZEOF_LONG * ";
+    } else if (c == java.nio.DoubleBuffer.class) {
+      return "Buffers.SIZEOF_DOUBLE * ";
+    } else if (c == com.jogamp.common.nio.NativeSizeBuffer.class) {
+      return "NativeSizeBuffer.elementSize() * ";
+    }
+    return null;
+  }
+
+  /**
+   * Returns the expression testing the non-null buffer of the given static type for being direct.
+   * The code is specialized to the declared type where possible,
+   * avoiding the runtime type dispatch of {@link com.jogamp.common.nio.Buffers}.
+   */
+  protected static String getBufferIsDirectExpr(Class<?> c, String buf) {
+    if (null == getBufferElementSizeFactor(c)) {
+      return "Buffers.isDirect(" + buf + ")";
+    }
+    return buf + ".isDirect()";
+  }
+
+  /** Returns the expression of the byte offset of the non-null direct buffer of the given static type. */
+  protected static String getDirectBufferByteOffsetExpr(Class<?> c, String buf) {
+    final String factor = getBufferElementSizeFactor(c);
+    if (null == factor) {
+      return "Buffers.getDirectBufferByteOffset(" + buf + ")";
+    }
+    return factor + buf + ".position()";
+  }
+
+  /** Returns the expression of the byte offset within the backing array of the non-null indirect buffer of the given static type. */
+  protected static String getIndirectBufferByteOffsetExpr(Class<?> c, String buf) {
+    final String factor = getBufferElementSizeFactor(c);
+    if (null == factor) {
+      return "Buffers.getIndirectBufferByteOffset(" + buf + ")";
+    }
+    return factor + "(" + buf + ".arrayOffset() + " + buf + ".position())";
+  }
+
+  /** Returns the expression of the backing array of the non-null indirect buffer of the given static type. */
+  protected static String getBufferArrayExpr(Class<?> c, String buf) {
+    if (null == getBufferElementSizeFactor(c)) {
+      return "Buffers.getArray(" + buf + ")";
+    }
+    return buf + ".array()";
+  }
+
   protected void emitBody(PrintWriter writer)  {
     if (!emitBody) {
       writer.println(';');
@@ -412,12 +559,40 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
         emitPrologueOrEpilogue(prologue, writer);
         emitPreCallSetup(mBinding, writer);
         //emitReturnVariableSetup(binding, writer);
-        emitReturnVariableSetupAndCall(mBinding, writer);
+        if (isDirectStringArguments()) {
+          emitDirectStringArgumentsSetup(mBinding, writer);
+          emitReturnVariableSetupAndCall(mBinding, writer);
+          writer.println("    } finally {");
+          writer.println("      _scratch.end(_scratch_mark);");
+          writer.println("    }");
+        } else {
+          emitReturnVariableSetupAndCall(mBinding, writer);
+        }
       }
       writer.println("  }");
     }
   }
 
+  /**
+   * Opens the <code>try</code> block of a thread local scratch memory section
+   * and encodes all String and String[] arguments into it,
+   * UTF-8 or UTF-16 as the C argument type requires, see {@link CMethodBindingEmitter#isUTF8Type(Type)}.
+   */
+  protected void emitDirectStringArgumentsSetup(MethodBinding binding, PrintWriter writer) {
+    writer.println("    final ScratchBuffer _scratch = ScratchBuffer.get();");
+    writer.println("    final int _scratch_mark = _scratch.begin();");
+    writer.println("    try {");
+    for (int i = 0; i < binding.getNumArguments(); i++) {
+      final JavaType type = binding.getJavaArgumentType(i);
+      if (type.isString() || type.isStringArray()) {
+        final String argName = getArgumentName(i);
+        final String utf = CMethodBindingEmitter.isUTF8Type(binding.getCArgumentType(i), stringMachDesc) ? "UTF8" : "UTF16";
+        writer.println("      final long _" + argName + "_address = _scratch.put" + utf +
+                       ( type.isStringArray() ? "Array(" : "(" ) + argName + ");");
+      }
+    }
+  }
+
   protected void emitPrologueOrEpilogue(List<String> code, PrintWriter writer) {
     if (code != null) {
       String[] argumentNames = argumentNameArray();
@@ -461,40 +636,55 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
         if (javaType.isNIOBuffer()) {
 
           if (directNIOOnly) {
+            // Either the byte offset, or with directNIOAddress the native address including it
+            final boolean address = isDirectNIOAddress();
+            final String offsetName = "_"+argName+( address ? "_address" : "_offset" );
+            final String pad = address ? " " : "";
+            final String base = address ? "Buffers.getDirectBufferAddress(_"+argName+") + " : "";
             writer.println("    Buffer _"+argName+";");
-            writer.println("    int _"+argName+"_offset;");
+            writer.println("    "+( address ? "long " : "int " )+offsetName+";");
             writer.println("    if ("+argName+" == null) {");
-            writer.println("        _"+argName+"        = null;");
-            writer.println("        _"+argName+"_offset = 0;");
+            writer.println("        _"+argName+"        "+pad+"= null;");
+            writer.println("        "+offsetName+" = 0;");
             writer.println("    } else if ("+argName+".isDirect()) {");
             if(javaType.isNIONativeSizeBuffer()) {
-                writer.println("        _"+argName+"        =  "+argName+".getBuffer();");
-                writer.println("        _"+argName+"_offset = _"+argName+".position();");
+                writer.println("        _"+argName+"        "+pad+"=  "+argName+".getBuffer();");
+                writer.println("        "+offsetName+" = "+base+"_"+argName+".position();");
             }else{
-                writer.println("        _"+argName+"        = "+argName+";");
-                writer.println("        _"+argName+"_offset = Buffers.getDirectBufferByteOffset(_"+argName+");");
+                writer.println("        _"+argName+"        "+pad+"= "+argName+";");
+                writer.println("        "+offsetName+" = "+base+getDirectBufferByteOffsetExpr(javaType.getJavaClass(), "_"+argName)+";");
             }
             writer.println("    } else {");
             writer.println("        throw new "+getRuntimeExceptionType()+"(\"Argument \\\""+argName+"\\\" was not a direct buffer\");");
             writer.println("    }");
             writer.println();
           } else {
-            writer.println("    boolean "+isNIOArgName(i)+" = "+argName+" != null && Buffers.isDirect("+argName+");");
+            writer.println("    boolean "+isNIOArgName(i)+" = "+argName+" != null && "+getBufferIsDirectExpr(javaType.getJavaClass(), argName)+";");
           }
           
         } else if (javaType.isNIOBufferArray()) {
 
           // All buffers passed down in an array of NIO buffers must be direct
           String arrayName = byteOffsetArrayArgName(i);
+          Class<?> elementClass = javaType.getJavaClass().getComponentType();
+          String element = argName + "[_ctr]";
           writer.println("    int[] " + arrayName + " = new int[" + argName + ".length];");
           // Check direct buffer properties of all buffers within
           writer.println("    if (" + argName + " != null) {");
           writer.println("      for (int _ctr = 0; _ctr < " + argName + ".length; _ctr++) {");
-          writer.println("        if (!Buffers.isDirect(" + argName + "[_ctr])) {");
+          if (null == getBufferElementSizeFactor(elementClass)) {
+            writer.println("        if (!Buffers.isDirect(" + element + ")) {");
+          } else {
+            writer.println("        if (" + element + " != null && !" + element + ".isDirect()) {");
+          }
           writer.println("          throw new " + getRuntimeExceptionType() + "(\"Element \" + _ctr + \" of argument \\\"" + argName + "\\\" was not a direct buffer\");");
           writer.println("        }");
           // get the Buffer Array offset values and save them into another array to send down to JNI
-          writer.println("        " + arrayName+"[_ctr] = Buffers.getDirectBufferByteOffset("+argName+"[_ctr]);");
+          if (null == getBufferElementSizeFactor(elementClass)) {
+            writer.println("        " + arrayName + "[_ctr] = Buffers.getDirectBufferByteOffset(" + element + ");");
+          } else {
+            writer.println("        " + arrayName + "[_ctr] = " + element + " == null ? 0 : " + getDirectBufferByteOffsetExpr(elementClass, element) + ";");
+          }
           writer.println("      }");
           writer.println("    }");
 
@@ -543,6 +733,11 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
     JavaType returnType = binding.getJavaReturnType();
     boolean needsResultAssignment = false;
 
+    if (isReturnValueCache()) {
+      writer.println("final " + returnValueCacheType() + " _cached = " + returnValueCacheFieldName() + ";");
+      writer.print("    ");
+    }
+
     if (!returnType.isVoid()) {
       if (returnType.isCompoundTypeWrapper() ||
           returnType.isNIOBuffer()) {
@@ -616,22 +811,27 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
 
       if (type.isNIOBuffer()) {
           final String isNioArgName = isNIOArgName(i);
+          final Class<?> bufferClass = type.getJavaClass();
           if(type.isNIONativeSizeBuffer()) {
               if (directNIOOnly) {
                   writer.print( "_"+argName);
               } else {
-                  writer.print( isNioArgName + " ? ( " + argName+ " != null ? " + argName + ".getBuffer() : null )");
-                  writer.print( " : Buffers.getArray(" + argName + ")" );
+                  writer.print( isNioArgName + " ? " + argName + ".getBuffer()");
+                  writer.print( " : ( " + argName + " != null ? " + getBufferArrayExpr(bufferClass, argName) + " : null )" );
               }
           } else {
               if (directNIOOnly) {
                   writer.print( argName);
-              } else {
+              } else if (null == getBufferElementSizeFactor(bufferClass)) {
                   writer.print( isNioArgName + " ? " + argName + " : Buffers.getArray(" + argName + ")" );
+              } else {
+                  writer.print( isNioArgName + " ? " + argName + " : ( " + argName + " != null ? " + getBufferArrayExpr(bufferClass, argName) + " : null )" );
               }
           }
       } else if (type.isArrayOfCompoundTypeWrappers()) {
           writer.print(argName + COMPOUND_ARRAY_SUFFIX);
+      } else if ((type.isString() || type.isStringArray()) && isDirectStringArguments()) {
+          writer.print("_" + argName + "_address");
       } else {
           writer.print(argName);
       }
@@ -644,11 +844,16 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
 
       if (type.isNIOBuffer()) {
         final String isNioArgName = isNIOArgName(i);
-        if (directNIOOnly) {
+        if (isDirectNIOAddress()) {
+          writer.print( ", _"+argName+"_address");
+        } else if (directNIOOnly) {
           writer.print( ", _"+argName+"_offset");
-        } else {
+        } else if (null == getBufferElementSizeFactor(type.getJavaClass())) {
           writer.print( ", " + isNioArgName + " ? Buffers.getDirectBufferByteOffset(" + argName + ")");
           writer.print(        " : Buffers.getIndirectBufferByteOffset(" + argName + ")");
+        } else {
+          writer.print( ", " + isNioArgName + " ? " + getDirectBufferByteOffsetExpr(type.getJavaClass(), argName));
+          writer.print(        " : ( " + argName + " != null ? " + getIndirectBufferByteOffsetExpr(type.getJavaClass(), argName) + " : 0 )");
         }
       } else if (type.isNIOBufferArray()) {
         writer.print(", " + byteOffsetArrayArgName(i));
@@ -686,6 +891,13 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
       needComma = true;
       ++numArgsEmitted;
     }
+    if (isReturnValueCache()) {
+      if (needComma) {
+        writer.print(", ");
+      }
+      writer.print("null != _cached ? _cached.buffer : null");
+      ++numArgsEmitted;
+    }
     return numArgsEmitted;
   }
 
@@ -718,7 +930,9 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
   protected void emitCallResultReturn(MethodBinding binding, PrintWriter writer) {
     JavaType returnType = binding.getJavaReturnType();
 
-    if (returnType.isCompoundTypeWrapper()) {
+    if (isReturnValueCache()) {
+      emitCachedCallResultReturn(binding, writer);
+    } else if (returnType.isCompoundTypeWrapper()) {
       String fmt = getReturnedArrayLengthExpression();
       writer.println("    if (_res == null) return null;");
       if (fmt == null) {
@@ -754,26 +968,7 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
     } else if (returnType.isNIOBuffer()) {
       writer.println("    if (_res == null) return null;");
       writer.println("    Buffers.nativeOrder(_res);");
-      if (!returnType.isNIOByteBuffer()) {
-        // See whether we have to expand pointers to longs
-        if (getBinding().getCReturnType().pointerDepth() >= 2) {
-          if (returnType.isNIONativeSizeBuffer()) {
-              writer.println("    return NativeSizeBuffer.wrap(_res);");
-          } else if (returnType.isNIOLongBuffer()) {
-              writer.println("    return _res.asLongBuffer();");
-          } else {
-            throw new RuntimeException("While emitting glue code for " + getName() +
-                                       ": can not legally make pointers opaque to anything but PointerBuffer or LongBuffer/long");
-          }
-        } else if (getBinding().getCReturnType().pointerDepth() == 1 && returnType.isNIOLongBuffer()) {
-          writer.println("    return _res.asLongBuffer();");
-        } else {
-          String returnTypeName = returnType.getName().substring("java.nio.".length());
-          writer.println("    return _res.as" + returnTypeName + "();");
-        }
-      } else {
-        writer.println("    return _res;");
-      }
+      writer.println("    return " + getNIOReturnValueExpression(binding) + ";");
     } else if (returnType.isArrayOfCompoundTypeWrappers()) {
       writer.println("    if (_res == null) return null;");
       writer.println("    " + getReturnTypeString(false) + " _retarray = new " + getReturnTypeString(true) + "[_res.length];");
@@ -788,6 +983,79 @@ public class JavaMethodBindingEmitter extends FunctionEmitter {
     }
   }
 
+  /**
+   * Returns the expression converting the native ordered ByteBuffer <code>_res</code>
+   * into the returned java.nio buffer type.
+   */
+  protected String getNIOReturnValueExpression(MethodBinding binding) {
+    JavaType returnType = binding.getJavaReturnType();
+    if (returnType.isNIOByteBuffer()) {
+      return "_res";
+    }
+    // See whether we have to expand pointers to longs
+    if (binding.getCReturnType().pointerDepth() >= 2) {
+      if (returnType.isNIONativeSizeBuffer()) {
+        return "NativeSizeBuffer.wrap(_res)";
+      } else if (returnType.isNIOLongBuffer()) {
+        return "_res.asLongBuffer()";
+      } else {
+        throw new RuntimeException("While emitting glue code for " + getName() +
+                                   ": can not legally make pointers opaque to anything but PointerBuffer or LongBuffer/long");
+      }
+    } else if (binding.getCReturnType().pointerDepth() == 1 && returnType.isNIOLongBuffer()) {
+      return "_res.asLongBuffer()";
+    }
+    String returnTypeName = returnType.getName().substring("java.nio.".length());
+    return "_res.as" + returnTypeName + "()";
+  }
+
+  /**
+   * Returns the cached value if the native method returned the cached ByteBuffer,
+   * otherwise wraps the new ByteBuffer and replaces the cache, see {@link #isReturnValueCache()}.
+   * A returned java.nio buffer is cleared, respectively rewound, as a new one would be.
+   */
+  protected void emitCachedCallResultReturn(MethodBinding binding, PrintWriter writer) {
+    JavaType returnType = binding.getJavaReturnType();
+    final String valueType = getReturnTypeString(false);
+    writer.println("    if (_res == null) return null;");
+    writer.println("    if (null != _cached && _res == _cached.buffer) {");
+    if (returnType.isNIOBuffer()) {
+      writer.println("      _cached.value." + ( returnType.isNIONativeSizeBuffer() ? "rewind" : "clear" ) + "();");
+    }
+    writer.println("      return _cached.value;");
+    writer.println("    }");
+    writer.println("    Buffers.nativeOrder(_res);");
+    if (returnType.isCompoundTypeWrapper()) {
+      writer.println("    final " + valueType + " _value = " + returnType.getName() + ".create(_res);");
+    } else {
+      writer.println("    final " + valueType + " _value = " + getNIOReturnValueExpression(binding) + ";");
+    }
+    writer.println("    " + returnValueCacheFieldName() + " = new " + returnValueCacheType() + "(_res, _value);");
+    writer.println("    return _value;");
+  }
+
+  /**
+   * Emits the {@link com.jogamp.common.nio.CachedReturnValue} field
+   * ahead of the native method declaration, see {@link #isReturnValueCache()}.
+   */
+  protected void emitReturnValueCacheField(PrintWriter writer) {
+    writer.println("  /** Last return value of {@link #" + binding.getName() + "}, shared by all callers. */");
+    writer.print("  private ");
+    if (hasModifier(STATIC)) {
+      writer.print("static ");
+    }
+    writer.println(returnValueCacheType() + " " + returnValueCacheFieldName() + ";");
+    writer.println();
+  }
+
+  @Override
+  public void emit(PrintWriter output) {
+    if (forImplementingMethodCall && isReturnValueCache()) {
+      emitReturnValueCacheField(output);
+    }
+    super.emit(output);
+  }
+
   protected String[] argumentNameArray() {
     String[] argumentNames = new String[binding.getNumArguments()];
     for (int i = 0; i < binding.getNumArguments(); i++) {
@@ -64,16 +64,17 @@ public class JavaType {
   private Type   elementType; // Element type if this JavaType represents a C array
   private C_PTR  primitivePointerType;
 
-  private static JavaType nioBufferType;
-  private static JavaType nioByteBufferType;
-  private static JavaType nioShortBufferType;
-  private static JavaType nioIntBufferType;
-  private static JavaType nioLongBufferType;
-  private static JavaType nioPointerBufferType;
-  private static JavaType nioNativeSizeBufferType;
-  private static JavaType nioFloatBufferType;
-  private static JavaType nioDoubleBufferType;
-  private static JavaType nioByteBufferArrayType;
+  // Created eagerly, since emitters may run concurrently and some are compared by identity
+  private static final JavaType nioBufferType = createForClass(java.nio.Buffer.class);
+  private static final JavaType nioByteBufferType = createForClass(java.nio.ByteBuffer.class);
+  private static final JavaType nioShortBufferType = createForClass(java.nio.ShortBuffer.class);
+  private static final JavaType nioIntBufferType = createForClass(java.nio.IntBuffer.class);
+  private static final JavaType nioLongBufferType = createForClass(java.nio.LongBuffer.class);
+  private static final JavaType nioPointerBufferType = createForClass(com.jogamp.common.nio.PointerBuffer.class);
+  private static final JavaType nioNativeSizeBufferType = createForClass(com.jogamp.common.nio.NativeSizeBuffer.class);
+  private static final JavaType nioFloatBufferType = createForClass(java.nio.FloatBuffer.class);
+  private static final JavaType nioDoubleBufferType = createForClass(java.nio.DoubleBuffer.class);
+  private static final JavaType nioByteBufferArrayType = createForClass(ByteBuffer[].class);
 
   @Override
   public boolean equals(Object arg) {
@@ -160,71 +161,42 @@ public class JavaType {
   }
 
   public static JavaType forNIOBufferClass() {
-    if (nioBufferType == null) {
-      nioBufferType = createForClass(java.nio.Buffer.class);
-    }
     return nioBufferType;
   }
 
   public static JavaType forNIOByteBufferClass() {
-    if (nioByteBufferType == null) {
-      nioByteBufferType = createForClass(java.nio.ByteBuffer.class);
-    }
     return nioByteBufferType;
   }
 
   public static JavaType forNIOShortBufferClass() {
-    if (nioShortBufferType == null) {
-      nioShortBufferType = createForClass(java.nio.ShortBuffer.class);
-    }
     return nioShortBufferType;
   }
 
   public static JavaType forNIOIntBufferClass() {
-    if (nioIntBufferType == null) {
-      nioIntBufferType = createForClass(java.nio.IntBuffer.class);
-    }
     return nioIntBufferType;
   }
 
   public static JavaType forNIOLongBufferClass() {
-    if (nioLongBufferType == null) {
-      nioLongBufferType = createForClass(java.nio.LongBuffer.class);
-    }
     return nioLongBufferType;
   }
 
   public static JavaType forNIOPointerBufferClass()  {
-    if(nioPointerBufferType == null)
-        nioPointerBufferType = createForClass(com.jogamp.common.nio.PointerBuffer.class);
     return nioPointerBufferType;
   }
 
   public static JavaType forNIONativeSizeBufferClass()  {
-    if(nioNativeSizeBufferType == null)
-        nioNativeSizeBufferType = createForClass(com.jogamp.common.nio.NativeSizeBuffer.class);
     return nioNativeSizeBufferType;
   }
 
   public static JavaType forNIOFloatBufferClass() {
-    if (nioFloatBufferType == null) {
-      nioFloatBufferType = createForClass(java.nio.FloatBuffer.class);
-    }
     return nioFloatBufferType;
   }
 
   public static JavaType forNIODoubleBufferClass() {
-    if (nioDoubleBufferType == null) {
-      nioDoubleBufferType = createForClass(java.nio.DoubleBuffer.class);
-    }
     return nioDoubleBufferType;
   }
 
   public static JavaType forNIOByteBufferArrayClass() {
-    if (nioByteBufferArrayType == null) {
-      ByteBuffer[] tmp = new ByteBuffer[0];
-      nioByteBufferArrayType = createForClass(tmp.getClass());
-    }
     return nioByteBufferArrayType;
   }
 
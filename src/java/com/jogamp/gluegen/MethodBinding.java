@@ -68,6 +68,7 @@ public class MethodBinding {
   private boolean        signatureUsesCPrimitivePointers;
   private boolean        signatureUsesCArrays;
   private boolean        signatureUsesJavaPrimitiveArrays;
+  private boolean        signatureUsesStrings;
   private JavaType       containingType;
   private Type           containingCType;
   private int            thisPointerIndex = -1;
@@ -96,6 +97,7 @@ public class MethodBinding {
     this.signatureUsesCPrimitivePointers  = bindingToCopy.signatureUsesCPrimitivePointers;
     this.signatureUsesCArrays             = bindingToCopy.signatureUsesCArrays;
     this.signatureUsesJavaPrimitiveArrays = bindingToCopy.signatureUsesJavaPrimitiveArrays;
+    this.signatureUsesStrings             = bindingToCopy.signatureUsesStrings;
     this.thisPointerIndex                 = bindingToCopy.thisPointerIndex;
   }
 
@@ -309,6 +311,15 @@ public class MethodBinding {
     return signatureUsesJavaPrimitiveArrays;
   }
 
+  /**
+   * Returns true if any of the outgoing arguments in the method's
+   * signature are Java Strings or arrays of Strings.
+   */
+  public boolean signatureUsesStrings() {
+    computeSignatureProperties();
+    return signatureUsesStrings;
+  }
+
   /**
    * Computes summary information about the method's C and Java
    * signatures.
@@ -326,6 +337,7 @@ public class MethodBinding {
     signatureUsesCPrimitivePointers = false;
     signatureUsesCArrays = false;
     signatureUsesJavaPrimitiveArrays = false;
+    signatureUsesStrings = false;
 
     if (javaReturnType.isCompoundTypeWrapper()) {
       // Needs wrapping and/or setting of byte order (neither of which
@@ -372,6 +384,12 @@ public class MethodBinding {
         signatureUsesArraysOfCompoundTypeWrappers = true;
       }
 
+      if (javaArgType.isString() ||
+          javaArgType.isStringArray()) {
+        // Needs conversion to C strings
+        signatureUsesStrings = true;
+      }
+
       if (javaArgType.isNIOBuffer() ||
           javaArgType.isNIOBufferArray()) {
         // Needs checking of direct buffer property
@@ -0,0 +1,191 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Emits the profiling implementation <code>&lt;ClassName&gt;Profiler</code> of the generated interface,
+ * enabled via the <code>EmitProfiler</code> configuration directive.
+ * <p>
+ * Each method delegates to the wrapped implementation and records the call count
+ * and the <code>System.nanoTime()</code> duration in a {@link com.jogamp.common.util.CallProfile},
+ * indexed by the generated method id, i.e. the position of the method within <code>METHOD_NAMES</code>.
+ * Since the implementing class is left untouched, profiling costs nothing unless the profiler is used.
+ * </p>
+ */
+public class ProfilerClassEmitter {
+
+  private final JavaConfiguration cfg;
+  private final String packageName;
+  private final String className;
+  private final List<ProfiledMethodEmitter> methods = new ArrayList<ProfiledMethodEmitter>();
+
+  /**
+   * @param cfg the configuration of the emitting {@link JavaEmitter}
+   * @param packageName the package of the profiler class
+   * @param className the name of the profiler class
+   * @param interfaceEmitters the emitters of the interface methods, the method id of each is its index
+   */
+  public ProfilerClassEmitter(JavaConfiguration cfg, String packageName, String className, List<JavaMethodBindingEmitter> interfaceEmitters) {
+    this.cfg = cfg;
+    this.packageName = packageName;
+    this.className = className;
+    for (JavaMethodBindingEmitter emitter : interfaceEmitters) {
+      methods.add(new ProfiledMethodEmitter(emitter, methods.size()));
+    }
+  }
+
+  public String getPackageName() { return packageName; }
+  public String getClassName() { return className; }
+
+  /**
+   * Emits the profiler class without its closing brace,
+   * allowing the caller to append <code>CustomJavaCode</code> of the class.
+   */
+  public void emitJavaClass(PrintWriter w) throws IOException {
+    List<String> imports = new ArrayList<String>(cfg.imports());
+    imports.add(cfg.gluegenRuntimePackage()+".*");
+    imports.add(com.jogamp.common.os.DynamicLookupHelper.class.getPackage().getName()+".*");
+    imports.add(com.jogamp.common.nio.Buffers.class.getPackage().getName()+".*");
+    imports.add(com.jogamp.common.util.CallProfile.class.getName());
+    imports.add(java.nio.Buffer.class.getPackage().getName()+".*");
+    final String intfImport = cfg.packageName() + "." + cfg.className();
+    if (!packageName.equals(cfg.packageName()) && !imports.contains(intfImport)) {
+      imports.add(intfImport);
+    }
+    final String intf = cfg.className();
+
+    CodeGenUtils.emitJavaHeaders(w, packageName, className, true, imports, new String[] { "public" }, new String[] { intf }, null,
+      new CodeGenUtils.EmissionCallback() {
+        public void emit(PrintWriter w) {
+          w.println("/**");
+          w.println(" * Profiling implementation of {@link " + intf + "}, delegating to the wrapped implementation");
+          w.println(" * and recording the count and duration of each call, see {@link #getProfile()}.");
+          w.println(" */");
+        }
+      });
+    w.println();
+    w.println("  /** The method names and argument types, indexed by the method id. */");
+    w.println("  public static final String[] METHOD_NAMES = {");
+    for (int i = 0; i < methods.size(); i++) {
+      w.println("    \"" + methods.get(i).getMethodName() + "\"" + ( i < methods.size() - 1 ? "," : "" ));
+    }
+    w.println("  };");
+    w.println();
+    w.println("  private final " + intf + " impl;");
+    w.println("  private final CallProfile profile = new CallProfile(METHOD_NAMES);");
+    w.println();
+    w.println("  public " + className + "(" + intf + " impl) {");
+    w.println("    this.impl = impl;");
+    w.println("  }");
+    w.println();
+    w.println("  /** Returns the wrapped implementation. */");
+    w.println("  public " + intf + " getDelegate() {");
+    w.println("    return impl;");
+    w.println("  }");
+    w.println();
+    w.println("  /** Returns the recorded call counts and durations, use {@link CallProfile#snapshot()} for evaluation. */");
+    w.println("  public CallProfile getProfile() {");
+    w.println("    return profile;");
+    w.println("  }");
+    w.println();
+    for (ProfiledMethodEmitter m : methods) {
+      m.emit(w);
+      w.println();
+    }
+  }
+
+  /** Emits a method delegating to the wrapped implementation, measuring the duration of the call. */
+  protected static class ProfiledMethodEmitter extends JavaMethodBindingEmitter {
+    private final int id;
+
+    public ProfiledMethodEmitter(JavaMethodBindingEmitter interfaceEmitter, int id) {
+      super(interfaceEmitter);
+      this.id = id;
+    }
+
+    /** Returns the method name and its argument types, e.g. <code>foo(int, IntBuffer)</code>. */
+    public String getMethodName() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(getName()).append("(");
+      boolean needComma = false;
+      for (int i = 0; i < binding.getNumArguments(); i++) {
+        final JavaType type = binding.getJavaArgumentType(i);
+        if (type.isVoid() || type.isJNIEnv() || binding.isArgumentThisPointer(i)) {
+          continue;
+        }
+        if (needComma) {
+          sb.append(", ");
+        }
+        sb.append(erasedTypeString(type, false));
+        if (type.isPrimitiveArray()) {
+          sb.append(", int");
+        }
+        needComma = true;
+      }
+      return sb.append(")").toString();
+    }
+
+    @Override
+    protected void emitBody(PrintWriter writer) {
+      writer.println("  {");
+      writer.println("    final long _t0 = System.nanoTime();");
+      writer.println("    try {");
+      writer.print("      ");
+      if (!binding.getJavaReturnType().isVoid()) {
+        writer.print("return ");
+      }
+      writer.print("impl." + getName() + "(");
+      boolean needComma = false;
+      for (int i = 0; i < binding.getNumArguments(); i++) {
+        final JavaType type = binding.getJavaArgumentType(i);
+        if (type.isVoid() || type.isJNIEnv() || binding.isArgumentThisPointer(i)) {
+          continue;
+        }
+        if (needComma) {
+          writer.print(", ");
+        }
+        writer.print(getArgumentName(i));
+        if (type.isPrimitiveArray()) {
+          writer.print(", " + offsetArgName(i));
+        }
+        needComma = true;
+      }
+      writer.println(");");
+      writer.println("    } finally {");
+      writer.println("      profile.record(" + id + ", System.nanoTime() - _t0);");
+      writer.println("    }");
+      writer.println("  }");
+    }
+  }
+}
@@ -71,9 +71,20 @@ import org.apache.tools.ant.util.JavaEnvUtils;
                 literalInclude="[optional hack to get around FileSet / DirSet issues with different drives]"
                 emitter="[emitter class name]"
                 config="[configuration file]"
+                manifest="[optional manifest file]"
+                headerCache="[optional directory caching the parsed headers]"
                 dumpCPP="[optional boolean]"
-                debug="[optional boolean]" /&gt;
+                debug="[optional boolean]"
+                parallel="[optional boolean, run the configurations in parallel]" &gt;
+        &lt;configuration emitter="[emitter class name]"
+                       config="[configuration file]"
+                       outputrootdir="[optional output root dir]"
+                       manifest="[optional manifest file]" /&gt;
+    &lt;/gluegen&gt;
  * </pre> 
+ * <p>The optional nested <code>configuration</code> elements run further emitters
+ * on the same parsed source file. If present, the <code>emitter</code> and
+ * <code>config</code> attributes of the task are optional.</p>
  *
  * @author Rob Grzywinski <a href="mailto:rgrzywinski@realityinteractive.com">rgrzywinski@yahoo.com</a>
  */
@@ -109,6 +120,26 @@ public class GlueGenTask extends Task
      */
     private String outputRootDir;
 
+    /**
+     * <p>The optional manifest file recording the inputs and outputs of a run.</p>
+     */
+    private String manifest;
+
+    /**
+     * <p>The optional directory caching the parsed headers.</p>
+     */
+    private String headerCache;
+
+    /**
+     * <p>The optional flag running the configurations in parallel.</p>
+     */
+    private boolean parallel=false;
+
+    /**
+     * <p>The nested configurations run on the same parsed source file.</p>
+     */
+    private List<Configuration> configurations = new LinkedList<Configuration>();
+
     /**
      * <p>The name of the emitter class.</p>
      */
@@ -199,6 +230,55 @@ public class GlueGenTask extends Task
         this.outputRootDir=outputRootDir;
     }
 
+    /**
+     * <p>Set the manifest file (optional).  This is called by ANT.</p>
+     * <p>If set, the generation is skipped if none of its inputs changed
+     * since the last run. It applies to the task's own emitter configuration only,
+     * nested configurations specify their own manifest file.</p>
+     * 
+     * @param  manifest the optional manifest file
+     */
+    public void setManifest(String manifest)
+    {
+        log( ("Setting manifest file: " + manifest), Project.MSG_VERBOSE);
+        this.manifest=manifest;
+    }
+
+    /**
+     * <p>Set the directory caching the parsed headers (optional).  This is called by ANT.</p>
+     * <p>If set, the parsing is skipped if the preprocessed input is unchanged
+     * since a previous run, also of another task sharing the directory.</p>
+     * 
+     * @param  headerCache the optional header cache directory
+     */
+    public void setHeaderCache(String headerCache)
+    {
+        log( ("Setting header cache directory: " + headerCache), Project.MSG_VERBOSE);
+        this.headerCache=headerCache;
+    }
+
+    /**
+     * <p>Set the parallel flag (optional).  This is called by ANT.</p>
+     */
+    public void setParallel(boolean parallel)
+    {
+        log( ("Setting parallel flag: " + parallel), Project.MSG_VERBOSE);
+        this.parallel=parallel;
+    }
+
+    /**
+     * <p>Add a nested configuration, i.e. an emitter with its configuration file
+     * run on the same parsed source file.  This is called by ANT.</p>
+     * 
+     * @return the new {@link Configuration}
+     */
+    public Configuration createConfiguration()
+    {
+        Configuration configuration = new Configuration();
+        configurations.add(configuration);
+        return configuration;
+    }
+
     /**
      * <p>Set the emitter class name.  This is called by ANT.</p>
      * 
@@ -399,13 +479,31 @@ public class GlueGenTask extends Task
     {
         // outputRootDir is optional ..
 
-        // validate that the emitter class is set
-        if(!isValid(emitter))
-            throw new BuildException("Invalid emitter class name: " + emitter);
+        // validate that the emitter class and configuration file are set,
+        // which are optional if nested configurations are given
+        if(configurations.isEmpty() || isValid(emitter) || isValid(configuration)) {
+            if(!isValid(emitter))
+                throw new BuildException("Invalid emitter class name: " + emitter);
 
-        // validate that the configuration file is set
-        if(!isValid(configuration))
-            throw new BuildException("Invalid configuration file name: " + configuration);
+            if(!isValid(configuration))
+                throw new BuildException("Invalid configuration file name: " + configuration);
+        }
+
+        // the manifest file belongs to the task's own emitter configuration,
+        // nested configurations specify their own
+        if(!isValid(emitter) && isValid(manifest))
+            throw new BuildException("Manifest file requires the task's emitter and configuration, " +
+                                     "use the manifest attribute of the nested configurations instead: " + manifest);
+
+        for(Iterator<Configuration> iter=configurations.iterator(); iter.hasNext(); )
+        {
+            final Configuration c = iter.next();
+            if(!isValid(c.emitter))
+                throw new BuildException("Invalid emitter class name of nested configuration: " + c.emitter);
+
+            if(!isValid(c.config))
+                throw new BuildException("Invalid configuration file name of nested configuration: " + c.config);
+        }
             
         // validate that the source file is set
         if(!isValid(sourceFile))
@@ -457,16 +555,47 @@ public class GlueGenTask extends Task
             gluegenCommandline.createArgument().setValue("--dumpCPP");
         }
 
+        // add the parallel flag if enabled
+        if(parallel) {
+            gluegenCommandline.createArgument().setValue("--parallel");
+        }
+
         // add the output root dir
         if(null!=outputRootDir && outputRootDir.trim().length()>0) {
             gluegenCommandline.createArgument().setValue("-O" + outputRootDir);
         }
+
+        // add the manifest file
+        if(null!=manifest && manifest.trim().length()>0) {
+            gluegenCommandline.createArgument().setValue("-M" + manifest);
+        }
+
+        // add the header cache directory
+        if(null!=headerCache && headerCache.trim().length()>0) {
+            gluegenCommandline.createArgument().setValue("-H" + headerCache);
+        }
         
-        // add the emitter class name
-        gluegenCommandline.createArgument().setValue("-E" + emitter);
-        
-        // add the configuration file name
-        gluegenCommandline.createArgument().setValue("-C" + configuration);
+        // add the emitter class name and the configuration file name
+        if(isValid(emitter)) {
+            gluegenCommandline.createArgument().setValue("-E" + emitter);
+            gluegenCommandline.createArgument().setValue("-C" + configuration);
+        }
+
+        // add the nested configurations, which default to the task's output root dir
+        for(Iterator<Configuration> iter=configurations.iterator(); iter.hasNext(); )
+        {
+            final Configuration c = iter.next();
+            gluegenCommandline.createArgument().setValue("--config");
+            gluegenCommandline.createArgument().setValue("-E" + c.emitter);
+            gluegenCommandline.createArgument().setValue("-C" + c.config);
+            final String dir = isValid(c.outputRootDir) ? c.outputRootDir : outputRootDir;
+            if(isValid(dir)) {
+                gluegenCommandline.createArgument().setValue("-O" + dir);
+            }
+            if(isValid(c.manifest)) {
+                gluegenCommandline.createArgument().setValue("-M" + c.manifest);
+            }
+        }
         
         // add the includedSet to the setOfIncludeSets to simplify processing
         // all types of include sets ONLY if it has been set.
@@ -556,4 +685,49 @@ public class GlueGenTask extends Task
             throw new BuildException(ioe, location);
         }
     }
+
+    // =========================================================================
+    /**
+     * <p>A nested <code>configuration</code> element, i.e. an emitter class and
+     * its configuration file run on the same parsed source file.</p>
+     */
+    public static class Configuration
+    {
+        private String emitter;
+        private String config;
+        private String outputRootDir;
+        private String manifest;
+
+        /**
+         * <p>Set the emitter class name.  This is called by ANT.</p>
+         */
+        public void setEmitter(String emitter)
+        {
+            this.emitter = emitter;
+        }
+
+        /**
+         * <p>Set the configuration file name.  This is called by ANT.</p>
+         */
+        public void setConfig(String config)
+        {
+            this.config = config;
+        }
+
+        /**
+         * <p>Set the output root dir (optional), defaults to the task's.  This is called by ANT.</p>
+         */
+        public void setOutputRootDir(String outputRootDir)
+        {
+            this.outputRootDir = outputRootDir;
+        }
+
+        /**
+         * <p>Set the manifest file (optional).  This is called by ANT.</p>
+         */
+        public void setManifest(String manifest)
+        {
+            this.manifest = manifest;
+        }
+    }
 }
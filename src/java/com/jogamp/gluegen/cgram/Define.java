@@ -39,12 +39,17 @@
 
 package com.jogamp.gluegen.cgram;
 
+import java.io.Serializable;
+
 /** Represents a #define of a literal to a value (a number represented
     in string form.) */
 
-public class Define {
+public class Define implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   private String name;
   private String value;
+  private Number constantValue;
 
   public Define(String name, String value) {
     this.name = name;
@@ -53,4 +58,9 @@ public class Define {
 
   public String getName()  { return name; }
   public String getValue() { return value; }
+
+  /** Returns the value folded by the preprocessor as Integer, Long,
+      Float or Double, or null if it has not been folded. */
+  public Number getConstantValue() { return constantValue; }
+  public void setConstantValue(Number constantValue) { this.constantValue = constantValue; }
 }
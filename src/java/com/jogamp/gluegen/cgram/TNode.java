@@ -30,6 +30,8 @@ import java.util.Enumeration;
 
  */
 public class TNode extends CommonAST {
+  private static final long serialVersionUID = 1L;
+
   protected int ttype;
   protected String text;
   protected int lineNum = 0;
@@ -46,6 +46,8 @@ package com.jogamp.gluegen.cgram.types;
     should be passed in to the constructor. */
 
 public class ArrayType extends Type implements Cloneable {
+  private static final long serialVersionUID = 1L;
+
   private Type elementType;
   private int length;
   private String computedName;
@@ -43,6 +43,8 @@ package com.jogamp.gluegen.cgram.types;
 /** Represents a bitfield in a struct. */
 
 public class BitType extends IntType implements Cloneable {
+  private static final long serialVersionUID = 1L;
+
   private IntType underlyingType;
   private int sizeInBits;
   private int offset;
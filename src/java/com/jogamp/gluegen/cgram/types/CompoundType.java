@@ -47,6 +47,8 @@ import java.util.*;
     really defined. */
 
 public class CompoundType extends Type implements Cloneable {
+  private static final long serialVersionUID = 1L;
+
   private CompoundTypeKind kind;
   // The name "foo" in the construct "struct foo { ... }";
   private String structName;
@@ -39,12 +39,25 @@
 
 package com.jogamp.gluegen.cgram.types;
 
+import java.io.Serializable;
+
 /** Type-safe enum for discriminating between structs and unions,
     which are both represented as compound types. */
 
-public class CompoundTypeKind {
-  public static final CompoundTypeKind STRUCT = new CompoundTypeKind();
-  public static final CompoundTypeKind UNION  = new CompoundTypeKind();
+public class CompoundTypeKind implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  public static final CompoundTypeKind STRUCT = new CompoundTypeKind(0);
+  public static final CompoundTypeKind UNION  = new CompoundTypeKind(1);
+
+  private final int id;
+
+  private CompoundTypeKind(int id) {
+    this.id = id;
+  }
 
-  private CompoundTypeKind() {}
+  /** Preserves the identity of {@link #STRUCT} and {@link #UNION} across serialization. */
+  private Object readResolve() {
+    return 0 == id ? STRUCT : UNION;
+  }
 }
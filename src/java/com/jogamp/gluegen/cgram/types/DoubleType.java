@@ -42,6 +42,8 @@ package com.jogamp.gluegen.cgram.types;
 /** Represents a double-word floating-point type (C type "double".) */
 public class DoubleType extends PrimitiveType implements Cloneable {
 
+    private static final long serialVersionUID = 1L;
+
     public DoubleType(String name, SizeThunk size, int cvAttributes) {
         super(name, size, cvAttributes);
     }
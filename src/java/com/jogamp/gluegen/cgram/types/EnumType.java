@@ -39,6 +39,7 @@
  */
 package com.jogamp.gluegen.cgram.types;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.NoSuchElementException;
 
@@ -47,9 +48,13 @@ import java.util.NoSuchElementException;
 they have a set of named values. */
 public class EnumType extends IntType implements Cloneable {
 
+    private static final long serialVersionUID = 1L;
+
     private IntType underlyingType;
 
-    private static class Enum {
+    private static class Enum implements Serializable {
+
+        private static final long serialVersionUID = 1L;
 
         String name;
         long value;
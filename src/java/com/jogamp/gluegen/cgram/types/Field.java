@@ -39,9 +39,13 @@
 
 package com.jogamp.gluegen.cgram.types;
 
+import java.io.Serializable;
+
 /** Represents a field in a struct or union. */
 
-public class Field {
+public class Field implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   private String    name;
   private Type      type;
   private SizeThunk offset;
@@ -43,6 +43,8 @@ package com.jogamp.gluegen.cgram.types;
 /** Represents a single-word floating-point type (C type "float".) */
 
 public class FloatType extends PrimitiveType implements Cloneable {
+  private static final long serialVersionUID = 1L;
+
   public FloatType(String name, SizeThunk size, int cvAttributes) {
     super(name, size, cvAttributes);
   }
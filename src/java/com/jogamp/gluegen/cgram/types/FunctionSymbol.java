@@ -38,12 +38,16 @@
  */
 package com.jogamp.gluegen.cgram.types;
 
+import java.io.Serializable;
+
 /** Describes a function symbol, which includes the name and
 type. Since we are currently only concerned with processing
 functions this is the only symbol type, though plausibly more
 types should be added and a true symbol table constructed during
 parsing. */
-public class FunctionSymbol {
+public class FunctionSymbol implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private String name;
     private FunctionType type;
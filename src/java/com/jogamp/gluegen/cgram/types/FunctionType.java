@@ -45,6 +45,8 @@ import java.util.*;
 declarations and (via PointerType) function pointers. */
 public class FunctionType extends Type implements Cloneable {
 
+    private static final long serialVersionUID = 1L;
+
     private Type returnType;
     private ArrayList<Type> argumentTypes;
     private ArrayList<String> argumentNames;
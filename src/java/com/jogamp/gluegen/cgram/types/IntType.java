@@ -41,6 +41,8 @@ package com.jogamp.gluegen.cgram.types;
 
 public class IntType extends PrimitiveType implements Cloneable {
 
+    private static final long serialVersionUID = 1L;
+
     private boolean unsigned;
     private boolean typedefedUnsigned;
 
@@ -41,6 +41,8 @@ package com.jogamp.gluegen.cgram.types;
 
 public class PointerType extends Type implements Cloneable {
 
+    private static final long serialVersionUID = 1L;
+
     private Type targetType;
     private String computedName;
     private boolean hasTypedefedName;
@@ -41,6 +41,8 @@ package com.jogamp.gluegen.cgram.types;
 
 public abstract class PrimitiveType extends Type implements Cloneable {
 
+    private static final long serialVersionUID = 1L;
+
     protected PrimitiveType(String name, SizeThunk size, int cvAttributes) {
         super(name, size, cvAttributes);
     }
@@ -40,13 +40,17 @@
 
 package com.jogamp.gluegen.cgram.types;
 
+import java.io.Serializable;
+
 /** Provides a level of indirection between the definition of a type's
     size and the absolute value of this size. Necessary when
     generating glue code for two different CPU architectures (e.g.,
     32-bit and 64-bit) from the same internal representation of the
     various types involved. */
 
-public abstract class SizeThunk implements Cloneable {
+public abstract class SizeThunk implements Cloneable, Serializable {
+  private static final long serialVersionUID = 1L;
+
   // Private constructor because there are only a few of these
   private SizeThunk() {}
 
@@ -108,6 +112,32 @@ public abstract class SizeThunk implements Cloneable {
       }
     };
 
+  private static final SizeThunk[] PRIMITIVES = { CHAR, SHORT, INT, LONG, INT64, FLOAT, DOUBLE, POINTER };
+
+  /** Serializes the primitive thunks by their index, since types compare their sizes by identity. */
+  protected Object writeReplace() {
+    for (int i = 0; i < PRIMITIVES.length; i++) {
+      if (PRIMITIVES[i] == this) {
+        return new Primitive(i);
+      }
+    }
+    return this;
+  }
+
+  private static class Primitive implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int index;
+
+    Primitive(int index) {
+      this.index = index;
+    }
+
+    private Object readResolve() {
+      return PRIMITIVES[index];
+    }
+  }
+
   // Factory methods for performing certain limited kinds of
   // arithmetic on these values
   public static SizeThunk add(final SizeThunk thunk1,
@@ -40,13 +40,16 @@
 
 package com.jogamp.gluegen.cgram.types;
 
+import java.io.Serializable;
 import java.util.List;
 
 /** Models a C type. Primitive types include int, float, and
     double. All types have an associated name. Structs and unions are
     modeled as "compound" types -- composed of fields of primitive or
     other types. */
-public abstract class Type implements Cloneable {
+public abstract class Type implements Cloneable, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private String name;
   private SizeThunk size;
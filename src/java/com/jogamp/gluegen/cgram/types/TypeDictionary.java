@@ -39,11 +39,14 @@
 
 package com.jogamp.gluegen.cgram.types;
 
+import java.io.Serializable;
 import java.util.*;
 
 /** Utility class for recording names of typedefs and structs. */
 
-public class TypeDictionary {
+public class TypeDictionary implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   /** Mapping from type name to type.*/
   private HashMap<String, Type> map = new HashMap<String, Type>();
 
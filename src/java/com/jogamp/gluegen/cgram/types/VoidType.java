@@ -41,6 +41,8 @@ package com.jogamp.gluegen.cgram.types;
 
 public class VoidType extends Type implements Cloneable {
 
+    private static final long serialVersionUID = 1L;
+
     public VoidType(int cvAttributes) {
         this("void", cvAttributes);
     }
@@ -0,0 +1,284 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+
+package com.jogamp.gluegen.ffm;
+
+import static java.util.logging.Level.WARNING;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.jogamp.gluegen.CMethodBindingEmitter;
+import com.jogamp.gluegen.FunctionEmitter;
+import com.jogamp.gluegen.JavaConfiguration;
+import com.jogamp.gluegen.JavaEmitter;
+import com.jogamp.gluegen.JavaMethodBindingEmitter;
+import com.jogamp.gluegen.JavaType;
+import com.jogamp.gluegen.MethodBinding;
+import com.jogamp.gluegen.cgram.types.ArrayType;
+import com.jogamp.gluegen.cgram.types.CompoundType;
+import com.jogamp.gluegen.cgram.types.Field;
+import com.jogamp.gluegen.cgram.types.FunctionSymbol;
+import com.jogamp.gluegen.cgram.types.MachineDescription;
+import com.jogamp.gluegen.cgram.types.Type;
+
+/**
+ * A subclass of JavaEmitter which binds the C functions via the
+ * Foreign Function &amp; Memory API (<code>java.lang.foreign</code>)
+ * instead of JNI, hence no native glue code is emitted and no C compiler is required.
+ * <p>
+ * The public Java API is identical to the one of the JavaEmitter.
+ * Each implementing method invokes a static final downcall <code>MethodHandle</code>,
+ * which is looked up by the C function name in the libraries loaded by the class loader
+ * of the generated class and in the default libraries of the native linker.
+ * Hence the native library must be loaded before the implementing class is initialized.
+ * </p>
+ * <p>
+ * Direct buffers are passed as native segments. Primitive arrays and indirect buffers are passed
+ * as heap segments, which requires a critical downcall handle for the whole C function,
+ * i.e. the function must neither block nor call back into Java.
+ * Functions specified via <code>NioDirectOnly</code> only accept direct buffers and use a regular handle.
+ * Strings are copied into a confined arena for the duration of the call.
+ * Signatures which cannot be mapped, e.g. buffers returned with a native capacity expression,
+ * are emitted as methods throwing the unsupported exception type.
+ * </p>
+ * <p>
+ * Each concrete struct class additionally declares its <code>LAYOUT</code> as a <code>GroupLayout</code>.
+ * Calls through struct function pointers are still bound via JNI.
+ * </p>
+ * <p>
+ * The generated code requires Java 22 or later.
+ * </p>
+ */
+public class FFMEmitter extends JavaEmitter {
+
+    private static final String[] FFM_IMPORTS = {
+        "java.lang.foreign.Arena",
+        "java.lang.foreign.FunctionDescriptor",
+        "java.lang.foreign.GroupLayout",
+        "java.lang.foreign.Linker",
+        "java.lang.foreign.MemoryLayout",
+        "java.lang.foreign.MemorySegment",
+        "java.lang.foreign.SymbolLookup",
+        "java.lang.foreign.ValueLayout",
+        "java.lang.invoke.MethodHandle" };
+
+    /** C functions whose downcall handle has been emitted */
+    private final Set<String> emittedHandles = new HashSet<String>();
+
+    @Override
+    public void readConfigurationFile(String filename) throws Exception {
+        super.readConfigurationFile(filename);
+        List<String> imports = getConfig().imports();
+        for (String imp : FFM_IMPORTS) {
+            if (!imports.contains(imp)) {
+                imports.add(imp);
+            }
+        }
+        emittedHandles.clear();
+    }
+
+    @Override
+    protected boolean emitNativeCode() {
+        return false;
+    }
+
+    @Override
+    protected void emitAllFileHeaders() throws IOException {
+        super.emitAllFileHeaders();
+        JavaConfiguration cfg = getConfig();
+        if (cfg.allStatic()) {
+            emitDowncallSupport(javaWriter());
+        } else if (cfg.emitImpl()) {
+            emitDowncallSupport(javaImplWriter());
+        }
+    }
+
+    /** Emits the symbol lookup used by all downcall handles of the implementing class. */
+    protected void emitDowncallSupport(PrintWriter writer) {
+        writer.println("  private static final Linker _linker = Linker.nativeLinker();");
+        writer.println("  private static final SymbolLookup _lookup = SymbolLookup.loaderLookup().or(_linker.defaultLookup());");
+        writer.println();
+        writer.println("  /** Returns the downcall handle of the given C function, or null if not available */");
+        writer.println("  private static MethodHandle _downcall(String name, FunctionDescriptor function, Linker.Option... options) {");
+        writer.println("    return _lookup.find(name).map(address -> _linker.downcallHandle(address, function, options)).orElse(null);");
+        writer.println("  }");
+        writer.println();
+    }
+
+    @Override
+    protected List<? extends FunctionEmitter> generateMethodBindingEmitters(Set<MethodBinding> methodBindingSet, FunctionSymbol sym) throws Exception {
+        List<? extends FunctionEmitter> defaultEmitters = super.generateMethodBindingEmitters(methodBindingSet, sym);
+        ArrayList<FunctionEmitter> emitters = new ArrayList<FunctionEmitter>(defaultEmitters.size());
+        JavaConfiguration cfg = getConfig();
+
+        for (FunctionEmitter emitter : defaultEmitters) {
+            if (emitter instanceof CMethodBindingEmitter) {
+                // no JNI glue code
+                continue;
+            }
+            JavaMethodBindingEmitter javaEmitter = (JavaMethodBindingEmitter) emitter;
+            if (javaEmitter.isForImplementingMethodCall()) {
+                // private native entry point, replaced by the downcall handle
+                continue;
+            }
+            if (javaEmitter.isInterface() || cfg.isUnimplemented(sym.getName())) {
+                emitters.add(javaEmitter);
+                continue;
+            }
+            MethodBinding binding = javaEmitter.getBinding();
+            FFMJavaMethodBindingEmitter ffmEmitter =
+                new FFMJavaMethodBindingEmitter(javaEmitter, needsHeapAccess(binding, cfg));
+            if (ffmEmitter.isSupported()) {
+                if (emittedHandles.add(binding.getCSymbol().getName())) {
+                    ffmEmitter.setEmitDowncallHandle(true);
+                }
+            } else {
+                LOG.log(WARNING, "{0}: {1}", new Object[] { binding.getName(), ffmEmitter.getUnsupportedReasonString() });
+            }
+            emitters.add(ffmEmitter);
+        }
+        return emitters;
+    }
+
+    /**
+     * Returns true if one of the expanded bindings of the C function may pass heap memory,
+     * i.e. it takes primitive arrays or buffers and is not NIO direct only.
+     */
+    protected boolean needsHeapAccess(MethodBinding binding, JavaConfiguration cfg) {
+        if (cfg.nioDirectOnly(binding.getName())) {
+            return false;
+        }
+        for (int i = 0; i < binding.getNumArguments(); i++) {
+            JavaType type = binding.getJavaArgumentType(i);
+            if (type.isNIOBuffer() || type.isPrimitiveArray()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void emitStructLayout(PrintWriter writer, CompoundType structType, MachineDescription intMachDesc) {
+        String layout = groupLayout(structType, intMachDesc, Long.MAX_VALUE, "    ");
+        if (null == layout) {
+            return;
+        }
+        writer.println("  /** Memory layout of this struct for the Foreign Function &amp; Memory API */");
+        writer.println("  public static final GroupLayout LAYOUT = " + layout + ";");
+        writer.println();
+    }
+
+    /**
+     * Returns the layout expression of the given struct or union, or null if it contains bit fields.
+     * @param maxAlign the byte alignment guaranteed at its location, members aligned stronger are relaxed to it
+     */
+    private static String groupLayout(CompoundType type, MachineDescription md, long maxAlign, String indent) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(type.isUnion() ? "MemoryLayout.unionLayout(" : "MemoryLayout.structLayout(");
+        long offset = 0;
+        boolean first = true;
+        for (int i = 0; i < type.getNumFields(); i++) {
+            Field field = type.getField(i);
+            Type fieldType = field.getType();
+            if (fieldType.isBit()) {
+                return null;
+            }
+            long fieldOffset = field.getOffset(md);
+            if (!type.isUnion() && fieldOffset > offset) {
+                first = appendMember(sb, "MemoryLayout.paddingLayout(" + (fieldOffset - offset) + ")", first, indent);
+            }
+            String member = layout(fieldType, md, Math.min(maxAlign, alignmentOf(fieldOffset)), indent + "  ");
+            if (null == member) {
+                return null;
+            }
+            if (null != field.getName()) {
+                member += ".withName(\"" + field.getName() + "\")";
+            }
+            first = appendMember(sb, member, first, indent);
+            offset = Math.max(offset, type.isUnion() ? fieldType.getSize(md) : fieldOffset + fieldType.getSize(md));
+        }
+        long size = type.getSize(md);
+        if (size > offset) {
+            appendMember(sb, "MemoryLayout.paddingLayout(" + (type.isUnion() ? size : size - offset) + ")", first, indent);
+        }
+        sb.append(")");
+        return sb.toString();
+    }
+
+    private static boolean appendMember(StringBuilder sb, String member, boolean first, String indent) {
+        if (!first) {
+            sb.append(",");
+        }
+        sb.append("\n").append(indent).append(member);
+        return false;
+    }
+
+    private static String layout(Type type, MachineDescription md, long maxAlign, String indent) {
+        final long size = type.getSize(md);
+        String layout;
+        if (type.isPointer()) {
+            layout = "ValueLayout.ADDRESS";
+        } else if (type.isFloat()) {
+            layout = "ValueLayout.JAVA_FLOAT";
+        } else if (type.isDouble()) {
+            layout = "ValueLayout.JAVA_DOUBLE";
+        } else if ((type.isInt() || type.isEnum()) && 1 == size) {
+            layout = "ValueLayout.JAVA_BYTE";
+        } else if ((type.isInt() || type.isEnum()) && 2 == size) {
+            layout = "ValueLayout.JAVA_SHORT";
+        } else if ((type.isInt() || type.isEnum()) && 4 == size) {
+            layout = "ValueLayout.JAVA_INT";
+        } else if ((type.isInt() || type.isEnum()) && 8 == size) {
+            layout = "ValueLayout.JAVA_LONG";
+        } else if (type.isArray() && type.asArray().hasLength()) {
+            ArrayType arrayType = type.asArray();
+            Type elementType = arrayType.getElementType();
+            String element = layout(elementType, md, Math.min(maxAlign, alignmentOf(elementType.getSize(md))), indent);
+            return null == element ? null : "MemoryLayout.sequenceLayout(" + arrayType.getLength() + ", " + element + ")";
+        } else if (type.isCompound()) {
+            return groupLayout(type.asCompound(), md, maxAlign, indent);
+        } else {
+            return "MemoryLayout.paddingLayout(" + size + ")";
+        }
+        if (size > maxAlign) {
+            layout += ".withByteAlignment(" + maxAlign + ")";
+        }
+        return layout;
+    }
+
+    /** Returns the largest power of two dividing the given offset */
+    private static long alignmentOf(long offset) {
+        return 0 == offset ? Long.MAX_VALUE : Long.lowestOneBit(offset);
+    }
+}
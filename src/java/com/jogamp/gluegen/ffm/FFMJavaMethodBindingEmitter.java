@@ -0,0 +1,337 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+
+package com.jogamp.gluegen.ffm;
+
+import java.io.PrintWriter;
+
+import com.jogamp.gluegen.JavaMethodBindingEmitter;
+import com.jogamp.gluegen.JavaType;
+import com.jogamp.gluegen.MethodBinding;
+import com.jogamp.gluegen.cgram.types.Type;
+
+/**
+ * A specialization of JavaMethodBindingEmitter which implements the public
+ * Java method by invoking a downcall <code>java.lang.invoke.MethodHandle</code>
+ * of the Foreign Function &amp; Memory API instead of a native method.
+ * <p>
+ * The generated code requires Java 22 or later.
+ * </p>
+ */
+public class FFMJavaMethodBindingEmitter extends JavaMethodBindingEmitter {
+
+    /** Prefix of the static downcall handle field of each bound C function. */
+    public static final String HANDLE_VAR_PREFIX = "_mh_";
+
+    protected boolean emitDowncallHandle;
+    protected final boolean heapAccess;
+    protected final String unsupportedReason;
+
+    /**
+     * @param methodToWrap the public implementing method emitter
+     * @param heapAccess if true, the downcall handle allows passing heap memory, i.e. primitive arrays and indirect buffers
+     */
+    public FFMJavaMethodBindingEmitter(JavaMethodBindingEmitter methodToWrap, boolean heapAccess) {
+        super(methodToWrap);
+        removeModifier(NATIVE);
+        setEmitBody(true);
+        this.heapAccess = heapAccess;
+        this.unsupportedReason = getUnsupportedReason();
+    }
+
+    /** Returns false if the signature cannot be mapped to a downcall, the method will throw an exception. */
+    public boolean isSupported() {
+        return null == unsupportedReason;
+    }
+
+    public String getUnsupportedReasonString() {
+        return unsupportedReason;
+    }
+
+    /** If true, the static downcall handle field of the C function is emitted ahead of the method. */
+    public void setEmitDowncallHandle(boolean v) {
+        emitDowncallHandle = v;
+    }
+
+    protected String getHandleName() {
+        return HANDLE_VAR_PREFIX + binding.getCSymbol().getName();
+    }
+
+    @Override
+    public void emit(PrintWriter output) {
+        if (emitDowncallHandle) {
+            emitDowncallHandle(output);
+        }
+        super.emit(output);
+    }
+
+    protected void emitDowncallHandle(PrintWriter writer) {
+        writer.print("  private static final MethodHandle " + getHandleName() + " = _downcall(\"" + binding.getCSymbol().getName() + "\", ");
+        final JavaType returnType = binding.getJavaReturnType();
+        if (returnType.isVoid()) {
+            writer.print("FunctionDescriptor.ofVoid(");
+        } else {
+            writer.print("FunctionDescriptor.of(" + valueLayout(returnType, binding.getCReturnType()));
+        }
+        boolean needComma = !returnType.isVoid();
+        for (int i = 0; i < binding.getNumArguments(); i++) {
+            final JavaType type = binding.getJavaArgumentType(i);
+            if (type.isVoid()) {
+                continue;
+            }
+            if (needComma) {
+                writer.print(", ");
+            }
+            writer.print(valueLayout(type, binding.getCArgumentType(i)));
+            needComma = true;
+        }
+        writer.print(")");
+        if (heapAccess) {
+            writer.print(", Linker.Option.critical(true)");
+        }
+        writer.println(");");
+        writer.println();
+    }
+
+    /** Returns the <code>ValueLayout</code> expression passing the given type. */
+    protected static String valueLayout(JavaType type, Type cType) {
+        if (!type.isPrimitive() || cType.isPointer() || cType.isArray()) {
+            return "ValueLayout.ADDRESS";
+        }
+        final Class<?> c = type.getJavaClass();
+        if (c == Long.TYPE) {
+            return "ValueLayout.JAVA_LONG";
+        } else if (c == Integer.TYPE) {
+            return "ValueLayout.JAVA_INT";
+        } else if (c == Short.TYPE) {
+            return "ValueLayout.JAVA_SHORT";
+        } else if (c == Byte.TYPE) {
+            return "ValueLayout.JAVA_BYTE";
+        } else if (c == Float.TYPE) {
+            return "ValueLayout.JAVA_FLOAT";
+        } else if (c == Double.TYPE) {
+            return "ValueLayout.JAVA_DOUBLE";
+        } else if (c == Character.TYPE) {
+            return "ValueLayout.JAVA_CHAR";
+        } else if (c == Boolean.TYPE) {
+            return "ValueLayout.JAVA_BOOLEAN";
+        }
+        throw new RuntimeException("Unsupported primitive type " + type);
+    }
+
+    /** Returns the Java type carrying the given type through the downcall handle. */
+    protected static String carrierType(JavaType type, Type cType) {
+        if (!type.isPrimitive() || cType.isPointer() || cType.isArray()) {
+            return "MemorySegment";
+        }
+        return type.getName();
+    }
+
+    private String getUnsupportedReason() {
+        if (binding.hasContainingType()) {
+            return "Calls through struct function pointers are not supported";
+        }
+        final JavaType returnType = binding.getJavaReturnType();
+        final Type cReturnType = binding.getCReturnType();
+        if (returnType.isNIOBuffer() || returnType.isArrayOfCompoundTypeWrappers() ||
+            null != getReturnedArrayLengthExpression()) {
+            // ReturnValueCapacity and ReturnedArrayLength are C expressions
+            return "Returning a native buffer of computed size is not supported";
+        }
+        if ((returnType.isCompoundTypeWrapper() && !cReturnType.isPointer()) ||
+            (!returnType.isVoid() && !returnType.isPrimitive() &&
+             !returnType.isString() && !returnType.isCompoundTypeWrapper())) {
+            return "Return type " + cReturnType.getName() + " is not supported";
+        }
+        for (int i = 0; i < binding.getNumArguments(); i++) {
+            final JavaType type = binding.getJavaArgumentType(i);
+            final Type cType = binding.getCArgumentType(i);
+            if (type.isVoid() || binding.isArgumentThisPointer(i)) {
+                continue;
+            }
+            if (type.isJNIEnv() ||
+                (type.isCompoundTypeWrapper() && !cType.isPointer()) ||
+                !(type.isPrimitive() || type.isString() || type.isNIOBuffer() ||
+                  type.isPrimitiveArray() || type.isCompoundTypeWrapper())) {
+                return "Argument " + getArgumentName(i) + " of type " + cType.getName() + " is not supported";
+            }
+        }
+        return null;
+    }
+
+    private boolean usesStrings() {
+        for (int i = 0; i < binding.getNumArguments(); i++) {
+            if (binding.getJavaArgumentType(i).isString()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void emitBody(PrintWriter writer) {
+        writer.println("  {");
+        writer.println();
+        if (isUnimplemented) {
+            writer.println("    throw new " + getUnsupportedExceptionType() + "(\"Unimplemented\");");
+        } else if (null != unsupportedReason) {
+            writer.println("    throw new " + getUnsupportedExceptionType() + "(\"" + unsupportedReason + "\");");
+        } else {
+            emitPrologueOrEpilogue(prologue, writer);
+            emitPreCallSetup(binding, writer);
+            emitReturnVariableSetupAndCall(binding, writer);
+        }
+        writer.println("  }");
+    }
+
+    @Override
+    protected void emitPreCallSetup(MethodBinding binding, PrintWriter writer) {
+        writer.println("    if (" + getHandleName() + " == null) {");
+        writer.println("      throw new " + getUnsupportedExceptionType() + "(\"Method \\\"" + binding.getCSymbol().getName() + "\\\" not available\");");
+        writer.println("    }");
+        for (int i = 0; i < binding.getNumArguments(); i++) {
+            final JavaType type = binding.getJavaArgumentType(i);
+            final String argName = getArgumentName(i);
+            if (type.isNIOBuffer() && directNIOOnly) {
+                writer.println("    if (" + argName + " != null && !" + argName + ".isDirect())");
+                writer.println("      throw new " + getRuntimeExceptionType() + "(\"Argument \\\"" + argName + "\\\" was not a direct buffer\");");
+            } else if (type.isPrimitiveArray()) {
+                final String offsetArg = offsetArgName(i);
+                writer.println("    if(" + argName + " != null && " + argName + ".length <= " + offsetArg + ")");
+                writer.print  ("      throw new " + getRuntimeExceptionType());
+                writer.println("(\"array offset argument \\\"" + offsetArg + "\\\" (\" + " + offsetArg +
+                               " + \") equals or exceeds array length (\" + " + argName + ".length + \")\");");
+            }
+        }
+    }
+
+    @Override
+    protected void emitReturnVariableSetupAndCall(MethodBinding binding, PrintWriter writer) {
+        final JavaType returnType = binding.getJavaReturnType();
+        final String carrier = returnType.isVoid() ? null : carrierType(returnType, binding.getCReturnType());
+        if (null != carrier) {
+            writer.println("    final " + carrier + " _res;");
+        }
+        writer.print("    try ");
+        if (usesStrings()) {
+            // strings are copied into native memory for the duration of the call
+            writer.print("(Arena _arena = Arena.ofConfined()) ");
+        }
+        writer.println("{");
+        writer.print("      ");
+        if (null != carrier) {
+            writer.print("_res = (" + carrier + ") ");
+        }
+        writer.print(getHandleName() + ".invokeExact(");
+        emitCallArguments(binding, writer);
+        writer.println(");");
+        writer.println("    } catch (RuntimeException | Error _e) {");
+        writer.println("      throw _e;");
+        writer.println("    } catch (Throwable _t) {");
+        writer.println("      throw new AssertionError(_t);");
+        writer.println("    }");
+        emitPrologueOrEpilogue(epilogue, writer);
+        if (null != carrier) {
+            emitCallResultReturn(binding, writer);
+        }
+    }
+
+    @Override
+    protected int emitCallArguments(MethodBinding binding, PrintWriter writer) {
+        int numArgsEmitted = 0;
+        for (int i = 0; i < binding.getNumArguments(); i++) {
+            final JavaType type = binding.getJavaArgumentType(i);
+            final String argName = getArgumentName(i);
+            if (type.isVoid()) {
+                continue;
+            }
+            if (numArgsEmitted > 0) {
+                writer.print(", ");
+            }
+            if (type.isPrimitive()) {
+                final Type cType = binding.getCArgumentType(i);
+                if (cType.isPointer() || cType.isArray()) {
+                    // opaque pointer
+                    writer.print("MemorySegment.ofAddress(" + argName + ")");
+                } else {
+                    writer.print(argName);
+                }
+            } else {
+                writer.print(argName + " == null ? MemorySegment.NULL : ");
+                if (type.isString()) {
+                    writer.print("_arena.allocateFrom(" + argName + ")");
+                } else if (type.isPrimitiveArray()) {
+                    writer.print("MemorySegment.ofArray(" + argName + ").asSlice(");
+                    if (type.isFloatArray()) {
+                        writer.print("Buffers.SIZEOF_FLOAT * ");
+                    } else if (type.isDoubleArray()) {
+                        writer.print("Buffers.SIZEOF_DOUBLE * ");
+                    } else if (type.isLongArray()) {
+                        writer.print("Buffers.SIZEOF_LONG * ");
+                    } else if (type.isShortArray()) {
+                        writer.print("Buffers.SIZEOF_SHORT * ");
+                    } else if (type.isIntArray()) {
+                        writer.print("Buffers.SIZEOF_INT * ");
+                    } else if (!type.isByteArray()) {
+                        throw new RuntimeException("Unsupported type for calculating array offset argument for " + argName +
+                                                   " -- error occurred while processing Java glue code for " + getName());
+                    }
+                    writer.print(offsetArgName(i) + ")");
+                } else if (type.isCompoundTypeWrapper() || !java.nio.Buffer.class.isAssignableFrom(type.getJavaClass())) {
+                    // segment of the backing ByteBuffer at its position
+                    writer.print("MemorySegment.ofBuffer(" + argName + ".getBuffer())");
+                } else {
+                    writer.print("MemorySegment.ofBuffer(" + argName + ")");
+                }
+            }
+            ++numArgsEmitted;
+        }
+        return numArgsEmitted;
+    }
+
+    @Override
+    protected void emitCallResultReturn(MethodBinding binding, PrintWriter writer) {
+        final JavaType returnType = binding.getJavaReturnType();
+        final Type cReturnType = binding.getCReturnType();
+        if (returnType.isPrimitive()) {
+            if (cReturnType.isPointer() || cReturnType.isArray()) {
+                // opaque pointer
+                writer.println("    return " + (returnType.isLong() ? "" : "(" + returnType.getName() + ") ") + "_res.address();");
+            } else {
+                writer.println("    return _res;");
+            }
+        } else if (returnType.isString()) {
+            writer.println("    return 0 == _res.address() ? null : _res.reinterpret(Long.MAX_VALUE).getString(0);");
+        } else {
+            final String typeName = returnType.getName();
+            writer.println("    return 0 == _res.address() ? null : " + typeName + ".create(Buffers.nativeOrder(_res.reinterpret(" +
+                           typeName + ".size()).asByteBuffer()));");
+        }
+    }
+}
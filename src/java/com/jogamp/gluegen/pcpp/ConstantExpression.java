@@ -0,0 +1,634 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+
+package com.jogamp.gluegen.pcpp;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * A compiled constant expression, i.e. the condition of an <code>#if</code> directive
+ * or the value of a <code>#define</code>.
+ * <p>
+ * The text is compiled once into a small tree, which can be evaluated repeatedly.
+ * Identifiers are resolved at evaluation time by a {@link Resolver},
+ * hence the same compiled expression stays valid if macros are redefined.
+ * </p>
+ * <p>
+ * Values are typed as <code>Integer</code>, <code>Long</code>, <code>Float</code> or <code>Double</code>
+ * and combined following Java's binary numeric promotion, since folded <code>#define</code> values are emitted as Java constants.
+ * An integer literal is an <code>Integer</code> if it fits, otherwise or with an <code>L</code> suffix a <code>Long</code>,
+ * a floating point literal with an <code>f</code> suffix is a <code>Float</code>, otherwise a <code>Double</code>.
+ * Comparisons and logical operators yield 0 or 1.
+ * A preprocessor condition is evaluated with all integers promoted to <code>long</code>, like <code>intmax_t</code> in C.
+ * Unsigned arithmetic is not distinguished.
+ * </p>
+ */
+public final class ConstantExpression {
+
+    /** Resolves the identifiers of an expression */
+    public interface Resolver {
+        /**
+         * Returns the value of the given identifier as <code>Integer</code>, <code>Long</code>, <code>Float</code> or <code>Double</code>,
+         * or null if it is not a constant.
+         */
+        Number resolve(String identifier);
+    }
+
+    // Operators
+    private static final int OR = 1, AND = 2, BIT_OR = 3, XOR = 4, BIT_AND = 5, EQ = 6, NE = 7,
+                             LT = 8, GT = 9, LE = 10, GE = 11, SHL = 12, SHR = 13,
+                             ADD = 14, SUB = 15, MUL = 16, DIV = 17, MOD = 18,
+                             NOT = 19, COMPL = 20, QUESTION = 21, COLON = 22, LPAREN = 23, RPAREN = 24;
+
+    /** The precedence of the binary operators, 0 for all others */
+    private static final int[] PRECEDENCE = { 0, 1, 2, 3, 4, 5, 6, 6, 7, 7, 7, 7, 8, 8, 9, 9, 10, 10, 10,
+                                              0, 0, 0, 0, 0, 0 };
+
+    // Value kinds in the order of the numeric promotion
+    private static final int INT = 0, LONG = 1, FLOAT = 2, DOUBLE = 3;
+
+    private final String text;
+    private final Node root;
+
+    private ConstantExpression(String text, Node root) {
+        this.text = text;
+        this.root = root;
+    }
+
+    /**
+     * Compiles the given text.
+     * Returns null if the text is not a constant expression,
+     * e.g. it is empty, contains a cast, a string or a function call.
+     */
+    public static ConstantExpression compile(String text) {
+        Parser p = new Parser(text);
+        p.next();
+        Node root = p.parseConditional();
+        if (null == root || Parser.END != p.tok) {
+            return null;
+        }
+        return new ConstantExpression(text, root);
+    }
+
+    /**
+     * Evaluates this expression.
+     *
+     * @param resolver resolves the identifiers, if null an identifier is not a constant
+     * @param condition if true, integers are promoted to <code>long</code> as in a preprocessor condition
+     * @return the value, or null if it is not a constant, e.g. an identifier cannot be resolved or a division by zero
+     */
+    public Number evaluate(Resolver resolver, boolean condition) {
+        Number n = root.eval(resolver, condition);
+        if (condition && n instanceof Integer) {
+            n = Long.valueOf(n.longValue());
+        }
+        return n;
+    }
+
+    /** Returns true if the given value is not zero */
+    public static boolean isNonZero(Number n) {
+        if (n instanceof Double || n instanceof Float) {
+            return 0 != n.doubleValue();
+        }
+        return 0 != n.longValue();
+    }
+
+    /**
+     * Concatenates the given tokens to the text of an expression,
+     * separating only adjacent words.
+     */
+    static String join(List<String> tokens) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tokens.size(); i++) {
+            String t = tokens.get(i);
+            if (0 < sb.length() && 0 < t.length() &&
+                isWordChar(sb.charAt(sb.length() - 1)) && isWordChar(t.charAt(0))) {
+                sb.append(' ');
+            }
+            sb.append(t);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    //
+    // Evaluation
+    //
+
+    private static abstract class Node {
+        abstract Number eval(Resolver r, boolean condition);
+    }
+
+    private static final class Literal extends Node {
+        final Number value;
+        final Number promoted;
+        Literal(Number value) {
+            this.value = value;
+            this.promoted = value instanceof Integer ? Long.valueOf(value.longValue()) : value;
+        }
+        Number eval(Resolver r, boolean condition) {
+            return condition ? promoted : value;
+        }
+    }
+
+    private static final class Identifier extends Node {
+        final String name;
+        Identifier(String name) {
+            this.name = name;
+        }
+        Number eval(Resolver r, boolean condition) {
+            return null != r ? r.resolve(name) : null;
+        }
+    }
+
+    private static final class Unary extends Node {
+        final int op;
+        final Node operand;
+        Unary(int op, Node operand) {
+            this.op = op;
+            this.operand = operand;
+        }
+        Number eval(Resolver r, boolean condition) {
+            Number v = operand.eval(r, condition);
+            if (null == v) {
+                return null;
+            }
+            switch (op) {
+                case ADD:
+                    return v;
+                case NOT:
+                    return bool(!isNonZero(v), condition);
+                case SUB:
+                    switch (kind(v, condition)) {
+                        case INT:    return Integer.valueOf(-v.intValue());
+                        case LONG:   return Long.valueOf(-v.longValue());
+                        case FLOAT:  return Float.valueOf(-v.floatValue());
+                        default:     return Double.valueOf(-v.doubleValue());
+                    }
+                default: // COMPL
+                    switch (kind(v, condition)) {
+                        case INT:    return Integer.valueOf(~v.intValue());
+                        case LONG:   return Long.valueOf(~v.longValue());
+                        default:     return null;
+                    }
+            }
+        }
+    }
+
+    private static final class Binary extends Node {
+        final int op;
+        final Node left, right;
+        Binary(int op, Node left, Node right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+        Number eval(Resolver r, boolean condition) {
+            final Number a = left.eval(r, condition);
+            if (null == a) {
+                return null;
+            }
+            if (AND == op || OR == op) {
+                final boolean t = isNonZero(a);
+                if (AND == op ? !t : t) {
+                    return bool(t, condition);
+                }
+                final Number b = right.eval(r, condition);
+                return null != b ? bool(isNonZero(b), condition) : null;
+            }
+            final Number b = right.eval(r, condition);
+            if (null == b) {
+                return null;
+            }
+            final int ka = kind(a, condition);
+            final int kb = kind(b, condition);
+            if (SHL == op || SHR == op) {
+                // the type of a shift is the one of its left operand
+                if (ka > LONG || kb > LONG) {
+                    return null;
+                }
+                final int n = b.intValue();
+                if (INT == ka) {
+                    return Integer.valueOf(SHL == op ? a.intValue() << n : a.intValue() >> n);
+                }
+                return Long.valueOf(SHL == op ? a.longValue() << n : a.longValue() >> n);
+            }
+            final int k = Math.max(ka, kb);
+            if (EQ <= op && op <= GE) {
+                return bool(k <= LONG ? compare(op, a.longValue(), b.longValue())
+                                      : compare(op, a.doubleValue(), b.doubleValue()), condition);
+            }
+            switch (k) {
+                case INT: {
+                    final int x = a.intValue(), y = b.intValue();
+                    switch (op) {
+                        case ADD:     return Integer.valueOf(x + y);
+                        case SUB:     return Integer.valueOf(x - y);
+                        case MUL:     return Integer.valueOf(x * y);
+                        case DIV:     return 0 != y ? Integer.valueOf(x / y) : null;
+                        case MOD:     return 0 != y ? Integer.valueOf(x % y) : null;
+                        case BIT_AND: return Integer.valueOf(x & y);
+                        case BIT_OR:  return Integer.valueOf(x | y);
+                        default:      return Integer.valueOf(x ^ y);
+                    }
+                }
+                case LONG: {
+                    final long x = a.longValue(), y = b.longValue();
+                    switch (op) {
+                        case ADD:     return Long.valueOf(x + y);
+                        case SUB:     return Long.valueOf(x - y);
+                        case MUL:     return Long.valueOf(x * y);
+                        case DIV:     return 0 != y ? Long.valueOf(x / y) : null;
+                        case MOD:     return 0 != y ? Long.valueOf(x % y) : null;
+                        case BIT_AND: return Long.valueOf(x & y);
+                        case BIT_OR:  return Long.valueOf(x | y);
+                        default:      return Long.valueOf(x ^ y);
+                    }
+                }
+                case FLOAT: {
+                    final float x = a.floatValue(), y = b.floatValue();
+                    switch (op) {
+                        case ADD:     return Float.valueOf(x + y);
+                        case SUB:     return Float.valueOf(x - y);
+                        case MUL:     return Float.valueOf(x * y);
+                        case DIV:     return Float.valueOf(x / y);
+                        default:      return null;
+                    }
+                }
+                default: {
+                    final double x = a.doubleValue(), y = b.doubleValue();
+                    switch (op) {
+                        case ADD:     return Double.valueOf(x + y);
+                        case SUB:     return Double.valueOf(x - y);
+                        case MUL:     return Double.valueOf(x * y);
+                        case DIV:     return Double.valueOf(x / y);
+                        default:      return null;
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Conditional extends Node {
+        final Node cond, then, otherwise;
+        Conditional(Node cond, Node then, Node otherwise) {
+            this.cond = cond;
+            this.then = then;
+            this.otherwise = otherwise;
+        }
+        Number eval(Resolver r, boolean condition) {
+            Number c = cond.eval(r, condition);
+            if (null == c) {
+                return null;
+            }
+            return ( isNonZero(c) ? then : otherwise ).eval(r, condition);
+        }
+    }
+
+    private static int kind(Number n, boolean condition) {
+        if (n instanceof Double) {
+            return DOUBLE;
+        } else if (n instanceof Float) {
+            return FLOAT;
+        } else if (n instanceof Long || condition) {
+            return LONG;
+        }
+        return INT;
+    }
+
+    private static Number bool(boolean b, boolean condition) {
+        if (condition) {
+            return Long.valueOf(b ? 1 : 0);
+        }
+        return Integer.valueOf(b ? 1 : 0);
+    }
+
+    private static boolean compare(int op, long x, long y) {
+        switch (op) {
+            case EQ: return x == y;
+            case NE: return x != y;
+            case LT: return x < y;
+            case GT: return x > y;
+            case LE: return x <= y;
+            default: return x >= y;
+        }
+    }
+
+    private static boolean compare(int op, double x, double y) {
+        switch (op) {
+            case EQ: return x == y;
+            case NE: return x != y;
+            case LT: return x < y;
+            case GT: return x > y;
+            case LE: return x <= y;
+            default: return x >= y;
+        }
+    }
+
+    //
+    // Parsing
+    //
+
+    /** A recursive descent parser, reading the tokens on demand */
+    private static final class Parser {
+        static final int END = 0, NUMBER = 1, IDENT = 2, OP = 3, BAD = 4;
+
+        final String s;
+        int pos;
+
+        int tok;
+        int op;
+        Number number;
+        String ident;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        Node parseConditional() {
+            Node c = parseBinary(1);
+            if (null != c && isOp(QUESTION)) {
+                next();
+                Node a = parseConditional();
+                if (null == a || !isOp(COLON)) {
+                    return null;
+                }
+                next();
+                Node b = parseConditional();
+                return null != b ? new Conditional(c, a, b) : null;
+            }
+            return c;
+        }
+
+        Node parseBinary(int minPrecedence) {
+            Node l = parseUnary();
+            while (null != l && OP == tok && PRECEDENCE[op] >= minPrecedence) {
+                final int o = op;
+                next();
+                Node r = parseBinary(PRECEDENCE[o] + 1);
+                l = null != r ? new Binary(o, l, r) : null;
+            }
+            return l;
+        }
+
+        Node parseUnary() {
+            switch (tok) {
+                case NUMBER: {
+                    Node n = new Literal(number);
+                    next();
+                    return n;
+                }
+                case IDENT: {
+                    Node n = new Identifier(ident);
+                    next();
+                    return n;
+                }
+                case OP:
+                    if (ADD == op || SUB == op || NOT == op || COMPL == op) {
+                        final int o = op;
+                        next();
+                        Node n = parseUnary();
+                        return null != n ? new Unary(o, n) : null;
+                    }
+                    if (LPAREN == op) {
+                        next();
+                        Node n = parseConditional();
+                        if (null == n || !isOp(RPAREN)) {
+                            return null;
+                        }
+                        next();
+                        return n;
+                    }
+                    return null;
+                default:
+                    return null;
+            }
+        }
+
+        boolean isOp(int o) {
+            return OP == tok && o == op;
+        }
+
+        /** Reads the next token */
+        void next() {
+            final int len = s.length();
+            while (pos < len && Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+            if (pos == len) {
+                tok = END;
+                return;
+            }
+            final char c = s.charAt(pos);
+            if (isDigit(c) || (c == '.' && pos + 1 < len && isDigit(s.charAt(pos + 1)))) {
+                readNumber();
+                return;
+            }
+            if (Character.isLetter(c) || c == '_' || c == '$') {
+                final int start = pos;
+                while (pos < len && ( Character.isLetterOrDigit(s.charAt(pos)) || s.charAt(pos) == '_' || s.charAt(pos) == '$' )) {
+                    pos++;
+                }
+                ident = s.substring(start, pos);
+                tok = IDENT;
+                return;
+            }
+            if (c == '\'') {
+                readChar();
+                return;
+            }
+            pos++;
+            tok = OP;
+            final char d = pos < len ? s.charAt(pos) : 0;
+            switch (c) {
+                case '|': op = d == '|' ? OR : BIT_OR; break;
+                case '&': op = d == '&' ? AND : BIT_AND; break;
+                case '<': op = d == '<' ? SHL : ( d == '=' ? LE : LT ); break;
+                case '>': op = d == '>' ? SHR : ( d == '=' ? GE : GT ); break;
+                case '=': op = EQ; if (d != '=') { tok = BAD; } break;
+                case '!': op = d == '=' ? NE : NOT; break;
+                case '^': op = XOR; break;
+                case '+': op = ADD; break;
+                case '-': op = SUB; break;
+                case '*': op = MUL; break;
+                case '/': op = DIV; break;
+                case '%': op = MOD; break;
+                case '~': op = COMPL; break;
+                case '?': op = QUESTION; break;
+                case ':': op = COLON; break;
+                case '(': op = LPAREN; break;
+                case ')': op = RPAREN; break;
+                default:  tok = BAD; break;
+            }
+            if (OR == op || AND == op || SHL == op || SHR == op || LE == op || GE == op || EQ == op || NE == op) {
+                pos++;
+            }
+        }
+
+        private void readNumber() {
+            final int len = s.length();
+            final int start = pos;
+            boolean hex = false, fp = false;
+            if (s.charAt(pos) == '0' && pos + 1 < len && ( s.charAt(pos + 1) == 'x' || s.charAt(pos + 1) == 'X' )) {
+                hex = true;
+                pos += 2;
+                while (pos < len && Character.digit(s.charAt(pos), 16) >= 0) {
+                    pos++;
+                }
+            } else {
+                while (pos < len && isDigit(s.charAt(pos))) {
+                    pos++;
+                }
+                if (pos < len && s.charAt(pos) == '.') {
+                    fp = true;
+                    pos++;
+                    while (pos < len && isDigit(s.charAt(pos))) {
+                        pos++;
+                    }
+                }
+                if (pos < len && ( s.charAt(pos) == 'e' || s.charAt(pos) == 'E' )) {
+                    fp = true;
+                    pos++;
+                    if (pos < len && ( s.charAt(pos) == '+' || s.charAt(pos) == '-' )) {
+                        pos++;
+                    }
+                    while (pos < len && isDigit(s.charAt(pos))) {
+                        pos++;
+                    }
+                }
+            }
+            final int end = pos;
+            while (pos < len && ( Character.isLetterOrDigit(s.charAt(pos)) || s.charAt(pos) == '_' )) {
+                pos++;
+            }
+            final String suffix = s.substring(end, pos);
+            tok = BAD;
+            try {
+                if (fp) {
+                    final String t = s.substring(start, end);
+                    if (suffix.equalsIgnoreCase("f")) {
+                        number = Float.valueOf(Float.parseFloat(t));
+                    } else if (suffix.length() == 0 || suffix.equalsIgnoreCase("l")) {
+                        number = Double.valueOf(Double.parseDouble(t));
+                    } else {
+                        return;
+                    }
+                } else {
+                    boolean isLong = false;
+                    for (int i = 0; i < suffix.length(); i++) {
+                        final char c = suffix.charAt(i);
+                        if (c == 'l' || c == 'L') {
+                            isLong = true;
+                        } else if (c != 'u' && c != 'U') {
+                            return;
+                        }
+                    }
+                    final String digits = hex ? s.substring(start + 2, end) : s.substring(start, end);
+                    final int radix = hex ? 16 : ( digits.length() > 1 && digits.charAt(0) == '0' ? 8 : 10 );
+                    long v;
+                    try {
+                        v = Long.parseLong(digits, radix);
+                    } catch (NumberFormatException e) {
+                        // unsigned 64 bit
+                        final BigInteger b = new BigInteger(digits, radix);
+                        if (b.bitLength() > 64) {
+                            return;
+                        }
+                        v = b.longValue();
+                    }
+                    // the same bounds JavaEmitter used to apply
+                    if (!isLong && v > Integer.MIN_VALUE && v < Integer.MAX_VALUE) {
+                        number = Integer.valueOf((int) v);
+                    } else {
+                        number = Long.valueOf(v);
+                    }
+                }
+                tok = NUMBER;
+            } catch (NumberFormatException e) {
+                // tok stays BAD
+            }
+        }
+
+        private void readChar() {
+            final int len = s.length();
+            tok = BAD;
+            pos++;
+            if (pos >= len) {
+                return;
+            }
+            int v = s.charAt(pos++);
+            if (v == '\\' && pos < len) {
+                final char e = s.charAt(pos++);
+                switch (e) {
+                    case 'n': v = '\n'; break;
+                    case 't': v = '\t'; break;
+                    case 'r': v = '\r'; break;
+                    case 'a': v = 7; break;
+                    case 'b': v = '\b'; break;
+                    case 'f': v = '\f'; break;
+                    case 'v': v = 11; break;
+                    case 'x': {
+                        v = 0;
+                        while (pos < len && Character.digit(s.charAt(pos), 16) >= 0) {
+                            v = v * 16 + Character.digit(s.charAt(pos++), 16);
+                        }
+                        break;
+                    }
+                    default:
+                        if (e >= '0' && e <= '7') {
+                            v = e - '0';
+                            for (int i = 0; i < 2 && pos < len && s.charAt(pos) >= '0' && s.charAt(pos) <= '7'; i++) {
+                                v = v * 8 + ( s.charAt(pos++) - '0' );
+                            }
+                        } else {
+                            v = e;
+                        }
+                }
+            }
+            if (pos < len && s.charAt(pos) == '\'') {
+                pos++;
+                number = Integer.valueOf(v);
+                tok = NUMBER;
+            }
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+    }
+}
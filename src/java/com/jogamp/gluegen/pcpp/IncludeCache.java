@@ -0,0 +1,80 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.pcpp;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Contents of #include files shared by multiple {@link PCPP} runs within one JVM,
+ * see {@link PCPP#setIncludeCache(IncludeCache)}.
+ * <p>
+ * A cached file is reused as long as its modification time and length are unchanged.
+ * The contents are softly referenced, hence they may be dropped under memory pressure.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ */
+public class IncludeCache {
+
+    private final Map<String, SoftReference<IncludeFile>> files = new HashMap<String, SoftReference<IncludeFile>>();
+    private int hits, misses;
+
+    /** Returns the content of the given file, reading it if not cached or changed on disk. */
+    synchronized IncludeFile get(String path) throws IOException {
+        SoftReference<IncludeFile> ref = files.get(path);
+        IncludeFile file = null != ref ? ref.get() : null;
+        if (null != file && file.isUpToDate()) {
+            hits++;
+            return file;
+        }
+        misses++;
+        file = IncludeFile.read(path);
+        files.put(path, new SoftReference<IncludeFile>(file));
+        return file;
+    }
+
+    /** Returns the number of files served from this cache. */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    /** Returns the number of files read from disk. */
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    /** Drops all cached files. */
+    public synchronized void clear() {
+        files.clear();
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.pcpp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * The content of a file processed via #include, as read by {@link Tokenizer#read(Reader, int)},
+ * and its include guard once known.
+ */
+final class IncludeFile {
+
+    final String path;
+    final long lastModified;
+    final long length;
+    final char[] chars;
+
+    private volatile boolean guardKnown;
+    private volatile String guardMacro;
+
+    private IncludeFile(String path, long lastModified, long length, char[] chars) {
+        this.path = path;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.chars = chars;
+    }
+
+    /** Reads the given file using the platform default charset, like a {@link java.io.FileReader}. */
+    static IncludeFile read(String path) throws IOException {
+        File file = new File(path);
+        long lastModified = file.lastModified();
+        long length = file.length();
+        Reader reader = new InputStreamReader(new FileInputStream(file));
+        try {
+            return new IncludeFile(path, lastModified, length, Tokenizer.read(reader, (int) Math.min(length, Integer.MAX_VALUE - 1)));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /** Returns true if this file is unchanged on disk, judged by its modification time and length. */
+    boolean isUpToDate() {
+        File file = new File(path);
+        return file.lastModified() == lastModified && file.length() == length;
+    }
+
+    /** Returns true if the include guard has been determined, see {@link #getGuardMacro()}. */
+    boolean isGuardKnown() {
+        return guardKnown;
+    }
+
+    /**
+     * Returns the macro of the include guard, i.e. <code>GUARD</code> if all tokens of the file
+     * are enclosed by <code>#ifndef GUARD</code> and its <code>#endif</code>, otherwise null.
+     * Such a file has no effect once <code>GUARD</code> is defined.
+     */
+    String getGuardMacro() {
+        return guardMacro;
+    }
+
+    void setGuardMacro(String macro) {
+        guardMacro = macro;
+        guardKnown = true;
+    }
+}
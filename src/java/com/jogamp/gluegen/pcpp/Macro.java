@@ -0,0 +1,310 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.pcpp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A macro defined via #define, object-like or function-like,
+ * with its replacement list compiled for {@link MacroExpander}.
+ */
+final class Macro {
+
+    /** A token of a macro expansion */
+    static final class Token {
+        final String text;
+        final boolean word;
+        /** Names of the macros not to be expanded again for this token, see {@link HideSet} */
+        final HideSet hide;
+
+        Token(String text, boolean word, HideSet hide) {
+            this.text = text;
+            this.word = word;
+            this.hide = hide;
+        }
+
+        Token(String text, HideSet hide) {
+            this(text, isWord(text), hide);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * An immutable set of macro names, i.e. a small linked list, null being the empty set.
+     * A token produced by the expansion of a macro carries its name in its hide set,
+     * which prevents the macro from being expanded again recursively.
+     */
+    static final class HideSet {
+        final String name;
+        final HideSet next;
+
+        private HideSet(String name, HideSet next) {
+            this.name = name;
+            this.next = next;
+        }
+
+        static boolean contains(HideSet hs, String name) {
+            for (; null != hs; hs = hs.next) {
+                if (hs.name.equals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        static HideSet add(HideSet hs, String name) {
+            return contains(hs, name) ? hs : new HideSet(name, hs);
+        }
+
+        static HideSet union(HideSet a, HideSet b) {
+            if (null == a) {
+                return b;
+            }
+            for (; null != b; b = b.next) {
+                a = add(a, b.name);
+            }
+            return a;
+        }
+
+        static HideSet intersection(HideSet a, HideSet b) {
+            HideSet r = null;
+            for (; null != a; a = a.next) {
+                if (contains(b, a.name)) {
+                    r = new HideSet(a.name, r);
+                }
+            }
+            return r;
+        }
+    }
+
+    // Operations of the compiled replacement list
+    static final int OP_TOKEN = 0;
+    /** A parameter, replaced by its fully expanded argument */
+    static final int OP_PARAM = 1;
+    /** A parameter next to ##, replaced by its argument as is */
+    static final int OP_PARAM_RAW = 2;
+    /** A parameter following #, replaced by its argument as string literal */
+    static final int OP_STRINGIFY = 3;
+    /** The ## operator */
+    static final int OP_PASTE = 4;
+
+    final String name;
+    /** The parameter names, null if object-like */
+    final String[] params;
+    /** True if the last parameter takes the variable arguments, i.e. <code>...</code> or <code>name...</code> */
+    final boolean variadic;
+    /** The replacement list as defined */
+    final String[] body;
+
+    final int[] ops;
+    /** The parameter index of a parameter operation, otherwise the index into {@link #body} */
+    final int[] operands;
+
+    // Memoized expansion of an object-like macro, see MacroExpander
+    List<Token> memo;
+    int memoGeneration;
+
+    // The replacement list compiled as constant expression, see PCPP
+    private ConstantExpression constant;
+    private boolean constantCompiled;
+    /** Set while the value of this macro is being resolved, i.e. it is not expanded recursively */
+    boolean resolving;
+
+    /**
+     * @param params the parameter names of a function-like macro, <code>...</code> or ending with it
+     *        for variable arguments, or null for an object-like macro
+     * @param body the tokens of the replacement list
+     */
+    Macro(String name, List<String> params, List<String> body) {
+        this.name = name;
+        boolean va = false;
+        if (null != params) {
+            this.params = new String[params.size()];
+            for (int i = 0; i < this.params.length; i++) {
+                String p = params.get(i);
+                if (i == this.params.length - 1 && p.endsWith("...")) {
+                    va = true;
+                    p = p.length() == 3 ? "__VA_ARGS__" : p.substring(0, p.length() - 3);
+                }
+                this.params[i] = p;
+            }
+        } else {
+            this.params = null;
+        }
+        this.variadic = va;
+        this.body = body.toArray(new String[body.size()]);
+
+        // compile the replacement list
+        final int n = this.body.length;
+        int[] o = new int[n];
+        int[] a = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            final String t = this.body[i];
+            if (t.equals("#") && i + 1 < n && this.body[i + 1].equals("#") && count > 0 && i + 2 < n) {
+                o[count] = OP_PASTE;
+                a[count++] = i;
+                i++;
+                continue;
+            }
+            if (null != this.params && t.equals("#") && i + 1 < n) {
+                final int p = paramIndex(this.body[i + 1]);
+                if (p >= 0) {
+                    o[count] = OP_STRINGIFY;
+                    a[count++] = p;
+                    i++;
+                    continue;
+                }
+            }
+            final int p = paramIndex(t);
+            if (p >= 0) {
+                o[count] = OP_PARAM;
+                a[count++] = p;
+            } else {
+                o[count] = OP_TOKEN;
+                a[count++] = i;
+            }
+        }
+        // operands of ## are not expanded
+        for (int i = 0; i < count; i++) {
+            if (o[i] == OP_PARAM && ( ( i > 0 && o[i - 1] == OP_PASTE ) || ( i + 1 < count && o[i + 1] == OP_PASTE ) )) {
+                o[i] = OP_PARAM_RAW;
+            }
+        }
+        this.ops = new int[count];
+        this.operands = new int[count];
+        System.arraycopy(o, 0, this.ops, 0, count);
+        System.arraycopy(a, 0, this.operands, 0, count);
+    }
+
+    /** Creates a function-like macro from its #define tokens following the name, i.e. starting with the parameters. */
+    static Macro createFunctionLike(String name, List<String> paramsAndBody) {
+        List<String> params = new ArrayList<String>();
+        int i = 0;
+        for (; i < paramsAndBody.size(); i++) {
+            String v = paramsAndBody.get(i);
+            if (")".equals(v)) {
+                i++;
+                break;
+            } else if (!",".equals(v) && v.length() > 0) {
+                params.add(v);
+            }
+        }
+        return new Macro(name, params, paramsAndBody.subList(i, paramsAndBody.size()));
+    }
+
+    boolean isFunctionLike() {
+        return null != params;
+    }
+
+    /**
+     * Returns the replacement list of this object-like macro compiled as constant expression,
+     * or null if it is not one.
+     */
+    ConstantExpression getConstant() {
+        if (!constantCompiled) {
+            constant = ConstantExpression.compile(ConstantExpression.join(Arrays.asList(body)));
+            constantCompiled = true;
+        }
+        return constant;
+    }
+
+    private int paramIndex(String t) {
+        if (null != params) {
+            for (int i = 0; i < params.length; i++) {
+                if (params[i].equals(t)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Returns true if the token is a word, i.e. a name or a number, the kind of token {@link Tokenizer#TT_WORD} */
+    static boolean isWord(String text) {
+        return text.length() > 0 && Tokenizer.isWordChar(text.charAt(0));
+    }
+
+    private static boolean isLiteral(Token t) {
+        return t.text.length() > 0 && ( t.text.charAt(0) == '"' || t.text.charAt(0) == '\'' );
+    }
+
+    /** Returns the string literal of the given tokens, whitespace being reduced to a blank between words and literals. */
+    static String stringify(List<Token> tokens) {
+        StringBuilder sb = new StringBuilder();
+        sb.append('"');
+        Token prev = null;
+        for (Token t : tokens) {
+            if (null != prev && ( prev.word || isLiteral(prev) ) && ( t.word || isLiteral(t) ) ) {
+                sb.append(' ');
+            }
+            final String s = t.text;
+            for (int i = 0; i < s.length(); i++) {
+                final char c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\');
+                }
+                sb.append(c);
+            }
+            prev = t;
+        }
+        sb.append('"');
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(name);
+        if (null != params) {
+            sb.append('(');
+            for (int i = 0; i < params.length; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                if (variadic && i == params.length - 1) {
+                    sb.append(params[i].equals("__VA_ARGS__") ? "..." : params[i] + "...");
+                } else {
+                    sb.append(params[i]);
+                }
+            }
+            sb.append(')');
+        }
+        for (String t : body) {
+            sb.append(' ').append(t);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,325 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.pcpp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import com.jogamp.gluegen.pcpp.Macro.HideSet;
+import com.jogamp.gluegen.pcpp.Macro.Token;
+
+/**
+ * The macro table of {@link PCPP} and the expansion of macros in the text,
+ * following the C99 rescanning rules using {@link HideSet hide sets} (D. Prosser's algorithm),
+ * including argument pre-expansion, stringification (<code>#</code>), token pasting (<code>##</code>)
+ * and variable arguments.
+ * <p>
+ * The complete expansion of an object-like macro is memoized, since it only depends on the macro table.
+ * It stays valid until a macro is defined or undefined whose name was looked up by any memoized expansion.
+ * </p>
+ */
+final class MacroExpander {
+
+    private static final Logger LOG = Logger.getLogger(PCPP.class.getPackage().getName());
+
+    /** The tokens following the ones being expanded, i.e. the rest of the file */
+    interface Input {
+        /** Returns the next token or null at the end of the input */
+        Token next() throws IOException;
+
+        /** Causes the next {@link #next()} to return the last token again */
+        void pushBack();
+    }
+
+    private final Map<String, Macro> macros = new HashMap<String, Macro>(1024);
+
+    /** Names looked up by memoized expansions since the last invalidation */
+    private final Set<String> memoDeps = new HashSet<String>();
+    private boolean recordDeps;
+    /** Set if a memoized expansion ends with an incomplete macro invocation */
+    private boolean incomplete;
+    private int generation;
+
+    private int memoHits, memoMisses;
+
+    /** Adds or replaces the given macro, returns the previous one of its name */
+    Macro define(Macro macro) {
+        invalidate(macro.name);
+        return macros.put(macro.name, macro);
+    }
+
+    /** Removes the macro of the given name, returns it */
+    Macro undefine(String name) {
+        invalidate(name);
+        return macros.remove(name);
+    }
+
+    boolean isDefined(String name) {
+        return macros.containsKey(name);
+    }
+
+    Macro get(String name) {
+        if (recordDeps) {
+            memoDeps.add(name);
+        }
+        return macros.get(name);
+    }
+
+    /** Returns the number of uses of a memoized object-like macro expansion */
+    int getMemoHits() {
+        return memoHits;
+    }
+
+    /** Returns the number of computed object-like macro expansions */
+    int getMemoMisses() {
+        return memoMisses;
+    }
+
+    private void invalidate(String name) {
+        if (memoDeps.contains(name)) {
+            generation++;
+            memoDeps.clear();
+        }
+    }
+
+    /**
+     * Expands the given tokens completely and appends the result to <code>out</code>.
+     * If <code>input</code> is not null, a function-like macro name ending the tokens
+     * takes its arguments from the input.
+     */
+    void expand(LinkedList<Token> in, Input input, List<Token> out) throws IOException {
+        Token t;
+        while (null != (t = in.poll())) {
+            final Macro m = t.word ? get(t.text) : null;
+            if (null == m || HideSet.contains(t.hide, t.text)) {
+                out.add(t);
+            } else if (!m.isFunctionLike()) {
+                final List<Token> exp = null == t.hide ? memoized(m) : null;
+                if (null != exp) {
+                    final int n = exp.size();
+                    if (n > 0 && isFunctionLikeName(exp.get(n - 1))) {
+                        // the arguments may follow
+                        out.addAll(exp.subList(0, n - 1));
+                        in.addFirst(exp.get(n - 1));
+                    } else {
+                        out.addAll(exp);
+                    }
+                } else {
+                    pushFront(in, substitute(m, null, HideSet.add(t.hide, m.name)));
+                }
+            } else {
+                expandFunctionLike(t, m, in, input, out);
+            }
+        }
+    }
+
+    private boolean isFunctionLikeName(Token t) {
+        if (t.word && !HideSet.contains(t.hide, t.text)) {
+            final Macro m = macros.get(t.text);
+            return null != m && m.isFunctionLike();
+        }
+        return false;
+    }
+
+    private static Token next(LinkedList<Token> in, Input input) throws IOException {
+        Token t = in.poll();
+        if (null == t && null != input) {
+            t = input.next();
+        }
+        return t;
+    }
+
+    private static void pushFront(LinkedList<Token> in, List<Token> tokens) {
+        for (int i = tokens.size() - 1; i >= 0; i--) {
+            in.addFirst(tokens.get(i));
+        }
+    }
+
+    private void expandFunctionLike(Token name, Macro m, LinkedList<Token> in, Input input, List<Token> out) throws IOException {
+        Token lparen = in.poll();
+        if (null == lparen) {
+            lparen = null != input ? input.next() : null;
+            if (null == lparen) {
+                out.add(name);
+                return;
+            }
+            if (!lparen.text.equals("(")) {
+                input.pushBack();
+                out.add(name);
+                return;
+            }
+        } else if (!lparen.text.equals("(")) {
+            in.addFirst(lparen);
+            out.add(name);
+            return;
+        }
+
+        // collect the arguments
+        final int np = m.params.length;
+        final List<Token> consumed = new ArrayList<Token>();
+        final List<List<Token>> args = new ArrayList<List<Token>>(np);
+        List<Token> arg = new ArrayList<Token>();
+        Token rparen = null;
+        int depth = 0;
+        Token t;
+        while (null != (t = next(in, input))) {
+            consumed.add(t);
+            final String s = t.text;
+            if (s.equals("(")) {
+                depth++;
+            } else if (s.equals(")")) {
+                if (depth == 0) {
+                    rparen = t;
+                    break;
+                }
+                depth--;
+            } else if (depth == 0 && s.equals(",") && !(m.variadic && args.size() == np - 1)) {
+                args.add(arg);
+                arg = new ArrayList<Token>();
+                continue;
+            }
+            arg.add(t);
+        }
+        args.add(arg);
+        if (null == rparen) {
+            if (recordDeps) {
+                incomplete = true;
+            } else {
+                LOG.warning("unterminated invocation of macro \"" + m.name + "\"");
+            }
+            out.add(name);
+            out.add(lparen);
+            pushFront(in, consumed);
+            return;
+        }
+        if (np == 0 && args.size() == 1 && args.get(0).isEmpty()) {
+            args.clear();
+        } else if (args.size() != np && !(m.variadic && args.size() == np - 1)) {
+            LOG.warning("macro \"" + m.name + "\" takes " + np + " arguments, but got " + args.size());
+        }
+        while (args.size() < np) {
+            args.add(new ArrayList<Token>());
+        }
+        final HideSet hs = HideSet.add(HideSet.intersection(name.hide, rparen.hide), m.name);
+        pushFront(in, substitute(m, args, hs));
+    }
+
+    /**
+     * Returns the complete expansion of the given object-like macro, or null if it ends with an incomplete
+     * function-like macro invocation, whose arguments would follow the macro.
+     */
+    private List<Token> memoized(Macro m) throws IOException {
+        if (m.memoGeneration == generation && null != m.memo) {
+            memoHits++;
+            return m.memo == INCOMPLETE ? null : m.memo;
+        }
+        memoMisses++;
+        List<Token> out = new ArrayList<Token>();
+        recordDeps = true;
+        incomplete = false;
+        try {
+            expand(new LinkedList<Token>(substitute(m, null, HideSet.add(null, m.name))), null, out);
+        } finally {
+            recordDeps = false;
+        }
+        if (incomplete) {
+            out = INCOMPLETE;
+        }
+        m.memo = out;
+        m.memoGeneration = generation;
+        return out == INCOMPLETE ? null : out;
+    }
+
+    private static final List<Token> INCOMPLETE = Collections.emptyList();
+
+    /** Returns the replacement list of the given macro with its parameters substituted, adding the hide set to all tokens */
+    private List<Token> substitute(Macro m, List<List<Token>> args, HideSet hs) throws IOException {
+        final List<Token> out = new ArrayList<Token>(m.ops.length);
+        final List<Token>[] expandedArgs = null != args ? newListArray(args.size()) : null;
+        boolean paste = false;
+        boolean leftEmpty = true;
+        for (int i = 0; i < m.ops.length; i++) {
+            final int operand = m.operands[i];
+            final List<Token> rhs;
+            switch (m.ops[i]) {
+                case Macro.OP_PASTE:
+                    paste = true;
+                    continue;
+                case Macro.OP_PARAM:
+                    if (null == expandedArgs[operand]) {
+                        expandedArgs[operand] = new ArrayList<Token>();
+                        expand(new LinkedList<Token>(args.get(operand)), null, expandedArgs[operand]);
+                    }
+                    rhs = expandedArgs[operand];
+                    break;
+                case Macro.OP_PARAM_RAW:
+                    rhs = args.get(operand);
+                    if (paste && rhs.isEmpty() && m.variadic && operand == m.params.length - 1 &&
+                        !out.isEmpty() && out.get(out.size() - 1).text.equals(",")) {
+                        // GNU extension: ', ## __VA_ARGS__' drops the comma if there are no variable arguments
+                        out.remove(out.size() - 1);
+                    }
+                    break;
+                case Macro.OP_STRINGIFY:
+                    rhs = Collections.singletonList(new Token(Macro.stringify(args.get(operand)), false, null));
+                    break;
+                default:
+                    rhs = Collections.singletonList(new Token(m.body[operand], null));
+                    break;
+            }
+            if (paste && !leftEmpty && !rhs.isEmpty()) {
+                final Token left = out.remove(out.size() - 1);
+                out.add(new Token(left.text + rhs.get(0).text, left.hide));
+                out.addAll(rhs.subList(1, rhs.size()));
+            } else {
+                out.addAll(rhs);
+            }
+            leftEmpty = rhs.isEmpty() && ( !paste || leftEmpty );
+            paste = false;
+        }
+        for (int i = 0; i < out.size(); i++) {
+            final Token t = out.get(i);
+            out.set(i, new Token(t.text, t.word, null == t.hide ? hs : HideSet.union(t.hide, hs)));
+        }
+        return out;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Token>[] newListArray(int n) {
+        return new List[n];
+    }
+}
@@ -48,11 +48,12 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
-import java.io.StreamTokenizer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -73,13 +74,39 @@ public class PCPP {
         to constants.  Macros and multi-line defines (which typically
         contain either macro definitions or expressions) are currently
         not handled. */
-    private Map<String, String> defineMap          = new HashMap<String, String>(128);
-    private Map<String, Macro>  macroMap           = new HashMap<String, Macro>(128);
-    private Set<String>         nonConstantDefines = new HashSet<String>(128);
+    private Map<String, String> defineMap = new HashMap<String, String>(128);
+
+    /** All macros, expanded in the text */
+    private final MacroExpander macros = new MacroExpander();
+
+    /** Compiled #if conditions by their text, null if the text is not a constant expression */
+    private final Map<String, ConstantExpression> conditions = new HashMap<String, ConstantExpression>(256);
+
+    /** Folded values of the emitted #defines and their emitted text */
+    private final Map<String, Number> constantValues = new HashMap<String, Number>(128);
+    private final Map<String, String> constantTexts  = new HashMap<String, String>(128);
 
     /** List containing the #include paths as Strings */
     private List<String> includePaths;
 
+    /** All files processed via #include, in order of their first inclusion */
+    private Set<String> includedFiles = new LinkedHashSet<String>();
+
+    /** Words of all processed files */
+    private final Tokenizer.WordTable words = new Tokenizer.WordTable();
+
+    /** Full paths of #include file names, null if not found */
+    private final Map<String, String> resolvedIncludes = new HashMap<String, String>();
+
+    /** Contents of all files processed via #include */
+    private final Map<String, IncludeFile> includeFiles = new HashMap<String, IncludeFile>();
+
+    /** Files containing an active #pragma once */
+    private final Set<String> pragmaOnceFiles = new HashSet<String>();
+
+    /** Optional contents of #include files shared with other runs */
+    private IncludeCache includeCache;
+
     private ParseState  state;
 
     private boolean enableDebugPrint;
@@ -93,54 +120,53 @@ public class PCPP {
     }
 
     public void run(Reader reader, String filename) throws IOException {
-        StreamTokenizer tok = null;
-        BufferedReader bufReader = null;
-        if (reader instanceof BufferedReader) {
-            bufReader = (BufferedReader) reader;
-        } else {
-            bufReader = new BufferedReader(reader);
-        }
-
-        tok = new StreamTokenizer(new ConcatenatingReader(bufReader));
-        initTokenizer(tok);
+        run(new Tokenizer(reader, words), filename, null);
+    }
 
+    private void run(Tokenizer tok, String filename, IncludeFile includeFile) throws IOException {
         ParseState curState = new ParseState(tok, filename);
         ParseState oldState = state;
         state = curState;
         lineDirective();
         parse();
+        if (null != includeFile && !includeFile.isGuardKnown()) {
+            includeFile.setGuardMacro(curState.guardState == ParseState.GUARD_CLOSED ? curState.guardMacro : null);
+        }
         state = oldState;
         if (state != null) {
             lineDirective();
         }
     }
 
-    private void initTokenizer(StreamTokenizer tok) {
-        tok.resetSyntax();
-        tok.wordChars('a', 'z');
-        tok.wordChars('A', 'Z');
-        tok.wordChars('0', '9');
-        tok.wordChars('_', '_');
-        tok.wordChars('-', '.');
-        tok.wordChars(128, 255);
-        tok.whitespaceChars(0, ' ');
-        tok.quoteChar('"');
-        tok.quoteChar('\'');
-        tok.eolIsSignificant(true);
-        tok.slashSlashComments(true);
-        tok.slashStarComments(true);
+    /**
+     * Sets a cache for the contents of #include files, which may be shared with other PCPP instances.
+     * Without it, each file is read once per instance.
+     */
+    public void setIncludeCache(IncludeCache includeCache) {
+        this.includeCache = includeCache;
     }
 
     public String findFile(String filename) {
+        if (resolvedIncludes.containsKey(filename)) {
+            return resolvedIncludes.get(filename);
+        }
+        String found = null;
         String sep = File.separator;
         for (String inclPath : includePaths) {
             String fullPath = inclPath + sep + filename;
             File file = new File(fullPath);
             if (file.exists()) {
-                return fullPath;
+                found = fullPath;
+                break;
             }
         }
-        return null;
+        resolvedIncludes.put(filename, found);
+        return found;
+    }
+
+    /** Returns the full paths of all files processed via #include so far. */
+    public Set<String> getIncludedFiles() {
+        return includedFiles;
     }
 
     public OutputStream out() {
@@ -155,12 +181,23 @@ public class PCPP {
     // State
     static class ParseState {
 
-        private StreamTokenizer tok;
+        private Tokenizer tok;
         private String filename;
         private boolean startOfLine;
         private boolean startOfFile;
-
-        ParseState(StreamTokenizer tok, String filename) {
+        /** Set if the token was pushed back after reading it, see nextToken(boolean) */
+        private boolean keepStartOfLine;
+
+        // Detection of an include guard, see IncludeFile.getGuardMacro()
+        static final int GUARD_START  = 0;
+        static final int GUARD_INSIDE = 1;
+        static final int GUARD_CLOSED = 2;
+        static final int GUARD_NONE   = 3;
+        int guardState = GUARD_START;
+        String guardMacro;
+        int guardDepth;
+
+        ParseState(Tokenizer tok, String filename) {
             this.tok = tok;
             this.filename = filename;
             startOfLine = true;
@@ -172,7 +209,7 @@ public class PCPP {
         }
 
         int curToken() {
-            return tok.ttype;
+            return tok.curToken();
         }
 
         int nextToken() throws IOException {
@@ -180,7 +217,7 @@ public class PCPP {
         }
 
         String curWord() {
-            return tok.sval;
+            return tok.curWord();
         }
 
         String filename() {
@@ -209,23 +246,6 @@ public class PCPP {
 
     }
 
-    private static class Macro {
-
-        private final List<String> values;
-        private final List<String> params;
-
-        Macro(List<String> params, List<String> values) {
-            this.values = values;
-            this.params = params;
-        }
-
-        @Override
-        public String toString() {
-            return "params: "+params+" values: "+values;
-        }
-
-    }
-
     // Accessors
 
     /** Equivalent to nextToken(false) */
@@ -237,7 +257,9 @@ public class PCPP {
         int lineno = lineNumber();
         // Check to see whether the previous call to nextToken() left an
         // EOL on the stream
-        if (state.curToken() == StreamTokenizer.TT_EOL) {
+        if (state.keepStartOfLine) {
+            state.keepStartOfLine = false;
+        } else if (state.curToken() == Tokenizer.TT_EOL) {
             state.setStartOfLine(true);
         } else if (!state.startOfFile()) {
             state.setStartOfLine(false);
@@ -245,13 +267,13 @@ public class PCPP {
         state.setStartOfFile(false);
         int val = state.nextToken();
         if (!returnEOLs) {
-            if (val == StreamTokenizer.TT_EOL) {
+            if (val == Tokenizer.TT_EOL) {
                 do {
                     // Consume and return next token, setting state appropriately
                     val = state.nextToken();
                     state.setStartOfLine(true);
                     println();
-                } while (val == StreamTokenizer.TT_EOL);
+                } while (val == Tokenizer.TT_EOL);
             }
         }
         if (lineNumber() > lineno + 1) {
@@ -271,8 +293,8 @@ public class PCPP {
         if (nextTok != requiredToken) {
             String msg = "Expected token '" + requiredToken + "' but got ";
             switch (nextTok) {
-                case StreamTokenizer.TT_EOF: msg += "<EOF>"; break;
-                case StreamTokenizer.TT_EOL: msg += "<EOL>"; break;
+                case Tokenizer.TT_EOF: msg += "<EOF>"; break;
+                case Tokenizer.TT_EOL: msg += "<EOL>"; break;
                 default: msg += "'" + curTokenAsString() + "'"; break;
             }
             msg += " at file " + filename() + ", line " + lineNumber();
@@ -283,10 +305,10 @@ public class PCPP {
 
     private String curTokenAsString() {
         int t = state.curToken();
-        if (t == StreamTokenizer.TT_WORD) {
+        if (t == Tokenizer.TT_WORD) {
             return state.curWord();
         }
-        if (t == StreamTokenizer.TT_EOL) {
+        if (t == Tokenizer.TT_EOL) {
             throw new RuntimeException("Should not be converting EOL characters to strings at file " + filename() + ", line " + lineNumber());
         }
         char c = (char) t;
@@ -297,7 +319,7 @@ public class PCPP {
             sb.append(c);
             return sb.toString();
         }
-        return new String(new char[] { c });
+        return Tokenizer.charString(c);
     }
 
     private String nextWordOrString() throws IOException {
@@ -307,7 +329,7 @@ public class PCPP {
 
     private String nextWord() throws IOException {
         int val = nextToken();
-        if (val != StreamTokenizer.TT_WORD) {
+        if (val != Tokenizer.TT_WORD) {
             throw new RuntimeException("Expected word at file " + filename() +
                                        ", line " + lineNumber());
         }
@@ -332,68 +354,72 @@ public class PCPP {
 
     private void parse() throws IOException {
         int tok = 0;
-        while ((tok = nextToken()) != StreamTokenizer.TT_EOF) {
+        while ((tok = nextToken()) != Tokenizer.TT_EOF) {
             // A '#' at the beginning of a line is a preprocessor directive
             if (startOfLine() && (tok == '#')) {
                 preprocessorDirective();
             } else {
-                // Output white space plus current token, handling #defines
-                // (though not properly -- only handling #defines to constants and the empty string)
+                if (state.guardState != ParseState.GUARD_INSIDE) {
+                    state.guardState = ParseState.GUARD_NONE;
+                }
+                if (tok == Tokenizer.TT_WORD && enabled() && macros.isDefined(state.curWord())) {
+                    expandMacro();
+                    continue;
+                }
+                // Output white space plus current token
 
                 // !!HACK!! - print space only for word tokens. This way multicharacter
                 // operators such as ==, != etc. are property printed.
-                if (tok == StreamTokenizer.TT_WORD) {
+                if (tok == Tokenizer.TT_WORD) {
                     print(" ");
                 }
-                String s = curTokenAsString();
-                String newS = defineMap.get(s);
-                if (newS == null) {
-                    newS = s;
-                }
-                
-                Macro macro = macroMap.get(newS);
-                if(macro != null) {
-                    newS = "";
-                    List<String> args = new ArrayList<String>();
-                    while (nextToken() != StreamTokenizer.TT_EOL) {
-                        String token = curTokenAsString();
-                        if(")".equals(token)) {
-                            break;
-                        }else if(!",".equals(token) && !"(".equals(token)) {
-                            args.add(token);
-                        }
-                    }
-
-                    for (int i = 0; i < macro.values.size(); i++) {
-                        String value = macro.values.get(i);
-
-                        for (int j = 0; j < macro.params.size(); j++) {
-                            String param = macro.params.get(j);
-                            if(param.equals(value)) {
-                                value = args.get(j);
-                                break;
-                            }
-                        }
-
-                        if(isIdentifier(value)) {
-                            newS +=" ";
-                        }
-
-                        newS += value;
-
-                    }
+                printToken();
+            }
+        }
+        flush();
+    }
 
-                }
+    /** The rest of the file as input of a macro expansion */
+    private final MacroExpander.Input fileInput = new MacroExpander.Input() {
+        public Macro.Token next() throws IOException {
+            int t = nextToken();
+            if (t == Tokenizer.TT_EOF) {
+                state.pushBackToken();
+                return null;
+            }
+            return new Macro.Token(curTokenAsString(), t == Tokenizer.TT_WORD, null);
+        }
 
-                print(newS);
+        public void pushBack() {
+            state.tok.pushBack();
+            state.keepStartOfLine = true;
+        }
+    };
+
+    private final LinkedList<Macro.Token> expansionIn = new LinkedList<Macro.Token>();
+    private final List<Macro.Token> expansionOut = new ArrayList<Macro.Token>();
+
+    /** Expands the current word, a macro, and prints the result */
+    private void expandMacro() throws IOException {
+        expansionIn.add(new Macro.Token(state.curWord(), true, null));
+        macros.expand(expansionIn, fileInput, expansionOut);
+        for (int i = 0; i < expansionOut.size(); i++) {
+            Macro.Token t = expansionOut.get(i);
+            if (t.word) {
+                print(" ");
             }
+            print(t.text);
         }
-        flush();
+        expansionOut.clear();
     }
 
     private void preprocessorDirective() throws IOException {
         String w = nextWord();
         boolean shouldPrint = true;
+        if (state.guardState == ParseState.GUARD_CLOSED ||
+            (state.guardState == ParseState.GUARD_START && !w.equals("ifndef"))) {
+            state.guardState = ParseState.GUARD_NONE;
+        }
         if (w.equals("warning")) {
             handleWarning();
             shouldPrint = false;
@@ -437,6 +463,13 @@ public class PCPP {
         if (shouldPrint) {
             print("# ");
             printToken();
+            if (w.equals("pragma") && enabled()) {
+                // peek without affecting the output
+                if (state.nextToken() == Tokenizer.TT_WORD && state.curWord().equals("once")) {
+                    pragmaOnceFiles.add(filename());
+                }
+                state.pushBackToken();
+            }
         }
     }
 
@@ -452,11 +485,12 @@ public class PCPP {
 
         // there shouldn't be any extra symbols after the name, but just in case...
         List<String> values = new ArrayList<String>();
-        while (nextToken(true) != StreamTokenizer.TT_EOL) {
+        while (nextToken(true) != Tokenizer.TT_EOL) {
             values.add(curTokenAsString());
         }
 
         if (enabled()) {
+            macros.undefine(name);
             String oldDef = defineMap.remove(name);
             if (oldDef == null) {
                 LOG.log(WARNING, "ignoring redundant \"#undef {0}\", at \"{1}\" line {2}: \"{3}\" was not previously defined",
@@ -464,7 +498,6 @@ public class PCPP {
             } else {
                 // System.err.println("UNDEFINED: '" + name + "'  (line " + lineNumber() + " file " + filename() + ")");
             }
-            nonConstantDefines.remove(name);
         } else {
             LOG.log(WARNING, "FAILED TO UNDEFINE: ''{0}''  (line {1} file {2})", new Object[]{name, lineNumber(), filename()});
         }
@@ -491,7 +524,7 @@ public class PCPP {
         // since whitespace is our delimiter we can't determine wether we are dealing with
         // macros or normal defines starting with a brace.
         // this will glue the brace to the token if there is no whitespace between both
-        state.tok.wordChars('(', '(');
+        state.tok.setParenIsWordChar(true);
 
         // Next token is the name of the #define
         String name = nextWord();
@@ -512,14 +545,27 @@ public class PCPP {
         }
 
         // restore normal syntax
-        state.tok.ordinaryChar('(');
+        state.tok.setParenIsWordChar(false);
 
-        while (nextToken(true) != StreamTokenizer.TT_EOL) {
+        while (nextToken(true) != Tokenizer.TT_EOL) {
             values.add(curTokenAsString());
         }
         addDefine(name, macroDefinition, values);
     }
 
+    /**
+     * Returns the value of the last emitted #define of the given name folded to an
+     * <code>Integer</code>, <code>Long</code>, <code>Float</code> or <code>Double</code>,
+     * or null if it is not a constant expression or its emitted text differs from the given value.
+     * See {@link ConstantExpression} for the typing of the value.
+     */
+    public Number getConstantValue(String name, String value) {
+        if (null != value && value.equals(constantTexts.get(name))) {
+            return constantValues.get(name);
+        }
+        return null;
+    }
+
     public void addDefine(String name, String value) {
         List<String> values = new ArrayList<String>();
         values.add(value);
@@ -534,6 +580,10 @@ public class PCPP {
         if (enabled()) {
             boolean emitDefine = true;
 
+            Macro macro = nameIsMacro ? Macro.createFunctionLike(name, values.subList(1, values.size()))
+                                      : new Macro(name, null, values);
+            Macro oldMacro = macros.define(macro);
+
             // Handle #definitions to nothing or to a constant value
             int sz = values.size();
             if (sz == 0) {
@@ -581,32 +631,13 @@ public class PCPP {
                     } else {
                         // Still perform textual replacement
                         defineMap.put(name, value);
-                        nonConstantDefines.add(name);
                         emitDefine = false;
                     }
                 }
             
             } else if (nameIsMacro) {
-                // list parameters
-                List<String> params = new ArrayList<String>();
-                for (int i = 1; i < values.size(); i++) {
-                    String v = values.get(i);
-                    if(")".equals(v)) { // end of params
-                        if(i != values.size()-1) {
-                            values = values.subList(i+1, values.size());
-                        }else{
-                            values = Collections.emptyList();
-                        }
-                        break;
-                    }else if(!",".equals(v)) {
-                        params.add(v);
-                    }
-                }
-
-                Macro macro = new Macro(params, values);
-                Macro oldDef = macroMap.put(name, macro);
-                if (oldDef != null) {
-                    LOG.log(WARNING, "\"{0}\" redefined from \"{1}\" to \"{2}\"", new Object[]{name, oldDef, macro});
+                if (oldMacro != null && !oldMacro.toString().equals(macro.toString())) {
+                    LOG.log(WARNING, "\"{0}\" redefined from \"{1}\" to \"{2}\"", new Object[]{name, oldMacro, macro});
                 }
                 emitDefine = false;
              
@@ -645,7 +676,6 @@ public class PCPP {
                                                    " at file \"" + filename() + ", line " + lineNumber() );
                     }
                     defineMap.put(name, val.toString());
-                    nonConstantDefines.add(name);
 
                 }else{ // constant expression -> pass through
 
@@ -667,13 +697,27 @@ public class PCPP {
 
             if (emitDefine) {
                 // Print name and value
+                StringBuilder sb = new StringBuilder();
+                for (String v : values) {
+                    sb.append(v);
+                }
+                String value = sb.toString();
                 print("# define ");
                 print(name);
                 print(" ");
-                for (String v : values) {
-                    print(v);
-                }
+                print(value);
                 println();
+
+                // Fold the value for the emitter
+                ConstantExpression expr = ConstantExpression.compile(value);
+                Number number = null != expr ? expr.evaluate(defineResolver, false) : null;
+                if (null != number) {
+                    constantValues.put(name, number);
+                    constantTexts.put(name, value);
+                } else {
+                    constantValues.remove(name);
+                    constantTexts.remove(name);
+                }
             }
 
         } // end if (enabled())
@@ -786,6 +830,12 @@ public class PCPP {
 
         debugPrint(false, (isIfdef ? "IFDEF " : "IFNDEF ") + symbolName + ", enabledOutside " + enabledOutside + ", isDefined " + symbolIsDefined + ", file \"" + filename() + " line " + lineNumber());
 
+        if (state.guardState == ParseState.GUARD_START) {
+            state.guardState = ParseState.GUARD_INSIDE;
+            state.guardMacro = symbolName;
+            state.guardDepth = enabledBits.size();
+        }
+
         boolean enabledNow = enabled() && symbolIsDefined == isIfdef ;
         pushEnableBit( enabledNow ) ; // StateCondition
         pushEnableBit( enabledNow ) ; // StateInside
@@ -793,6 +843,7 @@ public class PCPP {
 
     /** Handles #else directives */
     private void handleElse() throws IOException {
+        leaveGuard(ParseState.GUARD_NONE);
         popEnableBit(); // Inside
         boolean enabledCondition = enabled();
         popEnableBit(); // Condition
@@ -804,6 +855,7 @@ public class PCPP {
     }
 
     private void handleEndif() {
+        leaveGuard(ParseState.GUARD_CLOSED);
         popEnableBit(); // Inside
         popEnableBit(); // Condition
         boolean enabledOutside = enabled();
@@ -813,6 +865,13 @@ public class PCPP {
         debugPrint(false, "ENDIF, enabledOutside " + enabledOutside);
     }
 
+    /** Sets the given guard state if the current #else, #elif or #endif belongs to the include guard's #ifndef */
+    private void leaveGuard(int guardState) {
+        if (state.guardState == ParseState.GUARD_INSIDE && enabledBits.size() == state.guardDepth + 2) {
+            state.guardState = guardState;
+        }
+    }
+
     /**
      * @param isIf if true, we're processing #if; if false, we're
      * processing #elif.
@@ -822,13 +881,21 @@ public class PCPP {
         boolean enabledOutside;
 
         if (!isIf) {
+            leaveGuard(ParseState.GUARD_NONE);
             popEnableBit(); // Inside
             enabledCondition = enabled();
             popEnableBit(); // Condition
         }
         enabledOutside = enabled();
 
-        boolean defineEvaluatedToTrue = handleIfRecursive(true);
+        // The condition is only evaluated if it may enable the inside-block
+        boolean defineEvaluatedToTrue;
+        if (enabledOutside && !enabledCondition) {
+            defineEvaluatedToTrue = evaluateCondition();
+        } else {
+            skipLine();
+            defineEvaluatedToTrue = false;
+        }
 
         debugPrint(false, (isIf ? "IF" : "ELIF") + ", enabledOutside " + enabledOutside + ", eval " + defineEvaluatedToTrue + ", file \"" + filename() + " line " + lineNumber());
 
@@ -845,155 +912,133 @@ public class PCPP {
         }
     }
 
-    //static int tmp = -1;
+    private void skipLine() throws IOException {
+        int tok;
+        while ((tok = nextToken(true)) != Tokenizer.TT_EOL) {
+            if (tok == Tokenizer.TT_EOF) {
+                throw new RuntimeException("Unexpected end of file while parsing " +
+                                           "#if statement at file " + filename() + ", line " + lineNumber());
+            }
+        }
+    }
+
+    private final List<String> conditionTokens = new ArrayList<String>();
 
     /**
-     * This method is called recursively to process nested sub-expressions such as:
-     * <pre>
-     *   #if !defined(OPENSTEP) && !(defined(NeXT) || !defined(NeXT_PDO))
-     *</pre>
-     *
-     * @param greedy if true, continue evaluating sub-expressions until EOL is
-     * reached. If false, return as soon as the first sub-expression is
-     * processed.
-     * @return the value of the sub-expression or (if greedy==true)
-     * series of sub-expressions.
+     * Reads and evaluates the condition of an #if or #elif directive.
+     * <p>
+     * The condition is compiled once per distinct text, see {@link ConstantExpression}.
+     * Its identifiers are resolved via the replacement lists of the object-like macros, undefined ones are 0.
+     * Only if this fails, e.g. for a function-like macro invocation,
+     * the condition is expanded as in the text and evaluated again.
+     * </p>
      */
-    private boolean handleIfRecursive(boolean greedy) throws IOException {
-        //System.err.println("IN HANDLE_IF_RECURSIVE (" + ++tmp + ", greedy = " + greedy + ")"); System.err.flush();
-
-        // ifValue keeps track of the current value of the potentially nested
-        // "defined()" expressions as we process them.
-        boolean ifValue = true;
-        int openParens = 0;
+    private boolean evaluateCondition() throws IOException {
+        final List<String> line = conditionTokens;
+        line.clear();
         int tok;
-        do {
-            tok = nextToken(true);
-            //System.err.println("-- READ: [" + (tok == StreamTokenizer.TT_EOL ? "<EOL>" :curTokenAsString()) + "]");
-            switch (tok) {
-                case '(':
-                    ++openParens;
-                    //System.err.println("OPEN PARENS = " + openParens);
-                    ifValue = ifValue && handleIfRecursive(true);
-                    break;
-                case ')':
-                    --openParens;
-                    //System.err.println("OPEN PARENS = " + openParens);
-                    break;
-                case '!':
-                    {
-                        //System.err.println("HANDLE_IF_RECURSIVE HANDLING !");
-                        boolean rhs = handleIfRecursive(false);
-                        ifValue = !rhs;
-                        //System.err.println("HANDLE_IF_RECURSIVE HANDLED OUT !, RHS = " + rhs);
-                    }
-                    break;
-                case '&':
-                    {
-                        nextRequiredToken('&');
-                        //System.err.println("HANDLE_IF_RECURSIVE HANDLING &&, LHS = " + ifValue);
-                        boolean rhs = handleIfRecursive(true);
-                        //System.err.println("HANDLE_IF_RECURSIVE HANDLED &&, RHS = " + rhs);
-                        ifValue = ifValue && rhs;
-                    }
-                    break;
-                case '|':
-                    {
-                        nextRequiredToken('|');
-                        //System.err.println("HANDLE_IF_RECURSIVE HANDLING ||, LHS = " + ifValue);
-                        boolean rhs = handleIfRecursive(true);
-                        //System.err.println("HANDLE_IF_RECURSIVE HANDLED ||, RHS = " + rhs);
-                        ifValue = ifValue || rhs;
-                    }
-                    break;
-                case '>':
-                    {
-                        // NOTE: we don't handle expressions like this properly
-                        boolean rhs = handleIfRecursive(true);
-                        ifValue = false;
-                    }
-                    break;
-                case '<':
-                    {
-                        // NOTE: we don't handle expressions like this properly
-                        boolean rhs = handleIfRecursive(true);
-                        ifValue = false;
-                    }
-                    break;
-                case '=':
-                    {
-                        // NOTE: we don't handle expressions like this properly
-                        boolean rhs = handleIfRecursive(true);
-                        ifValue = false;
-                    }
-                    break;
-                case StreamTokenizer.TT_WORD:
-                    {
-                        String word = curTokenAsString();
-                        if (word.equals("defined")) {
-                            // Handle things like #if defined(SOMESYMBOL)
-                            nextRequiredToken('(');
-                            String symbol = nextWord();
-                            boolean isDefined = defineMap.get(symbol) != null;
-                            //System.err.println("HANDLE_IF_RECURSIVE HANDLING defined(" + symbol + ") = " + isDefined);
-                            ifValue = ifValue && isDefined;
-                            nextRequiredToken(')');
-                        } else {
-                            // Handle things like #if SOME_SYMBOL.
-                            String symbolValue = defineMap.get(word);
-
-                            // See if the statement is "true"; i.e., a non-zero expression
-                            if (symbolValue != null) {
-                                // The statement is true if the symbol is defined and is a constant expression
-                                return (!nonConstantDefines.contains(word));
-                            } else {
-                                // The statement is true if the symbol evaluates to a non-zero value
-                                //
-                                // NOTE: This doesn't yet handle evaluable expressions like "#if
-                                // SOME_SYMBOL > 5" or "#if SOME_SYMBOL == 0", both of which are
-                                // valid syntax. It only handles numeric symbols like "#if 1"
-
-                                try {
-                                    // see if it's in decimal form
-                                    return Double.parseDouble(word) != 0;
-                                } catch (NumberFormatException nfe1) {
-                                    try {
-                                        // ok, it's not a valid decimal value, try hex/octal value
-                                        return Long.parseLong(word) != 0;
-                                    } catch (NumberFormatException nfe2) {
-                                        try {
-                                            // ok, it's not a valid hex/octal value, try boolean
-                                            return Boolean.valueOf(word) == Boolean.TRUE;
-                                        } catch (NumberFormatException nfe3) {
-                                            // give up; the symbol isn't a numeric or boolean value
-                                            return false;
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    } // end case TT_WORD
-                    break;
-                case StreamTokenizer.TT_EOL:
-                    //System.err.println("HANDLE_IF_RECURSIVE HIT <EOL>!");
-                    state.pushBackToken(); // so caller hits EOL as well if we're recursing
-                    break;
-                case StreamTokenizer.TT_EOF:
-                    throw new RuntimeException("Unexpected end of file while parsing " +
-                                               "#if statement at file " + filename() + ", line " + lineNumber());
-
-                default:
-                    throw new RuntimeException("Unexpected token (" + curTokenAsString() +
-                                               ") while parsing " + "#if statement at file " + filename() +
+        while ((tok = nextToken(true)) != Tokenizer.TT_EOL) {
+            if (tok == Tokenizer.TT_EOF) {
+                throw new RuntimeException("Unexpected end of file while parsing " +
+                                           "#if statement at file " + filename() + ", line " + lineNumber());
+            }
+            if (tok == Tokenizer.TT_WORD && state.curWord().equals("defined")) {
+                // defined SYMBOL or defined(SYMBOL), replaced before macro expansion
+                boolean paren = false;
+                tok = nextToken(true);
+                if (tok == '(') {
+                    paren = true;
+                    tok = nextToken(true);
+                }
+                if (tok != Tokenizer.TT_WORD) {
+                    throw new RuntimeException("Expected word after \"defined\" at file " + filename() +
                                                ", line " + lineNumber());
+                }
+                line.add(macros.isDefined(state.curWord()) ? "1" : "0");
+                if (paren) {
+                    nextRequiredToken(')');
+                }
+            } else {
+                line.add(curTokenAsString());
+            }
+        }
+
+        final String text = ConstantExpression.join(line);
+        Number value = null;
+        ConstantExpression expr = condition(text);
+        if (null != expr) {
+            value = expr.evaluate(conditionResolver, true);
+        }
+        if (null == value) {
+            // expand the condition completely, the remaining identifiers are 0
+            for (String t : line) {
+                expansionIn.add(new Macro.Token(t, Tokenizer.isWordChar(t.charAt(0)), null));
+            }
+            macros.expand(expansionIn, null, expansionOut);
+            line.clear();
+            for (Macro.Token t : expansionOut) {
+                line.add(t.text);
+            }
+            expansionOut.clear();
+            expr = condition(ConstantExpression.join(line));
+            if (null != expr) {
+                value = expr.evaluate(ZERO_RESOLVER, true);
+            }
+        }
+        if (null == value) {
+            LOG.log(WARNING, "cannot evaluate \"#if {0}\" at \"{1}\" line {2}, assuming false",
+                    new Object[]{text, filename(), lineNumber()});
+            return false;
+        }
+        return ConstantExpression.isNonZero(value);
+    }
+
+    private ConstantExpression condition(String text) {
+        ConstantExpression expr = conditions.get(text);
+        if (null == expr && !conditions.containsKey(text)) {
+            expr = ConstantExpression.compile(text);
+            conditions.put(text, expr);
+        }
+        return expr;
+    }
+
+    /** Resolves identifiers via the replacement lists of the object-like macros */
+    private final class MacroResolver implements ConstantExpression.Resolver {
+        /** If true, an undefined identifier is 0 as in an #if condition, otherwise not a constant */
+        private final boolean condition;
+
+        MacroResolver(boolean condition) {
+            this.condition = condition;
+        }
+
+        public Number resolve(String identifier) {
+            final Macro m = macros.get(identifier);
+            if (null == m || m.isFunctionLike() || m.resolving) {
+                // not expanded, i.e. remains an identifier
+                return condition ? Long.valueOf(0) : null;
+            }
+            final ConstantExpression expr = m.getConstant();
+            if (null == expr) {
+                return null;
+            }
+            m.resolving = true;
+            try {
+                return expr.evaluate(this, condition);
+            } finally {
+                m.resolving = false;
             }
-            //System.err.println("END OF WHILE: greedy = " + greedy + " parens = " +openParens + " not EOL = " + (tok != StreamTokenizer.TT_EOL) + " --> " + ((greedy && openParens >= 0) && tok != StreamTokenizer.TT_EOL));
-        } while ((greedy && openParens >= 0) && tok != StreamTokenizer.TT_EOL);
-        //System.err.println("OUT HANDLE_IF_RECURSIVE (" + tmp-- + ", returning " + ifValue + ")");
-        //System.err.flush();
-        return ifValue;
+        }
     }
 
+    private final MacroResolver conditionResolver = new MacroResolver(true);
+    private final MacroResolver defineResolver = new MacroResolver(false);
+
+    private static final ConstantExpression.Resolver ZERO_RESOLVER = new ConstantExpression.Resolver() {
+            public Number resolve(String identifier) {
+                return Long.valueOf(0);
+            }
+        };
+
     /////////////////////////////////////
     // Handling of #include directives //
     /////////////////////////////////////
@@ -1009,10 +1054,10 @@ public class PCPP {
             // Components of path name are coming in as separate tokens;
             // concatenate them
             StringBuilder buf = new StringBuilder();
-            while ((t = nextToken()) != '>' && (t != StreamTokenizer.TT_EOF)) {
+            while ((t = nextToken()) != '>' && (t != Tokenizer.TT_EOF)) {
                 buf.append(curTokenAsString());
             }
-            if (t == StreamTokenizer.TT_EOF) {
+            if (t == Tokenizer.TT_EOF) {
                 LOG.warning("unexpected EOF while processing #include directive");
             }
             filename = buf.toString();
@@ -1028,9 +1073,23 @@ public class PCPP {
             if (fullname == null) {
                 throw new RuntimeException("Can't find #include file \"" + filename + "\" at file " + filename() + ", line " + lineNumber());
             }
+            includedFiles.add(fullname);
+            IncludeFile includeFile = includeFiles.get(fullname);
+            if (null == includeFile) {
+                includeFile = null != includeCache ? includeCache.get(fullname) : IncludeFile.read(fullname);
+                includeFiles.put(fullname, includeFile);
+            } else if (pragmaOnceFiles.contains(fullname)) {
+                debugPrint(true, "INCLUDE [" + filename + "] skipped, #pragma once");
+                return;
+            }
+            String guard = includeFile.getGuardMacro();
+            if (null != guard && defineMap.get(guard) != null) {
+                // multiple include optimization: the file's content is disabled by its include guard
+                debugPrint(true, "INCLUDE [" + filename + "] skipped, include guard " + guard);
+                return;
+            }
             // Process this file in-line
-            Reader reader = new BufferedReader(new FileReader(fullname));
-            run(reader, fullname);
+            run(new Tokenizer(includeFile.chars, words), fullname, includeFile);
         } else {
             //System.err.println("INACTIVE BLOCK, SKIPPING " + filename);
         }
@@ -0,0 +1,390 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.pcpp;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StreamTokenizer;
+
+/**
+ * The tokenizer of {@link PCPP}, splitting its input into words, quoted strings and single characters,
+ * while skipping comments and whitespace except the end of lines.
+ * <p>
+ * The tokens, their values and line numbers are the same as those of a {@link StreamTokenizer}
+ * reading the input through a {@link ConcatenatingReader}, with word characters
+ * <code>a-z A-Z 0-9 _ - .</code> and all characters above 127,
+ * quote characters <code>"</code> and <code>'</code>, significant end of lines
+ * and C as well as C++ comments.
+ * </p>
+ * <p>
+ * Unlike the former, the whole input is read into a char array up front, see {@link #read(Reader, int)},
+ * where line continuations are removed and line ends are normalized to <code>'\n'</code>.
+ * Words are looked up in a {@link WordTable} shared by all files of a PCPP run,
+ * hence a recurring word does not allocate a String and equal words are identical.
+ * </p>
+ */
+final class Tokenizer {
+    /** End of file, same as {@link StreamTokenizer#TT_EOF} */
+    static final int TT_EOF = StreamTokenizer.TT_EOF;
+    /** End of line, same as {@link StreamTokenizer#TT_EOL} */
+    static final int TT_EOL = StreamTokenizer.TT_EOL;
+    /** A word, see {@link #curWord()}, same as {@link StreamTokenizer#TT_WORD} */
+    static final int TT_WORD = StreamTokenizer.TT_WORD;
+    private static final int TT_NOTHING = -4;
+
+    private static final boolean[] wordChars = new boolean[128];
+    private static final boolean[] wordCharsWithParen = new boolean[128];
+    private static final String[] charStrings = new String[128];
+    static {
+        for (int c = 0; c < 128; c++) {
+            wordChars[c] = ('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z') || ('0' <= c && c <= '9') ||
+                           c == '_' || c == '-' || c == '.';
+            wordCharsWithParen[c] = wordChars[c] || c == '(';
+            charStrings[c] = String.valueOf((char) c);
+        }
+    }
+
+    private final char[] buf;
+    private final int end;
+    private final WordTable words;
+    private int pos;
+    private int lineno = 1;
+    private int ttype = TT_NOTHING;
+    private String sval;
+    private boolean pushedBack;
+    private boolean[] curWordChars = wordChars;
+    private char[] strBuf = new char[64];
+
+    /** Reads the whole input, the reader is not closed. */
+    Tokenizer(Reader reader, WordTable words) throws IOException {
+        this(read(reader, 8192), words);
+    }
+
+    /** Uses the given input as returned by {@link #read(Reader, int)}. */
+    Tokenizer(char[] chars, WordTable words) {
+        this.buf = chars;
+        this.end = chars.length;
+        this.words = words;
+    }
+
+    /**
+     * Reads the whole input, removes line continuations and normalizes line ends,
+     * the reader is not closed.
+     * @param sizeHint the expected number of characters
+     */
+    static char[] read(Reader reader, int sizeHint) throws IOException {
+        // always leaves room for the final line end
+        char[] b = new char[Math.max(sizeHint, 16) + 1];
+        int n = 0;
+        int r;
+        while ((r = reader.read(b, n, b.length - n)) >= 0) {
+            n += r;
+            if (n == b.length) {
+                char[] nb = new char[b.length * 2];
+                System.arraycopy(b, 0, nb, 0, n);
+                b = nb;
+            }
+        }
+        n = joinLines(b, n);
+        if (n == b.length) {
+            return b;
+        }
+        char[] chars = new char[n];
+        System.arraycopy(b, 0, chars, 0, n);
+        return chars;
+    }
+
+    /**
+     * Removes line continuations and normalizes line ends to <code>'\n'</code> in place,
+     * appending a line end to a last unterminated line, as {@link ConcatenatingReader} does.
+     * The buffer must have room for one more character.
+     * @return the new length
+     */
+    private static int joinLines(char[] b, int n) {
+        int w = 0;
+        int lineStart = 0;
+        for (int r = 0; r < n; r++) {
+            char c = b[r];
+            if (c == '\n' || c == '\r') {
+                if (c == '\r' && r + 1 < n && b[r + 1] == '\n') {
+                    r++;
+                }
+                if (w > lineStart && b[w - 1] == '\\') {
+                    w--;
+                } else {
+                    b[w++] = '\n';
+                }
+                lineStart = w;
+            } else {
+                b[w++] = c;
+            }
+        }
+        if (w > lineStart) {
+            if (b[w - 1] == '\\') {
+                w--;
+            } else {
+                b[w++] = '\n';
+            }
+        }
+        return w;
+    }
+
+    /** Returns the single character String of the given token character. */
+    static String charString(int c) {
+        return c < 128 ? charStrings[c] : String.valueOf((char) c);
+    }
+
+    /** Returns true if the character is part of a word, i.e. {@link #TT_WORD}. */
+    static boolean isWordChar(char c) {
+        return c >= 128 || wordChars[c];
+    }
+
+    /** If true, <code>'('</code> is read as part of a word, used for the name of a #define. */
+    void setParenIsWordChar(boolean v) {
+        curWordChars = v ? wordCharsWithParen : wordChars;
+    }
+
+    private int read() {
+        return pos < end ? buf[pos++] : -1;
+    }
+
+    /** Returns the current token type, i.e. {@link #TT_EOF}, {@link #TT_EOL}, {@link #TT_WORD}, a quote or any other character. */
+    int curToken() {
+        return ttype;
+    }
+
+    /** Returns the current word or the content of the current quoted string, otherwise null. */
+    String curWord() {
+        return sval;
+    }
+
+    int lineno() {
+        return lineno;
+    }
+
+    /** Causes the next {@link #nextToken()} to return the current token again. */
+    void pushBack() {
+        if (ttype != TT_NOTHING) {
+            pushedBack = true;
+        }
+    }
+
+    int nextToken() {
+        if (pushedBack) {
+            pushedBack = false;
+            return ttype;
+        }
+        sval = null;
+        for (;;) {
+            int c = read();
+            while (0 <= c && c <= ' ') {
+                if (c == '\n') {
+                    lineno++;
+                    return ttype = TT_EOL;
+                }
+                c = read();
+            }
+            if (c < 0) {
+                return ttype = TT_EOF;
+            }
+
+            final boolean[] wc = curWordChars;
+            if (c >= 128 || wc[c]) {
+                // the String hash code is computed while scanning the word
+                final int start = pos - 1;
+                int h = c;
+                char d;
+                while (pos < end && ((d = buf[pos]) >= 128 || wc[d])) {
+                    h = 31 * h + d;
+                    pos++;
+                }
+                sval = words.get(buf, start, pos - start, h);
+                return ttype = TT_WORD;
+            }
+
+            if (c == '"' || c == '\'') {
+                return ttype = readQuoted(c);
+            }
+
+            if (c == '/') {
+                c = read();
+                if (c == '*') {
+                    if (!skipBlockComment()) {
+                        return ttype = TT_EOF;
+                    }
+                    continue;
+                } else if (c == '/') {
+                    while ((c = read()) != '\n' && c >= 0) { }
+                    if (c >= 0) {
+                        pos--;
+                    }
+                    continue;
+                }
+                if (c >= 0) {
+                    pos--;
+                }
+                return ttype = '/';
+            }
+
+            return ttype = c;
+        }
+    }
+
+    /**
+     * Skips a C comment, counting lines like the {@link StreamTokenizer} does,
+     * i.e. the character following a line end is not checked.
+     * @return false if the end of file was reached
+     */
+    private boolean skipBlockComment() {
+        int prevc = 0;
+        int c;
+        while ((c = read()) != '/' || prevc != '*') {
+            if (c == '\n') {
+                lineno++;
+                c = read();
+            }
+            if (c < 0) {
+                return false;
+            }
+            prevc = c;
+        }
+        return true;
+    }
+
+    /** Reads a quoted string with C escape sequences, terminated by the quote or the end of line. */
+    private int readQuoted(final int quote) {
+        int i = 0;
+        int d = read();
+        while (d >= 0 && d != quote && d != '\n') {
+            int c;
+            if (d == '\\') {
+                c = read();
+                final int first = c;
+                if (c >= '0' && c <= '7') {
+                    c = c - '0';
+                    int c2 = read();
+                    if ('0' <= c2 && c2 <= '7') {
+                        c = (c << 3) + (c2 - '0');
+                        c2 = read();
+                        if ('0' <= c2 && c2 <= '7' && first <= '3') {
+                            c = (c << 3) + (c2 - '0');
+                            d = read();
+                        } else {
+                            d = c2;
+                        }
+                    } else {
+                        d = c2;
+                    }
+                } else {
+                    switch (c) {
+                        case 'a': c = 0x7; break;
+                        case 'b': c = '\b'; break;
+                        case 'f': c = 0xC; break;
+                        case 'n': c = '\n'; break;
+                        case 'r': c = '\r'; break;
+                        case 't': c = '\t'; break;
+                        case 'v': c = 0xB; break;
+                    }
+                    d = read();
+                }
+            } else {
+                c = d;
+                d = read();
+            }
+            if (i == strBuf.length) {
+                char[] nb = new char[strBuf.length * 2];
+                System.arraycopy(strBuf, 0, nb, 0, i);
+                strBuf = nb;
+            }
+            strBuf[i++] = (char) c;
+        }
+        if (d >= 0 && d != quote) {
+            pos--; // keep the line end
+        }
+        sval = new String(strBuf, 0, i);
+        return quote;
+    }
+
+    /**
+     * Interned words, looked up by their characters without allocating a String.
+     */
+    static final class WordTable {
+        private String[] table = new String[4096];
+        private int[] hashes = new int[4096];
+        private int size;
+
+        /** Returns the interned word of the given characters, whose {@link String#hashCode()} is <code>h</code>. */
+        String get(char[] b, int off, int len, int h) {
+            final int mask = table.length - 1;
+            int idx = ( h ^ ( h >>> 16 ) ) & mask;
+            String s;
+            while (null != (s = table[idx])) {
+                if (hashes[idx] == h && s.length() == len && equals(s, b, off, len)) {
+                    return s;
+                }
+                idx = ( idx + 1 ) & mask;
+            }
+            s = new String(b, off, len);
+            table[idx] = s;
+            hashes[idx] = h;
+            if (++size * 2 > table.length) {
+                rehash();
+            }
+            return s;
+        }
+
+        private static boolean equals(String s, char[] b, int off, int len) {
+            for (int i = 0; i < len; i++) {
+                if (s.charAt(i) != b[off + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            final String[] old = table;
+            final int[] oldHashes = hashes;
+            table = new String[old.length * 2];
+            hashes = new int[old.length * 2];
+            final int mask = table.length - 1;
+            for (int i = 0; i < old.length; i++) {
+                if (null != old[i]) {
+                    final int h = oldHashes[i];
+                    int idx = ( h ^ ( h >>> 16 ) ) & mask;
+                    while (null != table[idx]) {
+                        idx = ( idx + 1 ) & mask;
+                    }
+                    table[idx] = old[i];
+                    hashes[idx] = h;
+                }
+            }
+        }
+    }
+}
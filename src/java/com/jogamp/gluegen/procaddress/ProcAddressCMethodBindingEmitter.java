@@ -89,6 +89,10 @@ public class ProcAddressCMethodBindingEmitter extends CMethodBindingEmitter {
         }
         setTemporaryCVariableDeclarations(methodToWrap.getTemporaryCVariableDeclarations());
         setTemporaryCVariableAssignments(methodToWrap.getTemporaryCVariableAssignments());
+        setDirectNIOAddress(methodToWrap.isDirectNIOAddress());
+        setDirectStringArguments(methodToWrap.isDirectStringArguments());
+        setSmallArrayCopy(methodToWrap.getSmallArrayCopy());
+        setReturnValueCache(methodToWrap.isReturnValueCache());
 
         setCommentEmitter(defaultCommentEmitter);
 
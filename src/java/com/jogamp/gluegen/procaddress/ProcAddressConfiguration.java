@@ -57,6 +57,7 @@ public class ProcAddressConfiguration extends JavaConfiguration {
 
     private boolean emitProcAddressTable = false;
     private boolean forceProcAddressGen4All = false;
+    private boolean lazyProcAddressResolution = false;
 
     private String tableClassPackage;
     private String tableClassName = "ProcAddressTable";
@@ -77,6 +78,8 @@ public class ProcAddressConfiguration extends JavaConfiguration {
     protected void dispatch(String cmd, StringTokenizer tok, File file, String filename, int lineNo) throws IOException {
         if (cmd.equalsIgnoreCase("EmitProcAddressTable")) {
             emitProcAddressTable = readBoolean("EmitProcAddressTable", tok, filename, lineNo).booleanValue();
+        } else if (cmd.equalsIgnoreCase("LazyProcAddressResolution")) {
+            lazyProcAddressResolution = readBoolean("LazyProcAddressResolution", tok, filename, lineNo).booleanValue();
         } else if (cmd.equalsIgnoreCase("ProcAddressTablePackage")) {
             tableClassPackage = readString("ProcAddressTablePackage", tok, filename, lineNo);
         } else if (cmd.equalsIgnoreCase("ProcAddressTableClassName")) {
@@ -267,6 +270,14 @@ public class ProcAddressConfiguration extends JavaConfiguration {
         return emitProcAddressTable;
     }
 
+    /**
+     * Returns true if the generated glue code shall resolve a function's
+     * proc address on its first call, see ProcAddressTable.resetLazy(..).
+     */
+    public boolean lazyProcAddressResolution() {
+        return lazyProcAddressResolution;
+    }
+
     public String tableClassPackage() {
         return tableClassPackage;
     }
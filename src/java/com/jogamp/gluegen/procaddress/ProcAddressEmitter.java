@@ -116,6 +116,12 @@ public class ProcAddressEmitter extends JavaEmitter {
         return generateMethodBindingEmittersImpl(methodBindingSet, sym);
     }
 
+    /** Functions called through a function pointer are not batched, since the dispatcher calls them directly. */
+    @Override
+    protected boolean isBatchable(MethodBinding binding) {
+        return super.isBatchable(binding) && !needsProcAddressWrapper(binding.getCSymbol());
+    }
+
     protected boolean needsModifiedEmitters(FunctionSymbol sym) {
         if (!needsProcAddressWrapper(sym)
                 || getConfig().isUnimplemented(getAliasedSymName(sym))) {
@@ -353,7 +359,12 @@ public class ProcAddressEmitter extends JavaEmitter {
             return;
         }
         emittedTableEntries.add(str);
-        tableWriter.print("  public long ");
+        if (getProcAddressConfig().lazyProcAddressResolution()) {
+            // entries are written on first call, possibly by another thread
+            tableWriter.print("  public volatile long ");
+        } else {
+            tableWriter.print("  public long ");
+        }
         tableWriter.print(PROCADDRESS_VAR_PREFIX);
         tableWriter.print(str);
         tableWriter.println(";");
@@ -120,10 +120,21 @@ public class ProcAddressJavaMethodBindingEmitter extends JavaMethodBindingEmitte
 
         if (callThroughProcAddress) {
             String procAddressVariable = ProcAddressEmitter.PROCADDRESS_VAR_PREFIX + binding.getName();
-            writer.println("    final long __addr_ = " + getProcAddressTableExpr + "." + procAddressVariable + ";");
-            writer.println("    if (__addr_ == 0) {");
-            writer.println("      throw new " + emitter.unsupportedExceptionType() + "(\"Method \\\"" + binding.getName() + "\\\" not available\");");
-            writer.println("    }");
+            if (emitter.getProcAddressConfig().lazyProcAddressResolution()) {
+                // resolve the entry on first call, the resolved path only tests for zero
+                writer.println("    long __addr_ = " + getProcAddressTableExpr + "." + procAddressVariable + ";");
+                writer.println("    if (__addr_ == 0) {");
+                writer.println("      __addr_ = " + getProcAddressTableExpr + ".resolveEntry(\"" + binding.getName() + "\");");
+                writer.println("      if (__addr_ == 0) {");
+                writer.println("        throw new " + emitter.unsupportedExceptionType() + "(\"Method \\\"" + binding.getName() + "\\\" not available\");");
+                writer.println("      }");
+                writer.println("    }");
+            } else {
+                writer.println("    final long __addr_ = " + getProcAddressTableExpr + "." + procAddressVariable + ";");
+                writer.println("    if (__addr_ == 0) {");
+                writer.println("      throw new " + emitter.unsupportedExceptionType() + "(\"Method \\\"" + binding.getName() + "\\\" not available\");");
+                writer.println("    }");
+            }
         }
     }
 
@@ -36,6 +36,7 @@
 package com.jogamp.gluegen.runtime;
 
 import com.jogamp.common.os.DynamicLookupHelper;
+import com.jogamp.common.util.StartupTrace;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -51,6 +52,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Superclass for all generated ProcAddressTables.
@@ -66,6 +68,13 @@ import java.util.TreeMap;
  * wgl/glXGetProcAddress(), or alGetProcAddress(). If the field containing the function
  * pointer is 0, the function is considered to be unavailable and can
  * not be called.
+ * <p>
+ * Instead of resolving all entries up front via {@link #reset(DynamicLookupHelper) reset},
+ * the table may be prepared for lazy resolution via {@link #resetLazy(DynamicLookupHelper) resetLazy}.
+ * Glue code generated with the <code>LazyProcAddressResolution</code> directive
+ * calls {@link #resolveEntry(String) resolveEntry} whenever it reads a zero entry,
+ * hence only the functions actually used are ever looked up.
+ * </p>
  *
  * @author Kenneth Russel
  * @author Michael Bien
@@ -82,7 +91,13 @@ public abstract class ProcAddressTable {
     protected static String DEBUG_PREFIX;
     protected static int debugNum;
 
+    /** Value of {@link #lazyResolved} for functions which failed to resolve. */
+    private static final Long UNAVAILABLE = Long.valueOf(0);
+
     private final FunctionAddressResolver resolver;
+    private volatile DynamicLookupHelper lazyLookup;
+    /** Addresses resolved in lazy mode by function name, {@link #UNAVAILABLE} if the lookup failed. */
+    private final ConcurrentHashMap<String, Long> lazyResolved = new ConcurrentHashMap<String, Long>();
 
     static {
         AccessController.doPrivileged(new PrivilegedAction() {
@@ -114,6 +129,9 @@ public abstract class ProcAddressTable {
         if(null==lookup) {
             throw new RuntimeException("Passed null DynamicLookupHelper");
         }
+        lazyLookup = null;
+        lazyResolved.clear();
+        final long t0 = StartupTrace.ENABLED ? System.nanoTime() : 0;
 
         PrintStream dout = getDebugOutStream();
 
@@ -130,6 +148,10 @@ public abstract class ProcAddressTable {
             }
         }
 
+        if (StartupTrace.ENABLED) {
+            StartupTrace.record(StartupTrace.PROC_TABLE_RESET, getClass().getName(), t0, true);
+        }
+
         if (DEBUG) {
             dout.flush();
             if (DEBUG_PREFIX != null) {
@@ -138,6 +160,88 @@ public abstract class ProcAddressTable {
         }
     }
 
+    /**
+     * Resets the complete table for lazy resolution.
+     * <p>
+     * All entries are cleared and the given lookup is kept,
+     * so that each entry is resolved on demand by {@link #resolveEntry(String)}.
+     * </p>
+     */
+    public void resetLazy(DynamicLookupHelper lookup) throws RuntimeException {
+
+        if(null==lookup) {
+            throw new RuntimeException("Passed null DynamicLookupHelper");
+        }
+
+        final long t0 = StartupTrace.ENABLED ? System.nanoTime() : 0;
+
+        if (DEBUG) {
+            getDebugOutStream().println(getClass().getName()+".resetLazy()");
+        }
+
+        Field[] fields = getClass().getFields();
+        try {
+            for (int i = 0; i < fields.length; ++i) {
+                if (isAddressField(fields[i].getName())) {
+                    fields[i].setLong(this, 0);
+                }
+            }
+        } catch (IllegalAccessException ex) {
+            throw new RuntimeException(ex);
+        }
+        lazyResolved.clear();
+        lazyLookup = lookup;
+
+        if (StartupTrace.ENABLED) {
+            StartupTrace.record(StartupTrace.PROC_TABLE_RESET, getClass().getName()+" (lazy)", t0, true);
+        }
+    }
+
+    /**
+     * Returns true if this table has been reset via {@link #resetLazy(DynamicLookupHelper)}
+     * and resolves its entries on demand.
+     */
+    public boolean isLazy() {
+        return null != lazyLookup;
+    }
+
+    /**
+     * Resolves the entry of a single function on demand and caches the result.
+     * <p>
+     * Called by the generated glue code if the entry is still zero.
+     * If this table is not in lazy mode, i.e. it has been fully resolved via {@link #reset(DynamicLookupHelper)},
+     * the current value of the entry is returned.
+     * </p>
+     * <p>
+     * In lazy mode, each function is looked up only once,
+     * a function which failed to resolve is reported unavailable without another lookup.
+     * </p>
+     * @return the function's address, or 0 if not available
+     * @throws IllegalArgumentException if this function is not in this table.
+     */
+    public long resolveEntry(String name) {
+        DynamicLookupHelper lookup = lazyLookup;
+        if (null != lookup) {
+            Long resolved = lazyResolved.get(name);
+            if (null != resolved) {
+                return resolved.longValue();
+            }
+        }
+        Field field = fieldForFunction(name);
+        if (null != lookup) {
+            setEntry(field, name, lookup);
+        }
+        try {
+            long address = field.getLong(this);
+            if (null != lookup) {
+                lazyResolved.put(name, 0 == address ? UNAVAILABLE : Long.valueOf(address));
+            }
+            return address;
+        } catch (IllegalAccessException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
     /**
      * Initializes the mapping for a single function.
      * @throws IllegalArgumentException if this function is not in this table.
@@ -198,6 +302,9 @@ public abstract class ProcAddressTable {
 
     /**
      * Returns this table as map with the function name as key and the address as value.
+     * <p>
+     * In lazy mode, entries not resolved yet are reported as 0.
+     * </p>
      */
     public Map/*<String, Long>*/ toMap() {
         
@@ -222,10 +329,23 @@ public abstract class ProcAddressTable {
 
     /**
      * Returns true only if non null function pointer to this function exists.
+     * <p>
+     * In lazy mode, an unresolved entry is resolved first.
+     * </p>
      */
     public boolean isFunctionAvailable(String functionName) {
+        if (isLazy()) {
+            Long resolved = lazyResolved.get(functionName);
+            if (null != resolved) {
+                return 0 != resolved.longValue();
+            }
+        }
         try{
-            return getAddressFor(functionName) != 0;
+            long address = getAddressFor(functionName);
+            if (address == 0 && isLazy()) {
+                address = resolveEntry(functionName);
+            }
+            return address != 0;
         }catch (IllegalArgumentException ex) {
             return false;
         }
@@ -85,4 +85,23 @@ public class BuffersTest {
 
     }
 
+    @Test
+    public void directBufferAddress() {
+
+        assertEquals(0, Buffers.getDirectBufferAddress(null));
+
+        IntBuffer buffer = Buffers.newDirectIntBuffer(6);
+        long address = Buffers.getDirectBufferAddress(buffer);
+        assertTrue(0 != address);
+
+        // a slice starts at the byte offset of the sliced position
+        buffer.position(2);
+        IntBuffer slice = buffer.slice();
+        assertEquals(address + Buffers.getDirectBufferByteOffset(buffer), Buffers.getDirectBufferAddress(slice));
+
+        // the base address ignores the position
+        slice.position(1);
+        assertEquals(address + Buffers.SIZEOF_INT * 2, Buffers.getDirectBufferAddress(slice));
+    }
+
 }
@@ -0,0 +1,171 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+
+package com.jogamp.common.nio;
+
+import java.io.UnsupportedEncodingException;
+
+import com.jogamp.common.os.Platform;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestScratchBuffer {
+
+    @Before
+    public void requireUnsafe() {
+        // native memory is read back via sun.misc.Unsafe
+        Assume.assumeNotNull(Buffers.unsafe);
+    }
+
+    private static byte[] read(long address, int length) {
+        byte[] res = new byte[length];
+        for(int i=0; i<length; i++) {
+            res[i] = Buffers.unsafe.getByte(address + i);
+        }
+        return res;
+    }
+
+    private static void assertUTF8(String expected, long address) throws UnsupportedEncodingException {
+        final byte[] bytes = expected.getBytes("UTF-8");
+        final byte[] nativeBytes = read(address, bytes.length + 1);
+        for(int i=0; i<bytes.length; i++) {
+            Assert.assertEquals("byte "+i+" of "+expected, bytes[i], nativeBytes[i]);
+        }
+        Assert.assertEquals("terminator of "+expected, 0, nativeBytes[bytes.length]);
+    }
+
+    private static long readPointer(long address) {
+        return Platform.is32Bit() ? ( Buffers.unsafe.getInt(address) & 0xFFFFFFFFL ) : Buffers.unsafe.getLong(address);
+    }
+
+    @Test
+    public void testUTF8() throws UnsupportedEncodingException {
+        final ScratchBuffer scratch = ScratchBuffer.get();
+        final int mark = scratch.begin();
+        try {
+            Assert.assertEquals(0, scratch.putUTF8(null));
+            final String[] values = { "", "glUniform", "\u00e4\u00df", "\u20ac 1", "\ud83d\ude00!" };
+            for(int i=0; i<values.length; i++) {
+                assertUTF8(values[i], scratch.putUTF8(values[i]));
+            }
+        } finally {
+            scratch.end(mark);
+        }
+    }
+
+    @Test
+    public void testUTF16() {
+        final ScratchBuffer scratch = ScratchBuffer.get();
+        final int mark = scratch.begin();
+        try {
+            final String value = "a\u20ac";
+            final long address = scratch.putUTF16(value);
+            Assert.assertEquals(0, address % Buffers.SIZEOF_CHAR);
+            Assert.assertEquals('a', Buffers.unsafe.getChar(address));
+            Assert.assertEquals('\u20ac', Buffers.unsafe.getChar(address + 2));
+            Assert.assertEquals(0, Buffers.unsafe.getChar(address + 4));
+        } finally {
+            scratch.end(mark);
+        }
+    }
+
+    @Test
+    public void testUTF8Array() throws UnsupportedEncodingException {
+        final ScratchBuffer scratch = ScratchBuffer.get();
+        final int mark = scratch.begin();
+        try {
+            Assert.assertEquals(0, scratch.putUTF8Array(null));
+            final String[] values = { "position", null, "n\u00f6rmal" };
+            final long table = scratch.putUTF8Array(values);
+            final int ptrSize = NativeSizeBuffer.elementSize();
+            Assert.assertEquals(0, table % ptrSize);
+            for(int i=0; i<values.length; i++) {
+                final long p = readPointer(table + i * ptrSize);
+                if(null == values[i]) {
+                    Assert.assertEquals(0, p);
+                } else {
+                    assertUTF8(values[i], p);
+                }
+            }
+        } finally {
+            scratch.end(mark);
+        }
+    }
+
+    @Test
+    public void testNestedSections() throws UnsupportedEncodingException {
+        final ScratchBuffer scratch = ScratchBuffer.get();
+        final int outer = scratch.begin();
+        final long a = scratch.putUTF8("outer");
+        final int inner = scratch.begin();
+        final long b = scratch.putUTF8("inner");
+        scratch.end(inner);
+        // the inner memory is reused, the outer one is kept
+        Assert.assertEquals(b, scratch.putUTF8("again"));
+        assertUTF8("outer", a);
+        scratch.end(outer);
+
+        final int mark = scratch.begin();
+        Assert.assertEquals(a, scratch.putUTF8("outer"));
+        scratch.end(mark);
+    }
+
+    @Test
+    public void testGrowth() throws UnsupportedEncodingException {
+        final ScratchBuffer scratch = ScratchBuffer.get();
+        final int outer = scratch.begin();
+        final long a = scratch.putUTF8("kept");
+        final int inner = scratch.begin();
+        StringBuilder sb = new StringBuilder();
+        while(sb.length() < 3 * scratch.capacity()) {
+            sb.append("0123456789");
+        }
+        final String big = sb.toString();
+        assertUTF8(big, scratch.putUTF8(big));
+        scratch.end(inner);
+        // addresses of the enclosing section stay valid after growing
+        assertUTF8("kept", a);
+        assertUTF8("next", scratch.putUTF8("next"));
+        scratch.end(outer);
+        Assert.assertTrue(scratch.capacity() > big.length());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testEndWithoutBegin() {
+        ScratchBuffer.get().end(0);
+    }
+
+    public static void main(String args[]) {
+        String tstname = TestScratchBuffer.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
@@ -0,0 +1,308 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.common.os;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jogamp.common.jvm.JNILibLoaderBase;
+import com.jogamp.gluegen.runtime.NativeLibLoader;
+
+/**
+ * Loads {@link DynamicLibraryBundle}s concurrently, using the C math and C library
+ * of a Linux system as Tool libraries and a recording {@link JNILibLoaderBase.LoaderAction}
+ * for the Glue libraries, and validates the per-library locking, the parallel Tool library
+ * loading and the load durations.
+ */
+public class TestDynamicLibraryBundle {
+    private static final long GLUE_LOAD_MILLIS = 50;
+
+    /** Records the maximum number of threads concurrently loading the same and any Glue library. */
+    static class RecordingAction implements JNILibLoaderBase.LoaderAction {
+        private final Map<String, Integer> active = new HashMap<String, Integer>();
+        private int activeTotal;
+        int maxPerLibrary;
+        int maxTotal;
+
+        public boolean loadLibrary(String libname, boolean ignoreError) {
+            synchronized (this) {
+                Integer n = active.get(libname);
+                final int count = null == n ? 1 : n.intValue() + 1;
+                active.put(libname, Integer.valueOf(count));
+                activeTotal++;
+                maxPerLibrary = Math.max(maxPerLibrary, count);
+                maxTotal = Math.max(maxTotal, activeTotal);
+            }
+            try {
+                Thread.sleep(GLUE_LOAD_MILLIS);
+            } catch (InterruptedException ie) {
+                throw new RuntimeException(ie);
+            }
+            synchronized (this) {
+                active.put(libname, Integer.valueOf(active.get(libname).intValue() - 1));
+                activeTotal--;
+            }
+            return true;
+        }
+
+        public void loadLibrary(String libname, String[] preload, boolean preloadIgnoreError) {
+            loadLibrary(libname, false);
+        }
+    }
+
+    /** Exposes the loading with preloads and the per-library locks. */
+    static class PreloadingLoader extends JNILibLoaderBase {
+        static void load(String libname, String[] preload) {
+            loadLibrary(libname, preload, true);
+        }
+
+        static Object lock(String libname) {
+            return getLibraryLock(libname);
+        }
+    }
+
+    /**
+     * Like the default loader action, locks each library loaded, including the preloads,
+     * and holds the lock while loading.
+     */
+    static class LockingAction implements JNILibLoaderBase.LoaderAction {
+        public boolean loadLibrary(String libname, boolean ignoreError) {
+            synchronized (PreloadingLoader.lock(libname)) {
+                sleep();
+                return true;
+            }
+        }
+
+        private static void sleep() {
+            try {
+                Thread.sleep(GLUE_LOAD_MILLIS);
+            } catch (InterruptedException ie) {
+                throw new RuntimeException(ie);
+            }
+        }
+
+        public void loadLibrary(String libname, String[] preload, boolean preloadIgnoreError) {
+            if (null != preload) {
+                // let the other thread enter its loading as well
+                sleep();
+                for (int i = 0; i < preload.length; i++) {
+                    loadLibrary(preload[i], preloadIgnoreError);
+                }
+            }
+            loadLibrary(libname, false);
+        }
+    }
+
+    static class Info implements DynamicLibraryBundleInfo {
+        private final List<String> glueLibNames;
+
+        Info(String... glueLibNames) {
+            this.glueLibNames = Arrays.asList(glueLibNames);
+        }
+
+        public List getToolLibNames() {
+            List<List<String>> libNames = new ArrayList<List<String>>();
+            libNames.add(Arrays.asList("libm.so.6"));
+            libNames.add(Arrays.asList("libc.so.6"));
+            return libNames;
+        }
+
+        public List getGlueLibNames() {
+            return glueLibNames;
+        }
+
+        public List getToolGetProcAddressFuncNameList() {
+            return null;
+        }
+
+        public long toolDynamicLookupFunction(long toolGetProcAddressHandle, String funcName) {
+            return 0;
+        }
+
+        public boolean shallLinkGlobal() {
+            return false;
+        }
+
+        public boolean shallLookupGlobal() {
+            return false;
+        }
+    }
+
+    @BeforeClass
+    public static void checkPlatform() {
+        Assume.assumeTrue(System.getProperty("os.name").toLowerCase().startsWith("linux"));
+        // load gluegen-rt before the recording loader action replaces the default one
+        NativeLibLoader.loadGlueGenRT();
+    }
+
+    @AfterClass
+    public static void restoreLoading() {
+        JNILibLoaderBase.enableLoading();
+    }
+
+    private static void validate(DynamicLibraryBundle bundle) {
+        Assert.assertTrue(bundle.isLibComplete());
+        Assert.assertTrue(0 != bundle.dynamicLookupFunction("cos"));
+        for (int i = 0; i < bundle.getToolLibNumber(); i++) {
+            Assert.assertTrue(0 < bundle.getToolLibLoadNanos(i));
+        }
+        for (int i = 0; i < bundle.getGlueLibNumber(); i++) {
+            Assert.assertTrue(GLUE_LOAD_MILLIS * 1000000L <= bundle.getGlueLibLoadNanos(i));
+        }
+        Assert.assertEquals(0, bundle.getToolLibLoadNanos(bundle.getToolLibNumber()));
+        Assert.assertEquals(0, bundle.getGlueLibLoadNanos(bundle.getGlueLibNumber()));
+    }
+
+    private static DynamicLibraryBundle[] loadConcurrently(final DynamicLibraryBundleInfo[] infos, final boolean parallelToolLoad) throws InterruptedException {
+        final DynamicLibraryBundle[] bundles = new DynamicLibraryBundle[infos.length];
+        final Throwable[] errors = new Throwable[infos.length];
+        final Thread[] threads = new Thread[infos.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int idx = i;
+            threads[i] = new Thread("TestDynamicLibraryBundle-" + i) {
+                public void run() {
+                    try {
+                        bundles[idx] = new DynamicLibraryBundle(infos[idx], parallelToolLoad);
+                    } catch (Throwable t) {
+                        errors[idx] = t;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            if (null != errors[i]) {
+                throw new RuntimeException(errors[i]);
+            }
+        }
+        return bundles;
+    }
+
+    @Test
+    public void testSameGlueLibrarySerialized() throws InterruptedException {
+        RecordingAction action = new RecordingAction();
+        JNILibLoaderBase.setLoadingAction(action);
+        try {
+            final DynamicLibraryBundleInfo[] infos = new DynamicLibraryBundleInfo[4];
+            for (int i = 0; i < infos.length; i++) {
+                infos[i] = new Info("glue_same");
+            }
+            final DynamicLibraryBundle[] bundles = loadConcurrently(infos, false);
+            for (int i = 0; i < bundles.length; i++) {
+                validate(bundles[i]);
+            }
+            Assert.assertEquals(1, action.maxPerLibrary);
+        } finally {
+            JNILibLoaderBase.enableLoading();
+        }
+    }
+
+    @Test
+    public void testIndependentGlueLibrariesConcurrent() throws InterruptedException {
+        RecordingAction action = new RecordingAction();
+        JNILibLoaderBase.setLoadingAction(action);
+        try {
+            final DynamicLibraryBundleInfo[] infos = new DynamicLibraryBundleInfo[4];
+            for (int i = 0; i < infos.length; i++) {
+                infos[i] = new Info("glue_common", "glue_" + i);
+            }
+            final DynamicLibraryBundle[] bundles = loadConcurrently(infos, false);
+            for (int i = 0; i < bundles.length; i++) {
+                validate(bundles[i]);
+            }
+            Assert.assertEquals(1, action.maxPerLibrary);
+            Assert.assertTrue("independent glue libraries not loaded concurrently", 1 < action.maxTotal);
+        } finally {
+            JNILibLoaderBase.enableLoading();
+        }
+    }
+
+    @Test
+    public void testParallelToolLoad() throws InterruptedException {
+        RecordingAction action = new RecordingAction();
+        JNILibLoaderBase.setLoadingAction(action);
+        try {
+            final DynamicLibraryBundleInfo[] infos = new DynamicLibraryBundleInfo[] { new Info("glue_0"), new Info("glue_1") };
+            final DynamicLibraryBundle[] bundles = loadConcurrently(infos, true);
+            for (int i = 0; i < bundles.length; i++) {
+                validate(bundles[i]);
+                Assert.assertEquals(2, bundles[i].getToolLibLoadedNumber());
+                Assert.assertTrue(bundles[i].isToolLibLoaded(0));
+                Assert.assertTrue(bundles[i].isToolLibLoaded(1));
+            }
+        } finally {
+            JNILibLoaderBase.enableLoading();
+        }
+    }
+
+    @Test
+    public void testMutualPreloadsNoDeadlock() throws InterruptedException {
+        JNILibLoaderBase.setLoadingAction(new LockingAction());
+        try {
+            final Thread[] threads = new Thread[] {
+                new Thread("TestDynamicLibraryBundle-PreloadAB") {
+                    public void run() {
+                        PreloadingLoader.load("glue_mutual_a", new String[] { "glue_mutual_b" });
+                    }
+                },
+                new Thread("TestDynamicLibraryBundle-PreloadBA") {
+                    public void run() {
+                        PreloadingLoader.load("glue_mutual_b", new String[] { "glue_mutual_a" });
+                    }
+                }
+            };
+            for (int i = 0; i < threads.length; i++) {
+                // a deadlocked thread shall not keep the VM alive
+                threads[i].setDaemon(true);
+                threads[i].start();
+            }
+            for (int i = 0; i < threads.length; i++) {
+                threads[i].join(10000);
+                Assert.assertFalse("deadlock loading libraries preloading each other", threads[i].isAlive());
+            }
+        } finally {
+            JNILibLoaderBase.enableLoading();
+        }
+    }
+
+    public static void main(String args[]) {
+        String tstname = TestDynamicLibraryBundle.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+ 
+package com.jogamp.common.os;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Validates the resolved path cache and the open statistics of {@link NativeLibrary},
+ * using the C math library of a Linux system.
+ */
+public class TestNativeLibraryOpen {
+    private static final String LIBM = "libm.so.6";
+
+    @BeforeClass
+    public static void checkPlatform() {
+        Assume.assumeTrue(System.getProperty("os.name").toLowerCase().startsWith("linux"));
+    }
+
+    private ClassLoader loader() {
+        return TestNativeLibraryOpen.class.getClassLoader();
+    }
+
+    @Test
+    public void testResolvedPathCache() {
+        NativeLibrary lib = NativeLibrary.open(LIBM, LIBM, LIBM, true, loader());
+        Assert.assertNotNull(lib);
+        lib.close();
+        final String key = NativeLibrary.resolvedPathKey(LIBM, LIBM, LIBM, true);
+        Assert.assertEquals(LIBM, NativeLibrary.getResolvedPath(loader(), key));
+
+        final int hits = NativeLibrary.getResolvedPathHitCount();
+        final int attempts = NativeLibrary.getOpenAttemptCount();
+        lib = NativeLibrary.open(LIBM, LIBM, LIBM, true, loader());
+        Assert.assertNotNull(lib);
+        lib.close();
+        Assert.assertEquals(hits + 1, NativeLibrary.getResolvedPathHitCount());
+        Assert.assertEquals(attempts + 1, NativeLibrary.getOpenAttemptCount());
+        Assert.assertTrue(0 < NativeLibrary.getOpenAttemptNanos());
+    }
+
+    @Test
+    public void testFailingResolvedPathRemoved() {
+        final String key = NativeLibrary.resolvedPathKey(LIBM, LIBM, LIBM, true);
+        NativeLibrary.putResolvedPath(loader(), key, "/nonexistent/dir/" + LIBM);
+
+        final int hits = NativeLibrary.getResolvedPathHitCount();
+        NativeLibrary lib = NativeLibrary.open(LIBM, LIBM, LIBM, true, loader());
+        Assert.assertNotNull(lib);
+        Assert.assertEquals(LIBM, lib.getLibraryPath());
+        lib.close();
+        Assert.assertEquals(hits, NativeLibrary.getResolvedPathHitCount());
+        Assert.assertEquals(LIBM, NativeLibrary.getResolvedPath(loader(), key));
+    }
+
+    @Test
+    public void testAbsolutePathPassedToNativeOpen() {
+        final String path = "/nonexistent/dir/libgluegen_nonexistent.so";
+        final int skipped = NativeLibrary.getSkippedNonexistentCount();
+        final int attempts = NativeLibrary.getOpenAttemptCount();
+        Assert.assertNull(NativeLibrary.open(path, path, path, true, loader()));
+        Assert.assertEquals(skipped, NativeLibrary.getSkippedNonexistentCount());
+        Assert.assertEquals(attempts + 1, NativeLibrary.getOpenAttemptCount());
+    }
+
+    @Test
+    public void testNonexistentCandidatesSkipped() {
+        final String name = "gluegen_nonexistent";
+        final int skipped = NativeLibrary.getSkippedNonexistentCount();
+        Assert.assertNull(NativeLibrary.open(name, name, name, false, loader()));
+        Assert.assertTrue(skipped < NativeLibrary.getSkippedNonexistentCount());
+    }
+
+    public static void main(String args[]) throws Exception {
+        String tstname = TestNativeLibraryOpen.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+ 
+package com.jogamp.common.os;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSymbolAddressCache {
+
+    private static final String LIB = "/usr/lib/libtest.so";
+    private static final long SIZE = 4711;
+    private static final long MTIME = 123456789L;
+
+    /** Native lookup returning the configured addresses, counting its calls */
+    static class FakeLookup implements DynamicLookupHelper {
+        final Map<String, Long> addresses = new HashMap<String, Long>();
+        int calls;
+
+        public long dynamicLookupFunction(String funcName) {
+            calls++;
+            Long addr = addresses.get(funcName);
+            return null != addr ? addr.longValue() : 0;
+        }
+    }
+
+    private File dir;
+    private File cacheFile;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("TestSymbolAddressCache", "");
+        dir.delete();
+        dir.mkdirs();
+        cacheFile = new File(dir, "libtest.so.symcache");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        for(int i=0; null != files && i<files.length; i++) {
+            files[i].delete();
+        }
+        dir.delete();
+    }
+
+    private SymbolAddressCache open(FakeLookup lookup, long mapStart, long size) {
+        SymbolAddressCache cache = new SymbolAddressCache(LIB, SIZE, MTIME, cacheFile, lookup, mapStart, mapStart + size);
+        cache.load();
+        return cache;
+    }
+
+    @Test
+    public void testOwnSymbolsCachedAcrossLoadAddresses() {
+        FakeLookup lookup = new FakeLookup();
+        lookup.addresses.put("foo", Long.valueOf(0x10100));
+        lookup.addresses.put("bar", Long.valueOf(0x10200));
+        SymbolAddressCache cache = open(lookup, 0x10000, 0x1000);
+        Assert.assertEquals(0x10100, cache.lookup("foo"));
+        Assert.assertEquals(0x10100, cache.lookup("foo"));
+        Assert.assertEquals(0x10200, cache.lookup("bar"));
+        Assert.assertEquals(2, lookup.calls);
+        Assert.assertEquals(1, cache.getHitCount());
+        cache.flush();
+
+        // next run, mapped elsewhere
+        lookup = new FakeLookup();
+        lookup.addresses.put("foo", Long.valueOf(0x50100));
+        lookup.addresses.put("bar", Long.valueOf(0x50200));
+        cache = open(lookup, 0x50000, 0x1000);
+        final int validationCalls = lookup.calls;
+        Assert.assertTrue(0 < validationCalls);
+        Assert.assertEquals(0x50100, cache.lookup("foo"));
+        Assert.assertEquals(0x50200, cache.lookup("bar"));
+        Assert.assertEquals(validationCalls, lookup.calls);
+    }
+
+    @Test
+    public void testDependencySymbolsNotCached() {
+        FakeLookup lookup = new FakeLookup();
+        lookup.addresses.put("depSym", Long.valueOf(0x90000));
+        SymbolAddressCache cache = open(lookup, 0x10000, 0x1000);
+        Assert.assertEquals(0x90000, cache.lookup("depSym"));
+        Assert.assertEquals(0x90000, cache.lookup("depSym"));
+        Assert.assertEquals(2, lookup.calls);
+        cache.flush();
+
+        // the dependency got updated
+        lookup = new FakeLookup();
+        lookup.addresses.put("depSym", Long.valueOf(0xA0040));
+        cache = open(lookup, 0x50000, 0x1000);
+        Assert.assertEquals(0xA0040, cache.lookup("depSym"));
+        Assert.assertEquals(1, lookup.calls);
+    }
+
+    @Test
+    public void testAbsentSymbolsRechecked() {
+        FakeLookup lookup = new FakeLookup();
+        SymbolAddressCache cache = open(lookup, 0x10000, 0x1000);
+        Assert.assertEquals(0, cache.lookup("missing"));
+        Assert.assertEquals(0, cache.lookup("missing"));
+        Assert.assertEquals(1, lookup.calls);
+        cache.flush();
+
+        // available in the next run
+        lookup = new FakeLookup();
+        lookup.addresses.put("missing", Long.valueOf(0x50300));
+        cache = open(lookup, 0x50000, 0x1000);
+        Assert.assertEquals(0x50300, cache.lookup("missing"));
+        Assert.assertEquals(0x50300, cache.lookup("missing"));
+        Assert.assertEquals(1, lookup.calls);
+    }
+
+    @Test
+    public void testValidationFailureDiscardsCache() {
+        FakeLookup lookup = new FakeLookup();
+        lookup.addresses.put("foo", Long.valueOf(0x10100));
+        SymbolAddressCache cache = open(lookup, 0x10000, 0x1000);
+        cache.lookup("foo");
+        cache.flush();
+
+        lookup = new FakeLookup();
+        lookup.addresses.put("foo", Long.valueOf(0x50800));
+        cache = open(lookup, 0x50000, 0x1000);
+        Assert.assertEquals(0x50800, cache.lookup("foo"));
+        Assert.assertEquals(0x50800, cache.lookup("foo"));
+    }
+
+    @Test
+    public void testModifiedLibraryDiscardsCache() {
+        FakeLookup lookup = new FakeLookup();
+        lookup.addresses.put("foo", Long.valueOf(0x10100));
+        SymbolAddressCache cache = open(lookup, 0x10000, 0x1000);
+        cache.lookup("foo");
+        cache.flush();
+
+        lookup = new FakeLookup();
+        lookup.addresses.put("foo", Long.valueOf(0x50800));
+        cache = new SymbolAddressCache(LIB, SIZE + 1, MTIME, cacheFile, lookup, 0x50000, 0x51000);
+        cache.load();
+        Assert.assertEquals(0, lookup.calls);
+        Assert.assertEquals(0x50800, cache.lookup("foo"));
+        Assert.assertEquals(1, lookup.calls);
+    }
+
+    @Test
+    public void testFindMapping() throws IOException {
+        File maps = new File(dir, "maps");
+        Writer w = new FileWriter(maps);
+        try {
+            w.write("7f0000000000-7f0000001000 r--p 00000000 08:01 1234                       /usr/lib/libtest.so\n");
+            w.write("7f0000001000-7f0000005000 r-xp 00001000 08:01 1234                       /usr/lib/libtest.so\n");
+            w.write("7f0000005000-7f0000006000 rw-p 00000000 00:00 0 \n");
+            w.write("7f0000006000-7f0000008000 r-xp 00000000 08:01 5678                       /usr/lib/libother.so\n");
+            w.write("7f0000009000-7f000000a000 rw-p 00005000 08:01 1234                       /usr/lib/libtest.so\n");
+        } finally {
+            w.close();
+        }
+        long[] range = SymbolAddressCache.findMapping(maps, LIB);
+        Assert.assertNotNull(range);
+        Assert.assertEquals(0x7f0000000000L, range[0]);
+        Assert.assertEquals(0x7f000000a000L, range[1]);
+        Assert.assertNull(SymbolAddressCache.findMapping(maps, "/usr/lib/libnone.so"));
+        Assert.assertNull(SymbolAddressCache.findMapping(new File(dir, "nomaps"), LIB));
+    }
+
+    public static void main(String args[]) throws Exception {
+        String tstname = TestSymbolAddressCache.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+ 
+package com.jogamp.common.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestCallProfile {
+
+    @Test
+    public void testBuckets() {
+        Assert.assertEquals(0, CallProfile.bucket(0));
+        Assert.assertEquals(1, CallProfile.bucket(1));
+        Assert.assertEquals(2, CallProfile.bucket(2));
+        Assert.assertEquals(2, CallProfile.bucket(3));
+        Assert.assertEquals(11, CallProfile.bucket(1024));
+        Assert.assertEquals(63, CallProfile.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testRecordAndSnapshot() {
+        final CallProfile profile = new CallProfile(new String[] { "foo()", "bar(int)", "baz()" });
+        for (int i = 0; i < 99; i++) {
+            profile.record(0, 100);
+        }
+        profile.record(0, 5000);
+        profile.record(1, 10);
+
+        final CallProfile.Snapshot s = profile.snapshot();
+        profile.record(1, 10);
+
+        Assert.assertEquals(3, s.size());
+        Assert.assertEquals(1, s.indexOf("bar(int)"));
+        Assert.assertEquals(-1, s.indexOf("bar"));
+        Assert.assertEquals(100, s.getCount(0));
+        Assert.assertEquals(99*100 + 5000, s.getTotalNanos(0));
+        Assert.assertEquals(5000, s.getMaxNanos(0));
+        Assert.assertEquals(149, s.getMeanNanos(0));
+        Assert.assertEquals(99, s.getHistogram(0, CallProfile.bucket(100)));
+        Assert.assertEquals(128, s.getPercentileNanos(0, 99.0));
+        Assert.assertEquals(8192, s.getPercentileNanos(0, 100.0));
+        Assert.assertEquals(1, s.getCount(1));
+        Assert.assertEquals(0, s.getCount(2));
+        Assert.assertEquals(0, s.getMeanNanos(2));
+        Assert.assertEquals(0, s.getPercentileNanos(2, 99.0));
+
+        final String table = s.toString();
+        Assert.assertTrue(table.indexOf("foo()") < table.indexOf("bar(int)"));
+        Assert.assertEquals(-1, table.indexOf("baz()"));
+
+        profile.reset();
+        Assert.assertEquals(0, profile.snapshot().getCount(1));
+        Assert.assertEquals(1, s.getCount(1));
+    }
+
+    public static void main(String args[]) throws Exception {
+        String tstname = TestCallProfile.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+ 
+package com.jogamp.common.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestStartupTrace {
+
+    @Test
+    public void testRecordAndReport() {
+        final int opens = StartupTrace.getCount(StartupTrace.LIB_OPEN);
+        final int lookups = StartupTrace.getCount(StartupTrace.SYMBOL_LOOKUP);
+
+        StartupTrace.record(StartupTrace.LIB_OPEN, "/tmp/lib\"quoted\".so", System.nanoTime(), false);
+        StartupTrace.record(StartupTrace.SYMBOL_LOOKUP, "glFoo", System.nanoTime(), true);
+
+        Assert.assertEquals(opens+1, StartupTrace.getCount(StartupTrace.LIB_OPEN));
+        Assert.assertEquals(lookups+1, StartupTrace.getCount(StartupTrace.SYMBOL_LOOKUP));
+        Assert.assertTrue(StartupTrace.getNanos(StartupTrace.SYMBOL_LOOKUP) >= 0);
+
+        final String json = StartupTrace.toJSON();
+        Assert.assertTrue(json.indexOf("\"name\": \"/tmp/lib\\\"quoted\\\".so\"") >= 0);
+        Assert.assertTrue(json.indexOf("\"name\": \"glFoo\"") >= 0);
+        Assert.assertTrue(StartupTrace.getSummary().indexOf("SYMBOL_LOOKUP") >= 0);
+    }
+
+    public static void main(String args[]) throws Exception {
+        String tstname = TestStartupTrace.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
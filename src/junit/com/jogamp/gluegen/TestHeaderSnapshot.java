@@ -0,0 +1,135 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.jogamp.gluegen.cgram.Define;
+import com.jogamp.gluegen.cgram.types.CompoundType;
+import com.jogamp.gluegen.cgram.types.CompoundTypeKind;
+import com.jogamp.gluegen.cgram.types.EnumType;
+import com.jogamp.gluegen.cgram.types.Field;
+import com.jogamp.gluegen.cgram.types.FunctionSymbol;
+import com.jogamp.gluegen.cgram.types.FunctionType;
+import com.jogamp.gluegen.cgram.types.IntType;
+import com.jogamp.gluegen.cgram.types.PointerType;
+import com.jogamp.gluegen.cgram.types.SizeThunk;
+import com.jogamp.gluegen.cgram.types.Type;
+import com.jogamp.gluegen.cgram.types.TypeDictionary;
+
+/**
+ * Stores and loads a {@link HeaderSnapshot} and validates the identity
+ * of the shared types and the type constants.
+ */
+public class TestHeaderSnapshot {
+
+    @Test
+    public void testStoreLoad() throws IOException {
+        IntType intType = new IntType("int", SizeThunk.INT, false, 0);
+        CompoundType struct = new CompoundType("Foo", SizeThunk.mul(SizeThunk.constant(2), SizeThunk.INT), CompoundTypeKind.STRUCT, 0);
+        struct.addField(new Field("a", intType, SizeThunk.constant(0)));
+        struct.addField(new Field("b", intType, SizeThunk.INT));
+        PointerType fooPtr = new PointerType(SizeThunk.POINTER, struct, 0);
+        fooPtr.setName("FooPtr");
+
+        TypeDictionary td = new TypeDictionary();
+        td.put("FooPtr", fooPtr);
+        TypeDictionary sd = new TypeDictionary();
+        sd.put("Foo", struct);
+        Map<Type, Type> canonMap = new HashMap<Type, Type>();
+        canonMap.put(fooPtr, fooPtr);
+
+        EnumType enumType = new EnumType("Bar");
+        enumType.addEnum("BAR_ONE", 1);
+        FunctionType funcType = new FunctionType("useFoo", SizeThunk.POINTER, intType, 0);
+        funcType.addArgument(fooPtr, "foo");
+        List<FunctionSymbol> functions = new ArrayList<FunctionSymbol>();
+        functions.add(new FunctionSymbol("useFoo", funcType));
+
+        HeaderSnapshot snapshot = new HeaderSnapshot(td, sd, canonMap, Arrays.asList(enumType), functions,
+                                                     Arrays.asList(new Define("FOO_VERSION", "2")));
+
+        File dir = new File(System.getProperty("java.io.tmpdir"), "TestHeaderSnapshot");
+        MessageDigest digest = HeaderSnapshot.createDigest();
+        digest.update("typedef struct Foo * FooPtr;".getBytes());
+        File f = HeaderSnapshot.getCacheFile(dir.getPath(), digest, Arrays.asList("."));
+        try {
+            snapshot.store(f);
+            HeaderSnapshot loaded = HeaderSnapshot.load(f);
+            Assert.assertNotNull(loaded);
+
+            PointerType lPtr = (PointerType) loaded.getTypedefDictionary().get("FooPtr");
+            CompoundType lStruct = (CompoundType) loaded.getStructDictionary().get("Foo");
+            Assert.assertSame(lStruct, lPtr.getTargetType());
+            Assert.assertTrue(lStruct.isStruct());
+            Assert.assertSame(SizeThunk.POINTER, lPtr.getSize());
+            Assert.assertSame(lStruct.getField(0).getType(), lStruct.getField(1).getType());
+            Assert.assertEquals(2, lStruct.getNumFields());
+
+            // a newly fabricated pointer type must canonicalize to the loaded typedef
+            Assert.assertSame(lPtr, loaded.getCanonMap().get(new PointerType(SizeThunk.POINTER, lStruct, 0)));
+
+            FunctionSymbol lFunc = loaded.getFunctions().get(0);
+            Assert.assertEquals("useFoo", lFunc.getName());
+            Assert.assertSame(lPtr, lFunc.getArgumentType(0));
+            Assert.assertEquals(1, loaded.getEnums().get(0).getEnumValue(0));
+            Assert.assertEquals("2", loaded.getDefines().get(0).getValue());
+        } finally {
+            f.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testMissingOrCorrupt() throws IOException {
+        File f = File.createTempFile("TestHeaderSnapshot", ".hdrcache");
+        try {
+            Assert.assertNull(HeaderSnapshot.load(f));
+            f.delete();
+            Assert.assertNull(HeaderSnapshot.load(f));
+        } finally {
+            f.delete();
+        }
+    }
+
+    public static void main(String args[]) throws IOException {
+        String tstname = TestHeaderSnapshot.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
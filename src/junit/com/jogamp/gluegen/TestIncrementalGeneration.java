@@ -0,0 +1,124 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Validates the incremental generation, i.e. that an {@link IncrementalFileWriter}
+ * leaves unchanged files untouched and that a {@link GenerationManifest} detects
+ * changed inputs and missing outputs.
+ */
+public class TestIncrementalGeneration {
+
+    private static final String BODY = "public class Foo {\n}\n";
+
+    private static void writeFile(File f, String content) throws IOException {
+        Writer w = new FileWriter(f);
+        try {
+            w.write(content);
+        } finally {
+            w.close();
+        }
+    }
+
+    private static boolean writeIncremental(File f, String content) throws IOException {
+        IncrementalFileWriter w = new IncrementalFileWriter(f);
+        w.write(content);
+        w.close();
+        return w.isWritten();
+    }
+
+    @Test
+    public void testUnchangedFileSkipped() throws IOException {
+        File f = File.createTempFile("TestIncrementalGeneration", ".java");
+        try {
+            f.delete();
+            Assert.assertTrue(writeIncremental(f, CodeGenUtils.AUTOGENERATED_WARNING_PREFIX + "on Mon */\n" + BODY));
+            Assert.assertTrue(f.setLastModified(1000000000L));
+
+            // only the time of generation differs
+            Assert.assertFalse(writeIncremental(f, CodeGenUtils.AUTOGENERATED_WARNING_PREFIX + "on Tue */\n" + BODY));
+            Assert.assertEquals(1000000000L, f.lastModified());
+
+            Assert.assertTrue(writeIncremental(f, CodeGenUtils.AUTOGENERATED_WARNING_PREFIX + "on Wed */\n" + BODY + "\n"));
+            Assert.assertTrue(1000000000L != f.lastModified());
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testManifestUpToDate() throws IOException {
+        File dir = File.createTempFile("TestIncrementalGeneration", ".dir");
+        dir.delete();
+        Assert.assertTrue(dir.mkdir());
+        File input = new File(dir, "in.h");
+        File output = new File(dir, "Out.java");
+        File manifestFile = new File(dir, "gen.manifest");
+        try {
+            writeFile(input, "int foo(int);\n");
+            writeFile(output, BODY);
+
+            GenerationManifest manifest = new GenerationManifest(manifestFile.getPath(), "key1");
+            Assert.assertFalse(manifest.isUpToDate());
+            manifest.addInputs(Arrays.asList(input.getPath()));
+            manifest.addOutputs(Arrays.asList(output.getPath()));
+            manifest.write();
+
+            Assert.assertTrue(new GenerationManifest(manifestFile.getPath(), "key1").isUpToDate());
+            Assert.assertFalse(new GenerationManifest(manifestFile.getPath(), "key2").isUpToDate());
+
+            writeFile(input, "int foo(long);\n");
+            Assert.assertFalse(new GenerationManifest(manifestFile.getPath(), "key1").isUpToDate());
+            writeFile(input, "int foo(int);\n");
+            Assert.assertTrue(new GenerationManifest(manifestFile.getPath(), "key1").isUpToDate());
+
+            output.delete();
+            Assert.assertFalse(new GenerationManifest(manifestFile.getPath(), "key1").isUpToDate());
+        } finally {
+            input.delete();
+            output.delete();
+            manifestFile.delete();
+            dir.delete();
+        }
+    }
+
+    public static void main(String args[]) throws IOException {
+        String tstname = TestIncrementalGeneration.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Validates the compiled ignore rules against a plain regular expression loop
+ * and benchmarks them on a synthetic set of 5000 symbols and 500 rules.
+ */
+public class TestJavaConfigurationIgnores {
+
+    static final int SYMBOL_COUNT = 5000;
+    static final int RULE_COUNT = 500;
+
+    static List<String> symbols = new ArrayList<String>();
+    static List<Pattern> rules = new ArrayList<Pattern>();
+    static JavaConfiguration cfg;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        for(int i=0; i<SYMBOL_COUNT; i++) {
+            switch(i % 4) {
+                case 0: symbols.add("glFunc"+i); break;
+                case 1: symbols.add("glFunc"+i+"EXT"); break;
+                case 2: symbols.add("GL_CONST_"+i); break;
+                default: symbols.add("struct"+(i%50)+" field"+i); break;
+            }
+        }
+        File cfgFile = File.createTempFile("TestJavaConfigurationIgnores", ".cfg");
+        cfgFile.deleteOnExit();
+        PrintWriter w = new PrintWriter(new FileWriter(cfgFile));
+        w.println("Package com.jogamp.gluegen.test");
+        for(int i=0; i<RULE_COUNT; i++) {
+            final String regex;
+            switch(i % 5) {
+                case 0: regex = "glFunc"+(i*7); break;
+                case 1: regex = "glFunc"+i+"[0-9]*EXT"; break;
+                case 2: regex = "GL_CONST_"+i+"\\d"; break;
+                case 3: regex = "(glFoo|glBar)"+i+".*"; break;
+                default: regex = "GL_CONST_"+(i*3); break;
+            }
+            w.println("Ignore "+regex);
+            rules.add(Pattern.compile(regex));
+        }
+        w.println("IgnoreField struct7 field7");
+        rules.add(Pattern.compile("struct7 field7"));
+        w.close();
+
+        cfg = new JavaConfiguration();
+        cfg.read(cfgFile.getPath());
+    }
+
+    static boolean referenceIgnore(String symbol) {
+        for(int i=0; i<rules.size(); i++) {
+            if(rules.get(i).matcher(symbol).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testSameDecisions() {
+        int ignored = 0;
+        for(String symbol : symbols) {
+            final boolean exp = referenceIgnore(symbol);
+            Assert.assertEquals(symbol, exp, cfg.shouldIgnoreInImpl(symbol));
+            Assert.assertEquals(symbol, exp, cfg.shouldIgnoreInInterface(symbol));
+            if(exp) {
+                ignored++;
+            }
+        }
+        Assert.assertTrue(ignored > 0);
+    }
+
+    @Test
+    public void testLiteralDetection() {
+        Assert.assertTrue(CompiledPatternSet.isLiteral("glFunc12"));
+        Assert.assertTrue(CompiledPatternSet.isLiteral("struct7 field7"));
+        Assert.assertFalse(CompiledPatternSet.isLiteral("glFunc.*"));
+        Assert.assertFalse(CompiledPatternSet.isLiteral("GL_\\w+"));
+        Assert.assertEquals("glFunc", CompiledPatternSet.literalPrefix("glFunc.*"));
+        Assert.assertEquals("glFun", CompiledPatternSet.literalPrefix("glFunc?EXT"));
+        Assert.assertEquals("glFunc", CompiledPatternSet.literalPrefix("glFunc+EXT"));
+        Assert.assertEquals("", CompiledPatternSet.literalPrefix("glA.*|glB.*"));
+    }
+
+    @Test
+    public void testBenchmark() {
+        long t0 = System.nanoTime();
+        int n0 = 0;
+        for(String symbol : symbols) {
+            if(referenceIgnore(symbol)) {
+                n0++;
+            }
+        }
+        long t1 = System.nanoTime();
+        CompiledPatternSet compiled = new CompiledPatternSet(rules);
+        int n1 = 0;
+        for(String symbol : symbols) {
+            if(compiled.matches(symbol)) {
+                n1++;
+            }
+        }
+        long t2 = System.nanoTime();
+        int n2 = 0;
+        for(String symbol : symbols) {
+            if(cfg.shouldIgnoreInImpl(symbol)) {
+                n2++;
+            }
+        }
+        long t3 = System.nanoTime();
+        Assert.assertEquals(n0, n1);
+        Assert.assertEquals(n0, n2);
+        System.err.println(SYMBOL_COUNT+" symbols, "+rules.size()+" rules, "+n0+" ignored:");
+        System.err.println("  regex loop:      "+(t1-t0)/1000000+" ms");
+        System.err.println("  compiled:        "+(t2-t1)/1000000+" ms");
+        System.err.println("  memoized config: "+(t3-t2)/1000000+" ms");
+    }
+
+    public static void main(String args[]) throws IOException {
+        String tstname = TestJavaConfigurationIgnores.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
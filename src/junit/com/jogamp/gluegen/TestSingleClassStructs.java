@@ -0,0 +1,207 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jogamp.common.os.Platform;
+
+/**
+ * Generates the accessors of a struct with <code>SingleClassStructs</code> enabled,
+ * compiles them and validates the field offsets of the current platform.
+ */
+public class TestSingleClassStructs {
+
+    private static final String HEADER =
+        "typedef struct {\n" +
+        "  int x;\n" +
+        "  int y;\n" +
+        "} Point;\n" +
+        "\n" +
+        "typedef struct {\n" +
+        "  char c;\n" +
+        "  int i;\n" +
+        "  long l;\n" +
+        "  double d;\n" +
+        "  int values[3];\n" +
+        "  Point origin;\n" +
+        "} Sample;\n" +
+        "\n" +
+        "void setSample(Sample * s);\n";
+
+    private static final String CONFIG =
+        "Package test.structs\n" +
+        "Style AllStatic\n" +
+        "JavaClass StructTest\n" +
+        "JavaOutputDir java\n" +
+        "NativeOutputDir native\n" +
+        "SingleClassStructs true\n";
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("TestSingleClassStructs", "");
+        dir.delete();
+        dir.mkdirs();
+        write(new File(dir, "structtest.h"), HEADER);
+        write(new File(dir, "structtest.cfg"), CONFIG);
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    @Test
+    public void testEmission() throws IOException {
+        generate();
+
+        Assert.assertFalse(new File(dir, "java/test/structs/Sample32.java").exists());
+        Assert.assertFalse(new File(dir, "java/test/structs/Sample64.java").exists());
+        String java = read(new File(dir, "java/test/structs/Sample.java"));
+
+        Assert.assertTrue(java.contains("public final class Sample "));
+        Assert.assertTrue(java.contains("private static final boolean is32Bit = Platform.is32Bit();"));
+        Assert.assertTrue(java.contains("private static final int i_slot = 1;"));
+        Assert.assertTrue(java.contains("private static final int l_slot = is32Bit ? 2 : 1;"));
+        Assert.assertTrue(java.contains("return is32Bit ? (long) accessor.getIntAt(l_slot) : accessor.getLongAt(l_slot);"));
+        Assert.assertTrue(java.contains("return new Sample(buf);"));
+        Assert.assertFalse(java.contains("abstract"));
+    }
+
+    @Test
+    public void testAccessors() throws Exception {
+        generate();
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (null == compiler) {
+            System.err.println("No system java compiler, skipping compilation of the generated struct classes");
+            return;
+        }
+        File classes = new File(dir, "classes");
+        classes.mkdirs();
+        int res = compiler.run(null, null, null, "-nowarn", "-d", classes.getPath(), "-cp", System.getProperty("java.class.path"),
+                               new File(dir, "java/test/structs/Sample.java").getPath(),
+                               new File(dir, "java/test/structs/Point.java").getPath());
+        Assert.assertEquals(0, res);
+
+        URLClassLoader cl = new URLClassLoader(new URL[] { classes.toURI().toURL() }, getClass().getClassLoader());
+        Class<?> sampleClass = cl.loadClass("test.structs.Sample");
+        Assert.assertEquals(48, ((Integer) sampleClass.getMethod("size").invoke(null)).intValue());
+
+        Object sample = sampleClass.getMethod("create").invoke(null);
+        ByteBuffer bb = (ByteBuffer) sampleClass.getMethod("getBuffer").invoke(sample);
+        sampleClass.getMethod("setI", int.class).invoke(sample, Integer.valueOf(42));
+        sampleClass.getMethod("setL", long.class).invoke(sample, Long.valueOf(7));
+        sampleClass.getMethod("setD", double.class).invoke(sample, Double.valueOf(2.5));
+        sampleClass.getMethod("setValues", int[].class).invoke(sample, new int[] { 1, 2, 3 });
+
+        Assert.assertEquals(42, bb.getInt(4));
+        Assert.assertEquals(7, Platform.is32Bit() ? bb.getInt(8) : bb.getLong(8));
+        Assert.assertEquals(2.5, bb.getDouble(16), 0.0);
+        Assert.assertEquals(3, bb.getInt(32));
+        Assert.assertEquals(7L, ((Long) sampleClass.getMethod("getL").invoke(sample)).longValue());
+        Assert.assertArrayEquals(new int[] { 1, 2, 3 }, (int[]) sampleClass.getMethod("getValues").invoke(sample));
+
+        Object origin = sampleClass.getMethod("getOrigin").invoke(sample);
+        Method setY = origin.getClass().getMethod("setY", int.class);
+        setY.invoke(origin, Integer.valueOf(5));
+        Assert.assertEquals(5, bb.getInt(44));
+    }
+
+    private void generate() throws IOException {
+        String header = new File(dir, "structtest.h").getPath();
+        Reader reader = new FileReader(header);
+        try {
+            new GlueGen().run(reader, header, JavaEmitter.class, Collections.singletonList(dir.getPath()),
+                              Collections.singletonList(new File(dir, "structtest.cfg").getPath()), dir.getPath(), false, false);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void write(File f, String content) throws IOException {
+        Writer w = new FileWriter(f);
+        try {
+            w.write(content);
+        } finally {
+            w.close();
+        }
+    }
+
+    private static String read(File f) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        Reader r = new InputStreamReader(new FileInputStream(f));
+        try {
+            char[] buf = new char[4096];
+            for (int n = r.read(buf); n >= 0; n = r.read(buf)) {
+                sb.append(buf, 0, n);
+            }
+        } finally {
+            r.close();
+        }
+        return sb.toString();
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (null != children) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+
+    public static void main(String args[]) throws Exception {
+        String tstname = TestSingleClassStructs.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
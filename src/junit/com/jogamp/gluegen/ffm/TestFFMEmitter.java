@@ -0,0 +1,205 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+
+package com.jogamp.gluegen.ffm;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jogamp.gluegen.GlueGen;
+
+/**
+ * Generates the bindings of a small header via the {@link FFMEmitter}
+ * and validates the emitted downcall handles and struct layouts.
+ * <p>
+ * The generated code requires Java 22, hence it is only inspected, not compiled.
+ * </p>
+ */
+public class TestFFMEmitter {
+
+    private static final String HEADER =
+        "typedef struct {\n" +
+        "  char c;\n" +
+        "  int i;\n" +
+        "  double d;\n" +
+        "  char name[3];\n" +
+        "  void * p;\n" +
+        "} Sample;\n" +
+        "\n" +
+        "int sumInts(int * values, int count);\n" +
+        "int sumIntsDirect(int * values, int count);\n" +
+        "int strLength(const char * str);\n" +
+        "Sample * getSample(void);\n" +
+        "void setSample(Sample * s);\n";
+
+    private static final String CONFIG =
+        "Package test.ffm\n" +
+        "Style AllStatic\n" +
+        "JavaClass FFMTest\n" +
+        "JavaOutputDir java\n" +
+        "NativeOutputDir native\n" +
+        "NioDirectOnly sumIntsDirect\n" +
+        "ArgumentIsString strLength 0\n";
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("TestFFMEmitter", "");
+        dir.delete();
+        dir.mkdirs();
+        write(new File(dir, "ffmtest.h"), HEADER);
+        write(new File(dir, "ffmtest.cfg"), CONFIG);
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    @Test
+    public void testFunctions() throws IOException {
+        generate();
+
+        Assert.assertFalse(new File(dir, "native/FFMTest_JNI.c").exists());
+        String java = read(new File(dir, "java/test/ffm/FFMTest.java"));
+
+        Assert.assertTrue(java.contains("SymbolLookup.loaderLookup()"));
+        Assert.assertFalse(java.contains(" native "));
+
+        // one handle per C function, critical for heap arrays
+        Assert.assertEquals(1, count(java, "_mh_sumInts = _downcall(\"sumInts\""));
+        Assert.assertTrue(java.contains("_mh_sumInts = _downcall(\"sumInts\", FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_INT), Linker.Option.critical(true));"));
+        Assert.assertTrue(java.contains("MemorySegment.ofArray(values).asSlice(Buffers.SIZEOF_INT * values_offset)"));
+        Assert.assertTrue(java.contains("(int) _mh_sumInts.invokeExact("));
+
+        // NIO direct only binds a regular handle
+        Assert.assertTrue(java.contains("_mh_sumIntsDirect = _downcall(\"sumIntsDirect\", FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_INT));"));
+
+        Assert.assertTrue(java.contains("Arena _arena = Arena.ofConfined()"));
+        Assert.assertTrue(java.contains("_arena.allocateFrom(str)"));
+
+        Assert.assertTrue(java.contains("FunctionDescriptor.ofVoid(ValueLayout.ADDRESS)"));
+        Assert.assertTrue(java.contains("MemorySegment.ofBuffer(s.getBuffer())"));
+        Assert.assertTrue(java.contains("Sample.create(Buffers.nativeOrder(_res.reinterpret(Sample.size()).asByteBuffer()))"));
+    }
+
+    @Test
+    public void testStructLayout() throws IOException {
+        generate();
+
+        String struct64 = read(new File(dir, "java/test/ffm/Sample64.java"));
+        Assert.assertTrue(struct64.contains("public static final GroupLayout LAYOUT = MemoryLayout.structLayout("));
+        Assert.assertTrue(killWhitespace(struct64).contains(
+            "MemoryLayout.structLayout(" +
+            "ValueLayout.JAVA_BYTE.withName(\"c\")," +
+            "MemoryLayout.paddingLayout(3)," +
+            "ValueLayout.JAVA_INT.withName(\"i\")," +
+            "ValueLayout.JAVA_DOUBLE.withName(\"d\")," +
+            "MemoryLayout.sequenceLayout(3,ValueLayout.JAVA_BYTE).withName(\"name\")," +
+            "MemoryLayout.paddingLayout(5)," +
+            "ValueLayout.ADDRESS.withName(\"p\"));"));
+
+        String struct32 = read(new File(dir, "java/test/ffm/Sample32.java"));
+        Assert.assertTrue(struct32.contains("public static final GroupLayout LAYOUT"));
+    }
+
+    private void generate() throws IOException {
+        String header = new File(dir, "ffmtest.h").getPath();
+        Reader reader = new FileReader(header);
+        try {
+            new GlueGen().run(reader, header, FFMEmitter.class, Collections.singletonList(dir.getPath()),
+                              Collections.singletonList(new File(dir, "ffmtest.cfg").getPath()), dir.getPath(), false, false);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static int count(String s, String pattern) {
+        int n = 0;
+        for (int i = s.indexOf(pattern); i >= 0; i = s.indexOf(pattern, i + 1)) {
+            n++;
+        }
+        return n;
+    }
+
+    private static String killWhitespace(String a) {
+        return a.replaceAll("\\p{javaWhitespace}+", "");
+    }
+
+    private static void write(File f, String content) throws IOException {
+        Writer w = new FileWriter(f);
+        try {
+            w.write(content);
+        } finally {
+            w.close();
+        }
+    }
+
+    private static String read(File f) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        Reader r = new InputStreamReader(new FileInputStream(f));
+        try {
+            char[] buf = new char[4096];
+            for (int n = r.read(buf); n >= 0; n = r.read(buf)) {
+                sb.append(buf, 0, n);
+            }
+        } finally {
+            r.close();
+        }
+        return sb.toString();
+    }
+
+    private static void delete(File f) {
+        File[] children = f.listFiles();
+        if (null != children) {
+            for (File c : children) {
+                delete(c);
+            }
+        }
+        f.delete();
+    }
+
+    public static void main(String args[]) throws IOException {
+        String tstname = TestFFMEmitter.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
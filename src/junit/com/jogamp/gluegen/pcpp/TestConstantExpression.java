@@ -0,0 +1,140 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.pcpp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ConstantExpression} evaluation of #if conditions and #define values in {@link PCPP}.
+ */
+public class TestConstantExpression {
+
+    static Number fold(String text) {
+        ConstantExpression expr = ConstantExpression.compile(text);
+        return null != expr ? expr.evaluate(null, false) : null;
+    }
+
+    static PCPP run(String input, ByteArrayOutputStream out) throws IOException {
+        PCPP pp = new PCPP(Collections.<String>emptyList(), false, false);
+        pp.setOut(out);
+        pp.run(new StringReader(input), "input.h");
+        return pp;
+    }
+
+    static void assertCondition(boolean expected, String defines, String condition) throws IOException {
+        String out = TestMacroExpansion.preprocess(defines + "#if " + condition + "\nint yes;\n#else\nint no;\n#endif\n");
+        Assert.assertEquals(condition, expected ? "intyes;" : "intno;", out);
+    }
+
+    @Test
+    public void testTypes() {
+        Assert.assertEquals(Integer.valueOf(8), fold("(1<<3)"));
+        Assert.assertEquals(Integer.valueOf(-128), fold("(-127-1)"));
+        Assert.assertEquals(Long.valueOf(5), fold("5L"));
+        Assert.assertEquals(Long.valueOf(0xFFFFFFFFL), fold("0xFFFFFFFFu"));
+        Assert.assertEquals(Long.valueOf(-1), fold("0xFFFFFFFFFFFFFFFFULL"));
+        Assert.assertEquals(Integer.valueOf(8), fold("010"));
+        Assert.assertEquals(Float.valueOf(1.5f), fold("1.5f"));
+        Assert.assertEquals(Double.valueOf(0.5), fold(".5"));
+        Assert.assertEquals(Double.valueOf(3.0), fold("1.0+2"));
+        Assert.assertEquals(Long.valueOf(3), fold("1+2L"));
+        Assert.assertEquals(Integer.valueOf(97), fold("'a'"));
+        Assert.assertEquals(Integer.valueOf(1), fold("2>1&&3"));
+        // int arithmetic wraps as in Java
+        Assert.assertEquals(Integer.valueOf(Integer.MIN_VALUE), fold("1<<31"));
+    }
+
+    @Test
+    public void testNotConstant() {
+        Assert.assertNull(fold(""));
+        Assert.assertNull(fold("FOO"));
+        Assert.assertNull(fold("(int)1"));
+        Assert.assertNull(fold("f(1)"));
+        Assert.assertNull(fold("\"str\""));
+        Assert.assertNull(fold("1/0"));
+        Assert.assertNull(fold("08"));
+        Assert.assertNull(fold("1.5f<<2"));
+        Assert.assertNull(fold("(1"));
+    }
+
+    @Test
+    public void testConditions() throws IOException {
+        final String defs = "#define A 5\n#define B (A*2)\n#define Z 0\n#define F(x) ((x)+1)\n#define SELF SELF\n#define EMPTY\n";
+        assertCondition(true,  defs, "A > 4");
+        assertCondition(false, defs, "Z");
+        assertCondition(true,  defs, "B == 10 && !defined(C)");
+        assertCondition(true,  defs, "defined A && defined(EMPTY)");
+        assertCondition(true,  defs, "F(A) == 6");
+        // a function-like macro name without arguments is not expanded
+        assertCondition(true,  defs, "defined(F) && !F");
+        assertCondition(true,  defs, "UNDEFINED + 1 == 1");
+        assertCondition(false, defs, "SELF");
+        // evaluated as intmax_t
+        assertCondition(false, defs, "(1 << 31) < 0");
+        assertCondition(true,  defs, "Z ? 0 : A % 3 == 2");
+        assertCondition(true,  defs, "'a' == 97 && ~0 == -1");
+        // malformed conditions are false
+        assertCondition(false, defs, "A +");
+        assertCondition(false, defs, "EMPTY");
+    }
+
+    @Test
+    public void testSkippedConditions() throws IOException {
+        // conditions of groups which cannot be taken are not evaluated
+        Assert.assertEquals("inta;intc;",
+                TestMacroExpansion.preprocess("#if 1\nint a;\n#elif malformed ((\nint b;\n#endif\n" +
+                                              "#if 0\n#if malformed ((\n#endif\n#else\nint c;\n#endif\n"));
+    }
+
+    @Test
+    public void testDefineValues() throws IOException {
+        PCPP pp = run("#define BASE 0x10\n#define NEXT (BASE-1)\n#define SHIFTED (1<<3)\n#define BIG 0xFFFFFFFFu\n" +
+                      "#define FP 2.5f\n#define ALIAS BASE\n#define CAST ((int)1)\n", new ByteArrayOutputStream());
+        // '-' is a word character of PCPP, hence the value is emitted and BASE is resolved
+        Assert.assertEquals(Integer.valueOf(15), pp.getConstantValue("NEXT", "(BASE-1)"));
+        Assert.assertEquals(Integer.valueOf(8), pp.getConstantValue("SHIFTED", "(1<<3)"));
+        Assert.assertEquals(Long.valueOf(0xFFFFFFFFL), pp.getConstantValue("BIG", "0xFFFFFFFFu"));
+        Assert.assertEquals(Float.valueOf(2.5f), pp.getConstantValue("FP", "2.5f"));
+        Assert.assertEquals(Integer.valueOf(16), pp.getConstantValue("ALIAS", "0x10"));
+        // not emitted, or a different text
+        Assert.assertNull(pp.getConstantValue("CAST", "((int)1)"));
+        Assert.assertNull(pp.getConstantValue("SHIFTED", "8"));
+    }
+
+    public static void main(String args[]) throws IOException {
+        String tstname = TestConstantExpression.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.pcpp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Collections;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the multiple include optimization of {@link PCPP} and the {@link IncludeCache}.
+ */
+public class TestIncludeCache {
+
+    static File dir;
+
+    @BeforeClass
+    public static void init() throws IOException {
+        dir = File.createTempFile("TestIncludeCache", "");
+        dir.delete();
+        dir.mkdir();
+        write("guarded.h", "/* comment */\n#ifndef GUARDED_H\n#define GUARDED_H\nint guarded;\n#endif /* GUARDED_H */\n");
+        write("once.h", "#pragma once\nint once;\n");
+        write("plain.h", "int plain;\n");
+        write("trailing.h", "#ifndef TRAILING_H\n#define TRAILING_H\nint trailing;\n#endif\nint after;\n");
+        write("leading.h", "int before;\n#ifndef LEADING_H\n#define LEADING_H\nint leading;\n#endif\n");
+        write("else.h", "#ifndef ELSE_H\n#define ELSE_H\nint inside;\n#else\nint again;\n#endif\n");
+        write("nested.h", "#ifndef NESTED_H\n#define NESTED_H\n#ifdef X\nint x;\n#else\nint nested;\n#endif\n#endif\n");
+    }
+
+    @AfterClass
+    public static void cleanup() {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    static void write(String name, String content) throws IOException {
+        Writer w = new FileWriter(new File(dir, name));
+        try {
+            w.write(content);
+        } finally {
+            w.close();
+        }
+    }
+
+    static String preprocess(String input, IncludeCache cache) throws IOException {
+        PCPP pp = new PCPP(Collections.singletonList(dir.getPath()), false, false);
+        pp.setIncludeCache(cache);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pp.setOut(out);
+        pp.run(new StringReader(input), "input.h");
+        return out.toString();
+    }
+
+    static String twice(String name) {
+        return "#include \"" + name + "\"\n#include <" + name + ">\n";
+    }
+
+    static int count(String s, String word) {
+        int n = 0;
+        for (int i = s.indexOf(word); i >= 0; i = s.indexOf(word, i + 1)) {
+            n++;
+        }
+        return n;
+    }
+
+    /** Returns the number of times the file was read by the preprocessor, judged by its line directives */
+    static int includes(String s, String name) {
+        return count(s, "# 1 \"" + new File(dir, name).getPath() + "\"");
+    }
+
+    @Test
+    public void testIncludeGuard() throws IOException {
+        String s = preprocess(twice("guarded.h"), null);
+        Assert.assertEquals(1, count(s, "guarded;"));
+        Assert.assertEquals(1, includes(s, "guarded.h"));
+
+        s = preprocess(twice("nested.h"), null);
+        Assert.assertEquals(1, count(s, "nested;"));
+        Assert.assertEquals(1, includes(s, "nested.h"));
+    }
+
+    @Test
+    public void testUndefinedGuard() throws IOException {
+        String s = preprocess(twice("guarded.h") + "#undef GUARDED_H\n" + twice("guarded.h"), null);
+        Assert.assertEquals(2, count(s, "guarded;"));
+        Assert.assertEquals(2, includes(s, "guarded.h"));
+    }
+
+    @Test
+    public void testPragmaOnce() throws IOException {
+        String s = preprocess(twice("once.h"), null);
+        Assert.assertEquals(1, count(s, "once;"));
+        Assert.assertEquals(1, includes(s, "once.h"));
+    }
+
+    @Test
+    public void testNoGuard() throws IOException {
+        String s = preprocess(twice("plain.h"), null);
+        Assert.assertEquals(2, count(s, "plain;"));
+        Assert.assertEquals(2, includes(s, "plain.h"));
+
+        s = preprocess(twice("trailing.h"), null);
+        Assert.assertEquals(1, count(s, "trailing;"));
+        Assert.assertEquals(2, count(s, "after;"));
+
+        s = preprocess(twice("leading.h"), null);
+        Assert.assertEquals(1, count(s, "leading;"));
+        Assert.assertEquals(2, count(s, "before;"));
+
+        s = preprocess(twice("else.h"), null);
+        Assert.assertEquals(1, count(s, "inside;"));
+        Assert.assertEquals(1, count(s, "again;"));
+    }
+
+    @Test
+    public void testIncludeCache() throws IOException {
+        IncludeCache cache = new IncludeCache();
+        String s = preprocess(twice("guarded.h") + twice("plain.h"), cache);
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(s, preprocess(twice("guarded.h") + twice("plain.h"), cache));
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+
+        File f = new File(dir, "changed.h");
+        write("changed.h", "int first;\n");
+        f.setLastModified(f.lastModified() - 10000);
+        s = preprocess(twice("changed.h"), cache);
+        Assert.assertEquals(2, count(s, "first;"));
+        write("changed.h", "int second;\n");
+        s = preprocess(twice("changed.h"), cache);
+        Assert.assertEquals(2, count(s, "second;"));
+        Assert.assertEquals(4, cache.getMisses());
+    }
+
+    public static void main(String args[]) throws IOException {
+        String tstname = TestIncludeCache.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.pcpp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the macro expansion of {@link PCPP}, see {@link MacroExpander}.
+ */
+public class TestMacroExpansion {
+
+    static String preprocess(String input) throws IOException {
+        PCPP pp = new PCPP(Collections.<String>emptyList(), false, false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pp.setOut(out);
+        pp.run(new StringReader(input), "input.h");
+        StringBuilder sb = new StringBuilder();
+        for (String line : out.toString().split("\n")) {
+            if (!line.startsWith("#")) {
+                sb.append(line);
+            }
+        }
+        return killWhitespace(sb.toString());
+    }
+
+    static String killWhitespace(String a) {
+        return a.replaceAll("\\p{javaWhitespace}+", "");
+    }
+
+    static void assertExpansion(String expected, String input) throws IOException {
+        Assert.assertEquals(killWhitespace(expected), preprocess(input));
+    }
+
+    @Test
+    public void testObjectLike() throws IOException {
+        assertExpansion("int a = (1+1); int b;",
+                        "#define EMPTY\n#define ONE 1\n#define TWO (ONE+ONE)\nint a = TWO; int b EMPTY;\n");
+        assertExpansion("int d = 1; int e = 2;",
+                        "#define ONE 1\n#define LATE ONE\nint d = LATE;\n#undef ONE\n#define ONE 2\nint e = LATE;\n");
+        assertExpansion("REC + 1;", "#define REC REC + 1\nREC;\n");
+    }
+
+    @Test
+    public void testFunctionLike() throws IOException {
+        assertExpansion("int b = (((1)+1)*((1)+1));",
+                        "#define SQ(x) ((x)*(x))\n#define ONE (1)\nint b = SQ(ONE+1);\n");
+        assertExpansion("int c = ((3)*(3)); int SQ; int (*f)(int) = SQ2;",
+                        "#define SQ(x) ((x)*(x))\nint c = SQ\n  (\n3);\nint SQ; int (*f)(int) = SQ2;\n");
+        assertExpansion("x = (((a,b)) > (c) ? ((a,b)) : (c));",
+                        "#define MAX(a,b) ((a) > (b) ? (a) : (b))\nx = MAX((a,b), c);\n");
+        assertExpansion("extern void __stdcall glFoo(int x); typedef void (__stdcall * PFN)(int);",
+                        "#define GLAPI extern\n#define APIENTRY __stdcall\n#define FN_PTR(name) (APIENTRY * name)\n" +
+                        "GLAPI void APIENTRY glFoo(int x);\ntypedef void FN_PTR(PFN)(int);\n");
+    }
+
+    @Test
+    public void testStringifyAndPaste() throws IOException {
+        assertExpansion("char *s = \"(1+1)\"; char *t = \"TWO\"; char *u = \"a \\\"b\\\" c\";",
+                        "#define TWO (1+1)\n#define STR(x) #x\n#define XSTR(x) STR(x)\n" +
+                        "char *s = XSTR(TWO); char *t = STR(TWO); char *u = STR(a \"b\" c);\n");
+        assertExpansion("int foo12 = 10; int ONE0;",
+                        "#define ONE 1\n#define CAT(a,b) a ## b\n#define XCAT(a,b) CAT(a,b)\n" +
+                        "int CAT(foo, 12) = XCAT(ONE, 0); int CAT(ONE, 0);\n");
+        assertExpansion("printf(\"x\"); printf(\"x\", 1, 2);",
+                        "#define LOG(fmt, ...) printf(fmt, ## __VA_ARGS__)\nLOG(\"x\"); LOG(\"x\", 1, 2);\n");
+        assertExpansion("printf(\"x\", 1, 2);",
+                        "#define LOG(fmt, args...) printf(fmt, args)\nLOG(\"x\", 1, 2);\n");
+    }
+
+    /**
+     * The example of C99 6.10.3.5, paragraph 5, with a blank in <code>- w</code>,
+     * since PCPP reads <code>-w</code> as one word.
+     */
+    @Test
+    public void testC99Example() throws IOException {
+        assertExpansion("f(2 * (y+1)) + f(2 * (f(2 * (z[0])))) % f(2 * (0)) + t(1);" +
+                        "f(2 * (2+(3,4)- 0,1)) | f(2 * (~ 5)) & f(2 * (0,1))^m(0,1);" +
+                        "int i[] = { 1, 23, 4, 5, };",
+                        "#define x 3\n" +
+                        "#define f(a) f(x * (a))\n" +
+                        "#undef x\n" +
+                        "#define x 2\n" +
+                        "#define g f\n" +
+                        "#define z z[0]\n" +
+                        "#define h g(~\n" +
+                        "#define m(a) a(w)\n" +
+                        "#define w 0,1\n" +
+                        "#define t(a) a\n" +
+                        "#define p() int\n" +
+                        "#define q(x) x\n" +
+                        "#define r(x,y) x ## y\n" +
+                        "f(y+1) + f(f(z)) % t(t(g)(0) + t)(1);\n" +
+                        "g(x+(3,4)- w) | h 5) & m\n" +
+                        "(f)^m(m);\n" +
+                        "p() i[q()] = { q(1), r(2,3), r(4,), r(,5), r(,) };\n");
+    }
+
+    @Test
+    public void testDirectiveAfterMacroName() throws IOException {
+        assertExpansion("int F; int x;", "#define F(a) a\nint F\n#define X x\n; int X;\n");
+    }
+
+    static Macro.Token[] expand(MacroExpander ex, String... tokens) throws IOException {
+        LinkedList<Macro.Token> in = new LinkedList<Macro.Token>();
+        for (String t : tokens) {
+            in.add(new Macro.Token(t, null));
+        }
+        List<Macro.Token> out = new ArrayList<Macro.Token>();
+        ex.expand(in, null, out);
+        return out.toArray(new Macro.Token[out.size()]);
+    }
+
+    static String text(Macro.Token[] tokens) {
+        StringBuilder sb = new StringBuilder();
+        for (Macro.Token t : tokens) {
+            sb.append(t.text).append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    @Test
+    public void testMemoization() throws IOException {
+        MacroExpander ex = new MacroExpander();
+        ex.define(new Macro("A", null, Arrays.asList("B", "+", "C")));
+        ex.define(new Macro("B", null, Arrays.asList("1")));
+        Assert.assertEquals("1 + C", text(expand(ex, "A")));
+        Assert.assertEquals(0, ex.getMemoHits());
+        Assert.assertEquals("1 + C ; 1 + C", text(expand(ex, "A", ";", "A")));
+        Assert.assertEquals(2, ex.getMemoHits());
+        Assert.assertEquals(1, ex.getMemoMisses());
+
+        // unrelated macros keep the memoized expansion
+        ex.define(new Macro("D", null, Arrays.asList("2")));
+        Assert.assertEquals("1 + C", text(expand(ex, "A")));
+        Assert.assertEquals(1, ex.getMemoMisses());
+
+        // defining or changing a used name invalidates it
+        ex.define(new Macro("C", null, Arrays.asList("3")));
+        Assert.assertEquals("1 + 3", text(expand(ex, "A")));
+        Assert.assertEquals(2, ex.getMemoMisses());
+        ex.undefine("B");
+        Assert.assertEquals("B + 3", text(expand(ex, "A")));
+        Assert.assertEquals(3, ex.getMemoMisses());
+    }
+
+    public static void main(String args[]) throws IOException {
+        String tstname = TestMacroExpansion.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
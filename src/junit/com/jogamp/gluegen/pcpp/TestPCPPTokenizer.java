@@ -0,0 +1,248 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ *
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+
+package com.jogamp.gluegen.pcpp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StreamTokenizer;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.jogamp.gluegen.test.junit.generation.BuildEnvironment;
+
+/**
+ * Validates the {@link Tokenizer} against the {@link StreamTokenizer} formerly used by {@link PCPP}
+ * on the stub includes.
+ * <p>
+ * With the property <code>jogamp.gluegen.TestPCPPTokenizer.benchmark</code> set,
+ * the system headers are added, if available, and the throughput of both is compared.
+ * </p>
+ */
+public class TestPCPPTokenizer {
+
+    static final boolean BENCHMARK = Boolean.getBoolean("jogamp.gluegen.TestPCPPTokenizer.benchmark");
+    static final long MAX_BYTES = 32L << 20;
+    static final int ROUNDS = 5;
+
+    static List<String> names = new ArrayList<String>();
+    static List<String> contents = new ArrayList<String>();
+    static long totalChars;
+
+    static final Pattern LONE_BACKSLASH = Pattern.compile("(?m)^\\\\\r?$");
+
+    @BeforeClass
+    public static void init() throws IOException {
+        collect(new File(BuildEnvironment.gluegenRoot + "/make/stub_includes"));
+        collect(new File(BuildEnvironment.gluegenRoot + "/src/junit/com/jogamp/gluegen/test/junit/generation"));
+        if (BENCHMARK) {
+            collect(new File("/usr/include"));
+        }
+        System.err.println("Headers: " + contents.size() + ", " + totalChars / 1024 + " kChars");
+    }
+
+    static void collect(File f) throws IOException {
+        if (totalChars >= MAX_BYTES) {
+            return;
+        }
+        if (f.isDirectory()) {
+            String[] list = f.list();
+            if (null != list) {
+                java.util.Arrays.sort(list);
+                for (String n : list) {
+                    collect(new File(f, n));
+                }
+            }
+        } else if (f.getName().endsWith(".h") && f.canRead()) {
+            String s = read(new FileReader(f));
+            if (LONE_BACKSLASH.matcher(s).find()) {
+                // ConcatenatingReader loops forever on a line consisting of a single backslash
+                return;
+            }
+            names.add(f.getPath());
+            contents.add(s);
+            totalChars += s.length();
+        }
+    }
+
+    static String read(Reader r) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[8192];
+        int n;
+        try {
+            while ((n = r.read(buf)) >= 0) {
+                sb.append(buf, 0, n);
+            }
+        } finally {
+            r.close();
+        }
+        return sb.toString();
+    }
+
+    /** The StreamTokenizer as configured by PCPP before the {@link Tokenizer} */
+    static StreamTokenizer createStreamTokenizer(String content) {
+        StreamTokenizer tok = new StreamTokenizer(new ConcatenatingReader(new BufferedReader(new StringReader(content))));
+        tok.resetSyntax();
+        tok.wordChars('a', 'z');
+        tok.wordChars('A', 'Z');
+        tok.wordChars('0', '9');
+        tok.wordChars('_', '_');
+        tok.wordChars('-', '.');
+        tok.wordChars(128, 255);
+        tok.whitespaceChars(0, ' ');
+        tok.quoteChar('"');
+        tok.quoteChar('\'');
+        tok.eolIsSignificant(true);
+        tok.slashSlashComments(true);
+        tok.slashStarComments(true);
+        return tok;
+    }
+
+    @Test
+    public void testSameTokens() throws IOException {
+        String[] samples = {
+            "",
+            "a",
+            "#define FOO(x, y) ((x)-1.0f) /* c\n\n\n*/ BAR // c++\n",
+            "line \\\n continued \\",
+            "\"esc \\t \\101 \\7777 \\q\" 'c' \"unterminated\nx",
+            "a\r\nb\rc\n/* unterminated",
+            "x / y */ z ** / * / ",
+        };
+        for (String s : samples) {
+            compare("sample <" + s + ">", s);
+        }
+        for (int i = 0; i < contents.size(); i++) {
+            compare(names.get(i), contents.get(i));
+        }
+    }
+
+    static void compare(String name, String content) throws IOException {
+        StreamTokenizer st = createStreamTokenizer(content);
+        Tokenizer t = new Tokenizer(new StringReader(content), new Tokenizer.WordTable());
+        int n = 0;
+        int tt;
+        do {
+            tt = st.nextToken();
+            int tn = t.nextToken();
+            String where = name + ", token " + n + ", line " + st.lineno();
+            Assert.assertEquals(where, tt, tn);
+            Assert.assertEquals(where, st.sval, t.curWord());
+            Assert.assertEquals(where, st.lineno(), t.lineno());
+            n++;
+        } while (tt != StreamTokenizer.TT_EOF);
+    }
+
+    @Test
+    public void testLoneBackslash() throws IOException {
+        Tokenizer t = new Tokenizer(new StringReader("a\n\\\nb"), new Tokenizer.WordTable());
+        Assert.assertEquals(Tokenizer.TT_WORD, t.nextToken());
+        Assert.assertEquals("a", t.curWord());
+        Assert.assertEquals(Tokenizer.TT_EOL, t.nextToken());
+        Assert.assertEquals(Tokenizer.TT_WORD, t.nextToken());
+        Assert.assertEquals("b", t.curWord());
+        Assert.assertEquals(Tokenizer.TT_EOL, t.nextToken());
+        Assert.assertEquals(Tokenizer.TT_EOF, t.nextToken());
+    }
+
+    @Test
+    public void testWordsInterned() throws IOException {
+        Tokenizer.WordTable words = new Tokenizer.WordTable();
+        Tokenizer a = new Tokenizer(new StringReader("GL_FOO bar"), words);
+        Tokenizer b = new Tokenizer(new StringReader("bar GL_FOO"), words);
+        a.nextToken();
+        String foo = a.curWord();
+        a.nextToken();
+        String bar = a.curWord();
+        b.nextToken();
+        Assert.assertSame(bar, b.curWord());
+        b.nextToken();
+        Assert.assertSame(foo, b.curWord());
+        // grow the table
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sb.append("w").append(i).append(' ');
+        }
+        Tokenizer c = new Tokenizer(new StringReader(sb.toString()), words);
+        while (c.nextToken() != Tokenizer.TT_EOF) { }
+        Tokenizer d = new Tokenizer(new StringReader("GL_FOO w9999"), words);
+        d.nextToken();
+        Assert.assertSame(foo, d.curWord());
+        d.nextToken();
+        Assert.assertEquals("w9999", d.curWord());
+    }
+
+    @Test
+    public void testThroughput() throws IOException {
+        Assume.assumeTrue(BENCHMARK);
+        long tStream = Long.MAX_VALUE, tTokenizer = Long.MAX_VALUE;
+        long nStream = 0, nTokenizer = 0;
+        for (int r = 0; r < ROUNDS; r++) {
+            long t0 = System.nanoTime();
+            nStream = 0;
+            for (String s : contents) {
+                StreamTokenizer st = createStreamTokenizer(s);
+                while (st.nextToken() != StreamTokenizer.TT_EOF) {
+                    nStream++;
+                }
+            }
+            long t1 = System.nanoTime();
+            nTokenizer = 0;
+            Tokenizer.WordTable words = new Tokenizer.WordTable();
+            for (String s : contents) {
+                Tokenizer t = new Tokenizer(new StringReader(s), words);
+                while (t.nextToken() != Tokenizer.TT_EOF) {
+                    nTokenizer++;
+                }
+            }
+            long t2 = System.nanoTime();
+            tStream = Math.min(tStream, t1 - t0);
+            tTokenizer = Math.min(tTokenizer, t2 - t1);
+        }
+        Assert.assertEquals(nStream, nTokenizer);
+        double mb = totalChars / (1024.0 * 1024.0);
+        System.err.println("Tokens: " + nTokenizer + " of " + (long)mb + " MB");
+        System.err.println("StreamTokenizer: " + tStream / 1000000 + " ms, " + (long)(mb / (tStream / 1e9)) + " MB/s");
+        System.err.println("Tokenizer:       " + tTokenizer / 1000000 + " ms, " + (long)(mb / (tTokenizer / 1e9)) + " MB/s");
+    }
+
+    public static void main(String args[]) throws IOException {
+        String tstname = TestPCPPTokenizer.class.getName();
+        org.junit.runner.JUnitCore.main(tstname);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2010 JogAmp Community. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ * 
+ *    1. Redistributions of source code must retain the above copyright notice, this list of
+ *       conditions and the following disclaimer.
+ * 
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list
+ *       of conditions and the following disclaimer in the documentation and/or other materials
+ *       provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY JogAmp Community ``AS IS'' AND ANY EXPRESS OR IMPLIED
+ * WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND
+ * FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL JogAmp Community OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ * ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are those of the
+ * authors and should not be interpreted as representing official policies, either expressed
+ * or implied, of JogAmp Community.
+ */
+ 
+package com.jogamp.gluegen.runtime;
+
+import com.jogamp.common.os.DynamicLookupHelper;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestProcAddressTableLazy {
+
+    public static class DummyProcAddressTable extends ProcAddressTable {
+        public volatile long _addressof_funcA;
+        public volatile long _addressof_funcB;
+        public volatile long _addressof_funcC;
+    }
+
+    public static class CountingLookup implements DynamicLookupHelper {
+        int lookups;
+
+        public long dynamicLookupFunction(String funcName) {
+            lookups++;
+            if(funcName.equals("funcC")) {
+                return 0; // n/a
+            }
+            return 0x1000 + funcName.charAt(4);
+        }
+    }
+
+    @Test
+    public void testEagerReset() {
+        DummyProcAddressTable table = new DummyProcAddressTable();
+        CountingLookup lookup = new CountingLookup();
+        table.reset(lookup);
+
+        Assert.assertEquals(3, lookup.lookups);
+        Assert.assertFalse(table.isLazy());
+        Assert.assertEquals(0x1000 + 'A', table._addressof_funcA);
+
+        // not lazy: returns the current entry w/o lookup
+        Assert.assertEquals(0, table.resolveEntry("funcC"));
+        Assert.assertEquals(3, lookup.lookups);
+    }
+
+    @Test
+    public void testLazyReset() {
+        DummyProcAddressTable table = new DummyProcAddressTable();
+        CountingLookup lookup = new CountingLookup();
+        table.reset(lookup);
+        table.resetLazy(lookup);
+        lookup.lookups = 0;
+
+        Assert.assertTrue(table.isLazy());
+        Assert.assertEquals(0, table._addressof_funcA);
+        Assert.assertEquals(0, table._addressof_funcB);
+        Assert.assertEquals(0, lookup.lookups);
+
+        Assert.assertEquals(0x1000 + 'B', table.resolveEntry("funcB"));
+        Assert.assertEquals(0x1000 + 'B', table._addressof_funcB);
+        Assert.assertEquals(0, table._addressof_funcA);
+        Assert.assertEquals(1, lookup.lookups);
+
+        Assert.assertTrue(table.isFunctionAvailable("funcA"));
+        Assert.assertEquals(0x1000 + 'A', table._addressof_funcA);
+        Assert.assertEquals(2, lookup.lookups);
+
+        Assert.assertFalse(table.isFunctionAvailable("funcC"));
+        Assert.assertFalse(table.isFunctionAvailable("funcX"));
+    }
+
+    @Test
+    public void testLazyUnavailableLookedUpOnce() {
+        DummyProcAddressTable table = new DummyProcAddressTable();
+        CountingLookup lookup = new CountingLookup();
+        table.resetLazy(lookup);
+
+        Assert.assertEquals(0, table.resolveEntry("funcC"));
+        Assert.assertEquals(1, lookup.lookups);
+        Assert.assertEquals(0, table.resolveEntry("funcC"));
+        Assert.assertFalse(table.isFunctionAvailable("funcC"));
+        Assert.assertEquals(1, lookup.lookups);
+
+        Assert.assertTrue(table.isFunctionAvailable("funcA"));
+        Assert.assertTrue(table.isFunctionAvailable("funcA"));
+        Assert.assertEquals(2, lookup.lookups);
+
+        // a new lazy reset forgets the failed lookup
+        table.resetLazy(lookup);
+        Assert.assertFalse(table.isFunctionAvailable("funcC"));
+        Assert.assertEquals(3, lookup.lookups);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testLazyUnknownEntry() {
+        DummyProcAddressTable table = new DummyProcAddressTable();
+        table.resetLazy(new CountingLookup());
+        table.resolveEntry("funcX");
+    }
+
+}
@@ -103,10 +103,12 @@ public class BaseClass {
 
           result = binding.bufferTest(bb);
           result = binding.bufferTestNioOnly(bb);
+          result = binding.bufferTestNioDirectAddress(bb);
 
           result = binding.doubleTest(context, bb, lb, bb, lb);
           result = binding.doubleTest(context, bb, larray, larray_offset, bb, larray, larray_offset);
           result = binding.doubleTestNioOnly(context, bb, lb, bb, lb);
+          result = binding.doubleTestNioDirectAddress(context, bb, lb, bb, lb);
 
           result = binding.mixedTest(context, bb, lb);
           result = binding.mixedTest(context, bb, larray, larray_offset);
@@ -119,9 +121,26 @@ public class BaseClass {
 
           i = binding.stringArrayRead(strings, i);
 
+          i = binding.strToIntDirectString(str);
+          i = binding.stringArrayReadDirectString(strings, i);
+
           i = binding.intArrayRead(ib, i);
           i = binding.intArrayRead(iarray, iarray_offset, i);
 
+          i = binding.intArrayReadSmallArrayCopy(ib, i);
+          i = binding.intArrayReadSmallArrayCopy(iarray, iarray_offset, i);
+          i = binding.intArrayAddSmallArrayCopy(ib, i, i);
+          i = binding.intArrayAddSmallArrayCopy(iarray, iarray_offset, i, i);
+
+          ib = binding.intArrayStaticReturnValueCache(i);
+
+          binding.batchTestReset();
+          binding.batchTestAdd(l, i);
+          binding.batchTestAddScaled(0.0, 0f);
+          binding.batchTestStore(lb, i);
+          binding.batchTestStore(larray, larray_offset, i);
+          l = binding.batchTestGet();
+
           long cfg=0;
           cfg = binding.typeTestAnonSingle(cfg);
           nsb = binding.typeTestAnonPointer(nsb);
@@ -422,4 +441,138 @@ public class BaseClass {
           Assert.assertTrue("Wrong result: "+i, 6==i);
     }
 
+    /**
+     * This covers NIO buffer arguments passed as direct addresses, see the NioDirectAddress directive.
+     */
+    public void chapter07TestNioDirectAddress(Bindingtest1 binding) throws Exception {
+          int i;
+          long result;
+
+          long context = 1;
+          LongBuffer lb = Buffers.newDirectLongBuffer(1);
+          lb.put(0,  10);
+
+          ByteBuffer bb2 = Buffers.newDirectByteBuffer(Buffers.SIZEOF_LONG);
+          LongBuffer bb2L = bb2.asLongBuffer();
+          bb2L.put(0, 100);
+
+          LongBuffer lb1 = Buffers.newDirectLongBuffer(Bindingtest1.ARRAY_SIZE);
+          for(i=0; i<Bindingtest1.ARRAY_SIZE; i++) {
+            lb1.put(i,  1000);
+          }
+          LongBuffer lb2 = Buffers.newDirectLongBuffer(Bindingtest1.ARRAY_SIZE);
+          for(i=0; i<Bindingtest1.ARRAY_SIZE; i++) {
+            lb2.put(i, 10000);
+          }
+
+          result = binding.bufferTestNioDirectAddress(lb);
+          Assert.assertTrue("Wrong result: "+result, 10==result);
+
+          // the passed address includes the buffer position
+          {
+              LongBuffer lbp = Buffers.newDirectLongBuffer(2);
+              lbp.put(0, 1);
+              lbp.put(1, 2);
+              lbp.position(1);
+              result = binding.bufferTestNioDirectAddress(lbp);
+              Assert.assertTrue("Wrong result: "+result, 2==result);
+          }
+
+          result = binding.doubleTestNioDirectAddress(context, lb, lb1, bb2, lb2);
+          Assert.assertTrue("Wrong result: "+result, 1+10+8000+100+80000==result);
+    }
+
+    /**
+     * This covers String arguments converted in Java, see the DirectStringArguments directive.
+     */
+    public void chapter08TestDirectStringArguments(Bindingtest1 binding) throws Exception {
+          int i;
+
+          i = binding.strToIntDirectString("42");
+          Assert.assertTrue("Wrong result: "+i, 42==i);
+
+          i = binding.stringArrayReadDirectString(new String[] { "1234", "5678", "9a" }, 3);
+          Assert.assertTrue("Wrong result: "+i, 10==i);
+
+          // null elements are passed as NULL, non ASCII characters are encoded as UTF-8
+          i = binding.stringArrayReadDirectString(new String[] { "1234", null, "\u00e49" }, 3);
+          Assert.assertTrue("Wrong result: "+i, 7==i);
+    }
+
+    /**
+     * This covers indirect arrays copied or pinned, see the SmallArrayCopy directive.
+     */
+    public void chapter09TestSmallArrayCopy(Bindingtest1 binding) throws Exception {
+          int i;
+
+          IntBuffer ib = IntBuffer.allocate(3);
+          ib.put(0, 1);
+          ib.put(1, 2);
+          ib.put(2, 3);
+
+          int[] iarray = new int[] { 1, 2, 3 };
+
+          // SmallArrayCopy of 16 bytes, i.e. up to 4 ints are copied, others are pinned
+          i = binding.intArrayReadSmallArrayCopy(ib, 3);
+          Assert.assertTrue("Wrong result: "+i, 6==i);
+
+          i = binding.intArrayReadSmallArrayCopy(new int[] { 9, 1, 2, 3 }, 1, 3);
+          Assert.assertTrue("Wrong result: "+i, 6==i);
+
+          i = binding.intArrayReadSmallArrayCopy(new int[] { 1, 2, 3, 4, 5, 6, 7, 8 }, 0, 8);
+          Assert.assertTrue("Wrong result: "+i, 36==i);
+
+          i = binding.intArrayAddSmallArrayCopy(iarray, 0, 3, 10);
+          Assert.assertTrue("Wrong result: "+i, 36==i);
+          Assert.assertArrayEquals(new int[] { 11, 12, 13 }, iarray);
+
+          {
+              int[] iarray2 = new int[] { 0, 1, 2, 3 };
+              i = binding.intArrayAddSmallArrayCopy(iarray2, 1, 3, 1);
+              Assert.assertTrue("Wrong result: "+i, 9==i);
+              Assert.assertArrayEquals(new int[] { 0, 2, 3, 4 }, iarray2);
+          }
+
+          {
+              IntBuffer ib2 = IntBuffer.allocate(4);
+              ib2.put(0, 5);
+              ib2.position(1);
+              i = binding.intArrayAddSmallArrayCopy(ib2, 3, 2);
+              Assert.assertTrue("Wrong result: "+i, 6==i);
+              Assert.assertTrue("Wrong result: "+ib2.get(0), 5==ib2.get(0));
+              Assert.assertTrue("Wrong result: "+ib2.get(3), 2==ib2.get(3));
+          }
+
+          {
+              int[] iarray8 = new int[] { 1, 2, 3, 4, 5, 6, 7, 8 };
+              i = binding.intArrayAddSmallArrayCopy(iarray8, 0, 8, 1);
+              Assert.assertTrue("Wrong result: "+i, 44==i);
+              Assert.assertArrayEquals(new int[] { 2, 3, 4, 5, 6, 7, 8, 9 }, iarray8);
+          }
+    }
+
+    /**
+     * This covers returned NIO buffers reused per address, see the ReturnValueCache directive.
+     */
+    public void chapter10TestReturnValueCache(Bindingtest1 binding) throws Exception {
+          // same address and capacity hands out the same buffer
+          IntBuffer ib1 = binding.intArrayStaticReturnValueCache(4);
+          Assert.assertNotNull(ib1);
+          Assert.assertTrue("Not direct: "+ib1, ib1.isDirect());
+          Assert.assertTrue("Wrong capacity: "+ib1, 4==ib1.capacity());
+          Assert.assertTrue("Wrong result: "+ib1.get(3), 3==ib1.get(3));
+          ib1.position(2);
+          ib1.limit(3);
+
+          IntBuffer ib2 = binding.intArrayStaticReturnValueCache(4);
+          Assert.assertSame(ib1, ib2);
+          Assert.assertTrue("Not cleared: "+ib2, 0==ib2.position() && 4==ib2.limit());
+
+          IntBuffer ib3 = binding.intArrayStaticReturnValueCache(6);
+          Assert.assertNotSame(ib1, ib3);
+          Assert.assertTrue("Wrong capacity: "+ib3, 6==ib3.capacity());
+          Assert.assertTrue("Wrong result: "+ib3.get(5), 5==ib3.get(5));
+          Assert.assertSame(ib3, binding.intArrayStaticReturnValueCache(6));
+    }
+
 }
@@ -28,9 +28,16 @@
  
 package com.jogamp.gluegen.test.junit.generation;
 
+import com.jogamp.common.nio.Buffers;
+import com.jogamp.common.util.CallProfile;
+import com.jogamp.gluegen.test.junit.generation.impl.Bindingtest1p1Batch;
 import com.jogamp.gluegen.test.junit.generation.impl.Bindingtest1p1Impl;
+import com.jogamp.gluegen.test.junit.generation.impl.Bindingtest1p1Profiler;
 
+import java.nio.LongBuffer;
 
+
+import org.junit.Assert;
 import org.junit.Test;
 
 
@@ -83,4 +90,123 @@ public class Test1p1JavaEmitter extends BaseClass {
         chapter04TestSomeFunctionsAllIndirect(new Bindingtest1p1Impl());
     }
 
+    /**
+     * Verifies the recorded calls of the batch class are executed in order on flush only,
+     * including an implicit flush if the command buffer is full.
+     */
+    @Test
+    public void chapter05TestBatch() throws Exception {
+        BindingJNILibLoader.loadBindingtest1p1();
+        Bindingtest1p1Impl binding = new Bindingtest1p1Impl();
+        LongBuffer lb = Buffers.newDirectLongBuffer(2);
+
+        Bindingtest1p1Batch batch = new Bindingtest1p1Batch();
+        binding.batchTestAdd(100, 1);
+        batch.batchTestReset();
+        batch.batchTestAdd(3, 4);
+        batch.batchTestAddScaled(2.5, 2f);
+        lb.position(1);
+        batch.batchTestStore(lb, 1);
+        Assert.assertEquals(8 + 3*24, batch.size());
+        Assert.assertEquals(100, binding.batchTestGet());
+
+        batch.flush();
+        Assert.assertEquals(0, batch.size());
+        Assert.assertEquals(12 + 5, binding.batchTestGet());
+        Assert.assertEquals(0, lb.get(0));
+        Assert.assertEquals(12 + 5 + 1, lb.get(1));
+
+        batch.batchTestAdd(1, 1);
+        batch.clear();
+        batch.flush();
+        Assert.assertEquals(12 + 5, binding.batchTestGet());
+
+        try {
+            batch.batchTestStore(LongBuffer.allocate(1), 0);
+            Assert.fail("Indirect buffer accepted");
+        } catch (RuntimeException re) { }
+
+        // the reset and 2 additions fit into 72 bytes, the 3rd addition flushes them
+        Bindingtest1p1Batch small = new Bindingtest1p1Batch(3*24);
+        small.batchTestReset();
+        for(int i=1; i<=4; i++) {
+            small.batchTestAdd(i, 10);
+        }
+        Assert.assertEquals(2*24, small.size());
+        Assert.assertEquals(10 + 20, binding.batchTestGet());
+        small.flush();
+        Assert.assertEquals(100, binding.batchTestGet());
+    }
+
+    /**
+     * Verifies the profiling wrapper emitted via EmitProfiler,
+     * counting the calls delegated to the implementation.
+     */
+    @Test
+    public void chapter06TestProfiler() throws Exception {
+        BindingJNILibLoader.loadBindingtest1p1();
+        Bindingtest1p1Profiler profiler = new Bindingtest1p1Profiler(new Bindingtest1p1Impl());
+        Bindingtest1p1 binding = profiler;
+
+        binding.batchTestReset();
+        for(int i=0; i<10; i++) {
+            binding.batchTestAdd(i, 1);
+        }
+        Assert.assertEquals(45, binding.batchTestGet());
+
+        int[] array = new int[1 + Bindingtest1p1.ARRAY_SIZE];
+        for(int i=0; i<array.length; i++) {
+            array[i] = i;
+        }
+        Assert.assertEquals(36 + 42, binding.arrayTestInt32(42, array, 1));
+
+        CallProfile.Snapshot s = profiler.getProfile().snapshot();
+        Assert.assertEquals(Bindingtest1p1Profiler.METHOD_NAMES.length, s.size());
+        Assert.assertEquals(1, s.getCount(s.indexOf("batchTestReset()")));
+        Assert.assertEquals(10, s.getCount(s.indexOf("batchTestAdd(long, int)")));
+        Assert.assertEquals(1, s.getCount(s.indexOf("batchTestGet()")));
+        Assert.assertEquals(1, s.getCount(s.indexOf("arrayTestInt32(long, int[], int)")));
+        Assert.assertEquals(0, s.getCount(s.indexOf("nopTest()")));
+        Assert.assertTrue(s.toString().indexOf("batchTestAdd(long, int)") > 0);
+
+        profiler.getProfile().reset();
+        Assert.assertEquals(0, profiler.getProfile().snapshot().getCount(s.indexOf("batchTestGet()")));
+    }
+
+    /**
+     * This covers NIO buffer arguments passed as direct addresses.
+     */
+    @Test
+    public void chapter07TestNioDirectAddress() throws Exception {
+        BindingJNILibLoader.loadBindingtest1p1();
+        chapter07TestNioDirectAddress(new Bindingtest1p1Impl());
+    }
+
+    /**
+     * This covers String arguments converted in Java.
+     */
+    @Test
+    public void chapter08TestDirectStringArguments() throws Exception {
+        BindingJNILibLoader.loadBindingtest1p1();
+        chapter08TestDirectStringArguments(new Bindingtest1p1Impl());
+    }
+
+    /**
+     * This covers indirect arrays copied or pinned depending on their size.
+     */
+    @Test
+    public void chapter09TestSmallArrayCopy() throws Exception {
+        BindingJNILibLoader.loadBindingtest1p1();
+        chapter09TestSmallArrayCopy(new Bindingtest1p1Impl());
+    }
+
+    /**
+     * This covers returned NIO buffers reused per address.
+     */
+    @Test
+    public void chapter10TestReturnValueCache() throws Exception {
+        BindingJNILibLoader.loadBindingtest1p1();
+        chapter10TestReturnValueCache(new Bindingtest1p1Impl());
+    }
+
 }
@@ -93,6 +93,52 @@ public class Test1p2ProcAddressEmitter extends BaseClass {
         chapter04TestSomeFunctionsAllIndirect(new Bindingtest1p2Impl());
     }
 
+    /**
+     * Loads the library and resets the proc address table,
+     * allowing a chapter to run independent of chapter01TestLoadLibrary.
+     */
+    private void loadLibraryAndResetTable() throws Exception {
+        if(null == dynamicLookupHelper) {
+            chapter01TestLoadLibrary();
+        }
+    }
+
+    /**
+     * This covers NIO buffer arguments passed as direct addresses.
+     */
+    @Test
+    public void chapter07TestNioDirectAddress() throws Exception {
+        loadLibraryAndResetTable();
+        chapter07TestNioDirectAddress(new Bindingtest1p2Impl());
+    }
+
+    /**
+     * This covers String arguments converted in Java.
+     */
+    @Test
+    public void chapter08TestDirectStringArguments() throws Exception {
+        loadLibraryAndResetTable();
+        chapter08TestDirectStringArguments(new Bindingtest1p2Impl());
+    }
+
+    /**
+     * This covers indirect arrays copied or pinned depending on their size.
+     */
+    @Test
+    public void chapter09TestSmallArrayCopy() throws Exception {
+        loadLibraryAndResetTable();
+        chapter09TestSmallArrayCopy(new Bindingtest1p2Impl());
+    }
+
+    /**
+     * This covers returned NIO buffers reused per address.
+     */
+    @Test
+    public void chapter10TestReturnValueCache() throws Exception {
+        loadLibraryAndResetTable();
+        chapter10TestReturnValueCache(new Bindingtest1p2Impl());
+    }
+
     public static void main(String[] args) {
         Test1p2ProcAddressEmitter test = new Test1p2ProcAddressEmitter();
         try {
@@ -100,6 +146,10 @@ public class Test1p2ProcAddressEmitter extends BaseClass {
             test.chapter02TestClassExist();
             test.chapter03TestCoverageFunctionalityDirectNIOAndPrimitiveArray();
             test.chapter04TestSomeFunctionsAllIndirect();
+            test.chapter07TestNioDirectAddress();
+            test.chapter08TestDirectStringArguments();
+            test.chapter09TestSmallArrayCopy();
+            test.chapter10TestReturnValueCache();
         } catch (Exception e) {
             e.printStackTrace();
         }
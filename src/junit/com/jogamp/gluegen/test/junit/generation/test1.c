@@ -115,6 +115,14 @@ MYAPI foo MYAPIENTRY doubleTestNioOnly(int64_t context, void * object1, foo * ar
     return doubleTest(context, object1, array1, object2, array2);
 }
 
+MYAPI foo MYAPIENTRY bufferTestNioDirectAddress(void * object) {
+    return bufferTest(object);
+}
+
+MYAPI foo MYAPIENTRY doubleTestNioDirectAddress(int64_t context, void * object1, foo * array1, void * object2, foo * array2 ) {
+    return doubleTest(context, object1, array1, object2, array2);
+}
+
 MYAPI int MYAPIENTRY strToInt(const char * str) {
     return atoi(str);
 }
@@ -137,6 +145,14 @@ MYAPI int MYAPIENTRY stringArrayRead(const char *  *  strings, int num) {
     return l;
 }
 
+MYAPI int MYAPIENTRY strToIntDirectString(const char * str) {
+    return strToInt(str);
+}
+
+MYAPI int MYAPIENTRY stringArrayReadDirectString(const char *  *  strings, int num) {
+    return stringArrayRead(strings, num);
+}
+
 MYAPI int MYAPIENTRY intArrayRead(const int *  ints, int num) {
     int i=0, s=0;
     if(NULL!=ints) {
@@ -147,6 +163,53 @@ MYAPI int MYAPIENTRY intArrayRead(const int *  ints, int num) {
     return s;
 }
 
+MYAPI int MYAPIENTRY intArrayReadSmallArrayCopy(const int *  ints, int num) {
+    return intArrayRead(ints, num);
+}
+
+MYAPI int MYAPIENTRY intArrayAddSmallArrayCopy(int *  ints, int num, int value) {
+    int i=0;
+    if(NULL!=ints) {
+        for(i=0; i<num; i++) {
+            ints[i]+=value;
+        }
+    }
+    return intArrayRead(ints, num);
+}
+
+MYAPI int * MYAPIENTRY intArrayStaticReturnValueCache(int num) {
+    static int ints[ARRAY_SIZE];
+    int i;
+    for(i=0; i<ARRAY_SIZE; i++) {
+        ints[i]=i;
+    }
+    return ints;
+}
+
+static int64_t batchTestAccumulator = 0;
+
+MYAPI void MYAPIENTRY batchTestReset(void) {
+    batchTestAccumulator = 0;
+}
+
+MYAPI void MYAPIENTRY batchTestAdd(int64_t value, int32_t factor) {
+    batchTestAccumulator += value * factor;
+}
+
+MYAPI void MYAPIENTRY batchTestAddScaled(double value, float scale) {
+    batchTestAccumulator += (int64_t) (value * scale);
+}
+
+MYAPI void MYAPIENTRY batchTestStore(int64_t * dest, int value) {
+    if(NULL!=dest) {
+        *dest = batchTestAccumulator + value;
+    }
+}
+
+MYAPI int64_t MYAPIENTRY batchTestGet(void) {
+    return batchTestAccumulator;
+}
+
 /**
 MYAPI int intArrayWrite(int * *  ints, int num) {
     int i=0, s=0;
@@ -70,6 +70,12 @@ MYAPI foo MYAPIENTRY mixedTestNioOnly(int64_t context, void * object, foo * arra
 /** Returns Sum(array1) + Sum(array2) + context + *((foo *)object1) + *((foo *)object2) */
 MYAPI foo MYAPIENTRY doubleTestNioOnly(int64_t context, void * object1, foo * array1, void * object2, foo * array2 );
 
+/** Returns *((foo *)object) */
+MYAPI foo MYAPIENTRY bufferTestNioDirectAddress(void * object);
+
+/** Returns Sum(array1) + Sum(array2) + context + *((foo *)object1) + *((foo *)object2) */
+MYAPI foo MYAPIENTRY doubleTestNioDirectAddress(int64_t context, void * object1, foo * array1, void * object2, foo * array2 );
+
 /** Returns atoi(str) */
 MYAPI int MYAPIENTRY strToInt(const char* str);
 
@@ -79,9 +85,39 @@ MYAPI const char * MYAPIENTRY intToStr(int i);
 /** Returns the length of all strings */
 MYAPI int MYAPIENTRY stringArrayRead(const char *  *  strings, int num);
 
+/** Returns atoi(str) */
+MYAPI int MYAPIENTRY strToIntDirectString(const char* str);
+
+/** Returns the length of all strings */
+MYAPI int MYAPIENTRY stringArrayReadDirectString(const char *  *  strings, int num);
+
 /** Returns the sum of all integers */
 MYAPI int MYAPIENTRY intArrayRead(const int *  ints, int num);
 
+/** Returns the sum of all integers */
+MYAPI int MYAPIENTRY intArrayReadSmallArrayCopy(const int *  ints, int num);
+
+/** Adds value to all integers and returns their sum */
+MYAPI int MYAPIENTRY intArrayAddSmallArrayCopy(int *  ints, int num, int value);
+
+/** Returns the same static array of ARRAY_SIZE integers on each call, num elements exposed, array[i] = i */
+MYAPI int * MYAPIENTRY intArrayStaticReturnValueCache(int num);
+
+/** Resets the batch test accumulator to 0 */
+MYAPI void MYAPIENTRY batchTestReset(void);
+
+/** Adds value * factor to the batch test accumulator */
+MYAPI void MYAPIENTRY batchTestAdd(int64_t value, int32_t factor);
+
+/** Adds (int64_t) (value * scale) to the batch test accumulator */
+MYAPI void MYAPIENTRY batchTestAddScaled(double value, float scale);
+
+/** Stores the batch test accumulator plus value into *dest */
+MYAPI void MYAPIENTRY batchTestStore(int64_t * dest, int value);
+
+/** Returns the batch test accumulator */
+MYAPI int64_t MYAPIENTRY batchTestGet(void);
+
 /** Increases the elements by 1, and returns the sum 
 MYAPI int MYAPIENTRY intArrayWrite(int *  *  ints, int num); */
 